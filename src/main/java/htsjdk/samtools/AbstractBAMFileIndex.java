@@ -330,6 +330,79 @@ public abstract class AbstractBAMFileIndex implements BAMIndex {
         return new BAMIndexContent(referenceSequence, bins, binCount - (metaDataSeen? 1 : 0), new BAMIndexMetaData(metaDataChunks), linearIndex);
     }
 
+    /**
+     * Reads all the bins, chunks and linear index of a reference into primitive arrays.
+     * @param referenceSequence The reference to load.
+     * @return The content of the reference, or null if the index has no such reference.
+     */
+    CompactBAMIndexContent queryCompact(final int referenceSequence) {
+        seek(4);
+
+        final int sequenceCount = readInteger();
+
+        if (referenceSequence >= sequenceCount) {
+            return null;
+        }
+
+        skipToSequence(referenceSequence);
+
+        // Bins are not necessarily sorted in the file, so read them in file order first.
+        final int binCount = readInteger();
+        final int[] fileBins = new int[binCount];
+        final int[] fileChunkStarts = new int[binCount + 1];
+        long[] fileChunks = new long[2 * binCount];
+        int chunkCount = 0;
+        int nonMetaDataBins = 0;
+        for (int binNumber = 0; binNumber < binCount; binNumber++) {
+            final int indexBin = readInteger();
+            final int nChunks = readInteger();
+            if (indexBin == GenomicIndexUtil.MAX_BINS) {
+                // meta data - not a real bin
+                skipBytes(16 * nChunks);
+                continue;
+            }
+            if (2 * (chunkCount + nChunks) > fileChunks.length) {
+                fileChunks = Arrays.copyOf(fileChunks, Math.max(2 * fileChunks.length, 2 * (chunkCount + nChunks)));
+            }
+            for (int ci = 0; ci < nChunks; ci++) {
+                fileChunks[2 * chunkCount] = readLong();
+                fileChunks[2 * chunkCount + 1] = readLong();
+                chunkCount++;
+            }
+            fileBins[nonMetaDataBins] = indexBin;
+            fileChunkStarts[++nonMetaDataBins] = chunkCount;
+        }
+
+        // Sort the bins by number, carrying their position in the file along in the low bits.
+        final long[] order = new long[nonMetaDataBins];
+        for (int i = 0; i < nonMetaDataBins; i++) {
+            order[i] = ((long) fileBins[i] << 32) | i;
+        }
+        Arrays.sort(order);
+        final int[] bins = new int[nonMetaDataBins];
+        final int[] chunkStarts = new int[nonMetaDataBins + 1];
+        final long[] chunks = new long[2 * chunkCount];
+        int chunkIndex = 0;
+        for (int i = 0; i < nonMetaDataBins; i++) {
+            final int fileIndex = (int) order[i];
+            final int start = fileChunkStarts[fileIndex];
+            final int end = fileChunkStarts[fileIndex + 1];
+            bins[i] = fileBins[fileIndex];
+            chunkStarts[i] = chunkIndex;
+            System.arraycopy(fileChunks, 2 * start, chunks, 2 * chunkIndex, 2 * (end - start));
+            chunkIndex += end - start;
+        }
+        chunkStarts[nonMetaDataBins] = chunkIndex;
+
+        final int nLinearBins = readInteger();
+        final long[] linearIndex = new long[nLinearBins];
+        for (int linearBin = 0; linearBin < nLinearBins; linearBin++) {
+            linearIndex[linearBin] = readLong();
+        }
+
+        return new CompactBAMIndexContent(referenceSequence, bins, chunkStarts, chunks, linearIndex);
+    }
+
     /**
      * The maximum possible bin number for this reference sequence.
      * This is based on the maximum coordinate position of the reference
@@ -29,6 +29,7 @@ import htsjdk.samtools.util.BinaryCodec;
 import htsjdk.samtools.util.BlockCompressedInputStream;
 import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.CoordMath;
+import htsjdk.samtools.util.DaemonThreadFactory;
 import htsjdk.samtools.util.RuntimeIOException;
 import htsjdk.samtools.util.StringLineReader;
 
@@ -39,12 +40,31 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.EnumSet;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Class for reading and querying BAM files.
  */
 class BAMFileReader extends SamReader.ReaderImplementation {
+    // Number of BGZF blocks read ahead per inflater thread, see setInflaterThreads()
+    private static final int READ_AHEAD_BLOCKS_PER_INFLATER_THREAD = 4;
+    // Number of records framed together and handed to a decoder thread, and number of such batches queued per
+    // decoder thread, see setDecoderThreads()
+    private static final int RECORDS_PER_DECODE_BATCH = 1000;
+    private static final int DECODE_BATCHES_PER_DECODER_THREAD = 4;
+
     // True if reading from a File rather than an InputStream
     private boolean mIsSeekable = false;
 
@@ -61,8 +81,8 @@ class BAMFileReader extends SamReader.ReaderImplementation {
 
     private BAMIndex mIndex = null;
     private long mFirstRecordPointer = 0;
-    // If non-null, there is an unclosed iterator extant.
-    private CloseableIterator<SAMRecord> mCurrentIterator = null;
+    // If non-null, there is an unclosed iterator extant, either of SAMRecords or of BamRecordViews.
+    private CloseableIterator<?> mCurrentIterator = null;
 
     // If true, all SAMRecords are fully decoded as they are read.
     private boolean eagerDecode;
@@ -77,6 +97,13 @@ class BAMFileReader extends SamReader.ReaderImplementation {
     // For creating BAMRecords
     private SAMRecordFactory samRecordFactory;
 
+    // If non-null, the only fields that are read for each record, see setFields()
+    private Set<SAMRecordField> mFields = null;
+
+    // If non-null, records are validated and decoded on these threads, see setDecoderThreads()
+    private ExecutorService decoderExecutor = null;
+    private int decoderThreads = 0;
+
     /**
      * Use the caching index reader implementation rather than the disk-hit-per-file model.
      */
@@ -87,6 +114,16 @@ class BAMFileReader extends SamReader.ReaderImplementation {
      */
     private boolean mEnableIndexMemoryMapping = true;
 
+    /**
+     * If greater than 0, use the compact index reader implementation, keeping references up to that many bytes.
+     */
+    private long mCompactIndexCacheSize = 0;
+
+    /**
+     * Chunks of a query apart by no more than this many compressed bytes are read at once.
+     */
+    private long mQueryGapTolerance = 0;
+
     /**
      * Add information about the origin (reader and position) to SAM records.
      */
@@ -236,10 +273,90 @@ class BAMFileReader extends SamReader.ReaderImplementation {
         this.mEnableIndexMemoryMapping = enabled;
     }
 
+    /**
+     * If greater than 0, use the compact version of the index reader, which keeps the most recently used references
+     * in memory up to the given number of bytes.  Takes precedence over index caching.
+     * @param maxCacheBytes approximate number of bytes, or 0 to use the reader chosen by index caching.
+     */
+    void setCompactIndexCacheSize(final long maxCacheBytes) {
+        if (mIndex != null) {
+            throw new SAMException("Unable to change index cache size; index file has already been loaded.");
+        }
+        this.mCompactIndexCacheSize = maxCacheBytes;
+    }
+
+    /**
+     * Merge the chunks of a query that are apart by no more than the given number of compressed bytes, so that they
+     * are read at once rather than seeking over the gap.  The records in between are filtered out.
+     * @param maxGapBytes number of compressed bytes, or 0 to merge only overlapping and adjacent chunks.
+     * @see Chunk#getMaxGapForSeekCost(double, double)
+     */
+    void setQueryGapTolerance(final long maxGapBytes) {
+        this.mQueryGapTolerance = maxGapBytes;
+    }
+
     @Override void enableCrcChecking(final boolean enabled) {
         this.mCompressedInputStream.setCheckCrcs(enabled);
     }
 
+    /**
+     * Reads BGZF blocks ahead of the records being decoded, and inflates them on the given number of worker threads.
+     * @param inflaterThreads number of worker threads, or 0 to inflate blocks on the reading thread.
+     */
+    void setInflaterThreads(final int inflaterThreads) {
+        this.mCompressedInputStream.setReadAhead(inflaterThreads, READ_AHEAD_BLOCKS_PER_INFLATER_THREAD * inflaterThreads);
+    }
+
+    /**
+     * Decodes records on a pipeline of worker threads.  One thread reads records from the (possibly read-ahead, see
+     * {@link #setInflaterThreads(int)}) decompressed stream and frames them, in batches, into {@link BAMRecord}s that
+     * still hold their variable length data undecoded.  The batches are then validated and, if eager decoding is
+     * enabled, fully decoded on the given number of decoder threads.  Iterators still return records in file order.
+     * This keeps a single threaded consumer supplied with records considerably faster than decoding on its own thread.
+     * Decoding can only be changed when no iteration is in progress.
+     * @param decoderThreads number of decoder threads, or 0 to decode records on the thread iterating over them.
+     */
+    void setDecoderThreads(final int decoderThreads) {
+        if (decoderThreads < 0) {
+            throw new IllegalArgumentException("Invalid number of decoder threads: " + decoderThreads);
+        }
+        if (decoderThreads == this.decoderThreads) {
+            return;
+        }
+        if (mCurrentIterator != null) {
+            throw new IllegalStateException("Iteration in progress");
+        }
+        shutdownDecoders();
+        if (decoderThreads > 0) {
+            this.decoderExecutor = Executors.newFixedThreadPool(decoderThreads,
+                    new DaemonThreadFactory("BAMFileReader-decoder-"));
+        }
+        this.decoderThreads = decoderThreads;
+    }
+
+    private void shutdownDecoders() {
+        if (decoderExecutor != null) {
+            decoderExecutor.shutdownNow();
+            decoderExecutor = null;
+        }
+        decoderThreads = 0;
+    }
+
+    /**
+     * Reads only the given fields of records, for iterators created afterwards.  This saves memory, but accessing a
+     * field that was not read throws an exception, and records cannot be validated since validation needs all of
+     * their fields.  Queries over intervals also read the CIGAR, which is needed to find the alignment end.
+     * @param fields the fields to read, or null to read all of them.
+     */
+    void setFields(final Set<SAMRecordField> fields) {
+        if (fields == null) {
+            this.mFields = null;
+        } else {
+            this.mFields = EnumSet.noneOf(SAMRecordField.class);
+            this.mFields.addAll(fields);
+        }
+    }
+
     @Override void setSAMRecordFactory(final SAMRecordFactory factory) { this.samRecordFactory = factory; }
 
     @Override
@@ -262,7 +379,13 @@ class BAMFileReader extends SamReader.ReaderImplementation {
         if(!hasIndex())
             throw new SAMException("No index is available for this BAM file.");
         if(mIndex == null) {
-            if (mIndexFile != null)
+            final CSIIndex csiIndex = openCSIIndexOrNull();
+            if (csiIndex != null)
+                mIndex = csiIndex;
+            else if (mCompactIndexCacheSize > 0)
+                mIndex = mIndexFile != null ? new CompactBAMFileIndex(mIndexFile, getFileHeader().getSequenceDictionary(), mEnableIndexMemoryMapping, mCompactIndexCacheSize)
+                                            : new CompactBAMFileIndex(mIndexStream, getFileHeader().getSequenceDictionary(), mCompactIndexCacheSize);
+            else if (mIndexFile != null)
                 mIndex = mEnableIndexCaching ? new CachingBAMFileIndex(mIndexFile, getFileHeader().getSequenceDictionary(), mEnableIndexMemoryMapping)
                                              : new DiskBasedBAMFileIndex(mIndexFile, getFileHeader().getSequenceDictionary(), mEnableIndexMemoryMapping);
             else
@@ -272,10 +395,30 @@ class BAMFileReader extends SamReader.ReaderImplementation {
         return mIndex;
     }
 
+    /**
+     * @return the index if it is a CSI index, or null for a BAI index.
+     */
+    private CSIIndex openCSIIndexOrNull() {
+        if (mIndexFile != null) {
+            return mIndexFile.getName().endsWith(CSIIndex.CSI_INDEX_SUFFIX) ? new CSIIndex(mIndexFile) : null;
+        }
+        try {
+            return SamIndexes.asCSIIndexOrNull(mIndexStream);
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error reading index " + mIndexStream.getSource(), e);
+        }
+    }
+
     public void setEagerDecode(final boolean desired) { this.eagerDecode = desired; }
 
     @Override
     public void close() {
+        // waits for the framing thread of an iterator that is still open to stop reading the stream before it is
+        // closed, see RecordDecodingPipeline
+        if (mCurrentIterator instanceof AbstractBamIterator) {
+            ((AbstractBamIterator<?>) mCurrentIterator).stopDecoding();
+        }
+        shutdownDecoders();
         if (mCompressedInputStream != null) {
             try {
                 mCompressedInputStream.close();
@@ -331,8 +474,34 @@ class BAMFileReader extends SamReader.ReaderImplementation {
                 throw new RuntimeIOException(exc.getMessage(), exc);
             }
         }
-        mCurrentIterator = new BAMFileIterator();
-        return mCurrentIterator;
+        return setCurrentIterator(new BAMFileIterator());
+    }
+
+    /**
+     * Prepare to iterate through the records in file order without decoding them into SAMRecords, see
+     * {@link BamRecordView}.  The same BamRecordView is returned for every record.  The same rules apply as for
+     * getIterator(); fields() and the decoder threads are ignored, and records are not validated.
+     */
+    public CloseableIterator<BamRecordView> getViewIterator() {
+        if (mStream == null) {
+            throw new IllegalStateException("File reader is closed");
+        }
+        if (mCurrentIterator != null) {
+            throw new IllegalStateException("Iteration in progress");
+        }
+        if (mIsSeekable) {
+            try {
+                mCompressedInputStream.seek(mFirstRecordPointer);
+            } catch (final IOException exc) {
+                throw new RuntimeIOException(exc.getMessage(), exc);
+            }
+        }
+        return setCurrentIterator(new BamRecordViewIterator());
+    }
+
+    private <T extends CloseableIterator<?>> T setCurrentIterator(final T iterator) {
+        mCurrentIterator = iterator;
+        return iterator;
     }
 
     @Override
@@ -348,8 +517,7 @@ class BAMFileReader extends SamReader.ReaderImplementation {
         }
 
         // Create an iterator over the given chunk boundaries.
-        mCurrentIterator = new BAMFileIndexIterator(((BAMFileSpan)chunks).toCoordinateArray());
-        return mCurrentIterator;
+        return setCurrentIterator(new BAMFileIndexIterator(((BAMFileSpan)chunks).toCoordinateArray()));
     }
 
     /**
@@ -395,12 +563,11 @@ class BAMFileReader extends SamReader.ReaderImplementation {
         }
         final int referenceIndex = mFileHeader.getSequenceIndex(sequence);
         if (referenceIndex == -1) {
-            mCurrentIterator = new EmptyBamIterator();
+            return setCurrentIterator(new EmptyBamIterator());
         } else {
             final QueryInterval[] queryIntervals = {new QueryInterval(referenceIndex, start, end)};
-            mCurrentIterator = createIndexIterator(queryIntervals, contained);
+            return setCurrentIterator(createIndexIterator(queryIntervals, contained));
         }
-        return mCurrentIterator;
     }
 
     /**
@@ -431,8 +598,7 @@ class BAMFileReader extends SamReader.ReaderImplementation {
         if (!mIsSeekable) {
             throw new UnsupportedOperationException("Cannot query stream-based BAM file");
         }
-        mCurrentIterator = createIndexIterator(intervals, contained);
-        return mCurrentIterator;
+        return setCurrentIterator(createIndexIterator(intervals, contained));
     }
 
     /**
@@ -463,11 +629,10 @@ class BAMFileReader extends SamReader.ReaderImplementation {
         }
         final int referenceIndex = mFileHeader.getSequenceIndex(sequence);
         if (referenceIndex == -1) {
-            mCurrentIterator = new EmptyBamIterator();
+            return setCurrentIterator(new EmptyBamIterator());
         } else {
-            mCurrentIterator = createStartingAtIndexIterator(referenceIndex, start);
+            return setCurrentIterator(createStartingAtIndexIterator(referenceIndex, start));
         }
-        return mCurrentIterator;
     }
 
     /**
@@ -495,8 +660,7 @@ class BAMFileReader extends SamReader.ReaderImplementation {
                 // No mapped reads in file, just start at the first read in file.
                 mCompressedInputStream.seek(mFirstRecordPointer);
             }
-            mCurrentIterator = new BAMFileIndexUnmappedIterator();
-            return mCurrentIterator;
+            return setCurrentIterator(new BAMFileIndexUnmappedIterator());
         } catch (final IOException e) {
             throw new RuntimeIOException("IOException seeking to unmapped reads", e);
         }
@@ -572,10 +736,29 @@ class BAMFileReader extends SamReader.ReaderImplementation {
         return new SAMSequenceRecord(SAMSequenceRecord.truncateSequenceName(sequenceName), sequenceLength);
     }
 
+    /**
+     * Validates a record that has just been read, and decodes it fully if eager decoding is enabled.
+     * @param samRecordIndex 1-based position of the record in the iteration, for error messages.
+     */
+    private void prepareRecord(final SAMRecord record, final long samRecordIndex) {
+        // Because some decoding is done lazily, the record needs to remember the validation stringency.
+        record.setValidationStringency(mValidationStringency);
+
+        // validation would need the fields that were not read
+        if (mValidationStringency != ValidationStringency.SILENT && mFields == null) {
+            final List<SAMValidationError> validationErrors = record.isValid(mValidationStringency == ValidationStringency.STRICT);
+            SAMUtils.processValidationErrors(validationErrors,
+                    samRecordIndex, BAMFileReader.this.getValidationStringency());
+        }
+        if (eagerDecode) {
+            record.eagerDecode();
+        }
+    }
+
     /**
      * Encapsulates the restriction that only one iterator may be open at a time.
      */
-    private abstract class AbstractBamIterator implements CloseableIterator<SAMRecord> {
+    private abstract class AbstractBamIterator<T> implements CloseableIterator<T> {
 
         private boolean isClosed = false;
 
@@ -593,13 +776,20 @@ class BAMFileReader extends SamReader.ReaderImplementation {
             if (isClosed) throw new AssertionError("Iterator has been closed");
         }
 
+        /**
+         * Stops the threads reading ahead for this iterator, if any, so that the stream may be used by another one
+         * or closed.
+         */
+        void stopDecoding() {
+        }
+
         public void remove() {
             throw new UnsupportedOperationException("Not supported: remove");
         }
 
     }
 
-    private class EmptyBamIterator extends AbstractBamIterator {
+    private class EmptyBamIterator extends AbstractBamIterator<SAMRecord> {
         @Override
         public boolean hasNext() {
             return false;
@@ -612,15 +802,44 @@ class BAMFileReader extends SamReader.ReaderImplementation {
     }
 
     /**
+     * Iterator for sequential iteration through all records in file, repositioning a single BamRecordView.
+     */
+    private class BamRecordViewIterator extends AbstractBamIterator<BamRecordView> {
+        private final BamRecordView view = new BamRecordView(getFileHeader(), samRecordFactory);
+        // True if the view is positioned on a record that has not been returned by next() yet
+        private boolean hasNextRecord = false;
+        private boolean isEndOfStream = false;
+
+        @Override
+        public boolean hasNext() {
+            assertOpen();
+            if (!hasNextRecord && !isEndOfStream) {
+                hasNextRecord = view.read(mStream);
+                isEndOfStream = !hasNextRecord;
+            }
+            return hasNextRecord;
+        }
+
+        @Override
+        public BamRecordView next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("next called on exhausted iterator");
+            }
+            hasNextRecord = false;
+            return view;
+        }
+    }
 
     /**
      * Iterator for non-indexed sequential iteration through all SAMRecords in file.
      * Starting point of iteration is wherever current file position is when the iterator is constructed.
      */
-    private class BAMFileIterator extends AbstractBamIterator {
+    private class BAMFileIterator extends AbstractBamIterator<SAMRecord> {
         private SAMRecord mNextRecord = null;
         private final BAMRecordCodec bamRecordCodec;
         private long samRecordIndex = 0; // Records at what position (counted in records) we are at in the file
+        // Only used when decoding on worker threads, started by the first advance()
+        private RecordDecodingPipeline decodingPipeline = null;
 
         BAMFileIterator() {
             this(true);
@@ -633,6 +852,7 @@ class BAMFileReader extends SamReader.ReaderImplementation {
             this.bamRecordCodec = new BAMRecordCodec(getFileHeader(), samRecordFactory);
             this.bamRecordCodec.setInputStream(BAMFileReader.this.mStream.getInputStream(),
                     BAMFileReader.this.mStream.getInputFileName());
+            this.bamRecordCodec.setFields(mFields);
 
             if (advance) {
                 advance();
@@ -651,23 +871,45 @@ class BAMFileReader extends SamReader.ReaderImplementation {
             return result;
         }
 
+        @Override
+        public void close() {
+            stopDecoding();
+            super.close();
+        }
+
+        /**
+         * Makes sure the given field is read even if the reader only reads some fields.  Must be called before advance().
+         */
+        void requireField(final SAMRecordField field) {
+            final Set<SAMRecordField> fields = bamRecordCodec.getFields();
+            if (fields != null && !fields.contains(field)) {
+                final Set<SAMRecordField> required = EnumSet.noneOf(SAMRecordField.class);
+                required.addAll(fields);
+                required.add(field);
+                bamRecordCodec.setFields(required);
+            }
+        }
+
+        @Override
+        void stopDecoding() {
+            if (decodingPipeline != null) {
+                decodingPipeline.close();
+            }
+        }
+
         void advance() {
+            if (decoderExecutor != null || decodingPipeline != null) {
+                if (decodingPipeline == null) {
+                    decodingPipeline = new RecordDecodingPipeline(this, decoderExecutor, decoderThreads);
+                }
+                mNextRecord = decodingPipeline.next();
+                return;
+            }
             try {
                 mNextRecord = getNextRecord();
 
                 if (mNextRecord != null) {
-                    ++this.samRecordIndex;
-                    // Because some decoding is done lazily, the record needs to remember the validation stringency.
-                    mNextRecord.setValidationStringency(mValidationStringency);
-
-                    if (mValidationStringency != ValidationStringency.SILENT) {
-                        final List<SAMValidationError> validationErrors = mNextRecord.isValid(mValidationStringency == ValidationStringency.STRICT);
-                        SAMUtils.processValidationErrors(validationErrors,
-                                this.samRecordIndex, BAMFileReader.this.getValidationStringency());
-                    }
-                }
-                if (eagerDecode && mNextRecord != null) {
-                    mNextRecord.eagerDecode();
+                    prepareRecord(mNextRecord, ++this.samRecordIndex);
                 }
             } catch (final IOException exc) {
                 throw new RuntimeIOException(exc.getMessage(), exc);
@@ -753,13 +995,13 @@ class BAMFileReader extends SamReader.ReaderImplementation {
         }
         final long[] filePointers;
         if (inputSpans.length > 0) {
-            filePointers = BAMFileSpan.merge(inputSpans).toCoordinateArray();
+            filePointers = BAMFileSpan.merge(inputSpans, mQueryGapTolerance).toCoordinateArray();
         } else {
             filePointers = null;
         }
 
-        // Create an iterator over the above chunk boundaries.
-        final BAMFileIndexIterator iterator = new BAMFileIndexIterator(filePointers);
+        // Create an iterator over the above chunk boundaries.  The filter needs the alignment end.
+        final BAMFileIndexIterator iterator = new BAMFileIndexIterator(filePointers, SAMRecordField.CIGAR);
 
         // Add some preprocessing filters for edge-case reads that don't fit into this
         // query type.
@@ -778,10 +1020,14 @@ class BAMFileReader extends SamReader.ReaderImplementation {
         /**
          * Prepare to iterate through SAMRecords stored in the specified compressed blocks at the given offset.
          * @param filePointers the block / offset combination, stored in chunk format.
+         * @param requiredFields fields that are read even if the reader only reads some fields, see setFields().
          */
-        BAMFileIndexIterator(final long[] filePointers) {
+        BAMFileIndexIterator(final long[] filePointers, final SAMRecordField... requiredFields) {
             super(false);  // delay advance() until after construction
             mFilePointers = filePointers;
+            for (final SAMRecordField field : requiredFields) {
+                requireField(field);
+            }
             advance();
         }
 
@@ -806,7 +1052,7 @@ class BAMFileReader extends SamReader.ReaderImplementation {
     /**
      * Pull SAMRecords from a coordinate-sorted iterator, and filter out any that do not match the filter.
      */
-    public class BAMQueryFilteringIterator extends AbstractBamIterator {
+    public class BAMQueryFilteringIterator extends AbstractBamIterator<SAMRecord> {
         /**
          * The wrapped iterator.
          */
@@ -824,6 +1070,20 @@ class BAMFileReader extends SamReader.ReaderImplementation {
             mNextRecord = advance();
         }
 
+        @Override
+        public void close() {
+            // the wrapped iterator is not the current one, so it is not closed, but must stop reading
+            stopDecoding();
+            super.close();
+        }
+
+        @Override
+        void stopDecoding() {
+            if (wrappedIterator instanceof AbstractBamIterator) {
+                ((AbstractBamIterator<?>) wrappedIterator).stopDecoding();
+            }
+        }
+
         /**
          * Returns true if a next element exists; false otherwise.
          */
@@ -910,4 +1170,160 @@ class BAMFileReader extends SamReader.ReaderImplementation {
             }
         }
     }
+
+    /**
+     * Records framed together, which are validated and decoded on a decoder thread.  If reading or decoding fails,
+     * the records before the failure are returned, followed by the failure, which ends the iteration.
+     */
+    private final class RecordBatch implements Callable<RecordBatch> {
+        private final List<SAMRecord> records = new ArrayList<SAMRecord>(RECORDS_PER_DECODE_BATCH);
+        private final long firstRecordIndex;
+        private boolean lastBatch = false;
+        private Throwable failure = null;
+
+        private RecordBatch(final long firstRecordIndex) {
+            this.firstRecordIndex = firstRecordIndex;
+        }
+
+        @Override
+        public RecordBatch call() {
+            for (int i = 0; i < records.size(); ++i) {
+                try {
+                    prepareRecord(records.get(i), firstRecordIndex + i);
+                } catch (final RuntimeException e) {
+                    records.subList(i, records.size()).clear();
+                    failure = e;
+                    lastBatch = true;
+                    break;
+                }
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Frames the records of a {@link BAMFileIterator} on a dedicated thread and decodes them on the decoder threads,
+     * see {@link #setDecoderThreads(int)}.  Batches are queued in file order as they are handed to the decoders,
+     * and only a bounded number of them are read ahead of the consumer.
+     */
+    private final class RecordDecodingPipeline implements Runnable {
+        private final BAMFileIterator iterator;
+        private final ExecutorService executor;
+        private final BlockingQueue<Future<RecordBatch>> decodedBatches;
+        private final Thread framingThread;
+        private volatile boolean closed = false;
+        private RecordBatch currentBatch = null;
+        private int currentIndex = 0;
+
+        private RecordDecodingPipeline(final BAMFileIterator iterator, final ExecutorService executor, final int decoderThreads) {
+            this.iterator = iterator;
+            this.executor = executor;
+            this.decodedBatches = new ArrayBlockingQueue<Future<RecordBatch>>(DECODE_BATCHES_PER_DECODER_THREAD * decoderThreads);
+            this.framingThread = new DaemonThreadFactory("BAMFileReader-framer-").newThread(this);
+            this.framingThread.start();
+        }
+
+        /**
+         * Frames batches of records until the end of the iteration, a failure, or until the pipeline is closed.
+         */
+        @Override
+        public void run() {
+            long recordIndex = 1;
+            while (!closed) {
+                final RecordBatch batch = new RecordBatch(recordIndex);
+                try {
+                    while (batch.records.size() < RECORDS_PER_DECODE_BATCH) {
+                        final SAMRecord record = iterator.getNextRecord();
+                        if (record == null) {
+                            batch.lastBatch = true;
+                            break;
+                        }
+                        batch.records.add(record);
+                    }
+                } catch (final IOException exc) {
+                    batch.failure = new RuntimeIOException(exc.getMessage(), exc);
+                    batch.lastBatch = true;
+                } catch (final Throwable t) {
+                    batch.failure = t;
+                    batch.lastBatch = true;
+                }
+                recordIndex += batch.records.size();
+                Future<RecordBatch> decoded;
+                try {
+                    decoded = executor.submit(batch);
+                } catch (final RejectedExecutionException e) {
+                    // the reader has been closed
+                    return;
+                }
+                try {
+                    while (!decodedBatches.offer(decoded, 100, TimeUnit.MILLISECONDS)) {
+                        if (closed || executor.isShutdown()) {
+                            return;
+                        }
+                    }
+                } catch (final InterruptedException ie) {
+                    return;
+                }
+                if (batch.lastBatch) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * @return the next record, or null at the end of the iteration.
+         */
+        private SAMRecord next() {
+            while (currentBatch == null || currentIndex == currentBatch.records.size()) {
+                if (currentBatch != null && currentBatch.lastBatch) {
+                    final Throwable failure = currentBatch.failure;
+                    if (failure != null) {
+                        currentBatch.failure = null;
+                        if (failure instanceof Error) {
+                            throw (Error) failure;
+                        }
+                        throw (RuntimeException) failure;
+                    }
+                    return null;
+                }
+                currentBatch = takeBatch();
+                currentIndex = 0;
+            }
+            return currentBatch.records.get(currentIndex++);
+        }
+
+        private RecordBatch takeBatch() {
+            try {
+                while (true) {
+                    final Future<RecordBatch> decoded = decodedBatches.poll(100, TimeUnit.MILLISECONDS);
+                    if (decoded != null) {
+                        return decoded.get();
+                    }
+                    if (!framingThread.isAlive() && decodedBatches.isEmpty()) {
+                        throw new IllegalStateException("Records can no longer be read, the reader has been closed");
+                    }
+                }
+            } catch (final InterruptedException ie) {
+                throw new RuntimeException("Interrupted waiting for records to be decoded.", ie);
+            } catch (final ExecutionException ee) {
+                throw new RuntimeException("Exception decoding records.", ee.getCause());
+            }
+        }
+
+        /**
+         * Waits for the framing thread to stop reading, discarding any records read ahead.
+         */
+        private void close() {
+            closed = true;
+            try {
+                while (framingThread.isAlive()) {
+                    decodedBatches.clear();
+                    framingThread.join(10);
+                }
+            } catch (final InterruptedException ie) {
+                throw new RuntimeException("Interrupted waiting for record framing to stop.", ie);
+            }
+            decodedBatches.clear();
+        }
+    }
 }
@@ -257,12 +257,22 @@ public class BAMFileSpan implements SAMFileSpan, Serializable {
      * and contained chunks are intelligently merged, and the chunks are sorted.
      */
     public static BAMFileSpan merge(final BAMFileSpan[] spans) {
+        return merge(spans, 0);
+    }
+
+    /**
+     * @param maxGapBytes If greater than 0, chunks apart by no more than that many compressed bytes are merged too,
+     *                    see {@link Chunk#optimizeChunkList(List, long, long)}.
+     * @return A single BAMFileSpan that is an intelligent merge of the input spans, in which chunks close enough
+     * to be read at once are merged as well.
+     */
+    public static BAMFileSpan merge(final BAMFileSpan[] spans, final long maxGapBytes) {
         final ArrayList<Chunk> inputChunks = new ArrayList<Chunk>();
         for (final BAMFileSpan span : spans) {
             if(span != null){
                 inputChunks.addAll(span.chunks);
             }
         }
-        return new BAMFileSpan(Chunk.optimizeChunkList(inputChunks, 0));
+        return new BAMFileSpan(Chunk.optimizeChunkList(inputChunks, 0, maxGapBytes));
     }
 }
@@ -44,6 +44,8 @@ class BAMFileWriter extends SAMFileWriterImpl {
     private BAMRecordCodec bamRecordCodec = null;
     private final BlockCompressedOutputStream blockCompressedOutputStream;
     private BAMIndexer bamIndexer = null;
+    // Start of the alignment being indexed; see writeAlignment()
+    private long alignmentStartOffset = 0;
 
     protected BAMFileWriter(final File path) {
         blockCompressedOutputStream = new BlockCompressedOutputStream(path);
@@ -75,6 +77,13 @@ class BAMFileWriter extends SAMFileWriterImpl {
         outputBinaryCodec.setOutputFileName(getPathString(file));
     }
 
+    protected BAMFileWriter(final OutputStream os, final File file, final int compressionLevel, final DeflaterFactory deflaterFactory,
+                            final int compressionThreads) {
+        blockCompressedOutputStream = new BlockCompressedOutputStream(os, file, compressionLevel, deflaterFactory, compressionThreads);
+        outputBinaryCodec = new BinaryCodec(new DataOutputStream(blockCompressedOutputStream));
+        outputBinaryCodec.setOutputFileName(getPathString(file));
+    }
+
     private void prepareToWriteAlignments() {
         if (bamRecordCodec == null) {
             bamRecordCodec = new BAMRecordCodec(getFileHeader());
@@ -115,26 +124,39 @@ class BAMFileWriter extends SAMFileWriterImpl {
         }
     }
 
+    /**
+     * When creating an index, the file offsets of the alignment are only known once the blocks before it have been
+     * written, so if blocks are compressed on worker threads the alignment is indexed, and its file source set, by a
+     * later call to this method or by {@link #finish()}.  The alignment must not be modified in the meantime.
+     */
     protected void writeAlignment(final SAMRecord alignment) {
         prepareToWriteAlignments();
 
         if (bamIndexer != null) {
-            try {
-                final long startOffset = blockCompressedOutputStream.getFilePointer();
-                bamRecordCodec.encode(alignment);
-                final long stopOffset = blockCompressedOutputStream.getFilePointer();
-                // set the alignment's SourceInfo and then prepare its index information
-                alignment.setFileSource(new SAMFileSource(null, new BAMFileSpan(new Chunk(startOffset, stopOffset))));
-                bamIndexer.processAlignment(alignment);
-            } catch (Exception e) {
-                bamIndexer = null;
-                throw new SAMException("Exception when processing alignment for BAM index " + alignment, e);
-            }
+            // the file pointers are resolved in the order in which they are requested
+            blockCompressedOutputStream.getFilePointer(startOffset -> alignmentStartOffset = startOffset);
+            bamRecordCodec.encode(alignment);
+            blockCompressedOutputStream.getFilePointer(stopOffset -> indexAlignment(alignment, stopOffset));
         } else {
             bamRecordCodec.encode(alignment);
         }
     }
 
+    private void indexAlignment(final SAMRecord alignment, final long stopOffset) {
+        if (bamIndexer == null) {
+            // indexing of an earlier alignment failed
+            return;
+        }
+        try {
+            // set the alignment's SourceInfo and then prepare its index information
+            alignment.setFileSource(new SAMFileSource(null, new BAMFileSpan(new Chunk(alignmentStartOffset, stopOffset))));
+            bamIndexer.processAlignment(alignment);
+        } catch (Exception e) {
+            bamIndexer = null;
+            throw new SAMException("Exception when processing alignment for BAM index " + alignment, e);
+        }
+    }
+
     protected void writeHeader(final String textHeader) {
         writeHeader(outputBinaryCodec, getFileHeader(), textHeader);
     }
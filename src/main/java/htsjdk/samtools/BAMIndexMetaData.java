@@ -130,10 +130,19 @@ public class BAMIndexMetaData {
             throw new SAMException("BAM cannot be indexed without setting a fileSource for record " + rec);
         }
         final Chunk newChunk = ((BAMFileSpan) rec.getFileSource().getFilePointer()).getSingleChunk();
-        final long start = newChunk.getChunkStart();
-        final long end = newChunk.getChunkEnd();
+        recordMetaData(rec.getReadUnmappedFlag(), newChunk.getChunkStart(), newChunk.getChunkEnd());
+    }
 
-        if (rec.getReadUnmappedFlag()) {
+    /**
+     * Extract relevant metaData from a record with coordinates that is not held in a SAMRecord
+     * Call only once per record in the file being indexed
+     *
+     * @param unmapped whether the read unmapped flag of the record is set
+     * @param start virtual file pointer to the start of the record
+     * @param end virtual file pointer to the end of the record
+     */
+    void recordMetaData(final boolean unmapped, final long start, final long end) {
+        if (unmapped) {
             unAlignedRecords++;
         } else {
             alignedRecords++;
@@ -251,9 +260,10 @@ public class BAMIndexMetaData {
      */
     static public BAMIndexMetaData[] getIndexStats(final BAMFileReader bam) {
 
-        AbstractBAMFileIndex index = (AbstractBAMFileIndex) bam.getIndex();
+        final BAMIndex index = bam.getIndex();
         // read through all the bins of every reference.
-        int nRefs = index.getNumberOfReferences();
+        int nRefs = index instanceof CSIIndex ? ((CSIIndex) index).getNumberOfReferences()
+                                              : ((AbstractBAMFileIndex) index).getNumberOfReferences();
         BAMIndexMetaData[] result = new BAMIndexMetaData[nRefs == 0 ? 1 : nRefs];
         for (int i = 0; i < nRefs; i++) {
             result[i] = index.getMetaData(i);
@@ -262,7 +272,8 @@ public class BAMIndexMetaData {
         if (result[0] == null) {
             result[0] = new BAMIndexMetaData();
         }
-        final Long noCoordCount = index.getNoCoordinateCount();
+        final Long noCoordCount = index instanceof CSIIndex ? ((CSIIndex) index).getNoCoordinateCount()
+                                                            : ((AbstractBAMFileIndex) index).getNoCoordinateCount();
         if (noCoordCount != null)  // null in old index files without metadata
             result[0].setNoCoordinateRecordCount(noCoordCount);
 
@@ -23,10 +23,24 @@
  */
 package htsjdk.samtools;
 
+import htsjdk.samtools.util.BinaryCodec;
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.DaemonThreadFactory;
 import htsjdk.samtools.util.Log;
+import htsjdk.samtools.util.RuntimeIOException;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.function.Function;
 
 /**
@@ -52,6 +66,14 @@ public class BAMIndexer {
 
     private static final Log log = Log.getInstance(BAMIndexer.class);
 
+    // Number of records handed to the worker threads at a time by createIndex(File, File, int), and the number of
+    // such batches that may be waiting per worker thread
+    private static final int FEATURE_BATCH_SIZE = 1 << 16;
+    private static final int FEATURE_BATCHES_PER_THREAD = 4;
+
+    // Number of blocks read ahead per worker thread by createIndex(File, File, int)
+    private static final int BLOCKS_AHEAD_PER_THREAD = 8;
+
     /**
      * @param output     binary BAM Index (.bai) file
      * @param fileHeader header for the corresponding bam file
@@ -78,6 +100,13 @@ public class BAMIndexer {
      *                     with that value and an appropriate output.
       */
     private BAMIndexer(final SAMFileHeader fileHeader, Function<Integer, BinaryBAMIndexWriter> createWriter) {
+        checkSortOrder(fileHeader);
+        numReferences = fileHeader.getSequenceDictionary().size();
+        indexBuilder = new BAMIndexBuilder(fileHeader.getSequenceDictionary());
+        outputWriter = createWriter.apply(numReferences);
+    }
+
+    static void checkSortOrder(final SAMFileHeader fileHeader) {
         if (fileHeader.getSortOrder() != SAMFileHeader.SortOrder.coordinate) {
             if (fileHeader.getSortOrder() == SAMFileHeader.SortOrder.unsorted) {
                 log.warn("For indexing, the BAM file is required to be coordinate sorted. Attempting to index \"unsorted\" BAM file.");
@@ -86,9 +115,6 @@ public class BAMIndexer {
                 throw new SAMException("Indexing requires a coordinate-sorted input BAM.");
             }
         }
-        numReferences = fileHeader.getSequenceDictionary().size();
-        indexBuilder = new BAMIndexBuilder(fileHeader.getSequenceDictionary());
-        outputWriter = createWriter.apply(numReferences);
     }
 
     /**
@@ -310,4 +336,223 @@ public class BAMIndexer {
         }
         indexer.finish();
     }
+
+    /**
+     * Generates a BAM index file from a BAM file without decoding its records: only the fixed-size fields and the
+     * CIGAR of each record are read, straight from the inflated blocks.  With worker threads, blocks are inflated
+     * ahead of the thread scanning the records, and the bins and linear index of each reference are built on the
+     * workers as well, concurrently for different references, so that indexing is mostly bound by reading the file.
+     * The index is the same as the one created from a SamReader.
+     *
+     * @param bam     BAM file to index
+     * @param output  File for output index file
+     * @param threads number of worker threads, or 0 to do all the work on the calling thread
+     */
+    public static void createIndex(final File bam, final File output, final int threads) {
+        if (threads < 0) {
+            throw new IllegalArgumentException("Invalid number of threads: " + threads);
+        }
+        final ExecutorService executorService = threads > 0 ?
+                Executors.newFixedThreadPool(threads, new DaemonThreadFactory("BAMIndexer-")) : null;
+        BlockCompressedInputStream stream = null;
+        try {
+            stream = new BlockCompressedInputStream(bam);
+            stream.setReadAhead(threads, threads * BLOCKS_AHEAD_PER_THREAD);
+            final Executor executor = executorService != null ? executorService : Runnable::run;
+            new RawRecordIndexer(stream, bam, output, executor, Math.max(1, threads * FEATURE_BATCHES_PER_THREAD)).run();
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Exception creating BAM index for " + bam, e);
+        } finally {
+            CloserUtil.close(stream);
+            if (executorService != null) {
+                executorService.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Scans the records of a BAM file for {@link #createIndex(File, File, int)}, handing their coordinates and
+     * offsets to the worker threads in batches.  The batches of a reference are processed one after the other,
+     * while those of different references may be processed at the same time.
+     */
+    private static class RawRecordIndexer {
+        private final BlockCompressedInputStream stream;
+        private final BinaryCodec codec;
+        private final SAMFileHeader header;
+        private final BamRecordView view;
+        private final int numReferences;
+        private final BinaryBAMIndexWriter outputWriter;
+        private final Executor executor;
+        // limits the number of batches waiting for or being processed by the worker threads
+        private final Semaphore batchesInFlight;
+
+        // the content of the references that have been scanned, which is written out in order
+        private final Deque<CompletableFuture<BAMIndexContent>> pendingContents = new ArrayDeque<>();
+        private int currentReference = 0;
+        private ReferenceIndexBuilder currentBuilder = null;
+        private long noCoordinateRecords = 0;
+
+        RawRecordIndexer(final BlockCompressedInputStream stream, final File bam, final File output,
+                         final Executor executor, final int maxBatchesInFlight) throws IOException {
+            this.stream = stream;
+            this.codec = new BinaryCodec(stream);
+            this.header = BAMFileReader.readHeader(codec, ValidationStringency.SILENT, bam.getPath());
+            checkSortOrder(header);
+            this.view = new BamRecordView(header, DefaultSAMRecordFactory.getInstance());
+            this.numReferences = header.getSequenceDictionary().size();
+            this.outputWriter = new BinaryBAMIndexWriter(numReferences, output);
+            this.executor = executor;
+            this.batchesInFlight = new Semaphore(maxBatchesInFlight);
+        }
+
+        void run() {
+            try {
+                long recordStart = stream.getFilePointer();
+                while (view.read(codec)) {
+                    final long recordEnd = stream.getFilePointer();
+                    processRecord(recordStart, recordEnd);
+                    recordStart = recordEnd;
+                }
+                advanceToReference(numReferences);
+                while (!pendingContents.isEmpty()) {
+                    outputWriter.writeReference(getContent(pendingContents.remove()));
+                }
+                outputWriter.writeNoCoordinateRecordCount(noCoordinateRecords);
+            } finally {
+                outputWriter.close();
+            }
+        }
+
+        private void processRecord(final long recordStart, final long recordEnd) {
+            final int reference = view.getReferenceIndex();
+            if (reference != SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX && reference != currentReference) {
+                if (reference < currentReference || reference >= numReferences) {
+                    throw new SAMException("Unexpected reference " + reference + " when constructing index for " +
+                            currentReference + " for record " + view.getReadName());
+                }
+                advanceToReference(reference);
+            }
+            final int alignmentStart = view.getAlignmentStart();
+            if (alignmentStart == SAMRecord.NO_ALIGNMENT_START) {
+                noCoordinateRecords++;
+                return; // do nothing for records without coordinates, but count them
+            }
+            if (reference != currentReference) {
+                throw new SAMException("Unexpected reference " + reference + " when constructing index for " +
+                        currentReference + " for record " + view.getReadName());
+            }
+            if (currentBuilder == null) {
+                currentBuilder = new ReferenceIndexBuilder(currentReference,
+                        header.getSequenceDictionary().getSequence(currentReference).getSequenceLength());
+            }
+            final boolean unmapped = view.getReadUnmappedFlag();
+            currentBuilder.metaData.recordMetaData(unmapped, recordStart, recordEnd);
+            currentBuilder.batch.add(alignmentStart, view.getAlignmentEnd(), view.getIndexingBin(), recordStart, recordEnd);
+            if (currentBuilder.batch.isFull()) {
+                submitBatch();
+            }
+        }
+
+        /** Hands the pending records of the current reference to the worker threads. */
+        private void submitBatch() {
+            final ReferenceIndexBuilder builder = currentBuilder;
+            final FeatureBatch batch = builder.batch;
+            builder.batch = new FeatureBatch();
+            try {
+                batchesInFlight.acquire();
+            } catch (final InterruptedException ie) {
+                throw new RuntimeException("Interrupted waiting for index workers", ie);
+            }
+            builder.lane = builder.lane.whenCompleteAsync((ignored, failure) -> {
+                try {
+                    if (failure == null) {
+                        batch.addTo(builder.binningIndexBuilder);
+                    }
+                } finally {
+                    batchesInFlight.release();
+                }
+            }, executor);
+        }
+
+        /** Completes the references before the given one, and writes out those whose content is ready. */
+        private void advanceToReference(final int nextReference) {
+            while (currentReference < nextReference) {
+                if (currentBuilder == null) {
+                    pendingContents.add(CompletableFuture.<BAMIndexContent>completedFuture(null));
+                } else {
+                    submitBatch();
+                    final ReferenceIndexBuilder builder = currentBuilder;
+                    pendingContents.add(builder.lane.thenApplyAsync(ignored -> builder.generateIndexContent(), executor));
+                    currentBuilder = null;
+                }
+                currentReference++;
+            }
+            while (!pendingContents.isEmpty() && pendingContents.peek().isDone()) {
+                outputWriter.writeReference(getContent(pendingContents.remove()));
+            }
+        }
+
+        private static BAMIndexContent getContent(final CompletableFuture<BAMIndexContent> future) {
+            try {
+                return future.join();
+            } catch (final CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new SAMException("Exception creating BAM index", e.getCause());
+            }
+        }
+    }
+
+    /** The index content of one reference being built by {@link RawRecordIndexer}. */
+    private static class ReferenceIndexBuilder {
+        // only updated by the scanning thread, and read once all the batches have been processed
+        final BAMIndexMetaData metaData = new BAMIndexMetaData();
+        // only used by one batch at a time, in file order
+        final BinningIndexBuilder binningIndexBuilder;
+        // completes when the batches submitted so far have been processed
+        CompletableFuture<Void> lane = CompletableFuture.completedFuture(null);
+        FeatureBatch batch = new FeatureBatch();
+
+        ReferenceIndexBuilder(final int reference, final int sequenceLength) {
+            this.binningIndexBuilder = new BinningIndexBuilder(reference, sequenceLength);
+        }
+
+        /** @return Null if there are no features for this reference. */
+        BAMIndexContent generateIndexContent() {
+            final BinningIndexContent indexContent = binningIndexBuilder.generateIndexContent();
+            if (indexContent == null) return null;
+            return new BAMIndexContent(indexContent.getReferenceSequence(), indexContent.getBins(),
+                    metaData, indexContent.getLinearIndex());
+        }
+    }
+
+    /** Coordinates and offsets of consecutive records of a reference. */
+    private static class FeatureBatch {
+        private final int[] starts = new int[FEATURE_BATCH_SIZE];
+        private final int[] ends = new int[FEATURE_BATCH_SIZE];
+        private final int[] bins = new int[FEATURE_BATCH_SIZE];
+        private final long[] chunkStarts = new long[FEATURE_BATCH_SIZE];
+        private final long[] chunkEnds = new long[FEATURE_BATCH_SIZE];
+        private int size = 0;
+
+        void add(final int start, final int end, final int bin, final long chunkStart, final long chunkEnd) {
+            starts[size] = start;
+            ends[size] = end;
+            bins[size] = bin;
+            chunkStarts[size] = chunkStart;
+            chunkEnds[size] = chunkEnd;
+            size++;
+        }
+
+        boolean isFull() {
+            return size == FEATURE_BATCH_SIZE;
+        }
+
+        void addTo(final BinningIndexBuilder builder) {
+            for (int i = 0; i < size; i++) {
+                builder.processFeature(starts[i], ends[i], bins[i], chunkStarts[i], chunkEnds[i]);
+            }
+        }
+    }
 }
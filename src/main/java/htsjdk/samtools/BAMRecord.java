@@ -27,6 +27,7 @@ import htsjdk.samtools.util.StringUtil;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.Set;
 
 
 /**
@@ -65,6 +66,11 @@ public class BAMRecord extends SAMRecord {
      */
     private boolean mBinaryDataStale;
 
+    /**
+     * The fields read into mRestOfBinaryData, if not all of them were, see {@link #setFields(Set)}.
+     */
+    private Set<SAMRecordField> mFields = null;
+
     /**
      * Create a new BAM Record. If the reference sequence index or mate reference sequence index are any value other
      * than NO_ALIGNMENT_REFERENCE_INDEX (-1), then the specified index values must exist in the sequence dictionary
@@ -110,16 +116,38 @@ public class BAMRecord extends SAMRecord {
         mBinaryDataStale = false;
     }
 
+    /**
+     * Marks the variable length fields that are not in the given set as not read, in which case mRestOfBinaryData only
+     * holds the other ones, in their usual order.  Accessing a field that was not read throws an exception.
+     * Must be called before any field is decoded.
+     * @param fields the fields that were read, which is not modified afterwards and may be shared between records.
+     */
+    void setFields(final Set<SAMRecordField> fields) {
+        this.mFields = fields;
+    }
+
+    /**
+     * @return true if the field was read.
+     */
+    private boolean hasField(final SAMRecordField field) {
+        return mFields == null || mFields.contains(field);
+    }
+
+    private void assertFieldRead(final SAMRecordField field) {
+        if (!hasField(field)) {
+            throw new IllegalStateException(field + " field was not read for this record, see SamReaderFactory.fields()");
+        }
+    }
+
     /**
      * Force all the lazily-initialized attributes to be decoded.
      */
     protected void eagerDecode() {
-        getReadName();
-        getCigar();
-        getReadBases();
-        getBaseQualities();
-        getBinaryAttributes();
-        super.eagerDecode();
+        if (hasField(SAMRecordField.QNAME)) getReadName();
+        if (hasField(SAMRecordField.SEQ)) getReadBases();
+        if (hasField(SAMRecordField.QUAL)) getBaseQualities();
+        if (hasField(SAMRecordField.TAGS)) getBinaryAttributes();
+        if (hasField(SAMRecordField.CIGAR)) super.eagerDecode();
         mRestOfBinaryData = null;
     }
 
@@ -131,7 +159,7 @@ public class BAMRecord extends SAMRecord {
      */
     @Override
     public byte[] getVariableBinaryRepresentation() {
-        if (mBinaryDataStale) {
+        if (mBinaryDataStale || mFields != null) {
             return null;
         }
         // This may have been set to null by eagerDecode()
@@ -146,7 +174,7 @@ public class BAMRecord extends SAMRecord {
      */
     @Override
     public int getAttributesBinarySize() {
-        if (mBinaryDataStale || mRestOfBinaryData == null) {
+        if (mBinaryDataStale || mRestOfBinaryData == null || mFields != null) {
             return -1;
         }
         final int tagsOffset = readNameSize() + cigarSize() + basesSize() + qualsSize();
@@ -221,6 +249,9 @@ public class BAMRecord extends SAMRecord {
     @Override
     public String getReadName() {
         String result = super.getReadName();
+        if (result == null) {
+            assertFieldRead(SAMRecordField.QNAME);
+        }
         if (mRestOfBinaryData != null && result == null) {
             result = decodeReadName();
             super.setReadName(result);
@@ -241,13 +272,18 @@ public class BAMRecord extends SAMRecord {
 
     @Override
     public Cigar getCigar() {
+        if (!mCigarDecoded) {
+            assertFieldRead(SAMRecordField.CIGAR);
+        }
         if (mRestOfBinaryData != null && !mCigarDecoded) {
             final int cigarOffset = readNameSize();
             final ByteBuffer byteBuffer  = ByteBuffer.wrap(mRestOfBinaryData, cigarOffset, cigarSize());
             byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
             super.initializeCigar(BinaryCigarCodec.decode(byteBuffer));
             mCigarDecoded = true;
-            if (null != getHeader() && getValidationStringency() != ValidationStringency.SILENT && !this.getReadUnmappedFlag()) {
+            // Validation reports the read name, which may not have been read.
+            if (null != getHeader() && getValidationStringency() != ValidationStringency.SILENT && !this.getReadUnmappedFlag()
+                    && mFields == null) {
                 // Don't know line number, and don't want to force read name to be decoded.
                 SAMUtils.processValidationErrors(validateCigar(-1L), -1, getValidationStringency());
             }
@@ -270,6 +306,9 @@ public class BAMRecord extends SAMRecord {
     @Override
     public byte[] getReadBases() {
         byte[] result = super.getReadBases();
+        if (result == null) {
+            assertFieldRead(SAMRecordField.SEQ);
+        }
         if (mRestOfBinaryData != null && result == null) {
             result = decodeReadBases();
             super.setReadBases(result);
@@ -280,6 +319,9 @@ public class BAMRecord extends SAMRecord {
     @Override
     public byte[] getBaseQualities() {
         byte[] ret = super.getBaseQualities();
+        if (ret == null) {
+            assertFieldRead(SAMRecordField.QUAL);
+        }
         if (mRestOfBinaryData != null && ret == null) {
             ret = decodeBaseQualities();
             super.setBaseQualities(ret);
@@ -307,6 +349,7 @@ public class BAMRecord extends SAMRecord {
         if (mAttributesDecoded) {
             return;
         }
+        assertFieldRead(SAMRecordField.TAGS);
         mAttributesDecoded = true;
         final int tagsOffset = readNameSize() + cigarSize() + basesSize() + qualsSize();
         final int tagsSize = mRestOfBinaryData.length - tagsOffset;
@@ -348,18 +391,18 @@ public class BAMRecord extends SAMRecord {
      * elements in mRestOfBinaryData */
 
     private int readNameSize() {
-        return mReadNameLength;
+        return hasField(SAMRecordField.QNAME) ? mReadNameLength : 0;
     }
 
     private int cigarSize() {
-        return mCigarLength * 4;
+        return hasField(SAMRecordField.CIGAR) ? mCigarLength * 4 : 0;
     }
 
     private int basesSize() {
-        return (mReadLength + 1)/2;
+        return hasField(SAMRecordField.SEQ) ? (mReadLength + 1)/2 : 0;
     }
 
     private int qualsSize() {
-        return mReadLength;
+        return hasField(SAMRecordField.QUAL) ? mReadLength : 0;
     }
 }
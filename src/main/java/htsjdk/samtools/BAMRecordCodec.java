@@ -29,16 +29,33 @@ import htsjdk.samtools.util.SortingCollection;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
 
 /**
  * Class for translating between in-memory and disk representation of BAMRecord.
  */
 public class BAMRecordCodec implements SortingCollection.Codec<SAMRecord> {
+    private static final int INITIAL_ENCODE_BUFFER_SIZE = 1024;
+
+    // The variable length fields, in the order they are stored in a record
+    private static final SAMRecordField[] VARIABLE_LENGTH_FIELD_ORDER = {
+            SAMRecordField.QNAME, SAMRecordField.CIGAR, SAMRecordField.SEQ, SAMRecordField.QUAL, SAMRecordField.TAGS};
+    private static final Set<SAMRecordField> VARIABLE_LENGTH_FIELDS = EnumSet.copyOf(Arrays.asList(VARIABLE_LENGTH_FIELD_ORDER));
+
     private final SAMFileHeader header;
     private final BinaryCodec binaryCodec = new BinaryCodec();
     private final BinaryTagCodec binaryTagCodec = new BinaryTagCodec(binaryCodec);
     private final SAMRecordFactory samRecordFactory;
+    // If not null, the only variable length fields that decode() keeps; see setFields()
+    private Set<SAMRecordField> fields = null;
+    private byte[] skipBuffer = null;
+    // Scratch buffer that encode() serializes each record into; grown as needed
+    private ByteBuffer encodeBuffer = null;
 
     public BAMRecordCodec(final SAMFileHeader header) {
         this(header, new DefaultSAMRecordFactory());
@@ -51,7 +68,9 @@ public class BAMRecordCodec implements SortingCollection.Codec<SAMRecord> {
 
     public BAMRecordCodec clone() {
         // Do not clone the references to codecs, as they must be distinct for each instance.
-        return new BAMRecordCodec(this.header, this.samRecordFactory);
+        final BAMRecordCodec codec = new BAMRecordCodec(this.header, this.samRecordFactory);
+        codec.fields = this.fields;
+        return codec;
     }
 
 
@@ -66,6 +85,27 @@ public class BAMRecordCodec implements SortingCollection.Codec<SAMRecord> {
         this.binaryCodec.setOutputFileName(filename);
     }
 
+    /**
+     * Restricts decode() to reading the given fields.  The variable length fields that are not requested are skipped
+     * rather than kept in the records, which then take less memory, and throw an exception if they are accessed.
+     * Records read this way cannot be encoded again.
+     * @param fields the fields to read, or null to read all of them.
+     */
+    public void setFields(final Set<SAMRecordField> fields) {
+        if (fields == null || fields.containsAll(VARIABLE_LENGTH_FIELDS)) {
+            this.fields = null;
+        } else {
+            final Set<SAMRecordField> copy = EnumSet.noneOf(SAMRecordField.class);
+            copy.addAll(fields);
+            this.fields = Collections.unmodifiableSet(copy);
+        }
+    }
+
+    /** @return the fields read by decode(), or null if all of them are. */
+    public Set<SAMRecordField> getFields() {
+        return fields;
+    }
+
     /** Sets the input stream that records will be read from. */
     public void setInputStream(final InputStream is) {
         this.binaryCodec.setInputStream(is);
@@ -117,25 +157,27 @@ public class BAMRecordCodec implements SortingCollection.Codec<SAMRecord> {
             }
         }
 
-        // Blurt out the elements
-        this.binaryCodec.writeInt(blockSize);
-        this.binaryCodec.writeInt(alignment.getReferenceIndex());
+        // Serialize the whole record into the scratch buffer, and write it out in a single call, which is much
+        // cheaper than writing each field through the BinaryCodec.
+        final ByteBuffer buffer = getEncodeBuffer(blockSize + 4);
+        buffer.putInt(blockSize);
+        buffer.putInt(alignment.getReferenceIndex());
         // 0-based!!
-        this.binaryCodec.writeInt(alignment.getAlignmentStart() - 1);
-        this.binaryCodec.writeUByte((short)(alignment.getReadNameLength() + 1));
-        this.binaryCodec.writeUByte((short)alignment.getMappingQuality());
-        this.binaryCodec.writeUShort(indexBin);
-        this.binaryCodec.writeUShort(cigarLength);
-        this.binaryCodec.writeUShort(alignment.getFlags());
-        this.binaryCodec.writeInt(alignment.getReadLength());
-        this.binaryCodec.writeInt(alignment.getMateReferenceIndex());
-        this.binaryCodec.writeInt(alignment.getMateAlignmentStart() - 1);
-        this.binaryCodec.writeInt(alignment.getInferredInsertSize());
+        buffer.putInt(alignment.getAlignmentStart() - 1);
+        buffer.put((byte) BinaryCodec.checkUByte(alignment.getReadNameLength() + 1));
+        buffer.put((byte) BinaryCodec.checkUByte(alignment.getMappingQuality()));
+        buffer.putShort((short) BinaryCodec.checkUShort(indexBin));
+        buffer.putShort((short) BinaryCodec.checkUShort(cigarLength));
+        buffer.putShort((short) BinaryCodec.checkUShort(alignment.getFlags()));
+        buffer.putInt(alignment.getReadLength());
+        buffer.putInt(alignment.getMateReferenceIndex());
+        buffer.putInt(alignment.getMateAlignmentStart() - 1);
+        buffer.putInt(alignment.getInferredInsertSize());
         final byte[] variableLengthBinaryBlock = alignment.getVariableBinaryRepresentation();
         if (variableLengthBinaryBlock != null) {
             // Don't need to encode variable-length block, because it is unchanged from
             // when the record was read from a BAM file.
-            this.binaryCodec.writeBytes(variableLengthBinaryBlock);
+            buffer.put(variableLengthBinaryBlock);
         } else {
             if (alignment.getReadLength() != alignment.getBaseQualities().length &&
                 alignment.getBaseQualities().length != 0) {
@@ -143,26 +185,46 @@ public class BAMRecordCodec implements SortingCollection.Codec<SAMRecord> {
                 alignment.getReadName() + "; read length: " + alignment.getReadLength() +
                 "; quals length: " + alignment.getBaseQualities().length);
             }
-            this.binaryCodec.writeString(alignment.getReadName(), false, true);
-            final int[] binaryCigar = BinaryCigarCodec.encode(alignment.getCigar());
-            for (final int cigarElement : binaryCigar) {
-                // Assumption that this will fit into an integer, despite the fact
-                // that it is specced as a uint.
-                this.binaryCodec.writeInt(cigarElement);
+            final String readName = alignment.getReadName();
+            for (int i = 0; i < readName.length(); ++i) {
+                buffer.put((byte) readName.charAt(i));
             }
-            this.binaryCodec.writeBytes(SAMUtils.bytesToCompressedBases(alignment.getReadBases()));
-            byte[] qualities = alignment.getBaseQualities();
+            buffer.put((byte) 0);
+            BinaryCigarCodec.encode(alignment.getCigar(), buffer);
+            SAMUtils.bytesToCompressedBases(alignment.getReadBases(), buffer.array(), buffer.position());
+            buffer.position(buffer.position() + (readLength + 1) / 2);
+            final byte[] qualities = alignment.getBaseQualities();
             if (qualities.length == 0) {
-                qualities = new byte[alignment.getReadLength()];
-                Arrays.fill(qualities, (byte) 0xFF);
+                for (int i = 0; i < readLength; ++i) {
+                    buffer.put((byte) 0xFF);
+                }
+            } else {
+                buffer.put(qualities);
             }
-            this.binaryCodec.writeBytes(qualities);
             SAMBinaryTagAndValue attribute = alignment.getBinaryAttributes();
             while (attribute != null) {
-                this.binaryTagCodec.writeTag(attribute.tag, attribute.value, attribute.isUnsignedArray());
+                BinaryTagCodec.writeTag(buffer, attribute.tag, attribute.value, attribute.isUnsignedArray());
                 attribute = attribute.getNext();
             }
         }
+        if (buffer.position() != blockSize + 4) {
+            throw new SAMException("Record " + alignment.getReadName() + " has block size " + blockSize +
+                    " but " + (buffer.position() - 4) + " bytes were encoded");
+        }
+        this.binaryCodec.writeBytes(buffer.array(), 0, buffer.position());
+    }
+
+    /**
+     * @return the scratch buffer used by encode(), cleared, with room for at least the given number of bytes.
+     */
+    private ByteBuffer getEncodeBuffer(final int size) {
+        if (encodeBuffer == null || encodeBuffer.capacity() < size) {
+            final int capacity = encodeBuffer == null ? Math.max(size, INITIAL_ENCODE_BUFFER_SIZE) : Math.max(size, encodeBuffer.capacity() * 2);
+            encodeBuffer = ByteBuffer.allocate(capacity);
+            encodeBuffer.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        encodeBuffer.clear();
+        return encodeBuffer;
     }
 
     /**
@@ -195,11 +257,19 @@ public class BAMRecordCodec implements SortingCollection.Codec<SAMRecord> {
         final int mateReferenceID = this.binaryCodec.readInt();
         final int mateCoordinate = this.binaryCodec.readInt() + 1;
         final int insertSize = this.binaryCodec.readInt();
-        final byte[] restOfRecord = new byte[recordLength - BAMFileConstants.FIXED_BLOCK_SIZE];
-        this.binaryCodec.readBytes(restOfRecord);
+        final byte[] restOfRecord;
+        if (fields == null) {
+            restOfRecord = new byte[recordLength - BAMFileConstants.FIXED_BLOCK_SIZE];
+            this.binaryCodec.readBytes(restOfRecord);
+        } else {
+            restOfRecord = readFields(recordLength - BAMFileConstants.FIXED_BLOCK_SIZE, readNameLength, cigarLen, readLen);
+        }
         final BAMRecord ret = this.samRecordFactory.createBAMRecord(
                 header, referenceID, coordinate, readNameLength, mappingQuality,
                 bin, cigarLen, flags, readLen, mateReferenceID, mateCoordinate, insertSize, restOfRecord);
+        if (fields != null) {
+            ret.setFields(fields);
+        }
 
         if (null != header) {
             // don't reset a null header as this will clobber the reference and mate reference indices
@@ -207,4 +277,48 @@ public class BAMRecordCodec implements SortingCollection.Codec<SAMRecord> {
         }
         return ret;
     }
+
+    /**
+     * Reads the variable length part of a record, keeping only the requested fields.
+     * @return the requested fields, in the order they are stored in.
+     */
+    private byte[] readFields(final int restOfRecordLength, final int readNameLength, final int cigarLen, final int readLen) {
+        final int[] sizes = new int[VARIABLE_LENGTH_FIELD_ORDER.length];
+        sizes[0] = readNameLength;
+        sizes[1] = cigarLen * 4;
+        sizes[2] = (readLen + 1) / 2;
+        sizes[3] = readLen;
+        sizes[4] = restOfRecordLength - sizes[0] - sizes[1] - sizes[2] - sizes[3];
+        if (sizes[4] < 0) {
+            throw new SAMFormatException("Invalid record length: " + (restOfRecordLength + BAMFileConstants.FIXED_BLOCK_SIZE));
+        }
+        int keptLength = 0;
+        for (int i = 0; i < sizes.length; ++i) {
+            if (fields.contains(VARIABLE_LENGTH_FIELD_ORDER[i])) {
+                keptLength += sizes[i];
+            }
+        }
+        final byte[] kept = new byte[keptLength];
+        int offset = 0;
+        for (int i = 0; i < sizes.length; ++i) {
+            if (fields.contains(VARIABLE_LENGTH_FIELD_ORDER[i])) {
+                this.binaryCodec.readBytes(kept, offset, sizes[i]);
+                offset += sizes[i];
+            } else {
+                skipBytes(sizes[i]);
+            }
+        }
+        return kept;
+    }
+
+    private void skipBytes(int length) {
+        if (skipBuffer == null) {
+            skipBuffer = new byte[8192];
+        }
+        while (length > 0) {
+            final int count = Math.min(length, skipBuffer.length);
+            this.binaryCodec.readBytes(skipBuffer, 0, count);
+            length -= count;
+        }
+    }
 }
@@ -0,0 +1,519 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.samtools.util.BinaryCodec;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.RuntimeEOFException;
+import htsjdk.samtools.util.StringUtil;
+
+import java.util.Arrays;
+
+/**
+ * Read-only view of the BAM record currently under a reader, for scans that look at a few fields of every record.
+ * A single view is repositioned on each record of the file, so that iterating does not create any objects per record:
+ * the record is copied into a buffer owned by the view, and all getters except {@link #getReadName()},
+ * {@link #getStringAttribute(short)} and {@link #toSAMRecord()} decode primitive values directly from that buffer.
+ * <p>
+ * The view is only valid until the iterator that returned it is advanced; call {@link #toSAMRecord()} to keep a record.
+ * Records are not validated.
+ * <p>
+ * Tags are looked up by their binary representation, see {@link SAMTagUtil#makeBinaryTag(String)}.
+ *
+ * @see #iterator(SamReader)
+ * @see BAMFileReader#getViewIterator()
+ */
+public class BamRecordView {
+    // Offsets of the fixed-length fields, from the start of the record after the block size
+    private static final int REFERENCE_ID_OFFSET = 0;
+    private static final int POS_OFFSET = 4;
+    private static final int READ_NAME_LENGTH_OFFSET = 8;
+    private static final int MAPQ_OFFSET = 9;
+    private static final int BIN_OFFSET = 10;
+    private static final int CIGAR_LENGTH_OFFSET = 12;
+    private static final int FLAG_OFFSET = 14;
+    private static final int READ_LENGTH_OFFSET = 16;
+    private static final int NEXT_REFERENCE_ID_OFFSET = 20;
+    private static final int NEXT_POS_OFFSET = 24;
+    private static final int TLEN_OFFSET = 28;
+
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+
+    private final SAMFileHeader mHeader;
+    private final SAMRecordFactory mSamRecordFactory;
+
+    // The current record, without its block size
+    private byte[] mBuffer = new byte[INITIAL_BUFFER_SIZE];
+    private int mBlockSize = 0;
+
+    // Offsets of the variable-length fields of the current record in mBuffer
+    private int mCigarOffset;
+    private int mSequenceOffset;
+    private int mQualitiesOffset;
+    private int mTagsOffset;
+
+    BamRecordView(final SAMFileHeader header, final SAMRecordFactory samRecordFactory) {
+        this.mHeader = header;
+        this.mSamRecordFactory = samRecordFactory;
+    }
+
+    /**
+     * Iterates through the records of a BAM file, repositioning a single view on each one.  The same rules apply as for
+     * {@link SamReader#iterator()}: the iterator must be closed before the reader is iterated or queried again.
+     *
+     * @throws IllegalArgumentException if the reader does not read a BAM file.
+     */
+    public static CloseableIterator<BamRecordView> iterator(final SamReader reader) {
+        if (reader instanceof SamReader.PrimitiveSamReaderToSamReaderAdapter) {
+            final SamReader.PrimitiveSamReader underlyingReader = ((SamReader.PrimitiveSamReaderToSamReaderAdapter) reader).underlyingReader();
+            if (underlyingReader instanceof BAMFileReader) {
+                return ((BAMFileReader) underlyingReader).getViewIterator();
+            }
+        }
+        throw new IllegalArgumentException("Record views are only supported for BAM files");
+    }
+
+    /**
+     * Repositions the view on the next record in the stream.
+     *
+     * @return false if the end of the stream has been reached.
+     */
+    boolean read(final BinaryCodec stream) {
+        final int blockSize;
+        try {
+            blockSize = stream.readInt();
+        } catch (final RuntimeEOFException e) {
+            return false;
+        }
+        if (blockSize < BAMFileConstants.FIXED_BLOCK_SIZE) {
+            throw new SAMFormatException("Invalid record length: " + blockSize);
+        }
+        if (blockSize > mBuffer.length) {
+            mBuffer = new byte[Math.max(blockSize, mBuffer.length * 2)];
+        }
+        stream.readBytes(mBuffer, 0, blockSize);
+        mBlockSize = blockSize;
+
+        mCigarOffset = BAMFileConstants.FIXED_BLOCK_SIZE + getUByte(READ_NAME_LENGTH_OFFSET);
+        mSequenceOffset = mCigarOffset + getCigarLength() * 4;
+        mQualitiesOffset = mSequenceOffset + (getReadLength() + 1) / 2;
+        mTagsOffset = mQualitiesOffset + getReadLength();
+        if (getReadLength() < 0 || mTagsOffset > blockSize) {
+            throw new SAMFormatException("Invalid record length: " + blockSize);
+        }
+        return true;
+    }
+
+    public SAMFileHeader getHeader() {
+        return mHeader;
+    }
+
+    /**
+     * @return the length of the record in bytes, not including the block size field itself.
+     */
+    public int getBlockSize() {
+        return mBlockSize;
+    }
+
+    public int getReferenceIndex() {
+        return getInt(REFERENCE_ID_OFFSET);
+    }
+
+    /**
+     * @return the name of the reference sequence, or {@link SAMRecord#NO_ALIGNMENT_REFERENCE_NAME} if none.
+     */
+    public String getReferenceName() {
+        return referenceName(getReferenceIndex());
+    }
+
+    /**
+     * @return 1-based inclusive leftmost position of the clipped sequence, or 0 if there is no position.
+     */
+    public int getAlignmentStart() {
+        return getInt(POS_OFFSET) + 1;
+    }
+
+    /**
+     * @return 1-based inclusive rightmost position of the clipped sequence, or 0 if the read is unmapped.
+     */
+    public int getAlignmentEnd() {
+        if (getReadUnmappedFlag()) {
+            return SAMRecord.NO_ALIGNMENT_START;
+        }
+        int referenceLength = 0;
+        final int cigarLength = getCigarLength();
+        for (int i = 0; i < cigarLength; ++i) {
+            if (getCigarOperator(i).consumesReferenceBases()) {
+                referenceLength += getCigarOperatorLength(i);
+            }
+        }
+        return getAlignmentStart() + referenceLength - 1;
+    }
+
+    public int getMappingQuality() {
+        return getUByte(MAPQ_OFFSET);
+    }
+
+    public int getIndexingBin() {
+        return getUShort(BIN_OFFSET);
+    }
+
+    public int getFlags() {
+        return getUShort(FLAG_OFFSET);
+    }
+
+    /**
+     * @return true if the given flag is set for this record.
+     */
+    public boolean isFlagSet(final SAMFlag flag) {
+        return flag.isSet(getFlags());
+    }
+
+    public boolean getReadUnmappedFlag() {
+        return isFlagSet(SAMFlag.READ_UNMAPPED);
+    }
+
+    public int getMateReferenceIndex() {
+        return getInt(NEXT_REFERENCE_ID_OFFSET);
+    }
+
+    /**
+     * @return the name of the mate's reference sequence, or {@link SAMRecord#NO_ALIGNMENT_REFERENCE_NAME} if none.
+     */
+    public String getMateReferenceName() {
+        return referenceName(getMateReferenceIndex());
+    }
+
+    /**
+     * @return 1-based inclusive leftmost position of the mate, or 0 if there is no position.
+     */
+    public int getMateAlignmentStart() {
+        return getInt(NEXT_POS_OFFSET) + 1;
+    }
+
+    public int getInferredInsertSize() {
+        return getInt(TLEN_OFFSET);
+    }
+
+    /**
+     * @return the length of the read name, not including the terminating null.
+     */
+    public int getReadNameLength() {
+        return getUByte(READ_NAME_LENGTH_OFFSET) - 1;
+    }
+
+    /**
+     * @return the character of the read name at the given index.
+     */
+    public byte getReadNameByte(final int index) {
+        checkIndex(index, getReadNameLength());
+        return mBuffer[BAMFileConstants.FIXED_BLOCK_SIZE + index];
+    }
+
+    /**
+     * Creates a new String, prefer {@link #getReadNameByte(int)} in loops over all records.
+     */
+    public String getReadName() {
+        return StringUtil.bytesToString(mBuffer, BAMFileConstants.FIXED_BLOCK_SIZE, getReadNameLength());
+    }
+
+    /**
+     * @return the number of CIGAR operators.
+     */
+    public int getCigarLength() {
+        return getUShort(CIGAR_LENGTH_OFFSET);
+    }
+
+    public CigarOperator getCigarOperator(final int index) {
+        checkIndex(index, getCigarLength());
+        return CigarOperator.binaryToEnum(getInt(mCigarOffset + index * 4) & 0xf);
+    }
+
+    public int getCigarOperatorLength(final int index) {
+        checkIndex(index, getCigarLength());
+        return getInt(mCigarOffset + index * 4) >>> 4;
+    }
+
+    /**
+     * @return the number of bases of the read, which is also the number of base qualities if they are present.
+     */
+    public int getReadLength() {
+        return getInt(READ_LENGTH_OFFSET);
+    }
+
+    /**
+     * @return the base at the given index, as an ASCII byte.
+     */
+    public byte getBase(final int index) {
+        checkIndex(index, getReadLength());
+        final int compressedBases = mBuffer[mSequenceOffset + index / 2];
+        return (index & 1) == 0 ? SAMUtils.compressedBaseToByteHigh(compressedBases) : SAMUtils.compressedBaseToByteLow(compressedBases);
+    }
+
+    /**
+     * @return the phred quality of the base at the given index, or 0xff if the record has no base qualities.
+     */
+    public int getBaseQuality(final int index) {
+        checkIndex(index, getReadLength());
+        return mBuffer[mQualitiesOffset + index] & 0xff;
+    }
+
+    /**
+     * @return true if the record has base qualities.
+     */
+    public boolean hasBaseQualities() {
+        return getReadLength() > 0 && (mBuffer[mQualitiesOffset] & 0xff) != 0xff;
+    }
+
+    /**
+     * @return true if the record has the given tag.
+     */
+    public boolean hasAttribute(final short tag) {
+        return findAttribute(tag) != -1;
+    }
+
+    /**
+     * @return the BAM type of the given tag, e.g. 'i' or 'Z', or 0 if the record does not have the tag.
+     */
+    public char getAttributeType(final short tag) {
+        final int offset = findAttribute(tag);
+        return offset == -1 ? 0 : (char) mBuffer[offset];
+    }
+
+    /**
+     * @return the value of an integer tag, of any width.
+     * @throws SAMException if the record does not have the tag, or it is not an integer.
+     */
+    public int getIntegerAttribute(final short tag) {
+        final int offset = findAttribute(tag);
+        if (offset == -1) {
+            throw missingAttribute(tag);
+        }
+        final int value = offset + 1;
+        switch (mBuffer[offset]) {
+            case 'c':
+                return mBuffer[value];
+            case 'C':
+                return getUByte(value);
+            case 's':
+                return (short) getUShort(value);
+            case 'S':
+                return getUShort(value);
+            case 'i':
+                return getInt(value);
+            case 'I':
+                final long unsignedValue = getInt(value) & 0xffffffffL;
+                if (unsignedValue > Integer.MAX_VALUE) {
+                    throw new SAMException("Value of tag " + SAMTagUtil.getSingleton().makeStringTag(tag) + " is too large for an int: " + unsignedValue);
+                }
+                return (int) unsignedValue;
+            default:
+                throw wrongAttributeType(tag, offset);
+        }
+    }
+
+    /**
+     * @throws SAMException if the record does not have the tag, or it is not a float.
+     */
+    public float getFloatAttribute(final short tag) {
+        final int offset = findAttribute(tag);
+        if (offset == -1) {
+            throw missingAttribute(tag);
+        }
+        if (mBuffer[offset] != 'f') {
+            throw wrongAttributeType(tag, offset);
+        }
+        return Float.intBitsToFloat(getInt(offset + 1));
+    }
+
+    /**
+     * @throws SAMException if the record does not have the tag, or it is not a character.
+     */
+    public char getCharacterAttribute(final short tag) {
+        final int offset = findAttribute(tag);
+        if (offset == -1) {
+            throw missingAttribute(tag);
+        }
+        if (mBuffer[offset] != 'A') {
+            throw wrongAttributeType(tag, offset);
+        }
+        return (char) mBuffer[offset + 1];
+    }
+
+    /**
+     * Compares the value of a string tag without creating a String.
+     *
+     * @param value the expected value, as ASCII bytes.
+     * @return true if the record has the given string (type 'Z' or 'H') tag with the given value.
+     */
+    public boolean stringAttributeEquals(final short tag, final byte[] value) {
+        final int offset = findAttribute(tag);
+        if (offset == -1 || (mBuffer[offset] != 'Z' && mBuffer[offset] != 'H')) {
+            return false;
+        }
+        final int start = offset + 1;
+        final int end = stringEnd(start);
+        if (end - start != value.length) {
+            return false;
+        }
+        for (int i = 0; i < value.length; ++i) {
+            if (mBuffer[start + i] != value[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates a new String, prefer {@link #stringAttributeEquals(short, byte[])} in loops over all records.
+     *
+     * @return the value of a string (type 'Z' or 'H') tag, or null if the record does not have the tag.
+     * @throws SAMException if the tag is not a string.
+     */
+    public String getStringAttribute(final short tag) {
+        final int offset = findAttribute(tag);
+        if (offset == -1) {
+            return null;
+        }
+        if (mBuffer[offset] != 'Z' && mBuffer[offset] != 'H') {
+            throw wrongAttributeType(tag, offset);
+        }
+        final int start = offset + 1;
+        return StringUtil.bytesToString(mBuffer, start, stringEnd(start) - start);
+    }
+
+    /**
+     * Copies the current record into a new SAMRecord, which remains valid after the view has been repositioned.
+     */
+    public SAMRecord toSAMRecord() {
+        final byte[] restOfRecord = Arrays.copyOfRange(mBuffer, BAMFileConstants.FIXED_BLOCK_SIZE, mBlockSize);
+        final BAMRecord record = mSamRecordFactory.createBAMRecord(mHeader, getReferenceIndex(), getAlignmentStart(),
+                (short) getUByte(READ_NAME_LENGTH_OFFSET), (short) getMappingQuality(), getIndexingBin(), getCigarLength(),
+                getFlags(), getReadLength(), getMateReferenceIndex(), getMateAlignmentStart(), getInferredInsertSize(),
+                restOfRecord);
+        if (null != mHeader) {
+            // don't reset a null header as this will clobber the reference and mate reference indices
+            record.setHeader(mHeader);
+        }
+        return record;
+    }
+
+    /**
+     * @return the offset of the type of the given tag in mBuffer, or -1 if the record does not have the tag.
+     */
+    private int findAttribute(final short tag) {
+        int offset = mTagsOffset;
+        while (offset + 3 <= mBlockSize) {
+            final short currentTag = (short) getUShort(offset);
+            if (currentTag == tag) {
+                return offset + 2;
+            }
+            offset = skipValue(offset + 2);
+        }
+        return -1;
+    }
+
+    /**
+     * @param offset the offset of the type of a tag value in mBuffer.
+     * @return the offset just after the value.
+     */
+    private int skipValue(final int offset) {
+        final byte type = mBuffer[offset];
+        switch (type) {
+            case 'Z':
+            case 'H':
+                return stringEnd(offset + 1) + 1;
+            case 'B':
+                final int elementSize = valueSize(mBuffer[offset + 1]);
+                final int length = getInt(offset + 2);
+                return offset + 6 + length * elementSize;
+            default:
+                return offset + 1 + valueSize(type);
+        }
+    }
+
+    private static int valueSize(final byte type) {
+        switch (type) {
+            case 'A':
+            case 'c':
+            case 'C':
+                return 1;
+            case 's':
+            case 'S':
+                return 2;
+            case 'i':
+            case 'I':
+            case 'f':
+                return 4;
+            default:
+                throw new SAMFormatException("Unrecognized tag type: " + (char) type);
+        }
+    }
+
+    /**
+     * @return the offset of the null terminating the string starting at the given offset.
+     */
+    private int stringEnd(final int start) {
+        int end = start;
+        while (end < mBlockSize && mBuffer[end] != 0) {
+            ++end;
+        }
+        if (end == mBlockSize) {
+            throw new SAMFormatException("Unterminated string tag value");
+        }
+        return end;
+    }
+
+    private String referenceName(final int referenceIndex) {
+        if (referenceIndex == SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX) {
+            return SAMRecord.NO_ALIGNMENT_REFERENCE_NAME;
+        }
+        return mHeader.getSequence(referenceIndex).getSequenceName();
+    }
+
+    private SAMException missingAttribute(final short tag) {
+        return new SAMException("Record does not have tag " + SAMTagUtil.getSingleton().makeStringTag(tag));
+    }
+
+    private SAMException wrongAttributeType(final short tag, final int offset) {
+        return new SAMException("Tag " + SAMTagUtil.getSingleton().makeStringTag(tag) + " has type " + (char) mBuffer[offset]);
+    }
+
+    private static void checkIndex(final int index, final int length) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of range [0, " + length + ")");
+        }
+    }
+
+    private int getUByte(final int offset) {
+        return mBuffer[offset] & 0xff;
+    }
+
+    private int getUShort(final int offset) {
+        return (mBuffer[offset] & 0xff) | ((mBuffer[offset + 1] & 0xff) << 8);
+    }
+
+    private int getInt(final int offset) {
+        return (mBuffer[offset] & 0xff) | ((mBuffer[offset + 1] & 0xff) << 8) |
+                ((mBuffer[offset + 2] & 0xff) << 16) | ((mBuffer[offset + 3] & 0xff) << 24);
+    }
+}
@@ -0,0 +1,481 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.samtools.seekablestream.SeekableFileStream;
+import htsjdk.samtools.seekablestream.SeekableStream;
+import htsjdk.samtools.util.BinaryCodec;
+import htsjdk.samtools.util.BlockCompressedFilePointerUtil;
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.samtools.util.BlockCompressedStreamConstants;
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.RuntimeIOException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Splits a BAM file into ranges of records that can be read in parallel, without an index.  Each range is a
+ * {@link Chunk} of virtual file pointers that starts on a record boundary, and can be read with
+ * {@link SamReader.Indexing#iterator(SAMFileSpan)}, e.g.
+ * <pre>
+ *     for (final Chunk split : new BamSplitter(bam).split(n)) {
+ *         // on another thread
+ *         try (final SamReader reader = SamReaderFactory.makeDefault().open(bam);
+ *              final SAMRecordIterator iterator = reader.indexing().iterator(new BAMFileSpan(split))) {
+ *             ...
+ *         }
+ *     }
+ * </pre>
+ * The ranges are found by looking for a BGZF block header near each of the requested split points in the compressed
+ * file, and then for the first offset in that block (or the ones after it) from which a few consecutive records can be
+ * read that look valid: known reference indices, a printable read name, valid CIGAR operators, and tags that end
+ * exactly at the end of the record.  Such a heuristic could in principle be fooled by data that happens to look like
+ * records, so the splits can be written to a splitting index by {@link #writeSplittingIndex(List, File)} and checked
+ * once, instead of being searched for every time the file is processed.
+ */
+public class BamSplitter {
+    /** Extension of the splitting index written next to a BAM file, see {@link #getDefaultSplittingIndexFile(File)}. */
+    public static final String SPLITTING_INDEX_SUFFIX = ".splits";
+
+    private static final byte[] SPLITTING_INDEX_MAGIC = "BSI\1".getBytes();
+
+    // Number of consecutive records that must look valid for an offset to be taken as the start of a record
+    private static final int RECORDS_TO_CHECK = 5;
+    // Size of the block size and fixed-length fields of a record, which are checked before reading the whole record
+    private static final int FIXED_RECORD_SIZE = 4 + BAMFileConstants.FIXED_BLOCK_SIZE;
+    // Largest record length considered valid, to avoid reading far ahead from an offset that is not a record start
+    private static final int MAX_RECORD_LENGTH = 1 << 26;
+    private static final int MAX_CIGAR_OPERATOR = CigarOperator.enumToBinary(CigarOperator.X);
+
+    private final File bam;
+    private final SAMFileHeader header;
+    private final long firstRecordPointer;
+    private final long fileLength;
+
+    /**
+     * @param bam BAM file to split, read to get its header.
+     */
+    public BamSplitter(final File bam) {
+        this.bam = bam;
+        this.fileLength = bam.length();
+        final BlockCompressedInputStream stream = openStream();
+        try {
+            this.header = BAMFileReader.readHeader(new BinaryCodec(stream), ValidationStringency.SILENT, bam.getPath());
+            this.firstRecordPointer = stream.getFilePointer();
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error reading header of " + bam, e);
+        } finally {
+            CloserUtil.close(stream);
+        }
+    }
+
+    /**
+     * @return the header of the BAM file.
+     */
+    public SAMFileHeader getFileHeader() {
+        return header;
+    }
+
+    /**
+     * Splits the records of the file into about the given number of ranges of about the same compressed size.  Fewer
+     * ranges are returned when the file is too small to be split that many times, e.g. when several split points fall
+     * in a single BGZF block.
+     *
+     * @param numberOfSplits the number of ranges wanted.
+     * @return ranges of virtual file pointers, in file order, which together contain every record of the file once.
+     */
+    public List<Chunk> split(final int numberOfSplits) {
+        if (numberOfSplits < 1) {
+            throw new IllegalArgumentException("Invalid number of splits: " + numberOfSplits);
+        }
+        final long firstBlockAddress = BlockCompressedFilePointerUtil.getBlockAddress(firstRecordPointer);
+        final long endPointer = fileLength << 16;
+        final List<Long> starts = new ArrayList<>();
+        starts.add(firstRecordPointer);
+
+        final SeekableStream rawStream = openRawStream();
+        final BlockCompressedInputStream stream = openStream();
+        try {
+            for (int i = 1; i < numberOfSplits; ++i) {
+                final long target = firstBlockAddress + (fileLength - firstBlockAddress) * i / numberOfSplits;
+                final long previousStart = starts.get(starts.size() - 1);
+                if (target <= BlockCompressedFilePointerUtil.getBlockAddress(previousStart)) {
+                    continue;
+                }
+                final long blockAddress = findBlockStart(rawStream, target);
+                if (blockAddress == -1) {
+                    break;
+                }
+                final long start = findRecordStart(stream, blockAddress);
+                if (start == -1) {
+                    break;
+                }
+                if (start > previousStart) {
+                    starts.add(start);
+                }
+            }
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error splitting " + bam, e);
+        } finally {
+            CloserUtil.close(rawStream);
+            CloserUtil.close(stream);
+        }
+
+        final List<Chunk> splits = new ArrayList<>(starts.size());
+        for (int i = 0; i < starts.size(); ++i) {
+            splits.add(new Chunk(starts.get(i), i + 1 < starts.size() ? starts.get(i + 1) : endPointer));
+        }
+        return splits;
+    }
+
+    /**
+     * @return the offset of the first BGZF block that starts at or after the given offset in the compressed file, or
+     * -1 if there is none.
+     */
+    private long findBlockStart(final SeekableStream rawStream, final long target) throws IOException {
+        final byte[] buffer = new byte[2 * BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE];
+        final byte[] nextHeader = new byte[BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH];
+        long bufferStart = target;
+        while (bufferStart < fileLength) {
+            rawStream.seek(bufferStart);
+            final int length = readFully(rawStream, buffer, buffer.length);
+            for (int i = 0; i + BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH <= length; ++i) {
+                if (!isBlockHeader(buffer, i)) {
+                    continue;
+                }
+                // a block header must be followed by another one, or by the end of the file
+                final long blockAddress = bufferStart + i;
+                final long nextBlockAddress = blockAddress + blockSize(buffer, i);
+                if (nextBlockAddress == fileLength) {
+                    return blockAddress;
+                }
+                if (nextBlockAddress < fileLength) {
+                    rawStream.seek(nextBlockAddress);
+                    if (readFully(rawStream, nextHeader, nextHeader.length) == nextHeader.length && isBlockHeader(nextHeader, 0)) {
+                        return blockAddress;
+                    }
+                }
+            }
+            if (length < buffer.length) {
+                break;
+            }
+            bufferStart += length - BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH + 1;
+        }
+        return -1;
+    }
+
+    private static boolean isBlockHeader(final byte[] buffer, final int offset) {
+        return buffer[offset] == BlockCompressedStreamConstants.GZIP_ID1 &&
+                (buffer[offset + 1] & 0xff) == BlockCompressedStreamConstants.GZIP_ID2 &&
+                buffer[offset + 2] == BlockCompressedStreamConstants.GZIP_CM_DEFLATE &&
+                buffer[offset + 3] == BlockCompressedStreamConstants.GZIP_FLG &&
+                buffer[offset + 10] == BlockCompressedStreamConstants.GZIP_XLEN && buffer[offset + 11] == 0 &&
+                buffer[offset + 12] == BlockCompressedStreamConstants.BGZF_ID1 &&
+                buffer[offset + 13] == BlockCompressedStreamConstants.BGZF_ID2 &&
+                buffer[offset + 14] == BlockCompressedStreamConstants.BGZF_LEN && buffer[offset + 15] == 0;
+    }
+
+    private static int blockSize(final byte[] buffer, final int offset) {
+        final int blockLengthOffset = offset + BlockCompressedStreamConstants.BLOCK_LENGTH_OFFSET;
+        return ((buffer[blockLengthOffset] & 0xff) | ((buffer[blockLengthOffset + 1] & 0xff) << 8)) + 1;
+    }
+
+    /**
+     * @return the virtual file pointer of the first record that starts in the block at the given address or in a
+     * block after it, or -1 if there is none.
+     */
+    private long findRecordStart(final BlockCompressedInputStream stream, final long firstBlockAddress) throws IOException {
+        final byte[] record = new byte[FIXED_RECORD_SIZE];
+        long blockAddress = firstBlockAddress;
+        while (blockAddress < fileLength) {
+            stream.seek(blockAddress << 16);
+            final int blockLength = stream.available();
+            if (blockLength == 0) {
+                // the empty block at the end of the file
+                return -1;
+            }
+            final byte[] block = new byte[blockLength];
+            readFully(stream, block, blockLength);
+            final long nextBlockAddress = BlockCompressedFilePointerUtil.getBlockAddress(stream.getFilePointer());
+            for (int offset = 0; offset < blockLength; ++offset) {
+                // check the fixed fields of the record without seeking when they are all in this block
+                if (offset + FIXED_RECORD_SIZE <= blockLength) {
+                    System.arraycopy(block, offset, record, 0, FIXED_RECORD_SIZE);
+                    if (!isValidFixedPart(record)) {
+                        continue;
+                    }
+                }
+                final long candidate = blockAddress << 16 | offset;
+                if (isRecordStart(stream, candidate)) {
+                    return candidate;
+                }
+            }
+            if (nextBlockAddress == blockAddress) {
+                return -1;
+            }
+            blockAddress = nextBlockAddress;
+        }
+        return -1;
+    }
+
+    /**
+     * @return true if RECORDS_TO_CHECK records that look valid, or all the records up to the end of the file, can be
+     * read from the given virtual file pointer.
+     */
+    private boolean isRecordStart(final BlockCompressedInputStream stream, final long candidate) throws IOException {
+        stream.seek(candidate);
+        byte[] record = new byte[FIXED_RECORD_SIZE];
+        for (int i = 0; i < RECORDS_TO_CHECK; ++i) {
+            final int length = readFully(stream, record, FIXED_RECORD_SIZE);
+            if (length == 0 && i > 0) {
+                return true;
+            }
+            if (length < FIXED_RECORD_SIZE || !isValidFixedPart(record)) {
+                return false;
+            }
+            final int recordLength = getInt(record, 0) + 4;
+            if (record.length < recordLength) {
+                record = Arrays.copyOf(record, recordLength);
+            }
+            if (readFully(stream, record, FIXED_RECORD_SIZE, recordLength - FIXED_RECORD_SIZE) < recordLength - FIXED_RECORD_SIZE ||
+                    !isValidVariablePart(record, recordLength)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param record the block size and fixed-length fields of a candidate record.
+     */
+    private boolean isValidFixedPart(final byte[] record) {
+        final int blockSize = getInt(record, 0);
+        final int referenceIndex = getInt(record, 4);
+        final int position = getInt(record, 8);
+        final int readNameLength = record[12] & 0xff;
+        final int cigarLength = getUShort(record, 16);
+        final int readLength = getInt(record, 20);
+        final int mateReferenceIndex = getInt(record, 24);
+        final int matePosition = getInt(record, 28);
+        if (blockSize < BAMFileConstants.FIXED_BLOCK_SIZE || blockSize > MAX_RECORD_LENGTH || readNameLength < 1 ||
+                readLength < 0 || readLength > MAX_RECORD_LENGTH) {
+            return false;
+        }
+        final long variableLength = (long) readNameLength + 4L * cigarLength + (readLength + 1) / 2 + readLength;
+        return BAMFileConstants.FIXED_BLOCK_SIZE + variableLength <= blockSize &&
+                isValidPosition(referenceIndex, position) && isValidPosition(mateReferenceIndex, matePosition);
+    }
+
+    private boolean isValidPosition(final int referenceIndex, final int position) {
+        if (referenceIndex == SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX) {
+            return position >= -1;
+        }
+        if (referenceIndex < 0 || referenceIndex >= header.getSequenceDictionary().size()) {
+            return false;
+        }
+        final int sequenceLength = header.getSequence(referenceIndex).getSequenceLength();
+        return position >= -1 && (sequenceLength == 0 || position <= sequenceLength);
+    }
+
+    /**
+     * @param record a candidate record, including its block size, whose fixed part is valid.
+     */
+    private static boolean isValidVariablePart(final byte[] record, final int recordLength) {
+        final int readNameLength = record[12] & 0xff;
+        final int cigarLength = getUShort(record, 16);
+        final int readLength = getInt(record, 20);
+
+        int offset = FIXED_RECORD_SIZE;
+        for (int i = 0; i < readNameLength - 1; ++i) {
+            final byte c = record[offset + i];
+            if (c < '!' || c > '~') {
+                return false;
+            }
+        }
+        offset += readNameLength;
+        if (record[offset - 1] != 0) {
+            return false;
+        }
+        for (int i = 0; i < cigarLength; ++i) {
+            if ((record[offset + 4 * i] & 0xf) > MAX_CIGAR_OPERATOR) {
+                return false;
+            }
+        }
+        offset += 4 * cigarLength + (readLength + 1) / 2 + readLength;
+
+        // the tags must end exactly at the end of the record
+        while (offset < recordLength) {
+            if (offset + 3 > recordLength ||
+                    !Character.isLetterOrDigit(record[offset]) || !Character.isLetterOrDigit(record[offset + 1])) {
+                return false;
+            }
+            final byte type = record[offset + 2];
+            offset += 3;
+            if (type == 'Z' || type == 'H') {
+                while (offset < recordLength && record[offset] != 0) {
+                    ++offset;
+                }
+                ++offset;
+            } else if (type == 'B') {
+                if (offset + 5 > recordLength) {
+                    return false;
+                }
+                final int elementSize = valueSize(record[offset]);
+                final long arrayLength = getInt(record, offset + 1) & 0xffffffffL;
+                if (elementSize == -1 || record[offset] == 'A') {
+                    return false;
+                }
+                final long end = offset + 5 + arrayLength * elementSize;
+                if (end > recordLength) {
+                    return false;
+                }
+                offset = (int) end;
+            } else {
+                final int valueSize = valueSize(type);
+                if (valueSize == -1) {
+                    return false;
+                }
+                offset += valueSize;
+            }
+        }
+        return offset == recordLength;
+    }
+
+    /**
+     * @return the size of a tag value of the given type, or -1 if the type is not one of the fixed-size types.
+     */
+    private static int valueSize(final byte type) {
+        switch (type) {
+            case 'A':
+            case 'c':
+            case 'C':
+                return 1;
+            case 's':
+            case 'S':
+                return 2;
+            case 'i':
+            case 'I':
+            case 'f':
+                return 4;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Writes the start of each range, and the end of the last one, to a splitting index.
+     */
+    public static void writeSplittingIndex(final List<Chunk> splits, final File output) {
+        final BinaryCodec codec = new BinaryCodec(output, true);
+        try {
+            codec.writeBytes(SPLITTING_INDEX_MAGIC);
+            codec.writeInt(splits.size());
+            for (final Chunk split : splits) {
+                codec.writeLong(split.getChunkStart());
+            }
+            if (!splits.isEmpty()) {
+                codec.writeLong(splits.get(splits.size() - 1).getChunkEnd());
+            }
+        } finally {
+            codec.close();
+        }
+    }
+
+    /**
+     * @return the ranges written to the given splitting index by {@link #writeSplittingIndex(List, File)}.
+     */
+    public static List<Chunk> readSplittingIndex(final File input) {
+        final BinaryCodec codec = new BinaryCodec(input, false);
+        try {
+            final byte[] magic = new byte[SPLITTING_INDEX_MAGIC.length];
+            codec.readBytes(magic);
+            if (!Arrays.equals(magic, SPLITTING_INDEX_MAGIC)) {
+                throw new SAMFormatException("Invalid splitting index " + input);
+            }
+            final int numberOfSplits = codec.readInt();
+            final List<Chunk> splits = new ArrayList<>(numberOfSplits);
+            if (numberOfSplits > 0) {
+                long start = codec.readLong();
+                for (int i = 0; i < numberOfSplits; ++i) {
+                    final long end = codec.readLong();
+                    splits.add(new Chunk(start, end));
+                    start = end;
+                }
+            }
+            return splits;
+        } finally {
+            codec.close();
+        }
+    }
+
+    /**
+     * @return the file that the splitting index of the given BAM file is written to by convention.
+     */
+    public static File getDefaultSplittingIndexFile(final File bam) {
+        return new File(bam.getPath() + SPLITTING_INDEX_SUFFIX);
+    }
+
+    private BlockCompressedInputStream openStream() {
+        return new BlockCompressedInputStream(openRawStream());
+    }
+
+    private SeekableStream openRawStream() {
+        try {
+            return new SeekableFileStream(bam);
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error opening " + bam, e);
+        }
+    }
+
+    private static int readFully(final InputStream stream, final byte[] buffer, final int length) throws IOException {
+        return readFully(stream, buffer, 0, length);
+    }
+
+    /**
+     * @return the number of bytes read, which is less than length only at the end of the stream.
+     */
+    private static int readFully(final InputStream stream, final byte[] buffer, final int offset, final int length) throws IOException {
+        int total = 0;
+        while (total < length) {
+            final int count = stream.read(buffer, offset + total, length - total);
+            if (count <= 0) {
+                break;
+            }
+            total += count;
+        }
+        return total;
+    }
+
+    private static int getUShort(final byte[] buffer, final int offset) {
+        return (buffer[offset] & 0xff) | ((buffer[offset + 1] & 0xff) << 8);
+    }
+
+    private static int getInt(final byte[] buffer, final int offset) {
+        return (buffer[offset] & 0xff) | ((buffer[offset + 1] & 0xff) << 8) |
+                ((buffer[offset + 2] & 0xff) << 16) | ((buffer[offset + 3] & 0xff) << 24);
+    }
+}
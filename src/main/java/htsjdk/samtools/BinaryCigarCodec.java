@@ -52,6 +52,18 @@ class BinaryCigarCodec {
         return binaryCigar;
     }
 
+    /**
+     * Convert CIGAR from object representation to disk representation, stored in the given buffer.
+     * @param buffer ByteBuffer that is assumed to have byte order set appropriately for storing ints.
+     */
+    static void encode(final Cigar cigar, final ByteBuffer buffer) {
+        for (int i = 0; i < cigar.numCigarElements(); ++i) {
+            final CigarElement cigarElement = cigar.getCigarElement(i);
+            final int op = CigarOperator.enumToBinary(cigarElement.getOperator());
+            buffer.putInt(cigarElement.getLength() << 4 | op);
+        }
+    }
+
     /**
      * Convert CIGAR from disk representation to object.
      * @param binaryCigar ByteArray that is assumed to have byte order set appropriately for extracting ints.
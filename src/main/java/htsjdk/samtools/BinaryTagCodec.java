@@ -232,6 +232,81 @@ public class BinaryTagCodec {
         }
     }
 
+    /**
+     * Write the given tag name and value to the given buffer, in the same representation as writeTag().
+     * @param buffer ByteBuffer that is assumed to have byte order set to little-endian, with enough room for the tag,
+     *               see getTagSize().
+     */
+    static void writeTag(final ByteBuffer buffer, final short tag, final Object value, final boolean isUnsignedArray) {
+        buffer.putShort(tag);
+        final char tagValueType = getTagValueType(value);
+        buffer.put((byte) tagValueType);
+
+        switch (tagValueType) {
+            case 'Z':
+                final String stringValue = (String) value;
+                for (int i = 0; i < stringValue.length(); ++i) {
+                    buffer.put((byte) stringValue.charAt(i));
+                }
+                buffer.put((byte) 0);
+                break;
+            case 'A':
+                buffer.put((byte) ((Character) value).charValue());
+                break;
+            case 'I':
+                buffer.putInt((int) ((Number) value).longValue());
+                break;
+            case 'i':
+                buffer.putInt(((Number) value).intValue());
+                break;
+            case 's':
+            case 'S':
+                buffer.putShort(((Number) value).shortValue());
+                break;
+            case 'c':
+            case 'C':
+                buffer.put(((Number) value).byteValue());
+                break;
+            case 'f':
+                buffer.putFloat((Float) value);
+                break;
+            case 'B':
+                writeArray(buffer, value, isUnsignedArray);
+                break;
+            default:
+                throw new IllegalArgumentException("When writing BAM, unrecognized tag type " +
+                        value.getClass().getName());
+        }
+    }
+
+    private static void writeArray(final ByteBuffer buffer, final Object value, final boolean isUnsignedArray) {
+        if (value instanceof byte[]) {
+            buffer.put((byte) (isUnsignedArray? 'C': 'c'));
+            final byte[] array = (byte[]) value;
+            buffer.putInt(array.length);
+            buffer.put(array);
+
+        } else if (value instanceof short[]) {
+            buffer.put((byte) (isUnsignedArray? 'S': 's'));
+            final short[] array = (short[]) value;
+            buffer.putInt(array.length);
+            for (final short element: array) buffer.putShort(element);
+
+        } else if (value instanceof int[]) {
+            buffer.put((byte) (isUnsignedArray? 'I': 'i'));
+            final int[] array = (int[]) value;
+            buffer.putInt(array.length);
+            for (final int element: array) buffer.putInt(element);
+
+        } else if (value instanceof float[]) {
+            buffer.put((byte) 'f');
+            final float[] array = (float[]) value;
+            buffer.putInt(array.length);
+            for (final float element: array) buffer.putFloat(element);
+
+        } else throw new SAMException("Unrecognized array value type: " + value.getClass());
+    }
+
     private void writeArray(final Object value, final boolean isUnsignedArray) {
         if (value instanceof byte[]) {
             binaryCodec.writeByte(isUnsignedArray? 'C': 'c');
@@ -71,11 +71,31 @@ public class BinningIndexBuilder {
     }
 
     public void processFeature(final FeatureToBeIndexed feature) {
-
-        // process bins
-
         final Integer binNumber = feature.getIndexingBin();
         final int binNum = binNumber == null ? computeIndexingBin(feature) : binNumber;
+        final Chunk newChunk = feature.getChunk();
+        processFeature(feature.getStart(), feature.getEnd(), binNum, newChunk.getChunkStart(), newChunk.getChunkEnd(), newChunk);
+    }
+
+    /**
+     * Same as {@link #processFeature(FeatureToBeIndexed)}, for a feature that is not held in an object.
+     * @param start 1-based start of the feature
+     * @param end 1-based inclusive end of the feature, or {@link GenomicIndexUtil#UNSET_GENOMIC_LOCATION}
+     * @param binNum indexing bin of the feature
+     * @param chunkStart virtual file pointer to the start of the feature
+     * @param chunkEnd virtual file pointer to the end of the feature
+     */
+    public void processFeature(final int start, final int end, final int binNum, final long chunkStart, final long chunkEnd) {
+        processFeature(start, end, binNum, chunkStart, chunkEnd, null);
+    }
+
+    /**
+     * @param chunk the chunk of the feature, or null to create one only if it is needed
+     */
+    private void processFeature(final int start, final int end, final int binNum, final long chunkStart, final long chunkEnd,
+                                final Chunk chunk) {
+
+        // process bins
 
 
         // is there a bin already represented for this index?  if not, add one
@@ -90,13 +110,9 @@ public class BinningIndexBuilder {
 
         // process chunks
 
-        final Chunk newChunk = feature.getChunk();
-        final long chunkStart = newChunk.getChunkStart();
-        final long chunkEnd = newChunk.getChunkEnd();
-
         final List<Chunk> oldChunks = bin.getChunkList();
         if (!bin.containsChunks()) {
-            bin.addInitialChunk(newChunk);
+            bin.addInitialChunk(chunk != null ? chunk : new Chunk(chunkStart, chunkEnd));
 
         } else {
             final Chunk lastChunk = bin.getLastChunk();
@@ -107,6 +123,7 @@ public class BinningIndexBuilder {
             if (BlockCompressedFilePointerUtil.areInSameOrAdjacentBlocks(lastChunk.getChunkEnd(), chunkStart)) {
                 lastChunk.setChunkEnd(chunkEnd);  // coalesced
             } else {
+                final Chunk newChunk = chunk != null ? chunk : new Chunk(chunkStart, chunkEnd);
                 oldChunks.add(newChunk);
                 bin.setLastChunk(newChunk);
             }
@@ -115,16 +132,15 @@ public class BinningIndexBuilder {
         // process linear index
 
         // the smallest file offset that appears in the 16k window for this bin
-        final int featureEnd = feature.getEnd();
-        int startWindow = LinearIndex.convertToLinearIndexOffset(feature.getStart()); // the 16k window
+        int startWindow = LinearIndex.convertToLinearIndexOffset(start); // the 16k window
         final int endWindow;
 
-        if (featureEnd == GenomicIndexUtil.UNSET_GENOMIC_LOCATION) {   // assume feature uses one position
+        if (end == GenomicIndexUtil.UNSET_GENOMIC_LOCATION) {   // assume feature uses one position
             // Next line for C (samtools index) compatibility. Differs only when on a window boundary
-            startWindow = LinearIndex.convertToLinearIndexOffset(feature.getStart() - 1);
+            startWindow = LinearIndex.convertToLinearIndexOffset(start - 1);
             endWindow = startWindow;
         } else {
-            endWindow = LinearIndex.convertToLinearIndexOffset(featureEnd);
+            endWindow = LinearIndex.convertToLinearIndexOffset(end);
         }
 
         if (endWindow > largestIndexSeen) {
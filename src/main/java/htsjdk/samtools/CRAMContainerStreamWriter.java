@@ -11,24 +11,38 @@ import htsjdk.samtools.cram.lossy.PreservationPolicy;
 import htsjdk.samtools.cram.lossy.QualityScorePreservation;
 import htsjdk.samtools.cram.ref.CRAMReferenceSource;
 import htsjdk.samtools.cram.ref.ReferenceTracks;
+import htsjdk.samtools.cram.ref.SynchronizedReferenceSource;
 import htsjdk.samtools.cram.structure.Container;
 import htsjdk.samtools.cram.structure.ContainerIO;
 import htsjdk.samtools.cram.structure.CramCompressionRecord;
 import htsjdk.samtools.cram.structure.Slice;
+import htsjdk.samtools.util.DaemonThreadFactory;
 import htsjdk.samtools.util.Log;
 import htsjdk.samtools.util.RuntimeIOException;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Class for writing SAMRecords into a series of CRAM containers on an output stream.
+ *
+ * Optionally, containers are built on a pool of worker threads (see {@link #setCompressionThreads(int)}): once a
+ * container is full, its records are converted, its slices are built and its blocks are compressed by a worker while
+ * the records of the following containers are being accepted.  Containers are written, and indexed, in the order in
+ * which they were filled, so the output is identical to the single-threaded output.
  */
 public class CRAMContainerStreamWriter {
     private static final Version cramVersion = CramVersions.DEFAULT_CRAM_VERSION;
@@ -45,8 +59,8 @@ public class CRAMContainerStreamWriter {
     private final OutputStream outputStream;
     private CRAMReferenceSource source;
 
-    private final List<SAMRecord> samRecords = new ArrayList<SAMRecord>();
-    private ContainerFactory containerFactory;
+    private List<SAMRecord> samRecords = new ArrayList<SAMRecord>();
+    private long globalRecordCounter = 0;
     private int refSeqIndex = REF_SEQ_INDEX_NOT_INITIALIZED;
 
     private static final Log log = Log.getInstance(CRAMContainerStreamWriter.class);
@@ -60,6 +74,12 @@ public class CRAMContainerStreamWriter {
     private CRAMBAIIndexer indexer;
     private long offset;
 
+    // If non-null, containers are built on these threads, see setCompressionThreads()
+    private ExecutorService encoderExecutor = null;
+    private int compressionThreads = 0;
+    private static final int CONTAINERS_IN_FLIGHT_PER_COMPRESSION_THREAD = 2;
+    private final Deque<Future<Container>> pendingContainers = new ArrayDeque<>();
+
     /**
      * Create a CRAMContainerStreamWriter for writing SAM records into a series of CRAM
      * containers on output stream, with an optional index.
@@ -79,8 +99,8 @@ public class CRAMContainerStreamWriter {
         this.outputStream = outputStream;
         this.samFileHeader = samFileHeader;
         this.cramID = cramId;
-        this.source = source;
-        containerFactory = new ContainerFactory(samFileHeader, recordsPerSlice);
+        // the reference may be looked up by the worker threads as well
+        this.source = new SynchronizedReferenceSource(source);
         if (indexStream != null) {
             indexer = new CRAMBAIIndexer(indexStream, samFileHeader);
         }
@@ -126,6 +146,7 @@ public class CRAMContainerStreamWriter {
             if (!samRecords.isEmpty()) {
                 flushContainer();
             }
+            writePendingContainers();
             if (writeEOFContainer) {
                 CramIO.issueEOF(cramVersion, outputStream);
             }
@@ -138,9 +159,48 @@ public class CRAMContainerStreamWriter {
             throw new RuntimeIOException(e);
         } catch (final IllegalAccessException e) {
             throw new RuntimeException(e);
+        } finally {
+            shutdownEncoders();
         }
     }
 
+    /**
+     * Sets the number of threads on which full containers are built and compressed while the following records are
+     * being accepted.  Records must not be modified once written, since they may still be converted afterwards.
+     * @param compressionThreads 0 to build containers on the writing thread, otherwise the number of worker threads
+     */
+    public void setCompressionThreads(final int compressionThreads) {
+        if (compressionThreads < 0) {
+            throw new IllegalArgumentException("Invalid number of compression threads: " + compressionThreads);
+        }
+        if (compressionThreads == this.compressionThreads) {
+            return;
+        }
+        try {
+            writePendingContainers();
+        } catch (final IOException e) {
+            throw new RuntimeIOException(e);
+        }
+        shutdownEncoders();
+        if (compressionThreads > 0) {
+            encoderExecutor = Executors.newFixedThreadPool(compressionThreads,
+                    new DaemonThreadFactory("CRAMContainerStreamWriter-encoder-"));
+        }
+        this.compressionThreads = compressionThreads;
+    }
+
+    public int getCompressionThreads() {
+        return compressionThreads;
+    }
+
+    private void shutdownEncoders() {
+        if (encoderExecutor != null) {
+            encoderExecutor.shutdownNow();
+            encoderExecutor = null;
+        }
+        compressionThreads = 0;
+    }
+
     public boolean isPreserveReadNames() {
         return preserveReadNames;
     }
@@ -260,7 +320,8 @@ public class CRAMContainerStreamWriter {
     }
 
     /**
-     * Complete the current container and flush it to the output stream.
+     * Complete the current container and flush it to the output stream, or hand it to a worker thread and write
+     * whichever containers the workers have already built.
      *
      * @throws IllegalArgumentException
      * @throws IllegalAccessException
@@ -287,6 +348,91 @@ public class CRAMContainerStreamWriter {
                 break;
         }
 
+        // capture the settings of the writer at the time the container was filled
+        final Sam2CramRecordFactory sam2CramRecordFactory = new Sam2CramRecordFactory(refs, samFileHeader, cramVersion);
+        sam2CramRecordFactory.preserveReadNames = preserveReadNames;
+        sam2CramRecordFactory.captureAllTags = captureAllTags;
+        sam2CramRecordFactory.captureTags.addAll(captureTags);
+        sam2CramRecordFactory.ignoreTags.addAll(ignoreTags);
+        final ContainerFactory containerFactory = new ContainerFactory(samFileHeader, recordsPerSlice);
+        containerFactory.setPreserveReadNames(preserveReadNames);
+
+        final List<SAMRecord> containerRecords = samRecords;
+        final int containerRefSeqIndex = refSeqIndex;
+        final String containerRefSeqName = refSeqName;
+        final QualityScorePreservation containerPreservation = preservation;
+        final long containerGlobalRecordCounter = globalRecordCounter;
+        globalRecordCounter += samRecords.size();
+        if (encoderExecutor == null) {
+            writeContainer(buildContainer(containerRecords, containerRefSeqIndex, containerRefSeqName, refs,
+                    containerPreservation, sam2CramRecordFactory, containerFactory, containerGlobalRecordCounter));
+            samRecords.clear();
+        } else {
+            pendingContainers.add(encoderExecutor.submit(() -> buildContainer(containerRecords, containerRefSeqIndex,
+                    containerRefSeqName, refs, containerPreservation, sam2CramRecordFactory, containerFactory,
+                    containerGlobalRecordCounter)));
+            samRecords = new ArrayList<SAMRecord>();
+            while (pendingContainers.size() > CONTAINERS_IN_FLIGHT_PER_COMPRESSION_THREAD * compressionThreads) {
+                writeNextPendingContainer();
+            }
+            while (!pendingContainers.isEmpty() && pendingContainers.peek().isDone()) {
+                writeNextPendingContainer();
+            }
+        }
+        refSeqIndex = REF_SEQ_INDEX_NOT_INITIALIZED;
+    }
+
+    /**
+     * Waits for all the containers handed to the workers to be built, and writes them.
+     */
+    private void writePendingContainers() throws IOException {
+        while (!pendingContainers.isEmpty()) {
+            writeNextPendingContainer();
+        }
+    }
+
+    /**
+     * Waits for the oldest container handed to the workers to be built, and writes it.
+     */
+    private void writeNextPendingContainer() throws IOException {
+        final Container container;
+        try {
+            container = pendingContainers.remove().get();
+        } catch (final InterruptedException ie) {
+            throw new RuntimeException("Interrupted waiting for container to be built.", ie);
+        } catch (final ExecutionException ee) {
+            if (ee.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ee.getCause();
+            }
+            if (ee.getCause() instanceof IOException) {
+                throw (IOException) ee.getCause();
+            }
+            throw new RuntimeException("Exception building container.", ee.getCause());
+        }
+        writeContainer(container);
+    }
+
+    private void writeContainer(final Container container) throws IOException {
+        container.offset = offset;
+        offset += ContainerIO.writeContainer(cramVersion, container, outputStream);
+        if (indexer != null) {
+            /**
+             * Using silent validation here because the reads have been through validation already or
+             * they have been generated somehow through the htsjdk.
+             */
+            indexer.processContainer(container, ValidationStringency.SILENT);
+        }
+    }
+
+    /**
+     * Converts the records of a container, and builds and compresses its slices.  Only uses the given settings, so
+     * that containers can be built on the worker threads while the writer accepts the following records.
+     */
+    private Container buildContainer(final List<SAMRecord> samRecords, final int refSeqIndex, final String refSeqName,
+                                     final byte[] refs, final QualityScorePreservation preservation,
+                                     final Sam2CramRecordFactory sam2CramRecordFactory,
+                                     final ContainerFactory containerFactory, final long globalRecordCounter)
+            throws IllegalAccessException, IOException {
         int start = SAMRecord.NO_ALIGNMENT_START;
         int stop = SAMRecord.NO_ALIGNMENT_START;
         for (final SAMRecord r : samRecords) {
@@ -308,12 +454,6 @@ public class CRAMContainerStreamWriter {
 
         final List<CramCompressionRecord> cramRecords = new ArrayList<CramCompressionRecord>(samRecords.size());
 
-        final Sam2CramRecordFactory sam2CramRecordFactory = new Sam2CramRecordFactory(refs, samFileHeader, cramVersion);
-        sam2CramRecordFactory.preserveReadNames = preserveReadNames;
-        sam2CramRecordFactory.captureAllTags = captureAllTags;
-        sam2CramRecordFactory.captureTags.addAll(captureTags);
-        sam2CramRecordFactory.ignoreTags.addAll(ignoreTags);
-        containerFactory.setPreserveReadNames(preserveReadNames);
 
         int index = 0;
         int prevAlStart = start;
@@ -443,21 +583,11 @@ public class CRAMContainerStreamWriter {
             }
         }
 
-        final Container container = containerFactory.buildContainer(cramRecords);
+        final Container container = containerFactory.buildContainer(cramRecords, globalRecordCounter);
         for (final Slice slice : container.slices) {
             slice.setRefMD5(refs);
         }
-        container.offset = offset;
-        offset += ContainerIO.writeContainer(cramVersion, container, outputStream);
-        if (indexer != null) {
-            /**
-             * Using silent validation here because the reads have been through validation already or
-             * they have been generated somehow through the htsjdk.
-             */
-            indexer.processContainer(container, ValidationStringency.SILENT);
-        }
-        samRecords.clear();
-        refSeqIndex = REF_SEQ_INDEX_NOT_INITIALIZED;
+        return container;
     }
 
     /**
@@ -26,6 +26,7 @@ import htsjdk.samtools.seekablestream.SeekableFileStream;
 import htsjdk.samtools.seekablestream.SeekableStream;
 import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.DaemonThreadFactory;
 import htsjdk.samtools.util.Log;
 import htsjdk.samtools.util.RuntimeEOFException;
 
@@ -37,6 +38,8 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * {@link htsjdk.samtools.BAMFileReader BAMFileReader} analogue for CRAM files.
@@ -54,6 +57,12 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
     private File mIndexFile;
     private boolean mEnableIndexCaching;
     private boolean mEnableIndexMemoryMapping;
+    private long mQueryGapTolerance = 0;
+
+    // If non-null, containers are decoded on these threads, see setDecoderThreads()
+    private ExecutorService decoderExecutor = null;
+    private int decoderThreads = 0;
+    private static final int CONTAINERS_IN_FLIGHT_PER_DECODER_THREAD = 2;
 
     private ValidationStringency validationStringency;
 
@@ -256,6 +265,52 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
         mEnableIndexMemoryMapping = enabled;
     }
 
+    /**
+     * Merge the containers of a query that are apart by no more than the given number of bytes, so that they are
+     * read at once rather than seeking over the gap.  The records in between are filtered out.
+     * @param maxGapBytes number of bytes, or 0 to merge only overlapping and adjacent spans.
+     */
+    void setQueryGapTolerance(final long maxGapBytes) {
+        this.mQueryGapTolerance = maxGapBytes;
+    }
+
+    /**
+     * Decodes containers ahead of the iteration on the given number of worker threads, for iterators created
+     * afterwards and the iterator over the whole file.  The slices of each container are decoded concurrently, and
+     * iterators still return records in file order.
+     * @param decoderThreads number of decoder threads, or 0 to decode containers on the thread iterating over them.
+     */
+    void setDecoderThreads(final int decoderThreads) {
+        if (decoderThreads < 0) {
+            throw new IllegalArgumentException("Invalid number of decoder threads: " + decoderThreads);
+        }
+        if (decoderThreads == this.decoderThreads) {
+            return;
+        }
+        shutdownDecoders();
+        if (decoderThreads > 0) {
+            this.decoderExecutor = Executors.newFixedThreadPool(decoderThreads,
+                    new DaemonThreadFactory("CRAMFileReader-decoder-"));
+        }
+        this.decoderThreads = decoderThreads;
+        if (iterator != null) {
+            withDecoders(iterator);
+        }
+    }
+
+    private void shutdownDecoders() {
+        if (decoderExecutor != null) {
+            decoderExecutor.shutdownNow();
+            decoderExecutor = null;
+        }
+        decoderThreads = 0;
+    }
+
+    private CRAMIterator withDecoders(final CRAMIterator newIterator) {
+        newIterator.setDecoderExecutor(decoderExecutor, CONTAINERS_IN_FLIGHT_PER_DECODER_THREAD * decoderThreads);
+        return newIterator;
+    }
+
     @Override
     void enableCrcChecking(final boolean enabled) {
         // inapplicable to CRAM: do nothing
@@ -318,7 +373,7 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
         try {
             // create an input stream that reads the source cram stream only within the coordinate pairs:
             final SeekableStream seekableStream = getSeekableStreamOrFailWithRTE();
-            return new CRAMIterator(seekableStream, referenceSource, coordinateArray, validationStringency);
+            return withDecoders(new CRAMIterator(seekableStream, referenceSource, coordinateArray, validationStringency));
         } catch (final IOException e) {
             throw new RuntimeException(e);
         }
@@ -341,7 +396,10 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
             } else
                 newIterator = new CRAMIterator(inputStream, referenceSource, validationStringency);
 
-            iterator = newIterator;
+            // keep records pointing at the reader when INCLUDE_SOURCE_IN_RECORDS was enabled
+            if (iterator != null)
+                newIterator.setFileSource(iterator.getFileSource());
+            iterator = withDecoders(newIterator);
             return iterator;
         } catch (final Exception e) {
             throw new RuntimeException(e);
@@ -401,7 +459,7 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
         final CRAMIterator newIterator;
         try {
             seekableStream.seek(0);
-            newIterator = new CRAMIterator(seekableStream, referenceSource, validationStringency);
+            newIterator = withDecoders(new CRAMIterator(seekableStream, referenceSource, validationStringency));
             seekableStream.seek(startOfLastLinearBin >>> 16);
             final Container container = ContainerIO.readContainerHeader(newIterator.getCramHeader().getVersion().major, seekableStream);
             seekableStream.seek(seekableStream.position() + container.containerByteSize);
@@ -436,6 +494,7 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
         CloserUtil.close(iterator);
         CloserUtil.close(inputStream);
         CloserUtil.close(mIndex);
+        shutdownDecoders();
     }
 
     @Override
@@ -481,12 +540,12 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
             long[] coordinates = coordinatesFromQueryIntervals(getIndex(), queries);
             if (coordinates != null && coordinates.length != 0) {
                 try {
-                    unfilteredIterator = new CRAMIterator(
+                    unfilteredIterator = withDecoders(new CRAMIterator(
                             getSeekableStreamOrFailWithRTE(),
                             referenceSource,
                             coordinates,
                             validationStringency
-                    );
+                    ));
                 } catch (final IOException e) {
                     throw new RuntimeEOFException(e);
                 }
@@ -503,7 +562,7 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
                 spanArray[i] = spanList.get(i);
             }
 
-            return BAMFileSpan.merge(spanArray).toCoordinateArray();
+            return BAMFileSpan.merge(spanArray, mQueryGapTolerance).toCoordinateArray();
         }
 
         @Override
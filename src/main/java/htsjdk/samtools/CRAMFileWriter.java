@@ -130,6 +130,19 @@ public class CRAMFileWriter extends SAMFileWriterImpl {
         return fileName;
     }
 
+    /**
+     * Sets the number of threads on which containers are built and compressed while the following records are
+     * being written, see {@link CRAMContainerStreamWriter#setCompressionThreads(int)}.
+     * @param compressionThreads 0 to build containers on the writing thread, otherwise the number of worker threads
+     */
+    public void setCompressionThreads(final int compressionThreads) {
+        cramContainerStream.setCompressionThreads(compressionThreads);
+    }
+
+    public int getCompressionThreads() {
+        return cramContainerStream.getCompressionThreads();
+    }
+
     public boolean isPreserveReadNames() {
         return cramContainerStream.isPreserveReadNames();
     }
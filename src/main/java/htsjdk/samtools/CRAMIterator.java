@@ -23,6 +23,7 @@ import htsjdk.samtools.cram.build.CramNormalizer;
 import htsjdk.samtools.cram.build.CramSpanContainerIterator;
 import htsjdk.samtools.cram.io.CountingInputStream;
 import htsjdk.samtools.cram.ref.CRAMReferenceSource;
+import htsjdk.samtools.cram.ref.SynchronizedReferenceSource;
 import htsjdk.samtools.cram.structure.Container;
 import htsjdk.samtools.cram.structure.ContainerIO;
 import htsjdk.samtools.cram.structure.CramCompressionRecord;
@@ -34,10 +35,17 @@ import htsjdk.samtools.util.Log;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigInteger;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import htsjdk.samtools.cram.CRAMException;
 
@@ -58,6 +66,15 @@ public class CRAMIterator implements SAMRecordIterator {
     private ContainerParser parser;
     private final CRAMReferenceSource referenceSource;
 
+    // If non-null, containers are decoded ahead on these threads, see setDecoderExecutor()
+    private ExecutorService decoderExecutor = null;
+    private int maxContainersInFlight = 0;
+    private final Deque<Future<DecodedContainer>> containersInFlight = new ArrayDeque<>();
+    private boolean endOfContainers = false;
+    private Container eofContainer = null;
+    // number of records in the containers decoded or being decoded, to number the records of the next one
+    private int normalizedRecordCount = 0;
+
     private Iterator<SAMRecord> iterator = Collections.<SAMRecord>emptyList().iterator();
 
     private ValidationStringency validationStringency = ValidationStringency.DEFAULT_STRINGENCY;
@@ -80,7 +97,7 @@ public class CRAMIterator implements SAMRecordIterator {
             throw new CRAMException("A reference source is required for CRAM files");
         }
         this.countingInputStream = new CountingInputStream(inputStream);
-        this.referenceSource = referenceSource;
+        this.referenceSource = new SynchronizedReferenceSource(referenceSource);
         this.validationStringency = validationStringency;
         final CramContainerIterator containerIterator = new CramContainerIterator(this.countingInputStream);
         cramHeader = containerIterator.getCramHeader();
@@ -89,7 +106,7 @@ public class CRAMIterator implements SAMRecordIterator {
         firstContainerOffset = this.countingInputStream.getCount();
         records = new ArrayList<SAMRecord>(10000);
         normalizer = new CramNormalizer(cramHeader.getSamFileHeader(),
-                referenceSource);
+                this.referenceSource);
         parser = new ContainerParser(cramHeader.getSamFileHeader());
     }
 
@@ -99,7 +116,7 @@ public class CRAMIterator implements SAMRecordIterator {
             throw new CRAMException("A reference source is required for CRAM files");
         }
         this.countingInputStream = new CountingInputStream(seekableStream);
-        this.referenceSource = referenceSource;
+        this.referenceSource = new SynchronizedReferenceSource(referenceSource);
         this.validationStringency = validationStringency;
         final CramSpanContainerIterator containerIterator = CramSpanContainerIterator.fromFileSpan(seekableStream, coordinates);
         cramHeader = containerIterator.getCramHeader();
@@ -108,7 +125,7 @@ public class CRAMIterator implements SAMRecordIterator {
         firstContainerOffset = containerIterator.getFirstContainerOffset();
         records = new ArrayList<SAMRecord>(10000);
         normalizer = new CramNormalizer(cramHeader.getSamFileHeader(),
-                referenceSource);
+                this.referenceSource);
         parser = new ContainerParser(cramHeader.getSamFileHeader());
     }
 
@@ -122,41 +139,141 @@ public class CRAMIterator implements SAMRecordIterator {
         return cramHeader;
     }
 
-    void nextContainer() throws IOException, IllegalArgumentException,
-            IllegalAccessException, CRAMException {
+    /**
+     * Decodes containers ahead of the records being iterated, on the given worker threads.  The slices of each
+     * container are decoded concurrently, then its records are normalized and converted to {@link SAMRecord}s,
+     * while records are still returned in file order and validated on the iterating thread.
+     * @param executor the worker threads, or null to decode containers on the iterating thread.
+     * @param maxContainersInFlight the number of containers being decoded ahead of the iteration.
+     */
+    void setDecoderExecutor(final ExecutorService executor, final int maxContainersInFlight) {
+        if (executor != null && maxContainersInFlight <= 0) {
+            throw new IllegalArgumentException("Invalid number of containers in flight: " + maxContainersInFlight);
+        }
+        this.decoderExecutor = executor;
+        this.maxContainersInFlight = maxContainersInFlight;
+    }
 
+    /**
+     * @return the next container, which may be the EOF container, or null at the end of the containers to iterate.
+     */
+    private Container readContainer() throws IOException {
         if (containerIterator != null) {
-            if (!containerIterator.hasNext()) {
-                records.clear();
-                nextRecord = null;
-                return;
-            }
-            container = containerIterator.next();
-            if (container.isEOF()) {
-                records.clear();
-                nextRecord = null;
-                return;
-            }
-        } else {
-            container = ContainerIO.readContainer(cramHeader.getVersion(), countingInputStream);
-            if (container.isEOF()) {
-                records.clear();
-                nextRecord = null;
-                return;
-            }
+            return containerIterator.hasNext() ? containerIterator.next() : null;
         }
+        return ContainerIO.readContainer(cramHeader.getVersion(), countingInputStream);
+    }
 
-        if (records == null)
-            records = new ArrayList<SAMRecord>(container.nofRecords);
-        else
+    void nextContainer() throws IOException, IllegalArgumentException,
+            IllegalAccessException, CRAMException {
+        if (decoderExecutor != null || !containersInFlight.isEmpty()) {
+            nextDecodedContainer();
+            return;
+        }
+
+        final Container next = readContainer();
+        if (next == null) {
             records.clear();
+            nextRecord = null;
+            return;
+        }
+        container = next;
+        if (container.isEOF()) {
+            records.clear();
+            nextRecord = null;
+            return;
+        }
+
         if (cramRecords == null)
             cramRecords = new ArrayList<CramCompressionRecord>(container.nofRecords);
         else
             cramRecords.clear();
 
         parser.getRecords(container, cramRecords, validationStringency);
+        updateReferenceBases(container);
 
+        final DecodedContainer decoded = decode(container, cramRecords, refs, normalizedRecordCount, validationStringency);
+        normalizedRecordCount += cramRecords.size();
+        cramRecords.clear();
+        setRecords(decoded);
+    }
+
+    /**
+     * Keeps up to maxContainersInFlight containers being decoded on the worker threads, then waits for the oldest.
+     */
+    private void nextDecodedContainer() throws IOException {
+        while (decoderExecutor != null && !endOfContainers && containersInFlight.size() < maxContainersInFlight) {
+            final Container next = readContainer();
+            if (next == null || next.isEOF()) {
+                endOfContainers = true;
+                eofContainer = next;
+                break;
+            }
+            containersInFlight.add(submit(next));
+        }
+
+        final Future<DecodedContainer> decoding = containersInFlight.poll();
+        if (decoding == null) {
+            if (eofContainer != null) {
+                container = eofContainer;
+            }
+            records.clear();
+            nextRecord = null;
+            return;
+        }
+        final DecodedContainer decoded;
+        try {
+            decoded = decoding.get();
+        } catch (final InterruptedException ie) {
+            throw new RuntimeException("Interrupted waiting for a container to be decoded", ie);
+        } catch (final ExecutionException ee) {
+            final Throwable cause = ee.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+        container = decoded.container;
+        setRecords(decoded);
+    }
+
+    /**
+     * Decodes each slice of the container on a worker thread, then the whole container once its slices are decoded,
+     * without blocking any worker.
+     */
+    private Future<DecodedContainer> submit(final Container container) {
+        // on this thread, so that the bases of the current reference are kept rather than fetched for each container
+        updateReferenceBases(container);
+        final byte[] containerRefs = refs;
+        final ValidationStringency validationStringency = this.validationStringency;
+        final int startCounter = normalizedRecordCount;
+        final List<CompletableFuture<List<CramCompressionRecord>>> slices = new ArrayList<>(container.slices.length);
+        for (final Slice slice : container.slices) {
+            normalizedRecordCount += slice.nofRecords;
+            slices.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    // parsers keep statistics, so use one per slice
+                    return new ContainerParser(cramHeader.getSamFileHeader()).getRecords(slice, container.header, validationStringency);
+                } catch (final IllegalAccessException e) {
+                    throw new SAMException(e);
+                }
+            }, decoderExecutor));
+        }
+        return CompletableFuture.allOf(slices.toArray(new CompletableFuture[slices.size()])).thenApplyAsync(v -> {
+            final ArrayList<CramCompressionRecord> containerRecords = new ArrayList<>(container.nofRecords);
+            for (final CompletableFuture<List<CramCompressionRecord>> slice : slices) {
+                containerRecords.addAll(slice.join());
+            }
+            return decode(container, containerRecords, containerRefs, startCounter, validationStringency);
+        }, decoderExecutor);
+    }
+
+    /**
+     * Gets the reference bases of the container, unless they are those of the previous container.
+     */
+    private void updateReferenceBases(final Container container) {
         if (container.sequenceId == SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX) {
             refs = new byte[]{};
             prevSeqId = SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX;
@@ -172,7 +289,17 @@ public class CRAMIterator implements SAMRecordIterator {
             }
             prevSeqId = container.sequenceId;
         }
+    }
 
+    /**
+     * Checks the reference of each slice, restores the records and converts them to SAM records.  Containers may be
+     * decoded concurrently, as this only changes the given records.
+     *
+     * @param startCounter number of records in the containers before this one
+     */
+    private DecodedContainer decode(final Container container, final ArrayList<CramCompressionRecord> cramRecords,
+                                    final byte[] refs, final int startCounter,
+                                    final ValidationStringency validationStringency) {
         for (int i = 0; i < container.slices.length; i++) {
             final Slice slice = container.slices[i];
             if (slice.sequenceId < 0)
@@ -189,41 +316,66 @@ public class CRAMIterator implements SAMRecordIterator {
         }
 
         normalizer.normalize(cramRecords, refs, 0,
-                container.header.substitutionMatrix);
+                container.header.substitutionMatrix, startCounter);
 
         final Cram2SamRecordFactory cramToSamRecordFactory = new Cram2SamRecordFactory(
                 cramHeader.getSamFileHeader());
 
+        final DecodedContainer decoded = new DecodedContainer(container, cramRecords.size());
         for (final CramCompressionRecord cramRecord : cramRecords) {
             final SAMRecord samRecord = cramToSamRecordFactory.create(cramRecord);
-            if (!cramRecord.isSegmentUnmapped()) {
-                final SAMSequenceRecord sequence = cramHeader.getSamFileHeader()
-                        .getSequence(cramRecord.sequenceId);
-                refs = referenceSource.getReferenceBases(sequence, true);
-            }
-
             samRecord.setValidationStringency(validationStringency);
-
+            decoded.records.add(samRecord);
+            decoded.sliceIndices.add(cramRecord.sliceIndex);
             if (validationStringency != ValidationStringency.SILENT) {
-                final List<SAMValidationError> validationErrors = samRecord.isValid();
-                SAMUtils.processValidationErrors(validationErrors,
-                        samRecordIndex, validationStringency);
+                decoded.validationErrors.add(samRecord.isValid());
+            }
+        }
+        return decoded;
+    }
+
+    /**
+     * Makes the records of the container the ones being iterated, reporting their validation errors in file order.
+     */
+    private void setRecords(final DecodedContainer decoded) {
+        records.clear();
+        for (int i = 0; i < decoded.records.size(); i++) {
+            final SAMRecord samRecord = decoded.records.get(i);
+            if (!decoded.validationErrors.isEmpty()) {
+                SAMUtils.processValidationErrors(decoded.validationErrors.get(i),
+                        samRecordIndex, samRecord.getValidationStringency());
             }
 
             if (mReader != null) {
-                final long chunkStart = (container.offset << 16) | cramRecord.sliceIndex;
-                final long chunkEnd = ((container.offset << 16) | cramRecord.sliceIndex) + 1;
-                nextRecord.setFileSource(new SAMFileSource(mReader,
+                final long chunkStart = (decoded.container.offset << 16) | decoded.sliceIndices.get(i);
+                final long chunkEnd = chunkStart + 1;
+                samRecord.setFileSource(new SAMFileSource(mReader,
                         new BAMFileSpan(new Chunk(chunkStart, chunkEnd))));
             }
 
             records.add(samRecord);
             samRecordIndex++;
         }
-        cramRecords.clear();
         iterator = records.iterator();
     }
 
+    /**
+     * The SAM records of a container, along with what is needed to return them in file order.
+     */
+    private static class DecodedContainer {
+        private final Container container;
+        private final List<SAMRecord> records;
+        private final List<Integer> sliceIndices;
+        // empty if the records were not validated
+        private final List<List<SAMValidationError>> validationErrors = new ArrayList<>();
+
+        DecodedContainer(final Container container, final int numRecords) {
+            this.container = container;
+            this.records = new ArrayList<>(numRecords);
+            this.sliceIndices = new ArrayList<>(numRecords);
+        }
+    }
+
     /**
      * Skip cached records until given alignment start position.
      *
@@ -271,6 +423,9 @@ public class CRAMIterator implements SAMRecordIterator {
 
     @Override
     public SAMRecord next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
         return iterator.next();
     }
 
@@ -282,6 +437,10 @@ public class CRAMIterator implements SAMRecordIterator {
     @Override
     public void close() {
         records.clear();
+        for (final Future<DecodedContainer> decoding : containersInFlight) {
+            decoding.cancel(false);
+        }
+        containersInFlight.clear();
         //noinspection EmptyCatchBlock
         try {
             if (countingInputStream != null)
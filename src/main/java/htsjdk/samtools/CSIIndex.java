@@ -0,0 +1,518 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.samtools.util.BinaryCodec;
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import htsjdk.samtools.util.RuntimeEOFException;
+import htsjdk.samtools.util.RuntimeIOException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A coordinate-sorted index (CSI) of a BGZF file, as written by samtools index -c and tabix -C.  It is a binning
+ * index like BAI and tabix indices, but the number of bits of the smallest bins (min_shift) and the number of levels
+ * (depth) are stored in the index rather than fixed to 14 and 5.  Smaller bins give finer grained seeks on deep data,
+ * and more levels index references longer than 512Mbp.  Instead of a linear index, each bin holds the smallest
+ * virtual file offset of the features that overlap its first smallest bin.
+ *
+ * The whole index is loaded in memory, as CSI files are BGZF compressed.  References are numbered as in the file
+ * being indexed; the auxiliary data holds format specific content, such as the tabix header.
+ *
+ * @see CSIIndexBuilder
+ * @see CSIIndexer
+ */
+public class CSIIndex implements BrowseableBAMIndex {
+    public static final String CSI_INDEX_SUFFIX = ".csi";
+
+    /**
+     * Shape of the binning of BAI and tabix indices, also the default of samtools index -c.
+     */
+    public static final int DEFAULT_MIN_SHIFT = 14;
+    public static final int DEFAULT_DEPTH = 5;
+
+    private static final byte[] MAGIC = {'C', 'S', 'I', 1};
+    public static final int MAGIC_NUMBER = ByteBuffer.wrap(MAGIC).order(ByteOrder.LITTLE_ENDIAN).getInt();
+
+    private final int minShift;
+    private final int depth;
+    private final byte[] auxData;
+
+    // null for references without any bins
+    private final ReferenceContent[] contents;
+
+    // null if not present in the file
+    private final Long noCoordinateCount;
+
+    CSIIndex(final int minShift, final int depth, final byte[] auxData, final ReferenceContent[] contents,
+             final Long noCoordinateCount) {
+        this.minShift = minShift;
+        this.depth = depth;
+        this.auxData = auxData;
+        this.contents = contents;
+        this.noCoordinateCount = noCoordinateCount;
+    }
+
+    /**
+     * Reads a BGZF compressed CSI index file.
+     */
+    public CSIIndex(final File file) {
+        this(openFile(file), true);
+    }
+
+    /**
+     * @param inputStream This is expected to be buffered and be BGZF-decompressing as appropriate.  Caller
+     *                    should close input stream after ctor returns.
+     */
+    public CSIIndex(final InputStream inputStream) {
+        this(inputStream, false);
+    }
+
+    private CSIIndex(final InputStream inputStream, final boolean closeInputStream) {
+        final BinaryCodec codec = new BinaryCodec(inputStream);
+        try {
+            final byte[] magic = new byte[MAGIC.length];
+            codec.readBytes(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new SAMException("Invalid CSI index: unexpected magic number");
+            }
+            minShift = codec.readInt();
+            depth = codec.readInt();
+            auxData = new byte[codec.readInt()];
+            codec.readBytes(auxData);
+            contents = new ReferenceContent[codec.readInt()];
+            for (int i = 0; i < contents.length; i++) {
+                contents[i] = readReference(codec, GenomicIndexUtil.getMetaDataBin(depth));
+            }
+            Long count;
+            try { // optional at the end of the index
+                count = codec.readLong();
+            } catch (final RuntimeEOFException e) {
+                count = null;
+            }
+            noCoordinateCount = count;
+        } finally {
+            if (closeInputStream) {
+                codec.close();
+            }
+        }
+    }
+
+    private static InputStream openFile(final File file) {
+        try {
+            return new BlockCompressedInputStream(file);
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error opening CSI index file " + file, e);
+        }
+    }
+
+    private static ReferenceContent readReference(final BinaryCodec codec, final int metaDataBin) {
+        final int numBins = codec.readInt();
+        if (numBins == 0) {
+            return null;
+        }
+        // Bins may be in any order, so sort them by number on the fly through keys holding number and position
+        final long[] keys = new long[numBins];
+        final long[] loffsets = new long[numBins];
+        final long[][] binChunks = new long[numBins][];
+        long[] metaData = null;
+        int numRealBins = 0;
+        int numChunks = 0;
+        for (int i = 0; i < numBins; i++) {
+            final int bin = (int) codec.readUInt();
+            final long loffset = codec.readLong();
+            final long[] chunks = new long[2 * codec.readInt()];
+            for (int j = 0; j < chunks.length; j++) {
+                chunks[j] = codec.readLong();
+            }
+            if (bin == metaDataBin) {
+                if (chunks.length != 4) {
+                    throw new SAMException("Unexpected number of metadata chunks " + (chunks.length / 2));
+                }
+                metaData = chunks;
+            } else {
+                keys[numRealBins] = ((long) bin << 32) | numRealBins;
+                loffsets[numRealBins] = loffset;
+                binChunks[numRealBins] = chunks;
+                numRealBins++;
+                numChunks += chunks.length / 2;
+            }
+        }
+        Arrays.sort(keys, 0, numRealBins);
+
+        final int[] bins = new int[numRealBins];
+        final long[] sortedLoffsets = new long[numRealBins];
+        final int[] chunkStarts = new int[numRealBins + 1];
+        final long[] chunks = new long[2 * numChunks];
+        for (int i = 0; i < numRealBins; i++) {
+            final int position = (int) keys[i];
+            bins[i] = (int) (keys[i] >>> 32);
+            sortedLoffsets[i] = loffsets[position];
+            System.arraycopy(binChunks[position], 0, chunks, 2 * chunkStarts[i], binChunks[position].length);
+            chunkStarts[i + 1] = chunkStarts[i] + binChunks[position].length / 2;
+        }
+        return new ReferenceContent(bins, sortedLoffsets, chunkStarts, chunks, metaData);
+    }
+
+    /**
+     * Writes the index with BGZF.
+     *
+     * @param output Where to write the index.
+     */
+    public void write(final File output) {
+        try (final BlockCompressedOutputStream outputStream = new BlockCompressedOutputStream(output)) {
+            write(outputStream);
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error writing CSI index file " + output, e);
+        }
+    }
+
+    /**
+     * @param outputStream It is assumed that caller has done appropriate buffering and BlockCompressedOutputStream
+     *                     wrapping.  Caller should close output stream after invoking this method.
+     */
+    public void write(final OutputStream outputStream) {
+        final BinaryCodec codec = new BinaryCodec(outputStream);
+        codec.writeBytes(MAGIC);
+        codec.writeInt(minShift);
+        codec.writeInt(depth);
+        codec.writeInt(auxData.length);
+        codec.writeBytes(auxData);
+        codec.writeInt(contents.length);
+        final int metaDataBin = GenomicIndexUtil.getMetaDataBin(depth);
+        for (final ReferenceContent content : contents) {
+            if (content == null) {
+                codec.writeInt(0);
+                continue;
+            }
+            codec.writeInt(content.bins.length + (content.metaData == null ? 0 : 1));
+            for (int i = 0; i < content.bins.length; i++) {
+                codec.writeUInt(content.bins[i]);
+                codec.writeLong(content.loffsets[i]);
+                codec.writeInt(content.chunkStarts[i + 1] - content.chunkStarts[i]);
+                for (int j = 2 * content.chunkStarts[i]; j < 2 * content.chunkStarts[i + 1]; j++) {
+                    codec.writeLong(content.chunks[j]);
+                }
+            }
+            if (content.metaData != null) {
+                codec.writeUInt(metaDataBin);
+                codec.writeLong(0);
+                codec.writeInt(content.metaData.length / 2);
+                for (final long value : content.metaData) {
+                    codec.writeLong(value);
+                }
+            }
+        }
+        if (noCoordinateCount != null) {
+            codec.writeLong(noCoordinateCount);
+        }
+    }
+
+    /**
+     * @return the number of bits of the smallest bins.
+     */
+    public int getMinShift() {
+        return minShift;
+    }
+
+    /**
+     * @return the number of levels below the bin covering the whole reference.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return the format specific content of the index, e.g. the tabix header.  Empty for BAM files.
+     */
+    public byte[] getAuxData() {
+        return auxData.clone();
+    }
+
+    public int getNumberOfReferences() {
+        return contents.length;
+    }
+
+    /**
+     * @return the count of records holding no coordinates, or null if the index does not have it.
+     */
+    public Long getNoCoordinateCount() {
+        return noCoordinateCount;
+    }
+
+    /**
+     * Get list of regions of BAM file that may contain SAMRecords for the given range
+     * @param referenceIndex sequence of desired SAMRecords
+     * @param startPos 1-based start of the desired interval, inclusive
+     * @param endPos 1-based end of the desired interval, inclusive
+     * @return the virtual file position.  Each pair is the first and last virtual file position
+     *         in a range that can be scanned to find SAMRecords that overlap the given positions.
+     *         May return null if there is no content overlapping the region.
+     */
+    @Override
+    public BAMFileSpan getSpanOverlapping(final int referenceIndex, final int startPos, final int endPos) {
+        final ReferenceContent content = getContent(referenceIndex);
+        if (content == null) {
+            return null;
+        }
+        final long maxPos = GenomicIndexUtil.getGenomicSpan(minShift, depth) - 1;
+        final long start = (startPos <= 0) ? 0 : startPos - 1;
+        final long end = (endPos <= 0) ? maxPos : Math.min(endPos - 1, maxPos);
+        if (start > end) {
+            return null;
+        }
+
+        final List<Chunk> chunks = new ArrayList<>();
+        for (int level = 0; level <= depth; level++) {
+            final int shift = minShift + 3 * (depth - level);
+            final int firstBin = GenomicIndexUtil.getFirstBinInLevel(level);
+            content.addChunks(firstBin + (int) (start >> shift), firstBin + (int) (end >> shift), chunks);
+        }
+        final long minimumOffset = content.getMinimumOffset(GenomicIndexUtil.getFirstBinInLevel(depth) + (int) (start >> minShift));
+        final List<Chunk> optimized = Chunk.optimizeChunkList(chunks, minimumOffset);
+        return optimized.isEmpty() ? null : new BAMFileSpan(optimized);
+    }
+
+    /**
+     * Gets the number of bins in the given level.
+     * @param levelNumber Level number.  0-based.
+     * @return The size (number of possible bins) of the given level.
+     */
+    @Override
+    public int getLevelSize(final int levelNumber) {
+        return 1 << 3 * levelNumber;
+    }
+
+    @Override
+    public int getLevelForBin(final Bin bin) {
+        if (bin.getBinNumber() >= GenomicIndexUtil.getMetaDataBin(depth) - 1)
+            throw new SAMException("Tried to get level for invalid bin.");
+        return GenomicIndexUtil.getLevelForBin(bin.getBinNumber());
+    }
+
+    @Override
+    public int getFirstLocusInBin(final Bin bin) {
+        final int level = getLevelForBin(bin);
+        final long binWidth = 1L << (minShift + 3 * (depth - level));
+        return (int) Math.min((bin.getBinNumber() - GenomicIndexUtil.getFirstBinInLevel(level)) * binWidth + 1, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int getLastLocusInBin(final Bin bin) {
+        final int level = getLevelForBin(bin);
+        final long binWidth = 1L << (minShift + 3 * (depth - level));
+        return (int) Math.min((bin.getBinNumber() - GenomicIndexUtil.getFirstBinInLevel(level) + 1) * binWidth, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public BinList getBinsOverlapping(final int referenceIndex, final int startPos, final int endPos) {
+        final BitSet regionBins = GenomicIndexUtil.regionToBins(minShift, depth, startPos, endPos);
+        if (regionBins == null) {
+            return null;
+        }
+        return new BinList(referenceIndex, regionBins);
+    }
+
+    /**
+     * Perform an overlapping query of all bins bounding the given location.
+     * @param bin The bin over which to perform an overlapping query.
+     * @return The file pointers
+     */
+    @Override
+    public BAMFileSpan getSpanOverlapping(final Bin bin) {
+        if (bin == null)
+            return null;
+        final ReferenceContent content = getContent(bin.getReferenceSequence());
+        if (content == null)
+            return null;
+
+        final List<Chunk> chunks = new ArrayList<>();
+        for (int binNumber = bin.getBinNumber(); ; binNumber = GenomicIndexUtil.getParentBin(binNumber)) {
+            content.addChunks(binNumber, binNumber, chunks);
+            if (binNumber == 0) break;
+        }
+        final int level = getLevelForBin(bin);
+        final int firstSmallestBin = GenomicIndexUtil.getFirstBinInLevel(depth) +
+                ((bin.getBinNumber() - GenomicIndexUtil.getFirstBinInLevel(level)) << 3 * (depth - level));
+        return new BAMFileSpan(Chunk.optimizeChunkList(chunks, content.getMinimumOffset(firstSmallestBin)));
+    }
+
+    /**
+     * Use to get close to the unmapped reads at the end of a BAM file.
+     * @return The start of the last chunk of the last reference with content, or -1 if there is none.
+     */
+    @Override
+    public long getStartOfLastLinearBin() {
+        for (int i = contents.length - 1; i >= 0; i--) {
+            if (contents[i] != null && contents[i].chunks.length > 0) {
+                long lastStart = -1;
+                for (int j = 0; j < contents[i].chunks.length; j += 2) {
+                    lastStart = Math.max(lastStart, contents[i].chunks[j]);
+                }
+                return lastStart;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public BAMIndexMetaData getMetaData(final int reference) {
+        if (reference >= contents.length) {
+            return null;
+        }
+        final ReferenceContent content = contents[reference];
+        final List<Chunk> metaDataChunks = new ArrayList<>();
+        if (content != null && content.metaData != null) {
+            metaDataChunks.add(new Chunk(content.metaData[0], content.metaData[1]));
+            metaDataChunks.add(new Chunk(content.metaData[2], content.metaData[3]));
+        }
+        return new BAMIndexMetaData(metaDataChunks);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private ReferenceContent getContent(final int referenceIndex) {
+        return referenceIndex < 0 || referenceIndex >= contents.length ? null : contents[referenceIndex];
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        final CSIIndex that = (CSIIndex) o;
+        return minShift == that.minShift &&
+                depth == that.depth &&
+                Arrays.equals(auxData, that.auxData) &&
+                Arrays.equals(contents, that.contents) &&
+                Objects.equals(noCoordinateCount, that.noCoordinateCount);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = minShift;
+        result = 31 * result + depth;
+        result = 31 * result + Arrays.hashCode(auxData);
+        result = 31 * result + Arrays.hashCode(contents);
+        result = 31 * result + Objects.hashCode(noCoordinateCount);
+        return result;
+    }
+
+    /**
+     * The bins of one reference, held in primitive arrays.
+     */
+    static final class ReferenceContent {
+        /**
+         * Numbers of the bins, in increasing order.
+         */
+        private final int[] bins;
+
+        /**
+         * The smallest virtual file offset of the features overlapping the first smallest bin of each bin.
+         */
+        private final long[] loffsets;
+
+        /**
+         * The chunks of bin bins[i] are chunks chunkStarts[i] to chunkStarts[i + 1] - 1.
+         */
+        private final int[] chunkStarts;
+
+        /**
+         * Start and end virtual file pointers of each chunk, one after the other.
+         */
+        private final long[] chunks;
+
+        /**
+         * First and last virtual file offsets, and counts of mapped and unmapped records, or null.
+         */
+        private final long[] metaData;
+
+        ReferenceContent(final int[] bins, final long[] loffsets, final int[] chunkStarts, final long[] chunks,
+                         final long[] metaData) {
+            this.bins = bins;
+            this.loffsets = loffsets;
+            this.chunkStarts = chunkStarts;
+            this.chunks = chunks;
+            this.metaData = metaData;
+        }
+
+        /**
+         * Adds the chunks of the bins from firstBin to lastBin to the given list.
+         */
+        private void addChunks(final int firstBin, final int lastBin, final List<Chunk> chunkList) {
+            int i = Arrays.binarySearch(bins, firstBin);
+            if (i < 0) {
+                i = -i - 1;
+            }
+            for (; i < bins.length && bins[i] <= lastBin; i++) {
+                for (int j = chunkStarts[i]; j < chunkStarts[i + 1]; j++) {
+                    chunkList.add(new Chunk(chunks[2 * j], chunks[2 * j + 1]));
+                }
+            }
+        }
+
+        /**
+         * Same as samtools: the offset of the given smallest bin, or of the closest bin before it or above it if
+         * it has no chunks.
+         */
+        private long getMinimumOffset(final int smallestBin) {
+            int bin = smallestBin;
+            int i;
+            while ((i = Arrays.binarySearch(bins, bin)) < 0 && bin > 0) {
+                final int firstSibling = (GenomicIndexUtil.getParentBin(bin) << 3) + 1;
+                bin = bin > firstSibling ? bin - 1 : GenomicIndexUtil.getParentBin(bin);
+            }
+            return i >= 0 ? loffsets[i] : 0;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            final ReferenceContent that = (ReferenceContent) o;
+            return Arrays.equals(bins, that.bins) &&
+                    Arrays.equals(loffsets, that.loffsets) &&
+                    Arrays.equals(chunkStarts, that.chunkStarts) &&
+                    Arrays.equals(chunks, that.chunks) &&
+                    Arrays.equals(metaData, that.metaData);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(bins) + Arrays.hashCode(chunks);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.samtools.util.BlockCompressedFilePointerUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builder for a {@link CSIIndex}.  Features must be processed in the order of the file being indexed, i.e. by
+ * reference then by start.  Chunks of a bin are coalesced and the offset of each bin is computed as in
+ * {@link BinningIndexBuilder}, but at the granularity of the smallest bins of the index.
+ */
+public class CSIIndexBuilder {
+    private final int minShift;
+    private final int depth;
+
+    private final List<CSIIndex.ReferenceContent> contents = new ArrayList<>();
+    private long noCoordinateCount = 0;
+
+    // the bins for the current reference
+    private int currentReference = -1;
+    private final Map<Integer, Bin> bins = new HashMap<>();
+
+    // smallest file offset of the features overlapping each smallest bin of the current reference
+    private long[] index = new long[0];
+    private int largestIndexSeen = -1;
+
+    // information in meta data
+    private final BAMIndexMetaData metaData = new BAMIndexMetaData();
+
+    /**
+     * @param minShift Number of bits of the smallest bins, e.g. 14 for 16kbp as in BAI indices.
+     * @param depth Number of levels below the bin covering the whole reference, e.g. 5 as in BAI indices.
+     */
+    public CSIIndexBuilder(final int minShift, final int depth) {
+        if (minShift <= 0 || minShift > 31) {
+            throw new IllegalArgumentException("minShift must be between 1 and 31: " + minShift);
+        }
+        if (depth <= 0 || depth > 9) {
+            throw new IllegalArgumentException("depth must be between 1 and 9: " + depth);
+        }
+        this.minShift = minShift;
+        this.depth = depth;
+    }
+
+    /**
+     * @return the smallest depth for which an index with the given min shift covers the given sequence length,
+     * as chosen by samtools index -c.
+     */
+    public static int getDepthForSequenceLength(final int minShift, final long sequenceLength) {
+        // leave room for features that extend past the end of the reference
+        final long maxLength = sequenceLength + 256;
+        int depth = 0;
+        for (long span = 1L << minShift; maxLength > span; span <<= 3) {
+            depth++;
+        }
+        return Math.max(depth, 1);
+    }
+
+    /**
+     * Same as {@link #processFeature(int, int, int, boolean, long, long)} for a mapped feature.
+     */
+    public void processFeature(final int referenceIndex, final int start, final int end, final long chunkStart,
+                               final long chunkEnd) {
+        processFeature(referenceIndex, start, end, false, chunkStart, chunkEnd);
+    }
+
+    /**
+     * @param referenceIndex reference of the feature, not less than the one of the previous feature
+     * @param start 1-based start of the feature
+     * @param end 1-based inclusive end of the feature, or {@link GenomicIndexUtil#UNSET_GENOMIC_LOCATION}
+     * @param unmapped whether the feature is counted as unmapped in the meta data of the reference
+     * @param chunkStart virtual file pointer to the start of the feature
+     * @param chunkEnd virtual file pointer to the end of the feature
+     */
+    public void processFeature(final int referenceIndex, final int start, final int end, final boolean unmapped,
+                               final long chunkStart, final long chunkEnd) {
+        if (referenceIndex != currentReference) {
+            advanceToReference(referenceIndex);
+        }
+        metaData.recordMetaData(unmapped, chunkStart, chunkEnd);
+
+        // 0-based, half-open
+        final int beg = start - 1;
+        final int stop = end <= 0 ? start : end;
+
+        // process bins
+        final int binNum = GenomicIndexUtil.regionToBin(minShift, depth, beg, stop);
+        final Bin bin = bins.computeIfAbsent(binNum, n -> new Bin(referenceIndex, n));
+
+        // process chunks
+        if (!bin.containsChunks()) {
+            bin.addInitialChunk(new Chunk(chunkStart, chunkEnd));
+        } else {
+            final Chunk lastChunk = bin.getLastChunk();
+            // Coalesce chunks that are in the same or adjacent file blocks, as in BinningIndexBuilder
+            if (BlockCompressedFilePointerUtil.areInSameOrAdjacentBlocks(lastChunk.getChunkEnd(), chunkStart)) {
+                lastChunk.setChunkEnd(chunkEnd);
+            } else {
+                final Chunk newChunk = new Chunk(chunkStart, chunkEnd);
+                bin.getChunkList().add(newChunk);
+                bin.setLastChunk(newChunk);
+            }
+        }
+
+        // process offsets of the smallest bins this feature overlaps
+        final int startWindow = beg >> minShift;
+        final int endWindow = (stop - 1) >> minShift;
+        if (endWindow >= index.length) {
+            index = Arrays.copyOf(index, Math.max(endWindow + 1, 2 * index.length));
+        }
+        largestIndexSeen = Math.max(largestIndexSeen, endWindow);
+        for (int win = startWindow; win <= endWindow; win++) {
+            if (index[win] == 0 || chunkStart < index[win]) {
+                index[win] = chunkStart;
+            }
+        }
+    }
+
+    /**
+     * Counts a feature without coordinates, e.g. an unplaced read at the end of a BAM file.
+     */
+    public void processNoCoordinateFeature() {
+        noCoordinateCount++;
+    }
+
+    /**
+     * Creates the index.  Requires all features have already been processed.
+     * @param numReferences number of references of the file being indexed
+     * @param auxData format specific content of the index, e.g. the tabix header
+     */
+    public CSIIndex build(final int numReferences, final byte[] auxData) {
+        finishReference();
+        if (contents.size() > numReferences) {
+            throw new SAMException("Features were processed for reference " + (contents.size() - 1) +
+                    " but there are only " + numReferences + " references");
+        }
+        final CSIIndex.ReferenceContent[] result = contents.toArray(new CSIIndex.ReferenceContent[numReferences]);
+        return new CSIIndex(minShift, depth, auxData.clone(), result, noCoordinateCount);
+    }
+
+    private void advanceToReference(final int referenceIndex) {
+        if (referenceIndex < currentReference) {
+            throw new SAMException("Unexpected reference " + referenceIndex +
+                    " when constructing index for " + currentReference);
+        }
+        finishReference();
+        while (contents.size() < referenceIndex) {
+            contents.add(null);
+        }
+        currentReference = referenceIndex;
+    }
+
+    private void finishReference() {
+        if (currentReference < 0) {
+            return;
+        }
+        contents.add(generateReferenceContent());
+        bins.clear();
+        Arrays.fill(index, 0, largestIndexSeen + 1, 0);
+        largestIndexSeen = -1;
+        metaData.newReference();
+        currentReference = -1;
+    }
+
+    private CSIIndex.ReferenceContent generateReferenceContent() {
+        // Fill the smallest bins without features as samtools does: from the first offset of the reference
+        // before the first feature, then from the previous bin.
+        long lastOffset = metaData.getFirstOffset();
+        for (int i = 0; i <= largestIndexSeen; i++) {
+            if (index[i] == 0) {
+                index[i] = lastOffset;
+            } else {
+                lastOffset = index[i];
+            }
+        }
+
+        final int[] binNumbers = new int[bins.size()];
+        int i = 0;
+        int numChunks = 0;
+        for (final Bin bin : bins.values()) {
+            binNumbers[i++] = bin.getBinNumber();
+            numChunks += bin.getChunkList().size();
+        }
+        Arrays.sort(binNumbers);
+
+        final long[] loffsets = new long[binNumbers.length];
+        final int[] chunkStarts = new int[binNumbers.length + 1];
+        final long[] chunks = new long[2 * numChunks];
+        for (i = 0; i < binNumbers.length; i++) {
+            final int level = GenomicIndexUtil.getLevelForBin(binNumbers[i]);
+            final int smallestBin = (binNumbers[i] - GenomicIndexUtil.getFirstBinInLevel(level)) << 3 * (depth - level);
+            loffsets[i] = smallestBin <= largestIndexSeen ? index[smallestBin] : 0;
+            int j = chunkStarts[i];
+            for (final Chunk chunk : bins.get(binNumbers[i]).getChunkList()) {
+                chunks[2 * j] = chunk.getChunkStart();
+                chunks[2 * j + 1] = chunk.getChunkEnd();
+                j++;
+            }
+            chunkStarts[i + 1] = j;
+        }
+        final long[] metaDataValues = {metaData.getFirstOffset(), metaData.getLastOffset(),
+                metaData.getAlignedRecordCount(), metaData.getUnalignedRecordCount()};
+        return new CSIIndex.ReferenceContent(binNumbers, loffsets, chunkStarts, chunks, metaDataValues);
+    }
+}
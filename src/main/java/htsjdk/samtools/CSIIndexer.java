@@ -0,0 +1,161 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.Log;
+
+import java.io.File;
+import java.io.OutputStream;
+
+/**
+ * Class for both constructing a CSI index of a BAM file and writing it out, used as {@link BAMIndexer}:
+ * processAlignment is called for each alignment record and finish() is called at the end.  Unlike BAI indices,
+ * CSI indices can have smaller bins than 16kbp and index references longer than 512Mbp.
+ */
+public class CSIIndexer {
+    // The number of references (chromosomes) in the BAM file
+    private final int numReferences;
+
+    private final BlockCompressedOutputStream output;
+
+    private final CSIIndexBuilder indexBuilder;
+
+    /**
+     * @param output     binary CSI index (.csi) file
+     * @param fileHeader header for the corresponding bam file
+     * @param minShift   number of bits of the smallest bins
+     * @param depth      number of levels below the bin covering a whole reference
+     */
+    public CSIIndexer(final File output, final SAMFileHeader fileHeader, final int minShift, final int depth) {
+        this(new BlockCompressedOutputStream(output), fileHeader, minShift, depth);
+    }
+
+    /**
+     * Prepare to index a BAM.
+     *
+     * @param output     Index will be written here.  output will be closed when finish() method is called.
+     * @param fileHeader header for the corresponding bam file.
+     * @param minShift   number of bits of the smallest bins
+     * @param depth      number of levels below the bin covering a whole reference
+     */
+    public CSIIndexer(final OutputStream output, final SAMFileHeader fileHeader, final int minShift, final int depth) {
+        this(new BlockCompressedOutputStream(output, null), fileHeader, minShift, depth);
+    }
+
+    /**
+     * Prepare to index a BAM with the smallest depth that covers the longest reference, as samtools index -c.
+     *
+     * @param output     binary CSI index (.csi) file
+     * @param fileHeader header for the corresponding bam file
+     * @param minShift   number of bits of the smallest bins
+     */
+    public CSIIndexer(final File output, final SAMFileHeader fileHeader, final int minShift) {
+        this(output, fileHeader, minShift, getDepth(fileHeader, minShift));
+    }
+
+    private CSIIndexer(final BlockCompressedOutputStream output, final SAMFileHeader fileHeader, final int minShift,
+                       final int depth) {
+        BAMIndexer.checkSortOrder(fileHeader);
+        this.numReferences = fileHeader.getSequenceDictionary().size();
+        this.indexBuilder = new CSIIndexBuilder(minShift, depth);
+        this.output = output;
+    }
+
+    private static int getDepth(final SAMFileHeader fileHeader, final int minShift) {
+        long maxLength = 0;
+        for (final SAMSequenceRecord sequence : fileHeader.getSequenceDictionary().getSequences()) {
+            maxLength = Math.max(maxLength, sequence.getSequenceLength());
+        }
+        return CSIIndexBuilder.getDepthForSequenceLength(minShift, maxLength);
+    }
+
+    /**
+     * Record any index information for a given BAM record.
+     * Requires a non-null value for rec.getFileSource().
+     *
+     * @param rec The BAM record
+     */
+    public void processAlignment(final SAMRecord rec) {
+        try {
+            if (rec.getAlignmentStart() == SAMRecord.NO_ALIGNMENT_START) {
+                indexBuilder.processNoCoordinateFeature();
+                return;
+            }
+            final SAMFileSource source = rec.getFileSource();
+            if (source == null) {
+                throw new SAMException("No source (virtual file offsets); needed for indexing on BAM Record " + rec);
+            }
+            final Chunk chunk = ((BAMFileSpan) source.getFilePointer()).getSingleChunk();
+            indexBuilder.processFeature(rec.getReferenceIndex(), rec.getAlignmentStart(), rec.getAlignmentEnd(),
+                    rec.getReadUnmappedFlag(), chunk.getChunkStart(), chunk.getChunkEnd());
+        } catch (final Exception e) {
+            throw new SAMException("Exception creating CSI index for record " + rec, e);
+        }
+    }
+
+    /**
+     * After all the alignment records have been processed, finish is called.
+     * Writes the index and closes the output.
+     */
+    public void finish() {
+        try {
+            indexBuilder.build(numReferences, new byte[0]).write(output);
+        } finally {
+            CloserUtil.close(output);
+        }
+    }
+
+    /**
+     * Generates a CSI index file from an input BAM file
+     *
+     * @param reader   SamReader for input BAM file, with {@link SamReaderFactory.Option#INCLUDE_SOURCE_IN_RECORDS}
+     * @param output   File for output index file
+     * @param minShift number of bits of the smallest bins
+     * @param depth    number of levels below the bin covering a whole reference
+     */
+    public static void createIndex(final SamReader reader, final File output, final int minShift, final int depth) {
+        createIndex(reader, output, minShift, depth, null);
+    }
+
+    /**
+     * Generates a CSI index file from an input BAM file
+     *
+     * @param reader   SamReader for input BAM file, with {@link SamReaderFactory.Option#INCLUDE_SOURCE_IN_RECORDS}
+     * @param output   File for output index file
+     * @param minShift number of bits of the smallest bins
+     * @param depth    number of levels below the bin covering a whole reference
+     */
+    public static void createIndex(final SamReader reader, final File output, final int minShift, final int depth,
+                                   final Log log) {
+        final CSIIndexer indexer = new CSIIndexer(output, reader.getFileHeader(), minShift, depth);
+        long totalRecords = 0;
+        for (final SAMRecord rec : reader) {
+            if (++totalRecords % 1000000 == 0) {
+                if (null != log) log.info(totalRecords + " reads processed ...");
+            }
+            indexer.processAlignment(rec);
+        }
+        indexer.finish();
+    }
+}
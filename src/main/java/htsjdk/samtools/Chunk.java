@@ -1,6 +1,7 @@
 package htsjdk.samtools;
 
 import htsjdk.samtools.util.BlockCompressedFilePointerUtil;
+import htsjdk.samtools.util.BlockCompressedStreamConstants;
 
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -141,6 +142,19 @@ public class Chunk implements Cloneable, Serializable,Comparable<Chunk> {
      * @return sorted list of chunks in which adjacent chunks are coalesced.
      */
     public static List<Chunk> optimizeChunkList(final List<Chunk> chunks, final long minimumOffset) {
+        return optimizeChunkList(chunks, minimumOffset, 0);
+    }
+
+    /**
+     * @param minimumOffset Discard chunks that end before this file offset.
+     * @param maxGapBytes If greater than 0, also coalesce chunks when the block in which the next one starts is at most
+     *                    this many compressed bytes after the block in which the previous one ends, so that they are
+     *                    read at once.  The records in between must then be filtered out by the reader.
+     * @return sorted list of chunks in which adjacent chunks, and chunks apart by no more than the given gap,
+     * are coalesced.
+     * @see #getMaxGapForSeekCost(double, double)
+     */
+    public static List<Chunk> optimizeChunkList(final List<Chunk> chunks, final long minimumOffset, final long maxGapBytes) {
         Chunk lastChunk = null;
         Collections.sort(chunks);
         final List<Chunk> result = new ArrayList<Chunk>();
@@ -153,9 +167,9 @@ public class Chunk implements Cloneable, Serializable,Comparable<Chunk> {
                 lastChunk = chunk;
                 continue;
             }
-            // Coalesce chunks that are in adjacent file blocks.
-            // This is a performance optimization.
-            if (!lastChunk.overlaps(chunk) && !lastChunk.isAdjacentTo(chunk)) {
+            // Coalesce chunks that are in adjacent file blocks, or close enough that reading through the gap
+            // is cheaper than seeking over it.  This is a performance optimization.
+            if (!lastChunk.overlaps(chunk) && !lastChunk.isAdjacentTo(chunk) && !lastChunk.isWithinGapOf(chunk, maxGapBytes)) {
                 result.add(chunk);
                 lastChunk = chunk;
             } else {
@@ -166,4 +180,32 @@ public class Chunk implements Cloneable, Serializable,Comparable<Chunk> {
         }
         return result;
     }
+
+    /**
+     * @return true if the given chunk, which starts after this one, starts in a block at most maxGapBytes compressed
+     * bytes after the block in which this one ends.
+     */
+    private boolean isWithinGapOf(final Chunk following, final long maxGapBytes) {
+        return maxGapBytes > 0 &&
+                BlockCompressedFilePointerUtil.getBlockAddress(following.getChunkStart()) -
+                BlockCompressedFilePointerUtil.getBlockAddress(this.getChunkEnd()) <= maxGapBytes;
+    }
+
+    /**
+     * A simple seek-cost model for {@link #optimizeChunkList(List, long, long)}.  Reading two chunks separately costs
+     * a seek plus inflating again the block where the second one starts, while reading them at once costs reading
+     * the compressed bytes in between, so the latter is cheaper when the gap can be read in the time of a seek,
+     * plus one block.
+     * @param seekMillis average time of a seek, e.g. under 0.1ms on SSDs, about 10ms on spinning disks, and tens of
+     *                   milliseconds on network filesystems or over HTTP.
+     * @param megabytesPerSecond sequential read throughput.
+     * @return the largest gap, in compressed bytes, worth reading through rather than seeking over.
+     */
+    public static long getMaxGapForSeekCost(final double seekMillis, final double megabytesPerSecond) {
+        if (seekMillis < 0 || megabytesPerSecond <= 0) {
+            throw new IllegalArgumentException("Invalid seek cost: " + seekMillis + "ms at " + megabytesPerSecond + "MB/s");
+        }
+        // 1 MB/s is 1000 bytes per millisecond
+        return (long) (seekMillis * megabytesPerSecond * 1000) + BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE;
+    }
 }
@@ -0,0 +1,238 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.samtools.seekablestream.SeekableStream;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * A BAM index that loads the content of each reference on first use into primitive arrays (see
+ * {@link CompactBAMIndexContent}), and keeps the most recently used references as long as they fit in a budget of
+ * bytes.  Unlike {@link CachingBAMFileIndex}, which only keeps the last reference, walking intervals across references
+ * does not read the index again as long as the references fit, and the content takes much less memory than
+ * {@link BAMIndexContent}.  A query allocates nothing but the {@link BAMFileSpan} it returns.
+ */
+class CompactBAMFileIndex extends AbstractBAMFileIndex {
+    private static final int INITIAL_SCRATCH_SIZE = 64;
+
+    private final long mMaxCacheBytes;
+
+    // The loaded references, and the least recently used list through them
+    private final CompactBAMIndexContent[] mContents;
+    private CompactBAMIndexContent mMostRecent = null;
+    private CompactBAMIndexContent mLeastRecent = null;
+    private long mCacheBytes = 0;
+
+    // Chunks overlapping the current query, before they are sorted and coalesced
+    private long[] mChunkStarts = new long[INITIAL_SCRATCH_SIZE];
+    private long[] mChunkEnds = new long[INITIAL_SCRATCH_SIZE];
+
+    /**
+     * @param maxCacheBytes Approximate maximum number of bytes taken by the loaded references.  The reference being
+     *                      queried is always kept, even if it does not fit.
+     */
+    public CompactBAMFileIndex(final File file, final SAMSequenceDictionary dictionary, final boolean useMemoryMapping,
+                               final long maxCacheBytes) {
+        super(file, dictionary, useMemoryMapping);
+        this.mMaxCacheBytes = maxCacheBytes;
+        this.mContents = new CompactBAMIndexContent[sequenceIndexes.length - 1];
+    }
+
+    /**
+     * @param maxCacheBytes Approximate maximum number of bytes taken by the loaded references.  The reference being
+     *                      queried is always kept, even if it does not fit.
+     */
+    public CompactBAMFileIndex(final SeekableStream stream, final SAMSequenceDictionary dictionary, final long maxCacheBytes) {
+        super(stream, dictionary);
+        this.mMaxCacheBytes = maxCacheBytes;
+        this.mContents = new CompactBAMIndexContent[sequenceIndexes.length - 1];
+    }
+
+    /**
+     * Get list of regions of BAM file that may contain SAMRecords for the given range
+     * @param referenceIndex sequence of desired SAMRecords
+     * @param startPos 1-based start of the desired interval, inclusive
+     * @param endPos 1-based end of the desired interval, inclusive
+     * @return the virtual file position.  Each pair is the first and last virtual file position
+     *         in a range that can be scanned to find SAMRecords that overlap the given positions.
+     *         May return null if there is no content overlapping the region.
+     */
+    public BAMFileSpan getSpanOverlapping(final int referenceIndex, final int startPos, final int endPos) {
+        if (referenceIndex < 0 || referenceIndex >= mContents.length) {
+            return null;
+        }
+        // same bounds as GenomicIndexUtil.regionToBins
+        final int maxPos = 0x1FFFFFFF;
+        final int start = (startPos <= 0) ? 0 : (startPos - 1) & maxPos;
+        final int end = (endPos <= 0) ? maxPos : (endPos - 1) & maxPos;
+        if (start > end) {
+            return null;
+        }
+        final CompactBAMIndexContent content = getContent(referenceIndex);
+        if (content == null) {
+            return null;
+        }
+
+        final long minimumOffset = content.getMinimumOffset(startPos);
+        int chunkCount = 0;
+        for (int level = 0; level < getNumIndexLevels(); level++) {
+            final int shift = 29 - 3 * level;
+            chunkCount = addChunks(content, getFirstBinInLevel(level) + (start >> shift),
+                    getFirstBinInLevel(level) + (end >> shift), minimumOffset, chunkCount);
+        }
+        if (chunkCount == 0) {
+            return null;
+        }
+
+        // Same result as Chunk.optimizeChunkList: coalesce overlapping and adjacent chunks.
+        sortChunks(chunkCount);
+        final BAMFileSpan span = new BAMFileSpan();
+        long chunkStart = mChunkStarts[0];
+        long chunkEnd = mChunkEnds[0];
+        for (int i = 1; i < chunkCount; i++) {
+            if (mChunkStarts[i] <= chunkEnd) {
+                chunkEnd = Math.max(chunkEnd, mChunkEnds[i]);
+            } else {
+                span.add(new Chunk(chunkStart, chunkEnd));
+                chunkStart = mChunkStarts[i];
+                chunkEnd = mChunkEnds[i];
+            }
+        }
+        span.add(new Chunk(chunkStart, chunkEnd));
+        return span;
+    }
+
+    @Override
+    protected BAMIndexContent getQueryResults(final int referenceIndex) {
+        return query(referenceIndex, 1, -1);
+    }
+
+    /**
+     * @return the approximate number of bytes taken by the loaded references.
+     */
+    long getCacheSizeInBytes() {
+        return mCacheBytes;
+    }
+
+    /**
+     * Returns the content of the given reference, loading it if needed and evicting the least recently used
+     * references that no longer fit.
+     */
+    private CompactBAMIndexContent getContent(final int referenceIndex) {
+        CompactBAMIndexContent content = mContents[referenceIndex];
+        if (content == null) {
+            content = queryCompact(referenceIndex);
+            if (content == null) {
+                return null;
+            }
+            mContents[referenceIndex] = content;
+            mCacheBytes += content.getSizeInBytes();
+            linkFirst(content);
+            while (mCacheBytes > mMaxCacheBytes && mLeastRecent != content) {
+                final CompactBAMIndexContent evicted = mLeastRecent;
+                unlink(evicted);
+                mContents[evicted.getReferenceSequence()] = null;
+                mCacheBytes -= evicted.getSizeInBytes();
+            }
+        } else if (content != mMostRecent) {
+            unlink(content);
+            linkFirst(content);
+        }
+        return content;
+    }
+
+    private void linkFirst(final CompactBAMIndexContent content) {
+        content.mPrevious = null;
+        content.mNext = mMostRecent;
+        if (mMostRecent != null) {
+            mMostRecent.mPrevious = content;
+        } else {
+            mLeastRecent = content;
+        }
+        mMostRecent = content;
+    }
+
+    private void unlink(final CompactBAMIndexContent content) {
+        if (content.mPrevious != null) {
+            content.mPrevious.mNext = content.mNext;
+        } else {
+            mMostRecent = content.mNext;
+        }
+        if (content.mNext != null) {
+            content.mNext.mPrevious = content.mPrevious;
+        } else {
+            mLeastRecent = content.mPrevious;
+        }
+        content.mPrevious = null;
+        content.mNext = null;
+    }
+
+    /**
+     * Appends the chunks of the bins from firstBin to lastBin that end after the minimum offset to the chunks of
+     * the current query.
+     * @return the new number of chunks.
+     */
+    private int addChunks(final CompactBAMIndexContent content, final int firstBin, final int lastBin,
+                          final long minimumOffset, int chunkCount) {
+        for (int bin = content.findBin(firstBin); bin < content.getNumberOfBins() && content.getBinNumber(bin) <= lastBin; bin++) {
+            for (int chunk = content.getFirstChunk(bin); chunk < content.getEndChunk(bin); chunk++) {
+                if (content.getChunkEnd(chunk) <= minimumOffset) {
+                    continue;               // linear index optimization
+                }
+                if (chunkCount == mChunkStarts.length) {
+                    mChunkStarts = Arrays.copyOf(mChunkStarts, 2 * chunkCount);
+                    mChunkEnds = Arrays.copyOf(mChunkEnds, 2 * chunkCount);
+                }
+                mChunkStarts[chunkCount] = content.getChunkStart(chunk);
+                mChunkEnds[chunkCount] = content.getChunkEnd(chunk);
+                chunkCount++;
+            }
+        }
+        return chunkCount;
+    }
+
+    /**
+     * Sorts the chunks of the current query by start then end, in place, with a shell sort.
+     */
+    private void sortChunks(final int chunkCount) {
+        int gap = 1;
+        while (gap < chunkCount / 3) {
+            gap = 3 * gap + 1;
+        }
+        for (; gap > 0; gap /= 3) {
+            for (int i = gap; i < chunkCount; i++) {
+                final long start = mChunkStarts[i];
+                final long end = mChunkEnds[i];
+                int j = i;
+                while (j >= gap && (mChunkStarts[j - gap] > start || (mChunkStarts[j - gap] == start && mChunkEnds[j - gap] > end))) {
+                    mChunkStarts[j] = mChunkStarts[j - gap];
+                    mChunkEnds[j] = mChunkEnds[j - gap];
+                    j -= gap;
+                }
+                mChunkStarts[j] = start;
+                mChunkEnds[j] = end;
+            }
+        }
+    }
+}
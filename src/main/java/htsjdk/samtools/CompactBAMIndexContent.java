@@ -0,0 +1,138 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+/**
+ * The bins, chunks and linear index of one reference of a BAM index, held in primitive arrays rather than in
+ * {@link Bin}, {@link Chunk} and {@link LinearIndex} objects as in {@link BAMIndexContent}, which takes a fraction of
+ * the memory.  The meta data pseudo-bin is not included.
+ *
+ * @see CompactBAMFileIndex
+ */
+class CompactBAMIndexContent {
+    // Approximate size of an object header and of an array header
+    private static final int OBJECT_OVERHEAD = 16;
+
+    private final int mReferenceSequence;
+
+    /**
+     * Numbers of the bins that have chunks, in increasing order.
+     */
+    private final int[] mBins;
+
+    /**
+     * The chunks of bin mBins[i] are chunks mChunkStarts[i] to mChunkStarts[i + 1] - 1.
+     */
+    private final int[] mChunkStarts;
+
+    /**
+     * Start and end virtual file pointers of each chunk, one after the other.
+     */
+    private final long[] mChunks;
+
+    /**
+     * The linear index entries of the reference, starting with the first 16kbp window.
+     */
+    private final long[] mLinearIndex;
+
+    // Neighbours in the least recently used list of CompactBAMFileIndex
+    CompactBAMIndexContent mPrevious;
+    CompactBAMIndexContent mNext;
+
+    /**
+     * @param referenceSequence Content corresponds to this reference.
+     * @param bins Numbers of the bins, in increasing order.
+     * @param chunkStarts Index of the first chunk of each bin, followed by the number of chunks.
+     * @param chunks Start and end of each chunk.
+     * @param linearIndex The linear index.
+     */
+    CompactBAMIndexContent(final int referenceSequence, final int[] bins, final int[] chunkStarts, final long[] chunks,
+                           final long[] linearIndex) {
+        this.mReferenceSequence = referenceSequence;
+        this.mBins = bins;
+        this.mChunkStarts = chunkStarts;
+        this.mChunks = chunks;
+        this.mLinearIndex = linearIndex;
+    }
+
+    int getReferenceSequence() {
+        return mReferenceSequence;
+    }
+
+    int getNumberOfBins() {
+        return mBins.length;
+    }
+
+    int getBinNumber(final int binIndex) {
+        return mBins[binIndex];
+    }
+
+    /**
+     * @return the index of the first bin whose number is not less than the given one, or the number of bins if
+     * there is none.
+     */
+    int findBin(final int binNumber) {
+        int low = 0;
+        int high = mBins.length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (mBins[middle] < binNumber) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    int getFirstChunk(final int binIndex) {
+        return mChunkStarts[binIndex];
+    }
+
+    int getEndChunk(final int binIndex) {
+        return mChunkStarts[binIndex + 1];
+    }
+
+    long getChunkStart(final int chunkIndex) {
+        return mChunks[2 * chunkIndex];
+    }
+
+    long getChunkEnd(final int chunkIndex) {
+        return mChunks[2 * chunkIndex + 1];
+    }
+
+    /**
+     * @see LinearIndex#getMinimumOffset(int)
+     */
+    long getMinimumOffset(final int startPos) {
+        final int linearBin = LinearIndex.convertToLinearIndexOffset(startPos);
+        return linearBin < mLinearIndex.length ? mLinearIndex[linearBin] : 0;
+    }
+
+    /**
+     * @return the approximate number of bytes of heap taken by this content.
+     */
+    long getSizeInBytes() {
+        return OBJECT_OVERHEAD * 5 +
+                4L * mBins.length + 4L * mChunkStarts.length + 8L * mChunks.length + 8L * mLinearIndex.length;
+    }
+}
@@ -25,6 +25,7 @@ package htsjdk.samtools;
 
 import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.PeekableIterator;
+import htsjdk.samtools.util.SortKeyComparator;
 
 import java.util.Comparator;
 
@@ -32,11 +33,19 @@ import java.util.Comparator;
  * Iterator for SAM records that implements comparable to enable sorting of iterators.
  * The comparison is performed by comparing the next record in the iterator to the next
  * record in another iterator and returning the ordering between those SAM records.
+ * If the comparator is a {@link SortKeyComparator} with keys, the keys of the next record are computed once
+ * and compared first.
  */
 class ComparableSamRecordIterator extends PeekableIterator<SAMRecord> implements Comparable<ComparableSamRecordIterator> {
     private final Comparator<SAMRecord> comparator;
+    private final SortKeyComparator<SAMRecord> sortKeyComparator;
     private final SamReader reader;
 
+    // the record whose keys were last computed, and its keys
+    private SAMRecord keyedRecord = null;
+    private long sortKey;
+    private long tieBreakKey;
+
     /**
      * Constructs a wrapping iterator around the given iterator that will be able
      * to compare itself to other ComparableSamRecordIterators using the given comparator.
@@ -48,6 +57,7 @@ class ComparableSamRecordIterator extends PeekableIterator<SAMRecord> implements
         super(iterator);
         this.reader = sam;
         this.comparator = comparator;
+        this.sortKeyComparator = SortKeyComparator.getSortKeyComparator(comparator);
     }
 
     /** Returns the reader from which this iterator was constructed. */
@@ -55,6 +65,12 @@ class ComparableSamRecordIterator extends PeekableIterator<SAMRecord> implements
         return reader;
     }
 
+    @Override
+    public SAMRecord next() {
+        keyedRecord = null;
+        return super.next();
+    }
+
     /**
      * Compares this iterator to another comparable iterator based on the next record
      * available in each iterator.  If the two comparable iterators have different
@@ -71,9 +87,23 @@ class ComparableSamRecordIterator extends PeekableIterator<SAMRecord> implements
 
         final SAMRecord record = this.peek();
         final SAMRecord record2 = that.peek();
+        if (sortKeyComparator != null) {
+            this.computeKeys(record);
+            that.computeKeys(record2);
+            return sortKeyComparator.compare(this.sortKey, this.tieBreakKey, record,
+                    that.sortKey, that.tieBreakKey, record2);
+        }
         return comparator.compare(record, record2);
     }
 
+    private void computeKeys(final SAMRecord record) {
+        if (record != keyedRecord) {
+            sortKey = sortKeyComparator.getSortKey(record);
+            tieBreakKey = sortKeyComparator.getTieBreakKey(record);
+            keyedRecord = record;
+        }
+    }
+
     @Override
     public boolean equals(final Object o) {
         if (this == o) return true;
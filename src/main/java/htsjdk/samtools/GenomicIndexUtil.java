@@ -97,4 +97,89 @@ public class GenomicIndexUtil {
         return bitSet;
     }
 
+    /**
+     * Gets the first bin in the given level of a binning index of any depth, such as a CSI index.
+     * @param level 0-based level, 0 being the bin covering the whole reference.
+     */
+    public static int getFirstBinInLevel(final int level) {
+        return ((1 << 3 * level) - 1) / 7;
+    }
+
+    /**
+     * Gets the level of the given bin in a binning index of any depth, such as a CSI index.
+     */
+    public static int getLevelForBin(final int bin) {
+        int level = 0;
+        for (int b = bin; b > 0; b = getParentBin(b)) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * Gets the bin one level up that contains the given bin.  Not defined for bin 0.
+     */
+    public static int getParentBin(final int bin) {
+        return (bin - 1) >> 3;
+    }
+
+    /**
+     * Gets the number of the pseudo-bin holding the meta data of a reference in a binning index with the given
+     * depth.  This is one more than the last real bin, e.g. {@link #MAX_BINS} for BAI and tabix indices.
+     * @param depth Number of levels below the bin covering the whole reference.
+     */
+    public static int getMetaDataBin(final int depth) {
+        return getFirstBinInLevel(depth + 1) + 1;
+    }
+
+    /**
+     * Reports the amount of genomic data that a binning index of the given shape can index, e.g.
+     * {@link #BIN_GENOMIC_SPAN} for 14 and 5.
+     * @param minShift Number of bits of the smallest bins.
+     * @param depth Number of levels below the bin covering the whole reference.
+     */
+    public static long getGenomicSpan(final int minShift, final int depth) {
+        return 1L << (minShift + 3 * depth);
+    }
+
+    /**
+     * calculate the bin given an alignment in [beg,end) in a binning index of any shape, such as a CSI index.
+     * {@link #regionToBin(int, int)} is the same for 14 and 5.
+     * @param minShift Number of bits of the smallest bins.
+     * @param depth Number of levels below the bin covering the whole reference.
+     * @param beg 0-based start of read (inclusive)
+     * @param end 0-based end of read (exclusive)
+     */
+    public static int regionToBin(final int minShift, final int depth, final int beg, int end) {
+        --end;
+        int shift = minShift;
+        for (int level = depth; level > 0; --level, shift += 3) {
+            if ((long) beg >> shift == (long) end >> shift) return getFirstBinInLevel(level) + (int) ((long) beg >> shift);
+        }
+        return 0;
+    }
+
+    /**
+     * Get candidate bins for the specified region in a binning index of any shape, such as a CSI index.
+     * @param minShift Number of bits of the smallest bins.
+     * @param depth Number of levels below the bin covering the whole reference.
+     * @param startPos 1-based start of target region, inclusive.
+     * @param endPos 1-based end of target region, inclusive.
+     * @return bit set for each bin that may contain SAMRecords in the target region.
+     */
+    public static BitSet regionToBins(final int minShift, final int depth, final int startPos, final int endPos) {
+        final long maxPos = getGenomicSpan(minShift, depth) - 1;
+        final long start = (startPos <= 0) ? 0 : startPos - 1;
+        final long end = (endPos <= 0) ? maxPos : Math.min(endPos - 1, maxPos);
+        if (start > end) {
+            return null;
+        }
+        final BitSet bitSet = new BitSet();
+        for (int level = 0; level <= depth; level++) {
+            final int shift = minShift + 3 * (depth - level);
+            final int firstBin = getFirstBinInLevel(level);
+            bitSet.set(firstBin + (int) (start >> shift), firstBin + (int) (end >> shift) + 1);
+        }
+        return bitSet;
+    }
 }
@@ -225,6 +225,17 @@ public class MergingSamRecordIterator implements CloseableIterator<SAMRecord> {
             return samRecord1.getAlignmentStart() - samRecord2.getAlignmentStart();
         }
 
+        @Override
+        public boolean hasSortKeys() {
+            return true;
+        }
+
+        @Override
+        public long getSortKey(final SAMRecord samRecord) {
+            return getCoordinateKey(getReferenceIndex(samRecord), samRecord.getAlignmentStart(),
+                    samRecord.getReadNegativeStrandFlag());
+        }
+
         private int getReferenceIndex(final SAMRecord samRecord) {
             if (samRecord.getReferenceIndex() != SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX) {
                 return samHeaderMerger.getMergedSequenceIndex(samRecord.getHeader(), samRecord.getReferenceIndex());
@@ -0,0 +1,315 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.DaemonThreadFactory;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Queries many intervals of an indexed BAM or CRAM file on a pool of worker threads.  Each worker reads through a
+ * {@link SamReader} of its own, opened on the same file, path or URL, while the index is only loaded once, by
+ * the reader of the thread that submits the queries, which works out the part of the file to read for each interval.
+ * <p>
+ * Results are available either as a single iterator, in coordinate order like {@link SamReader#query(QueryInterval[], boolean)},
+ * see {@link #query(QueryInterval[], boolean)}, or interval by interval through a callback, see
+ * {@link #query(QueryInterval[], boolean, IntervalCallback)}.  In both cases the records matching an interval are held
+ * in memory until they are consumed, so this is meant for many small intervals, such as the exons of a gene panel,
+ * rather than for a few large ones.
+ */
+public class ParallelQueryExecutor implements Closeable {
+    // Number of intervals queried ahead of the merged iterator, per worker thread
+    private static final int INTERVALS_AHEAD_PER_THREAD = 4;
+
+    private final SamReaderFactory factory;
+    private final SamInputResource resource;
+    private final int threads;
+    private final SamReader reader;
+    private final BAMIndex index;
+    private final ExecutorService executor;
+
+    // Readers of the worker threads that are not in use, and all the readers that have been opened for the workers
+    private final BlockingQueue<SamReader> idleReaders = new LinkedBlockingQueue<>();
+    private final List<SamReader> workerReaders = Collections.synchronizedList(new ArrayList<SamReader>());
+
+    /**
+     * Receives the records matching each interval of {@link #query(QueryInterval[], boolean, IntervalCallback)}.
+     */
+    public interface IntervalCallback {
+        /**
+         * Called on a worker thread, possibly at the same time as for other intervals.
+         *
+         * @param intervalIndex index of the interval in the array passed to query().
+         * @param interval the interval.
+         * @param records the records matching the interval, in coordinate order.
+         */
+        void onInterval(int intervalIndex, QueryInterval interval, List<SAMRecord> records);
+    }
+
+    /**
+     * @param factory factory used to open the readers.
+     * @param resource an indexed BAM or CRAM file, which must be a file, path or URL so that it can be opened once per
+     *                 worker thread.
+     * @param threads number of worker threads.
+     */
+    public ParallelQueryExecutor(final SamReaderFactory factory, final SamInputResource resource, final int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Invalid number of threads: " + threads);
+        }
+        final InputResource.Type type = resource.data().type();
+        if (type == InputResource.Type.SEEKABLE_STREAM || type == InputResource.Type.INPUT_STREAM) {
+            throw new IllegalArgumentException("Cannot query a stream in parallel: " + resource);
+        }
+        this.factory = factory;
+        this.resource = resource;
+        this.threads = threads;
+        this.reader = factory.open(resource);
+        if (!reader.hasIndex()) {
+            CloserUtil.close(reader);
+            throw new IllegalArgumentException("Cannot query a file without an index: " + resource);
+        }
+        this.index = reader.indexing().getIndex();
+        this.executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("ParallelQueryExecutor-"));
+    }
+
+    public SAMFileHeader getFileHeader() {
+        return reader.getFileHeader();
+    }
+
+    /**
+     * Queries the given intervals, returning the matching records in coordinate order, each only once even if it
+     * matches several intervals, like {@link SamReader#query(QueryInterval[], boolean)}.  The records are read on the
+     * worker threads a few intervals ahead of the iterator.  Unlike the iterators of a SamReader, several of these
+     * iterators may be open at the same time.
+     *
+     * @param intervals the intervals, which need not be sorted or optimized.
+     * @param contained If true, the records must be completely contained in an interval, otherwise they need only
+     *                  overlap one.
+     */
+    public CloseableIterator<SAMRecord> query(final QueryInterval[] intervals, final boolean contained) {
+        return new MergedIterator(QueryInterval.optimizeIntervals(intervals), contained);
+    }
+
+    /**
+     * Queries the given intervals, passing the records matching each interval to the callback, from the worker
+     * threads and in no particular order of intervals.  A record that matches several intervals is passed with each
+     * of them.  Returns when the callback has been called for every interval.
+     *
+     * @param intervals the intervals, in any order.
+     * @param contained If true, the records must be completely contained in the interval, otherwise they need only
+     *                  overlap it.
+     * @param callback receives the records of each interval; must be thread-safe.
+     */
+    public void query(final QueryInterval[] intervals, final boolean contained, final IntervalCallback callback) {
+        final List<Future<List<SAMRecord>>> futures = new ArrayList<>(intervals.length);
+        try {
+            for (int i = 0; i < intervals.length; ++i) {
+                final int intervalIndex = i;
+                final QueryInterval interval = intervals[i];
+                final SAMFileSpan span = getSpan(interval);
+                futures.add(executor.submit(() -> {
+                    final List<SAMRecord> records = queryInterval(interval, null, contained, span);
+                    callback.onInterval(intervalIndex, interval, records);
+                    return records;
+                }));
+            }
+            for (final Future<List<SAMRecord>> future : futures) {
+                getResult(future);
+            }
+        } finally {
+            for (final Future<List<SAMRecord>> future : futures) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Stops the worker threads and closes the readers.  Iterators returned by query() must not be used afterwards.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        CloserUtil.close(reader);
+        synchronized (workerReaders) {
+            CloserUtil.close(new ArrayList<Object>(workerReaders));
+        }
+    }
+
+    /**
+     * @return the part of the file that holds the records overlapping the given interval, or null if there is none.
+     * Synchronized because the index caches the bins it has read, and iterators may be used from several threads.
+     */
+    private synchronized SAMFileSpan getSpan(final QueryInterval interval) {
+        final BAMFileSpan span = index.getSpanOverlapping(interval.referenceIndex, interval.start, interval.end);
+        return span == null || span.isEmpty() ? null : span;
+    }
+
+    /**
+     * Reads the records matching an interval, on a worker thread.
+     *
+     * @param previous if not null, the records that also overlap this interval are skipped.
+     */
+    private List<SAMRecord> queryInterval(final QueryInterval interval, final QueryInterval previous,
+                                          final boolean contained, final SAMFileSpan span) {
+        final List<SAMRecord> records = new ArrayList<>();
+        if (span == null) {
+            return records;
+        }
+        SamReader workerReader = idleReaders.poll();
+        if (workerReader == null) {
+            workerReader = openWorkerReader();
+            workerReaders.add(workerReader);
+        }
+        try (final SAMRecordIterator iterator = workerReader.indexing().iterator(span)) {
+            while (iterator.hasNext()) {
+                final SAMRecord record = iterator.next();
+                final BAMIteratorFilter.IntervalComparison comparison =
+                        BAMQueryMultipleIntervalsIteratorFilter.compareIntervalToRecord(interval, record);
+                if (comparison == BAMIteratorFilter.IntervalComparison.BEFORE) {
+                    // past the end of the interval
+                    break;
+                }
+                if (comparison == BAMIteratorFilter.IntervalComparison.CONTAINED ||
+                        (comparison == BAMIteratorFilter.IntervalComparison.OVERLAPPING && !contained)) {
+                    if (previous == null || BAMQueryMultipleIntervalsIteratorFilter.compareIntervalToRecord(previous, record) ==
+                            BAMIteratorFilter.IntervalComparison.BEFORE) {
+                        records.add(record);
+                    }
+                }
+            }
+        } finally {
+            idleReaders.add(workerReader);
+        }
+        return records;
+    }
+
+    /**
+     * Opens another reader of the data, without its index.  A new resource is needed because a resource holds on to
+     * the stream it opened for the first reader.
+     */
+    private SamReader openWorkerReader() {
+        final InputResource data = resource.data();
+        switch (data.type()) {
+            case FILE:
+                return factory.open(SamInputResource.of(data.asFile()));
+            case PATH:
+                return factory.open(SamInputResource.of(data.asPath()));
+            case URL:
+                return factory.open(SamInputResource.of(data.asUrl()));
+            case SRA_ACCESSION:
+                return factory.open(SamInputResource.of(data.asSRAAccession()));
+            default:
+                throw new IllegalStateException("Unexpected resource type: " + data.type());
+        }
+    }
+
+    private static List<SAMRecord> getResult(final Future<List<SAMRecord>> future) {
+        try {
+            return future.get();
+        } catch (final InterruptedException ie) {
+            throw new RuntimeException("Interrupted waiting for query results", ie);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Returns the records of optimized intervals in order, querying a few intervals ahead on the worker threads.
+     * Since the intervals do not overlap, the records of each interval follow those of the previous one in
+     * coordinate order, except those that also overlap the previous interval, which are skipped.
+     */
+    private class MergedIterator implements CloseableIterator<SAMRecord> {
+        private final QueryInterval[] intervals;
+        private final boolean contained;
+        private final Deque<Future<List<SAMRecord>>> pending = new ArrayDeque<>();
+        private int nextInterval = 0;
+        private Iterator<SAMRecord> current = Collections.<SAMRecord>emptyList().iterator();
+
+        MergedIterator(final QueryInterval[] intervals, final boolean contained) {
+            this.intervals = intervals;
+            this.contained = contained;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                while (pending.size() < threads * INTERVALS_AHEAD_PER_THREAD && nextInterval < intervals.length) {
+                    final QueryInterval interval = intervals[nextInterval];
+                    final QueryInterval previous = nextInterval > 0 ? intervals[nextInterval - 1] : null;
+                    final SAMFileSpan span = getSpan(interval);
+                    pending.add(executor.submit(() -> queryInterval(interval, previous, contained, span)));
+                    ++nextInterval;
+                }
+                if (pending.isEmpty()) {
+                    return false;
+                }
+                current = getResult(pending.remove()).iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public SAMRecord next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("next called on exhausted iterator");
+            }
+            return current.next();
+        }
+
+        @Override
+        public void close() {
+            for (final Future<List<SAMRecord>> future : pending) {
+                future.cancel(false);
+            }
+            pending.clear();
+            nextInterval = intervals.length;
+            current = Collections.<SAMRecord>emptyList().iterator();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Not supported: remove");
+        }
+    }
+}
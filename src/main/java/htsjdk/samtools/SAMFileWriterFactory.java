@@ -55,6 +55,7 @@ public class SAMFileWriterFactory implements Cloneable {
     private SamFlagField samFlagFieldOutput = SamFlagField.NONE;
     private Integer maxRecordsInRam = null;
     private DeflaterFactory deflaterFactory = BlockCompressedOutputStream.getDefaultDeflaterFactory();
+    private int compressionThreads = BlockCompressedOutputStream.getDefaultCompressionThreads();
 
     /** simple constructor */
     public SAMFileWriterFactory() {
@@ -71,6 +72,7 @@ public class SAMFileWriterFactory implements Cloneable {
         this.tmpDir = other.tmpDir;
         this.compressionLevel = other.compressionLevel;
         this.maxRecordsInRam = other.maxRecordsInRam;
+        this.compressionThreads = other.compressionThreads;
     }
     
     @Override
@@ -105,6 +107,24 @@ public class SAMFileWriterFactory implements Cloneable {
         return this;
     }
 
+    /**
+     * Set the number of threads used to compress the blocks of BAM files, or to build and compress the containers of
+     * CRAM files, created by this writer factory.
+     * 0 means that blocks are compressed by the thread writing the records.  If this method is not called,
+     * {@link BlockCompressedOutputStream#getDefaultCompressionThreads()} is used.
+     * This method returns the SAMFileWriterFactory itself. */
+    public SAMFileWriterFactory setCompressionThreads(final int compressionThreads) {
+        if (compressionThreads < 0) {
+            throw new IllegalArgumentException("Invalid number of compression threads: " + compressionThreads);
+        }
+        this.compressionThreads = compressionThreads;
+        return this;
+    }
+
+    public int getCompressionThreads() {
+        return compressionThreads;
+    }
+
     /** set compression level 0!none 9: max */
     public SAMFileWriterFactory setCompressionLevel(final int compressionLevel) {
         this.compressionLevel = Math.min(9, Math.max(0, compressionLevel));
@@ -232,7 +252,7 @@ public class SAMFileWriterFactory implements Cloneable {
             }
             OutputStream os = IOUtil.maybeBufferOutputStream(new FileOutputStream(outputFile, false), bufferSize);
             if (createMd5File) os = new Md5CalculatingOutputStream(os, new File(outputFile.getAbsolutePath() + ".md5"));
-            final BAMFileWriter ret = new BAMFileWriter(os, outputFile, compressionLevel, deflaterFactory);
+            final BAMFileWriter ret = new BAMFileWriter(os, outputFile, compressionLevel, deflaterFactory, compressionThreads);
             final boolean createIndex = this.createIndex && IOUtil.isRegularPath(outputFile);
             if (this.createIndex && !createIndex) {
                 log.warn("Cannot create index for BAM because output file is not a regular file: " + outputFile.getAbsolutePath());
@@ -322,7 +342,7 @@ public class SAMFileWriterFactory implements Cloneable {
      */
 
     public SAMFileWriter makeBAMWriter(final SAMFileHeader header, final boolean presorted, final OutputStream stream) {
-        return initWriter(header, presorted, true, new BAMFileWriter(stream, null, this.getCompressionLevel(), this.deflaterFactory));
+        return initWriter(header, presorted, true, new BAMFileWriter(stream, null, this.getCompressionLevel(), this.deflaterFactory, this.compressionThreads));
     }
 
     /**
@@ -484,6 +504,7 @@ public class SAMFileWriterFactory implements Cloneable {
                 header,
                 outputFile.getAbsolutePath());
         setCRAMWriterDefaults(writer);
+        writer.setCompressionThreads(compressionThreads);
 
         return writer;
     }
@@ -0,0 +1,572 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.RuntimeIOException;
+import htsjdk.samtools.util.SortedFileMerger;
+import htsjdk.samtools.util.SortingCollection;
+import htsjdk.samtools.util.TempStreamFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.ToLongFunction;
+
+/**
+ * Sorts SAMRecords like a {@link SortingCollection} of SAMRecords, but keeps them in memory in their BAM encoded form,
+ * in large byte array slabs, rather than as SAMRecord object graphs.  The records are sorted through an index of
+ * (64-bit key, location in the slabs) entries, with a radix sort on the keys.  The keys are a prefix of the sort
+ * order: for coordinate order they pack the reference, start and strand, and for queryname order the first characters
+ * of the read name.  Records with equal keys are compared on their encoded fields, the read name then the flags and
+ * other fixed-size fields, so that records are not decoded to be sorted, except for queryname ties that can only be
+ * broken by the HI tag.  Only {@link SAMRecordCoordinateComparator} and {@link SAMRecordQueryNameComparator} are
+ * supported, since other comparators could not be keyed.
+ *
+ * Records are spilled to temporary files straight from the slabs when their encoded size, plus that of the index,
+ * would exceed the given memory budget, and the files are merged like those of {@link SortingCollection}, with a
+ * {@link SortedFileMerger}.
+ *
+ * As with {@link SortingCollection}, the records returned may not be identical to the records added, but they are
+ * equal as determined by {@link BAMRecordCodec}.  Records comparing equal are returned in the order they were added.
+ */
+public class SAMRecordArenaSorter implements Iterable<SAMRecord> {
+    /** Size of the slabs records are stored in, unless the memory budget is smaller. */
+    static final int DEFAULT_SLAB_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * Memory used by an entry of the index: its key and location.  The index arrays are charged for their capacity,
+     * and the radix sort allocates buffers of one entry per record.
+     */
+    static final int INDEX_BYTES_PER_ENTRY = 16;
+
+    private static final int INITIAL_INDEX_CAPACITY = 1024;
+
+    /** Records with equal keys are sorted with an insertion sort up to this many, else with a merge sort. */
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    /** The minimum amount of space free on a temp filesystem to write a file there. */
+    private static final long TMP_SPACE_FREE = IOUtil.FIVE_GBS;
+
+    // Offsets of the fields of an encoded record, from the start of its block size
+    private static final int READ_NAME_LENGTH_OFFSET = 12;
+    private static final int MAPPING_QUALITY_OFFSET = 13;
+    private static final int FLAGS_OFFSET = 18;
+    private static final int MATE_REFERENCE_INDEX_OFFSET = 24;
+    private static final int MATE_ALIGNMENT_START_OFFSET = 28;
+    private static final int INSERT_SIZE_OFFSET = 32;
+    private static final int READ_NAME_OFFSET = 36;
+
+    /** Fields compared in coordinate order after the mapping quality. */
+    private static final int[] MATE_FIELD_OFFSETS = {MATE_REFERENCE_INDEX_OFFSET, MATE_ALIGNMENT_START_OFFSET, INSERT_SIZE_OFFSET};
+
+    /** Flags compared in queryname order after the pair flags, records without the flag first. */
+    private static final SAMFlag[] QUERY_NAME_FLAGS = {SAMFlag.READ_REVERSE_STRAND, SAMFlag.NOT_PRIMARY_ALIGNMENT,
+            SAMFlag.SUPPLEMENTARY_ALIGNMENT};
+
+    private final SAMFileHeader header;
+    private final SAMRecordComparator comparator;
+    private final boolean queryNameOrder;
+    private final ToLongFunction<SAMRecord> prefixKey;
+    private final long maxBytesInRam;
+    private final File[] tmpDirs;
+    private TempStreamFactory tempStreamFactory = new TempStreamFactory();
+    private int maxMergeFanIn = Integer.MAX_VALUE;
+
+    /** Records are encoded into recordBuffer, then copied into the slabs. */
+    private final BAMRecordCodec encoder;
+    private final RecordBuffer recordBuffer = new RecordBuffer();
+
+    private final int slabSize;
+    private final List<byte[]> slabs = new ArrayList<>();
+    private int currentSlab = 0;
+    private int slabPosition = 0;
+    private long bytesInSlabs = 0;
+
+    /** Key and location (slab index in the upper 32 bits, offset in the lower ones) of each record in memory. */
+    private long[] keys = new long[INITIAL_INDEX_CAPACITY];
+    private long[] locations = new long[INITIAL_INDEX_CAPACITY];
+    private int numRecordsInRam = 0;
+    private boolean sorted = false;
+
+    /** Files of sorted records, in the order they were spilled. */
+    private final List<File> files = new ArrayList<>();
+
+    private boolean doneAdding = false;
+    private boolean cleanedUp = false;
+
+    /**
+     * @param header header of the records, used to encode and decode them
+     * @param comparator Defines output sort order, a {@link SAMRecordCoordinateComparator} or a
+     *                   {@link SAMRecordQueryNameComparator}
+     * @param maxBytesInRam approximate number of bytes of encoded records and index to keep in memory before
+     *                      spilling to disk
+     * @param tmpDirs Where to write files of records that will not fit in RAM
+     */
+    public SAMRecordArenaSorter(final SAMFileHeader header, final SAMRecordComparator comparator,
+                                final long maxBytesInRam, final File... tmpDirs) {
+        if (maxBytesInRam <= 0) {
+            throw new IllegalArgumentException("maxBytesInRam must be > 0");
+        }
+        if (tmpDirs == null || tmpDirs.length == 0) {
+            throw new IllegalArgumentException("At least one temp directory must be provided.");
+        }
+        this.header = header;
+        this.comparator = comparator;
+        this.queryNameOrder = comparator.getClass() == SAMRecordQueryNameComparator.class;
+        this.prefixKey = getPrefixKey(comparator);
+        this.maxBytesInRam = maxBytesInRam;
+        this.tmpDirs = tmpDirs;
+        this.slabSize = (int) Math.min(DEFAULT_SLAB_SIZE, maxBytesInRam);
+        this.encoder = new BAMRecordCodec(header);
+        this.encoder.setOutputStream(recordBuffer);
+    }
+
+    /**
+     * @return a function of records whose result is consistent with the order of the comparator, i.e. a record with
+     * a smaller key than another one is before it.  Records with equal keys must be compared with the comparator.
+     * @throws IllegalArgumentException if the order of the comparator is not known
+     */
+    static ToLongFunction<SAMRecord> getPrefixKey(final SAMRecordComparator comparator) {
+        // subclasses might change the order
+        if (comparator.getClass() == SAMRecordCoordinateComparator.class) {
+            return SAMRecordArenaSorter::getCoordinateKey;
+        } else if (comparator.getClass() == SAMRecordQueryNameComparator.class) {
+            return SAMRecordArenaSorter::getQueryNameKey;
+        } else {
+            throw new IllegalArgumentException("Unsupported comparator " + comparator.getClass().getName() +
+                    "; use a SortingCollection instead.");
+        }
+    }
+
+    /**
+     * @return the reference (unmapped records last), then the start, then the strand (negative last) of the record,
+     * packed as in {@link SAMRecordCoordinateComparator}.
+     */
+    static long getCoordinateKey(final SAMRecord record) {
+        return SAMRecordCoordinateComparator.getCoordinateKey(record.getReferenceIndex(), record.getAlignmentStart(),
+                record.getReadNegativeStrandFlag());
+    }
+
+    /**
+     * @return the first 8 characters of the read name, see {@link SAMRecordQueryNameComparator#getReadNameKey(String)}.
+     */
+    static long getQueryNameKey(final SAMRecord record) {
+        return SAMRecordQueryNameComparator.getReadNameKey(record.getReadName());
+    }
+
+    public void add(final SAMRecord record) {
+        if (doneAdding) {
+            throw new IllegalStateException("Cannot add after calling doneAdding()");
+        }
+        recordBuffer.reset();
+        encoder.encode(record);
+        final int length = recordBuffer.size();
+        if (numRecordsInRam > 0) {
+            // the index arrays, grown if full, and the buffers the radix sort will allocate
+            final long indexCapacity = numRecordsInRam < keys.length ? keys.length : 2L * keys.length;
+            final long indexBytes = INDEX_BYTES_PER_ENTRY * (indexCapacity + numRecordsInRam + 1);
+            if (bytesInSlabs + length + indexBytes > maxBytesInRam) {
+                spillToDisk();
+            }
+        }
+
+        if (numRecordsInRam == keys.length) {
+            keys = Arrays.copyOf(keys, 2 * keys.length);
+            locations = Arrays.copyOf(locations, 2 * locations.length);
+        }
+        keys[numRecordsInRam] = prefixKey.applyAsLong(record);
+        locations[numRecordsInRam] = allocate(length);
+        numRecordsInRam++;
+        sorted = false;
+    }
+
+    /**
+     * Copies the record in recordBuffer into the slabs.
+     * @return the location of the record
+     */
+    private long allocate(final int length) {
+        if (slabPosition > 0 && slabPosition + length > slabs.get(currentSlab).length) {
+            // count the end of the slab as used, so that the memory used stays within the budget
+            bytesInSlabs += slabs.get(currentSlab).length - slabPosition;
+            currentSlab++;
+            slabPosition = 0;
+        }
+        if (currentSlab == slabs.size()) {
+            slabs.add(new byte[Math.max(slabSize, length)]);
+        } else if (slabs.get(currentSlab).length < length) {
+            // records larger than a slab get a slab of their own, before the unused slabs
+            slabs.add(currentSlab, new byte[length]);
+        }
+        System.arraycopy(recordBuffer.array(), 0, slabs.get(currentSlab), slabPosition, length);
+        final long location = (long) currentSlab << 32 | slabPosition;
+        slabPosition += length;
+        bytesInSlabs += length;
+        return location;
+    }
+
+    /**
+     * This method can be called after caller is done adding records, in order to spill the last records to disk
+     * if others already were.  If iterator() is called immediately after caller is done adding, this is not
+     * necessary, because iterator() does the same.
+     */
+    public void doneAdding() {
+        if (cleanedUp) {
+            throw new IllegalStateException("Cannot call doneAdding() after cleanup() was called.");
+        }
+        if (doneAdding) {
+            return;
+        }
+        doneAdding = true;
+        if (!files.isEmpty() && numRecordsInRam > 0) {
+            spillToDisk();
+        }
+        if (!files.isEmpty()) {
+            releaseMemory();
+        }
+    }
+
+    /**
+     * Set how temporary files are compressed, by default with Snappy if it is available.  Must be called before
+     * any record is spilled to disk.
+     */
+    public void setTempStreamFactory(final TempStreamFactory tempStreamFactory) {
+        if (!files.isEmpty()) {
+            throw new IllegalStateException("Cannot change temporary file compression after records were spilled to disk");
+        }
+        this.tempStreamFactory = tempStreamFactory;
+    }
+
+    /**
+     * Set the maximum number of files merged at once, and therefore of file handles open while iterating.  If more
+     * files were spilled, they are first merged into fewer, larger files, in as many passes as needed.  Defaults
+     * to no limit, in which case all the files are merged at once.
+     */
+    public void setMaxMergeFanIn(final int maxMergeFanIn) {
+        if (maxMergeFanIn < 2) {
+            throw new IllegalArgumentException("maxMergeFanIn must be >= 2");
+        }
+        this.maxMergeFanIn = maxMergeFanIn;
+    }
+
+    /**
+     * Sort the records in memory, write them to a file, and clear the records in memory.
+     */
+    private void spillToDisk() {
+        sortIndex();
+        final File f;
+        try {
+            f = IOUtil.newTempFile("samrecordarenasorter.", ".tmp", tmpDirs, TMP_SPACE_FREE);
+        } catch (final IOException e) {
+            throw new RuntimeIOException(e);
+        }
+        files.add(f);
+        try (final OutputStream os = tempStreamFactory.wrapTempOutputStream(new FileOutputStream(f), Defaults.BUFFER_SIZE)) {
+            for (int i = 0; i < numRecordsInRam; i++) {
+                final byte[] slab = slabs.get((int) (locations[i] >>> 32));
+                final int offset = (int) locations[i];
+                os.write(slab, offset, getRecordLength(slab, offset));
+            }
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Problem writing temporary file " + f.getAbsolutePath() +
+                    ".  Try setting TMP_DIR to a file system with lots of space.", e);
+        }
+
+        numRecordsInRam = 0;
+        currentSlab = 0;
+        slabPosition = 0;
+        bytesInSlabs = 0;
+        // only keep the slabs of the usual size
+        slabs.removeIf(slab -> slab.length != slabSize);
+    }
+
+    private void releaseMemory() {
+        slabs.clear();
+        keys = null;
+        locations = null;
+    }
+
+    /** @return the length of the record at the given offset, including its block size. */
+    private static int getRecordLength(final byte[] slab, final int offset) {
+        return readInt(slab, offset) + 4;
+    }
+
+    private static int readInt(final byte[] slab, final int offset) {
+        return (slab[offset] & 0xFF) | (slab[offset + 1] & 0xFF) << 8 |
+                (slab[offset + 2] & 0xFF) << 16 | (slab[offset + 3] & 0xFF) << 24;
+    }
+
+    private static int readUShort(final byte[] slab, final int offset) {
+        return (slab[offset] & 0xFF) | (slab[offset + 1] & 0xFF) << 8;
+    }
+
+    /**
+     * Sorts the index of the records in memory, by key, then in the order of the comparator for records with equal
+     * keys.
+     */
+    private void sortIndex() {
+        if (sorted) {
+            return;
+        }
+        final long[][] result = radixSort(keys, locations, numRecordsInRam);
+        keys = result[0];
+        locations = result[1];
+
+        final BAMRecordCodec decoder = encoder.clone();
+        int start = 0;
+        while (start < numRecordsInRam) {
+            int end = start + 1;
+            while (end < numRecordsInRam && keys[end] == keys[start]) {
+                end++;
+            }
+            if (end - start > 1) {
+                sortEqualKeys(decoder, new long[(end - start + 1) / 2], start, end);
+            }
+            start = end;
+        }
+        sorted = true;
+    }
+
+    /**
+     * Sorts the locations of the index between start and end, whose keys are equal, with a merge sort of their
+     * encoded records.  The sort is stable, as the radix sort.
+     * @param buffer for merging, of at least half the length of the range
+     */
+    private void sortEqualKeys(final BAMRecordCodec decoder, final long[] buffer, final int start, final int end) {
+        if (end - start <= INSERTION_SORT_THRESHOLD) {
+            for (int i = start + 1; i < end; i++) {
+                final long location = locations[i];
+                int j = i;
+                for (; j > start && compareEncoded(decoder, locations[j - 1], location) > 0; j--) {
+                    locations[j] = locations[j - 1];
+                }
+                locations[j] = location;
+            }
+            return;
+        }
+        final int middle = (start + end) >>> 1;
+        sortEqualKeys(decoder, buffer, start, middle);
+        sortEqualKeys(decoder, buffer, middle, end);
+        if (compareEncoded(decoder, locations[middle - 1], locations[middle]) <= 0) {
+            return;
+        }
+        System.arraycopy(locations, start, buffer, 0, middle - start);
+        int i = 0;
+        int j = middle;
+        int k = start;
+        while (i < middle - start && j < end) {
+            // ties are taken from the left, to keep the sort stable
+            locations[k++] = compareEncoded(decoder, locations[j], buffer[i]) < 0 ? locations[j++] : buffer[i++];
+        }
+        while (i < middle - start) {
+            locations[k++] = buffer[i++];
+        }
+    }
+
+    /**
+     * Compares two records with equal keys as the comparator does, from their encoded fields.  For coordinate order,
+     * equal keys mean equal reference, start (unless unmapped) and strand, so the rest of the comparison is on the
+     * read name, flags, mapping quality, mate reference, mate start and insert size.  For queryname order, it is on
+     * the read name and flags, and the records are only decoded to compare their HI tags when these are equal.
+     */
+    private int compareEncoded(final BAMRecordCodec decoder, final long lhsLocation, final long rhsLocation) {
+        final byte[] lhs = slabs.get((int) (lhsLocation >>> 32));
+        final int lhsOffset = (int) lhsLocation;
+        final byte[] rhs = slabs.get((int) (rhsLocation >>> 32));
+        final int rhsOffset = (int) rhsLocation;
+        int cmp = compareReadNames(lhs, lhsOffset, rhs, rhsOffset);
+        if (cmp != 0) return cmp;
+        final int lhsFlags = readUShort(lhs, lhsOffset + FLAGS_OFFSET);
+        final int rhsFlags = readUShort(rhs, rhsOffset + FLAGS_OFFSET);
+        if (queryNameOrder) {
+            cmp = compareQueryNameFlags(lhsFlags, rhsFlags);
+            if (cmp != 0) return cmp;
+            return comparator.compare(decode(decoder, lhsLocation), decode(decoder, rhsLocation));
+        }
+        cmp = Integer.compare(lhsFlags, rhsFlags);
+        if (cmp != 0) return cmp;
+        cmp = Integer.compare(lhs[lhsOffset + MAPPING_QUALITY_OFFSET] & 0xFF, rhs[rhsOffset + MAPPING_QUALITY_OFFSET] & 0xFF);
+        if (cmp != 0) return cmp;
+        for (final int fieldOffset : MATE_FIELD_OFFSETS) {
+            cmp = Integer.compare(readInt(lhs, lhsOffset + fieldOffset), readInt(rhs, rhsOffset + fieldOffset));
+            if (cmp != 0) return cmp;
+        }
+        return 0;
+    }
+
+    /**
+     * Compares the encoded read names as {@link SAMRecordQueryNameComparator#compareReadNames(String, String)}
+     * compares the decoded ones, whose characters are the unsigned bytes.
+     */
+    private static int compareReadNames(final byte[] lhs, final int lhsOffset, final byte[] rhs, final int rhsOffset) {
+        // the lengths include the terminating null
+        final int lhsLength = (lhs[lhsOffset + READ_NAME_LENGTH_OFFSET] & 0xFF) - 1;
+        final int rhsLength = (rhs[rhsOffset + READ_NAME_LENGTH_OFFSET] & 0xFF) - 1;
+        final int length = Math.min(lhsLength, rhsLength);
+        for (int i = 0; i < length; i++) {
+            final int cmp = (lhs[lhsOffset + READ_NAME_OFFSET + i] & 0xFF) - (rhs[rhsOffset + READ_NAME_OFFSET + i] & 0xFF);
+            if (cmp != 0) return cmp;
+        }
+        return lhsLength - rhsLength;
+    }
+
+    /**
+     * Compares flags as {@link SAMRecordQueryNameComparator#compare(SAMRecord, SAMRecord)} does for records with the
+     * same read name.
+     */
+    static int compareQueryNameFlags(final int lhsFlags, final int rhsFlags) {
+        final boolean lhsPaired = (lhsFlags & SAMFlag.READ_PAIRED.intValue()) != 0;
+        final boolean rhsPaired = (rhsFlags & SAMFlag.READ_PAIRED.intValue()) != 0;
+        if (lhsPaired || rhsPaired) {
+            if (!lhsPaired) return 1;
+            else if (!rhsPaired) return -1;
+            else if ((lhsFlags & SAMFlag.FIRST_OF_PAIR.intValue()) != 0 && (rhsFlags & SAMFlag.SECOND_OF_PAIR.intValue()) != 0) return -1;
+            else if ((lhsFlags & SAMFlag.SECOND_OF_PAIR.intValue()) != 0 && (rhsFlags & SAMFlag.FIRST_OF_PAIR.intValue()) != 0) return 1;
+        }
+        for (final SAMFlag flag : QUERY_NAME_FLAGS) {
+            final int cmp = Integer.compare(lhsFlags & flag.intValue(), rhsFlags & flag.intValue());
+            if (cmp != 0) return cmp;
+        }
+        return 0;
+    }
+
+    private SAMRecord decode(final BAMRecordCodec decoder, final long location) {
+        final byte[] slab = slabs.get((int) (location >>> 32));
+        final int offset = (int) location;
+        decoder.setInputStream(new ByteArrayInputStream(slab, offset, getRecordLength(slab, offset)));
+        return decoder.decode();
+    }
+
+    /**
+     * Sorts the keys, and the values along with them, with a stable LSD radix sort on the bytes of the keys,
+     * skipping the bytes that are equal for all the keys.  The keys must not be negative.
+     * @return the sorted keys and values, either in the given arrays or in new arrays of the given length.
+     */
+    static long[][] radixSort(long[] keys, long[] values, final int length) {
+        long[] keyBuffer = null;
+        long[] valueBuffer = null;
+        final int[] counts = new int[256];
+        for (int shift = 0; shift < 64; shift += 8) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < length; i++) {
+                counts[(int) (keys[i] >>> shift) & 0xFF]++;
+            }
+            if (length == 0 || counts[(int) (keys[0] >>> shift) & 0xFF] == length) {
+                continue;
+            }
+            int total = 0;
+            for (int b = 0; b < 256; b++) {
+                final int count = counts[b];
+                counts[b] = total;
+                total += count;
+            }
+            if (keyBuffer == null) {
+                keyBuffer = new long[length];
+                valueBuffer = new long[length];
+            }
+            for (int i = 0; i < length; i++) {
+                final int position = counts[(int) (keys[i] >>> shift) & 0xFF]++;
+                keyBuffer[position] = keys[i];
+                valueBuffer[position] = values[i];
+            }
+            final long[] swapKeys = keys;
+            keys = keyBuffer;
+            keyBuffer = swapKeys;
+            final long[] swapValues = values;
+            values = valueBuffer;
+            valueBuffer = swapValues;
+        }
+        return new long[][]{keys, values};
+    }
+
+    /**
+     * Prepare to iterate through the records in order.  This method may be called more than once,
+     * but add() may not be called after this method has been called.
+     */
+    @Override
+    public CloseableIterator<SAMRecord> iterator() {
+        if (cleanedUp) {
+            throw new IllegalStateException("Cannot call iterator() after cleanup() was called.");
+        }
+        doneAdding();
+        if (files.isEmpty()) {
+            sortIndex();
+            return new InMemoryIterator();
+        } else {
+            final SortedFileMerger<SAMRecord> merger = new SortedFileMerger<>(encoder, comparator, tempStreamFactory,
+                    maxMergeFanIn, "samrecordarenasorter.", tmpDirs);
+            merger.mergeToFanIn(files);
+            return merger.iterator(files);
+        }
+    }
+
+    /**
+     * Delete any temporary files, and release the memory.  After this method is called, iterator() may not be called.
+     */
+    public void cleanup() {
+        doneAdding = true;
+        cleanedUp = true;
+        releaseMemory();
+        IOUtil.deleteFiles(files);
+    }
+
+    /** A ByteArrayOutputStream exposing its buffer. */
+    private static class RecordBuffer extends ByteArrayOutputStream {
+        byte[] array() {
+            return buf;
+        }
+    }
+
+    /**
+     * For iteration when no record was spilled to disk: decodes the records from the slabs in order.
+     */
+    private class InMemoryIterator implements CloseableIterator<SAMRecord> {
+        private final BAMRecordCodec decoder = encoder.clone();
+        private int iterationIndex = 0;
+
+        @Override
+        public void close() {
+            // nothing to do
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterationIndex < numRecordsInRam;
+        }
+
+        @Override
+        public SAMRecord next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return decode(decoder, locations[iterationIndex++]);
+        }
+    }
+}
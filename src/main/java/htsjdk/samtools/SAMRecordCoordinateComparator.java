@@ -23,6 +23,8 @@
  */
 package htsjdk.samtools;
 
+import htsjdk.samtools.util.SortKeyComparator;
+
 import java.io.Serializable;
 
 /**
@@ -39,8 +41,13 @@ import java.io.Serializable;
  * if A < B, then B > A
  * if A < B && B < C, then A < C
  *
+ * The reference, start and strand of a record are also packed into a single sort key, and the beginning of its
+ * read name into a tie-break key, so that sorting and merging code can compare most records without calling
+ * {@link #compare(SAMRecord, SAMRecord)}.  The keys are only used for this class: a subclass that keeps them
+ * consistent with its order, overriding {@link #getSortKey(SAMRecord)} and {@link #getTieBreakKey(SAMRecord)} if
+ * needed, opts in by overriding {@link #hasSortKeys()}.
  */
-public class SAMRecordCoordinateComparator implements SAMRecordComparator, Serializable {
+public class SAMRecordCoordinateComparator implements SAMRecordComparator, SortKeyComparator<SAMRecord>, Serializable {
     private static final long serialVersionUID = 1L;
 
     public int compare(final SAMRecord samRecord1, final SAMRecord samRecord2) {
@@ -69,6 +76,46 @@ public class SAMRecordCoordinateComparator implements SAMRecordComparator, Seria
         else return (samRecord1.getReadNegativeStrandFlag()? 1: -1);
     }
 
+    /**
+     * @return true for this class only, since a subclass might change the order of records.
+     */
+    @Override
+    public boolean hasSortKeys() {
+        return getClass() == SAMRecordCoordinateComparator.class;
+    }
+
+    /**
+     * @return the reference (unmapped records last), then the start, then the strand (negative last) of the record,
+     * packed in a long.
+     */
+    @Override
+    public long getSortKey(final SAMRecord samRecord) {
+        return getCoordinateKey(samRecord.getReferenceIndex(), samRecord.getAlignmentStart(),
+                samRecord.getReadNegativeStrandFlag());
+    }
+
+    /**
+     * @return the key of the read name, which is compared first when records have the same reference, start and
+     * strand.
+     * @see SAMRecordQueryNameComparator#getReadNameKey(String)
+     */
+    @Override
+    public long getTieBreakKey(final SAMRecord samRecord) {
+        return SAMRecordQueryNameComparator.getReadNameKey(samRecord.getReadName());
+    }
+
+    /**
+     * @return the sort key of a record with the given reference index, alignment start and strand.
+     */
+    static long getCoordinateKey(final int referenceIndex, final int alignmentStart, final boolean negativeStrand) {
+        final long strand = negativeStrand ? 1 : 0;
+        if (referenceIndex == SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX) {
+            // unmapped records are only ordered by strand, then by the rest of the comparator
+            return (long) Integer.MAX_VALUE << 32 | strand;
+        }
+        return (long) referenceIndex << 32 | ((long) alignmentStart & 0x7FFFFFFFL) << 1 | strand;
+    }
+
     private int compareInts(int i1, int i2) {
         if (i1 < i2) return -1;
         else if (i1 > i2) return 1;
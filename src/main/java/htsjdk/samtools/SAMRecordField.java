@@ -0,0 +1,72 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package htsjdk.samtools;
+
+/**
+ * The fields of a {@link SAMRecord}, named after the columns of the SAM format, used to request that only some of them
+ * are read (see {@link SamReaderFactory#fields(java.util.EnumSet)}).
+ *
+ * The fixed length fields cost nothing to keep, so they are always read.  Only the variable length ones
+ * ({@link #QNAME}, {@link #CIGAR}, {@link #SEQ}, {@link #QUAL} and {@link #TAGS}) can actually be left out of a record.
+ */
+public enum SAMRecordField {
+    /** Read name */
+    QNAME(true),
+    /** Bitwise flags, always read */
+    FLAG(false),
+    /** Reference sequence, always read */
+    RNAME(false),
+    /** Alignment start, always read */
+    POS(false),
+    /** Mapping quality, always read */
+    MAPQ(false),
+    /** CIGAR, also needed for the alignment end */
+    CIGAR(true),
+    /** Mate reference sequence, always read */
+    RNEXT(false),
+    /** Mate alignment start, always read */
+    PNEXT(false),
+    /** Inferred insert size, always read */
+    TLEN(false),
+    /** Read bases */
+    SEQ(true),
+    /** Base qualities */
+    QUAL(true),
+    /** Optional fields (attributes) */
+    TAGS(true);
+
+    private final boolean variableLength;
+
+    SAMRecordField(final boolean variableLength) {
+        this.variableLength = variableLength;
+    }
+
+    /**
+     * @return true if this field is stored in the variable length part of a record, and so may be left out.
+     */
+    public boolean isVariableLength() {
+        return variableLength;
+    }
+}
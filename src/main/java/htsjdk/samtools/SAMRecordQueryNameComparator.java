@@ -86,4 +86,24 @@ public class SAMRecordQueryNameComparator implements SAMRecordComparator, Serial
     public static int compareReadNames(final String readName1, final String readName2) {
         return readName1.compareTo(readName2);
     }
+
+    /**
+     * @return the first 8 characters of the read name, one byte each, so that a smaller key means a smaller read name
+     * according to {@link #compareReadNames(String, String)}.  Characters beyond ASCII end the key, so that names
+     * with equal keys must be compared in full.
+     */
+    public static long getReadNameKey(final String readName) {
+        long key = 0;
+        int i = 0;
+        for (; i < 8 && i < readName.length(); i++) {
+            final char c = readName.charAt(i);
+            if (c >= 0x7F) {
+                key = key << 8 | 0x7F;
+                i++;
+                break;
+            }
+            key = key << 8 | c;
+        }
+        return key << 8 * (8 - i);
+    }
 }
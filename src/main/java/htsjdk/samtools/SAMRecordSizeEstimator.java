@@ -0,0 +1,69 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.samtools.util.SortingCollection;
+
+/**
+ * Estimates the heap used by a {@link SAMRecord} from the lengths of its variable length fields, without decoding
+ * them, e.g. to spill records of a {@link SortingCollection} to disk based on a memory budget rather than a number
+ * of records.  The estimate assumes the fields of the record are decoded into their usual Java objects, and
+ * also counts the undecoded binary data that {@link BAMRecord}s keep.
+ */
+public class SAMRecordSizeEstimator implements SortingCollection.SizeEstimator<SAMRecord> {
+    /** The record itself, with its fixed length fields and references to the others. */
+    static final int RECORD_OVERHEAD = 256;
+    /** Header of a String or an array. */
+    static final int OBJECT_OVERHEAD = 24;
+    /** A CigarElement and the reference to it. */
+    static final int CIGAR_ELEMENT_SIZE = 24;
+    /** A SAMBinaryTagAndValue and its boxed value, excluding the binary size of the value. */
+    static final int ATTRIBUTE_OVERHEAD = 40;
+
+    @Override
+    public long getSizeInBytes(final SAMRecord record) {
+        final int readLength = record.getReadLength();
+        long size = RECORD_OVERHEAD +
+                // read name, as chars
+                OBJECT_OVERHEAD + 2L * record.getReadNameLength() +
+                // bases and qualities
+                2L * (OBJECT_OVERHEAD + readLength) +
+                // cigar, its list and its elements
+                2L * OBJECT_OVERHEAD + (long) CIGAR_ELEMENT_SIZE * record.getCigarLength();
+
+        final int attributesBinarySize = record.getAttributesBinarySize();
+        if (attributesBinarySize >= 0) {
+            // not decoded yet: assume the decoded attributes take about twice their binary size
+            size += 2L * attributesBinarySize;
+        } else {
+            for (SAMBinaryTagAndValue attribute = record.getBinaryAttributes(); attribute != null; attribute = attribute.getNext()) {
+                size += ATTRIBUTE_OVERHEAD + BinaryTagCodec.getTagSize(attribute.value);
+            }
+        }
+
+        final byte[] binaryData = record.getVariableBinaryRepresentation();
+        if (binaryData != null) {
+            size += OBJECT_OVERHEAD + binaryData.length;
+        }
+        return size;
+    }
+}
@@ -119,16 +119,28 @@ public final class SAMUtils {
      */
     static byte[] bytesToCompressedBases(final byte[] readBases) {
         final byte[] compressedBases = new byte[(readBases.length + 1) / 2];
+        bytesToCompressedBases(readBases, compressedBases, 0);
+        return compressedBases;
+    }
+
+    /**
+     * Convert from a byte array containing =AaCcGgTtNn represented as ASCII, to bases represented as nybbles,
+     * in BAM binary format, stored in the given array.
+     *
+     * @param readBases Bases as ASCII bytes.
+     * @param compressedBases Where to store the (readBases.length + 1) / 2 bytes of compressed bases.
+     * @param compressedOffset Byte offset in compressedBases to start.
+     */
+    static void bytesToCompressedBases(final byte[] readBases, final byte[] compressedBases, final int compressedOffset) {
         int i;
         for (i = 1; i < readBases.length; i += 2) {
-            compressedBases[i / 2] = (byte) (charToCompressedBaseHigh(readBases[i - 1]) |
+            compressedBases[i / 2 + compressedOffset] = (byte) (charToCompressedBaseHigh(readBases[i - 1]) |
                     charToCompressedBaseLow(readBases[i]));
         }
         // Last nybble
         if (i == readBases.length) {
-            compressedBases[i / 2] = charToCompressedBaseHigh((char) readBases[i - 1]);
+            compressedBases[i / 2 + compressedOffset] = charToCompressedBaseHigh((char) readBases[i - 1]);
         }
-        return compressedBases;
     }
 
     /**
@@ -300,7 +312,7 @@ public final class SAMUtils {
      * @param base One of COMPRESSED_*_LOW, a low-order nybble encoded base.
      * @return ASCII base, one of ACGTN=.
      */
-    private static byte compressedBaseToByteLow(final int base) {
+    static byte compressedBaseToByteLow(final int base) {
         return compressedBaseToByte((byte)(base & 0xf));
     }
 
@@ -310,7 +322,7 @@ public final class SAMUtils {
      * @param base One of COMPRESSED_*_HIGH, a high-order nybble encoded base.
      * @return ASCII base, one of ACGTN=.
      */
-    private static byte compressedBaseToByteHigh(final int base) {
+    static byte compressedBaseToByteHigh(final int base) {
         return compressedBaseToByte((byte)((base >> 4) & 0xf));
     }
 
@@ -93,6 +93,14 @@ public class SamFiles {
             return indexPath;
         }
 
+        // Finally look for a CSI index, foo.bam.csi
+        if (fileName.endsWith(BamFileIoUtils.BAM_FILE_EXTENSION)) {
+            indexPath = samPath.resolveSibling(fileName + CSIIndex.CSI_INDEX_SUFFIX);
+            if (Files.isRegularFile(indexPath)) {
+                return indexPath;
+            }
+        }
+
         return null;
     }
 }
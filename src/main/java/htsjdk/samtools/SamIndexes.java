@@ -3,8 +3,12 @@ package htsjdk.samtools;
 import htsjdk.samtools.cram.CRAIIndex;
 import htsjdk.samtools.seekablestream.SeekableBufferedStream;
 import htsjdk.samtools.seekablestream.SeekableStream;
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.samtools.util.BlockCompressedStreamConstants;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -18,7 +22,9 @@ import java.net.URL;
 public enum SamIndexes {
     BAI(BAMIndex.BAMIndexSuffix, "BAI\1".getBytes()),
     // CRAI is gzipped text, so it's magic is same as {@link java.util.zip.GZIPInputStream.GZIP_MAGIC}
-    CRAI(CRAIIndex.CRAI_INDEX_SUFFIX, new byte[]{(byte) 0x1f, (byte) 0x8b});
+    CRAI(CRAIIndex.CRAI_INDEX_SUFFIX, new byte[]{(byte) 0x1f, (byte) 0x8b}),
+    // CSI is BGZF compressed, this is the magic of the decompressed content
+    CSI(CSIIndex.CSI_INDEX_SUFFIX, "CSI\1".getBytes());
 
     public final String fileNameSuffix;
     public final byte[] magic;
@@ -83,6 +89,33 @@ public enum SamIndexes {
         return null;
     }
 
+    /**
+     * @return the CSI index held by the given stream, or null if it does not hold one.  The stream is left at its start
+     * if it does not hold a CSI index.
+     */
+    public static CSIIndex asCSIIndexOrNull(final SeekableStream inputStream) throws IOException {
+        inputStream.seek(0);
+        final byte[] header = new byte[BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH];
+        try {
+            inputStream.readFully(header);
+        } catch (final EOFException e) {
+            inputStream.seek(0);
+            return null;
+        }
+        inputStream.seek(0);
+        if (!BlockCompressedInputStream.isValidFile(new ByteArrayInputStream(header))) {
+            return null;
+        }
+
+        final BlockCompressedInputStream bgzfStream = new BlockCompressedInputStream(inputStream);
+        if (doesStreamStartWith(bgzfStream, CSI.magic)) {
+            bgzfStream.seek(0);
+            return new CSIIndex(bgzfStream);
+        }
+        inputStream.seek(0);
+        return null;
+    }
+
     private static boolean doesStreamStartWith(final InputStream is, final byte[] bytes) throws IOException {
         for (final byte b : bytes) {
             if (is.read() != (0xFF & b)) {
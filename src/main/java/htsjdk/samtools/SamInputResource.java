@@ -25,6 +25,7 @@
 package htsjdk.samtools;
 
 import htsjdk.samtools.seekablestream.SeekableFileStream;
+import htsjdk.samtools.seekablestream.SeekableMemoryMappedFileStream;
 import htsjdk.samtools.seekablestream.SeekablePathStream;
 import htsjdk.samtools.seekablestream.SeekableStream;
 import htsjdk.samtools.seekablestream.SeekableStreamFactory;
@@ -100,6 +101,18 @@ public class SamInputResource {
     /** Creates a {@link SamInputResource} reading from the provided resource, with no index. */
     public static SamInputResource of(final SeekableStream seekableStream) { return new SamInputResource(new SeekableStreamInputResource(seekableStream)); }
 
+    /**
+     * Creates a {@link SamInputResource} reading from the provided file through a {@link SeekableMemoryMappedFileStream},
+     * with no index.  This is faster than {@link #of(File)} for random access to a file that is read repeatedly.
+     */
+    public static SamInputResource ofMemoryMapped(final File file) {
+        try {
+            return of(new SeekableMemoryMappedFileStream(file));
+        } catch (final IOException e) {
+            throw new RuntimeIOException(e);
+        }
+    }
+
     public static SamInputResource of(final SRAAccession acc) { return new SamInputResource(new SRAInputResource(acc)); }
 
     /** Creates a {@link SamInputResource} from a string specifying *either* a url or a file path */
@@ -123,6 +123,50 @@ public abstract class SamReaderFactory {
      * Returns the factory itself. */
     abstract public SamReaderFactory setUseAsyncIo(final boolean asynchronousIO);
 
+    /** Set the number of threads that readers created by this factory will use to inflate block-compressed data.
+     * If greater than 0, blocks are read ahead of the records being decoded and inflated on that many worker threads;
+     * this pays off for large sequential reads.  Defaults to 0, which inflates blocks on the reading thread.
+     * Note that this option currently only applies to BAM readers.
+     * Returns the factory itself. */
+    abstract public SamReaderFactory inflaterThreads(final int inflaterThreads);
+
+    /** Set the number of threads that readers created by this factory will use to decode records.
+     * If greater than 0, records are framed on a separate thread and validated and decoded (including eager decoding,
+     * see {@link Option#EAGERLY_DECODE}) on that many worker threads, while still being returned in file order.
+     * Combined with {@link #inflaterThreads(int)}, this keeps a single threaded consumer supplied with records much
+     * faster than reading on one thread.  Defaults to 0, which decodes records on the thread iterating over them.
+     * CRAM readers decode containers ahead on that many worker threads, the slices of each container concurrently.
+     * Note that this option currently only applies to BAM and CRAM readers.
+     * Returns the factory itself. */
+    abstract public SamReaderFactory decoderThreads(final int decoderThreads);
+
+    /** Set the fields of each record that readers created by this factory will read.
+     * Records only hold the requested variable length fields (see {@link SAMRecordField}), which can greatly reduce
+     * their memory footprint, e.g. when only flags, positions and CIGARs are needed.  Accessing a field that was not
+     * read throws an {@link IllegalStateException}, such records cannot be written out again, and they are not
+     * validated, since validation needs all the fields.  Defaults to null, which reads all the fields.
+     * Note that this option currently only applies to BAM readers.
+     * Returns the factory itself. */
+    abstract public SamReaderFactory fields(final EnumSet<SAMRecordField> fields);
+
+    /** Set the number of bytes of index that readers created by this factory will keep in memory.
+     * If greater than 0, the bins and chunks of each reference are loaded into compact primitive arrays on first use,
+     * and the most recently used references are kept up to about that many bytes, so that queries walking across
+     * references do not read the index again.  This takes precedence over {@link Option#CACHE_FILE_BASED_INDEXES}.
+     * Defaults to 0, which uses the index chosen by that option.
+     * Note that this option currently only applies to BAM readers.
+     * Returns the factory itself. */
+    abstract public SamReaderFactory compactIndexCacheSize(final long maxCacheBytes);
+
+    /** Set how far apart, in compressed bytes, the chunks of a query may be for readers created by this factory to
+     * read them at once rather than seeking over the gap; the records in between are filtered out.  This pays off when
+     * querying many nearby intervals, e.g. exons, especially on network filesystems where seeks are expensive.
+     * See {@link Chunk#getMaxGapForSeekCost(double, double)} for a suitable value.
+     * Defaults to 0, which only merges overlapping and adjacent chunks.
+     * Note that this option currently only applies to BAM and CRAM readers.
+     * Returns the factory itself. */
+    abstract public SamReaderFactory queryGapTolerance(final long maxGapBytes);
+
     private static SamReaderFactoryImpl DEFAULT =
             new SamReaderFactoryImpl(Option.DEFAULTS, defaultValidationStringency, DefaultSAMRecordFactory.getInstance());
 
@@ -150,6 +194,11 @@ public abstract class SamReaderFactory {
         private final EnumSet<Option> enabledOptions;
         private ValidationStringency validationStringency;
         private boolean asynchronousIO = Defaults.USE_ASYNC_IO_READ_FOR_SAMTOOLS;
+        private int inflaterThreads = 0;
+        private int decoderThreads = 0;
+        private EnumSet<SAMRecordField> fields = null;
+        private long compactIndexCacheSize = 0;
+        private long queryGapTolerance = 0;
         private SAMRecordFactory samRecordFactory;
         private CustomReaderFactory customReaderFactory;
         private CRAMReferenceSource referenceSource;
@@ -248,6 +297,48 @@ public abstract class SamReaderFactory {
             return this;
         }
 
+        @Override
+        public SamReaderFactory inflaterThreads(final int inflaterThreads) {
+            if (inflaterThreads < 0) {
+                throw new IllegalArgumentException("Invalid number of inflater threads: " + inflaterThreads);
+            }
+            this.inflaterThreads = inflaterThreads;
+            return this;
+        }
+
+        @Override
+        public SamReaderFactory decoderThreads(final int decoderThreads) {
+            if (decoderThreads < 0) {
+                throw new IllegalArgumentException("Invalid number of decoder threads: " + decoderThreads);
+            }
+            this.decoderThreads = decoderThreads;
+            return this;
+        }
+
+        @Override
+        public SamReaderFactory fields(final EnumSet<SAMRecordField> fields) {
+            this.fields = fields == null ? null : EnumSet.copyOf(fields);
+            return this;
+        }
+
+        @Override
+        public SamReaderFactory compactIndexCacheSize(final long maxCacheBytes) {
+            if (maxCacheBytes < 0) {
+                throw new IllegalArgumentException("Invalid index cache size: " + maxCacheBytes);
+            }
+            this.compactIndexCacheSize = maxCacheBytes;
+            return this;
+        }
+
+        @Override
+        public SamReaderFactory queryGapTolerance(final long maxGapBytes) {
+            if (maxGapBytes < 0) {
+                throw new IllegalArgumentException("Invalid query gap tolerance: " + maxGapBytes);
+            }
+            this.queryGapTolerance = maxGapBytes;
+            return this;
+        }
+
         @Override
         public SamReader open(final SamInputResource resource) {
             final SamReader.PrimitiveSamReader primitiveSamReader;
@@ -344,6 +435,30 @@ public abstract class SamReaderFactory {
                     }
                 }
 
+                if (inflaterThreads > 0 && primitiveSamReader instanceof BAMFileReader) {
+                    ((BAMFileReader) primitiveSamReader).setInflaterThreads(inflaterThreads);
+                }
+                if (decoderThreads > 0) {
+                    if (primitiveSamReader instanceof BAMFileReader) {
+                        ((BAMFileReader) primitiveSamReader).setDecoderThreads(decoderThreads);
+                    } else if (primitiveSamReader instanceof CRAMFileReader) {
+                        ((CRAMFileReader) primitiveSamReader).setDecoderThreads(decoderThreads);
+                    }
+                }
+                if (fields != null && primitiveSamReader instanceof BAMFileReader) {
+                    ((BAMFileReader) primitiveSamReader).setFields(fields);
+                }
+                if (compactIndexCacheSize > 0 && primitiveSamReader instanceof BAMFileReader) {
+                    ((BAMFileReader) primitiveSamReader).setCompactIndexCacheSize(compactIndexCacheSize);
+                }
+                if (queryGapTolerance > 0) {
+                    if (primitiveSamReader instanceof BAMFileReader) {
+                        ((BAMFileReader) primitiveSamReader).setQueryGapTolerance(queryGapTolerance);
+                    } else if (primitiveSamReader instanceof CRAMFileReader) {
+                        ((CRAMFileReader) primitiveSamReader).setQueryGapTolerance(queryGapTolerance);
+                    }
+                }
+
                 // Apply the options defined by this factory to this reader
                 final SamReader.PrimitiveSamReaderToSamReaderAdapter reader =
                         new SamReader.PrimitiveSamReaderToSamReaderAdapter(primitiveSamReader, resource);
@@ -7,7 +7,7 @@ import htsjdk.samtools.CRAMBAIIndexer;
 import htsjdk.samtools.CRAMCRAIIndexer;
 import htsjdk.samtools.cram.encoding.reader.DataReaderFactory;
 import htsjdk.samtools.cram.encoding.reader.RefSeqIdReader;
-import htsjdk.samtools.cram.io.DefaultBitInputStream;
+import htsjdk.samtools.cram.io.ByteArrayBitInputStream;
 import htsjdk.samtools.cram.structure.*;
 import htsjdk.samtools.seekablestream.SeekableMemoryStream;
 import htsjdk.samtools.seekablestream.SeekableStream;
@@ -109,7 +109,7 @@ public class CRAIIndex {
                 ValidationStringency.DEFAULT_STRINGENCY);
         dataReaderFactory.buildReader(
                 reader,
-                new DefaultBitInputStream(new ByteArrayInputStream(slice.coreBlock.getRawContent())),
+                new ByteArrayBitInputStream(slice.coreBlock.getRawContent()),
                 inputMap,
                 header,
                 slice.sequenceId
@@ -23,7 +23,7 @@ import htsjdk.samtools.cram.digest.ContentDigests;
 import htsjdk.samtools.cram.encoding.ExternalCompressor;
 import htsjdk.samtools.cram.encoding.writer.DataWriterFactory;
 import htsjdk.samtools.cram.encoding.writer.Writer;
-import htsjdk.samtools.cram.io.DefaultBitOutputStream;
+import htsjdk.samtools.cram.io.ByteArrayBitOutputStream;
 import htsjdk.samtools.cram.io.ExposedByteArrayOutputStream;
 import htsjdk.samtools.cram.structure.Block;
 import htsjdk.samtools.cram.structure.BlockContentType;
@@ -60,6 +60,31 @@ public class ContainerFactory {
                              final SubstitutionMatrix substitutionMatrix)
             throws IllegalArgumentException, IllegalAccessException,
             IOException {
+        final Container container = buildContainer(records, substitutionMatrix, globalRecordCounter);
+        globalRecordCounter += records.size();
+        return container;
+    }
+
+    /**
+     * Builds a container whose first record has the given global record counter, leaving the counter of this
+     * factory unchanged. This allows several containers to be built concurrently once the number of records
+     * preceding each of them is known.
+     *
+     * @param records the records of the container
+     * @param globalRecordCounter the number of records preceding the container in the stream
+     * @return the container, with its slices built and compressed
+     */
+    public Container buildContainer(final List<CramCompressionRecord> records, final long globalRecordCounter)
+            throws IllegalArgumentException, IllegalAccessException,
+            IOException {
+        return buildContainer(records, null, globalRecordCounter);
+    }
+
+    private Container buildContainer(final List<CramCompressionRecord> records,
+                                     final SubstitutionMatrix substitutionMatrix,
+                                     final long globalRecordCounter)
+            throws IllegalArgumentException, IllegalAccessException,
+            IOException {
         // get stats, create compression header and slices
         final long time1 = System.nanoTime();
         final CompressionHeader header = new CompressionHeaderFactory().build(records,
@@ -102,7 +127,6 @@ public class ContainerFactory {
         container.buildHeaderTime = time2 - time1;
         container.buildSlicesTime = time4 - time3;
 
-        globalRecordCounter += records.size();
         return container;
     }
 
@@ -132,8 +156,7 @@ public class ContainerFactory {
         }
 
         final DataWriterFactory dataWriterFactory = new DataWriterFactory();
-        final ExposedByteArrayOutputStream bitBAOS = new ExposedByteArrayOutputStream();
-        final DefaultBitOutputStream bitOutputStream = new DefaultBitOutputStream(bitBAOS);
+        final ByteArrayBitOutputStream bitOutputStream = new ByteArrayBitOutputStream();
 
         final Slice slice = new Slice();
         slice.nofRecords = records.size();
@@ -184,7 +207,7 @@ public class ContainerFactory {
         }
 
         bitOutputStream.close();
-        slice.coreBlock = Block.buildNewCore(bitBAOS.toByteArray());
+        slice.coreBlock = Block.buildNewCore(bitOutputStream.toByteArray());
 
         slice.external = new HashMap<Integer, Block>();
         for (final Integer key : map.keySet()) {
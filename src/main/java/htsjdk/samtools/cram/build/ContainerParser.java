@@ -26,7 +26,7 @@ import htsjdk.samtools.cram.encoding.reader.CramRecordReader;
 import htsjdk.samtools.cram.encoding.reader.DataReaderFactory;
 import htsjdk.samtools.cram.encoding.reader.DataReaderFactory.DataReaderWithStats;
 import htsjdk.samtools.cram.encoding.reader.RefSeqIdReader;
-import htsjdk.samtools.cram.io.DefaultBitInputStream;
+import htsjdk.samtools.cram.io.ByteArrayBitInputStream;
 import htsjdk.samtools.cram.structure.CompressionHeader;
 import htsjdk.samtools.cram.structure.Container;
 import htsjdk.samtools.cram.structure.CramCompressionRecord;
@@ -118,8 +118,7 @@ public class ContainerParser {
                 }
 
                 final RefSeqIdReader reader = new RefSeqIdReader(Slice.MULTI_REFERENCE, slice.alignmentStart, validationStringency);
-                dataReaderFactory.buildReader(reader, new DefaultBitInputStream(
-                                new ByteArrayInputStream(slice.coreBlock.getRawContent())),
+                dataReaderFactory.buildReader(reader, new ByteArrayBitInputStream(slice.coreBlock.getRawContent()),
                         inputMap, header, slice.sequenceId);
 
                 for (int i = 0; i < slice.nofRecords; i++) {
@@ -160,8 +159,7 @@ public class ContainerParser {
 
         long time;
         final CramRecordReader reader = new CramRecordReader(validationStringency);
-        dataReaderFactory.buildReader(reader, new DefaultBitInputStream(
-                        new ByteArrayInputStream(slice.coreBlock.getRawContent())),
+        dataReaderFactory.buildReader(reader, new ByteArrayBitInputStream(slice.coreBlock.getRawContent()),
                 inputMap, header, slice.sequenceId);
 
         if (records == null) {
@@ -214,7 +212,10 @@ public class ContainerParser {
         return records;
     }
 
-    List<CramCompressionRecord> getRecords(final Slice slice, final CompressionHeader header, final ValidationStringency validationStringency)
+    /**
+     * Decodes the records of a single slice of a container.
+     */
+    public List<CramCompressionRecord> getRecords(final Slice slice, final CompressionHeader header, final ValidationStringency validationStringency)
             throws IllegalArgumentException, IllegalAccessException {
         return getRecords(null, slice, header, validationStringency);
     }
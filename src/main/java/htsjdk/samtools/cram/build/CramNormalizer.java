@@ -59,11 +59,26 @@ public class CramNormalizer {
     public void normalize(final ArrayList<CramCompressionRecord> records,
                           final byte[] ref, final int refOffset_zeroBased,
                           final SubstitutionMatrix substitutionMatrix) {
-
         final int startCounter = readCounter;
+        readCounter += records.size();
+        normalize(records, ref, refOffset_zeroBased, substitutionMatrix, startCounter);
+    }
+
+    /**
+     * Same as {@link #normalize(ArrayList, byte[], int, SubstitutionMatrix)}, but the records are numbered after the
+     * given number of records before them rather than after the records normalized so far.  This does not change
+     * the state of the normalizer, so that containers can be normalized concurrently, provided the reference source
+     * is thread safe.
+     *
+     * @param startCounter number of records before the given ones, e.g. in previous containers
+     */
+    public void normalize(final ArrayList<CramCompressionRecord> records,
+                          final byte[] ref, final int refOffset_zeroBased,
+                          final SubstitutionMatrix substitutionMatrix, final int startCounter) {
+        int counter = startCounter;
 
         for (final CramCompressionRecord record : records) {
-            record.index = ++readCounter;
+            record.index = ++counter;
 
             if (record.sequenceId == SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX) {
                 record.sequenceName = SAMRecord.NO_ALIGNMENT_REFERENCE_NAME;
@@ -111,6 +126,9 @@ public class CramNormalizer {
         }
 
         // resolve bases:
+        // the bases last looked up, since records of the same reference are usually next to each other
+        int lookedUpSequenceId = SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX;
+        byte[] lookedUpBases = null;
         for (final CramCompressionRecord record : records) {
             if (record.isSegmentUnmapped())
                 continue;
@@ -119,9 +137,14 @@ public class CramNormalizer {
             {
                 // ref could be supplied (aka forced) already or needs looking up:
                 // ref.length=0 is a special case of seqId=-2 (multiref)
-                if ((ref == null || ref.length == 0) && referenceSource != null)
-                    refBases = referenceSource.getReferenceBases(
-                            header.getSequence(record.sequenceId), true);
+                if ((ref == null || ref.length == 0) && referenceSource != null) {
+                    if (lookedUpBases == null || lookedUpSequenceId != record.sequenceId) {
+                        lookedUpBases = referenceSource.getReferenceBases(
+                                header.getSequence(record.sequenceId), true);
+                        lookedUpSequenceId = record.sequenceId;
+                    }
+                    refBases = lookedUpBases;
+                }
             }
 
             if (record.isUnknownBases()) {
@@ -0,0 +1,68 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.cram.encoding;
+
+import htsjdk.samtools.cram.io.BitInputStream;
+import htsjdk.samtools.cram.io.BitOutputStream;
+
+import java.io.IOException;
+
+/**
+ * Base class of the {@link IntCodec}s, implementing the boxed methods of {@link BitCodec} with the primitive ones.
+ */
+public abstract class AbstractIntCodec extends AbstractBitCodec<Integer> implements IntCodec {
+
+    @Override
+    public final Integer read(final BitInputStream bitInputStream) throws IOException {
+        return readInt(bitInputStream);
+    }
+
+    @Override
+    public Integer read(final BitInputStream bitInputStream, final int valueLen) throws IOException {
+        throw new RuntimeException("Not implemented.");
+    }
+
+    @Override
+    public void readInto(final BitInputStream bitInputStream, final int[] array, final int offset,
+                         final int valueLen) throws IOException {
+        for (int i = 0; i < valueLen; i++) {
+            array[offset + i] = readInt(bitInputStream);
+        }
+    }
+
+    @Override
+    public void skip(final BitInputStream bitInputStream) throws IOException {
+        readInt(bitInputStream);
+    }
+
+    @Override
+    public void skip(final BitInputStream bitInputStream, final int length) throws IOException {
+        for (int i = 0; i < length; i++) {
+            readInt(bitInputStream);
+        }
+    }
+
+    @Override
+    public final long write(final BitOutputStream bitOutputStream, final Integer value) throws IOException {
+        return writeInt(bitOutputStream, value);
+    }
+}
@@ -23,7 +23,7 @@ import htsjdk.samtools.cram.io.BitOutputStream;
 import java.io.IOException;
 
 
-class BetaIntegerCodec extends AbstractBitCodec<Integer> {
+class BetaIntegerCodec extends AbstractIntCodec {
     private int offset = 0;
     private final int readNofBits;
 
@@ -33,12 +33,12 @@ class BetaIntegerCodec extends AbstractBitCodec<Integer> {
     }
 
     @Override
-    public final Integer read(final BitInputStream bitInputStream) throws IOException {
+    public final int readInt(final BitInputStream bitInputStream) throws IOException {
         return bitInputStream.readBits(readNofBits) - offset;
     }
 
     @Override
-    public final long write(final BitOutputStream bitOutputStream, final Integer value) throws IOException {
+    public final long writeInt(final BitOutputStream bitOutputStream, final int value) throws IOException {
         final int nofBits = (int) numberOfBits(value);
         final long newValue = value + offset;
         bitOutputStream.write(newValue, nofBits);
@@ -54,9 +54,4 @@ class BetaIntegerCodec extends AbstractBitCodec<Integer> {
         return readNofBits;
     }
 
-    @Override
-    public Integer read(final BitInputStream bitInputStream, final int length) throws IOException {
-        throw new RuntimeException("Not implemented.");
-    }
-
 }
@@ -0,0 +1,53 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.cram.encoding;
+
+import htsjdk.samtools.cram.io.BitInputStream;
+import htsjdk.samtools.cram.io.BitOutputStream;
+
+import java.io.IOException;
+
+/**
+ * A {@link BitCodec} for byte values, which reads and writes them without boxing.  Values are read in bulk with
+ * {@link #readInto(BitInputStream, byte[], int, int)}.
+ */
+public interface ByteCodec extends BitCodec<Byte> {
+
+    /**
+     * Read a single value from the bit stream.
+     *
+     * @param bitInputStream the bit input stream to read from
+     * @return the value read
+     * @throws IOException as per java IO contract
+     */
+    byte readByte(BitInputStream bitInputStream) throws IOException;
+
+    /**
+     * Write a value into the bit stream.
+     *
+     * @param bitOutputStream the output bit stream to write to
+     * @param value the value to write
+     * @return the number of bits written out
+     * @throws IOException as per java IO contract
+     */
+    long writeByte(BitOutputStream bitOutputStream, byte value) throws IOException;
+}
@@ -25,7 +25,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 
 
-class ExternalLongCodec extends AbstractBitCodec<Long> {
+class ExternalLongCodec extends AbstractLongCodec {
     private final OutputStream outputStream;
     private final InputStream inputStream;
 
@@ -35,7 +35,7 @@ class ExternalLongCodec extends AbstractBitCodec<Long> {
     }
 
     @Override
-    public Long read(final BitInputStream bitInputStream) throws IOException {
+    public long readLong(final BitInputStream bitInputStream) throws IOException {
         long result = 0;
         for (int i = 0; i < 8; i++) {
             result <<= 8;
@@ -45,7 +45,7 @@ class ExternalLongCodec extends AbstractBitCodec<Long> {
     }
 
     @Override
-    public long write(final BitOutputStream bitOutputStream, Long value) throws IOException {
+    public long writeLong(final BitOutputStream bitOutputStream, long value) throws IOException {
         for (int i = 0; i < 8; i++) {
             outputStream.write((int) (value & 0xFF));
             value >>>= 8;
@@ -57,9 +57,4 @@ class ExternalLongCodec extends AbstractBitCodec<Long> {
     public long numberOfBits(final Long object) {
         return 8;
     }
-
-    @Override
-    public Long read(final BitInputStream bitInputStream, final int length) throws IOException {
-        throw new RuntimeException("Not implemented.");
-    }
 }
@@ -17,14 +17,14 @@
  */
 package htsjdk.samtools.cram.encoding.huffman.codec;
 
-import htsjdk.samtools.cram.encoding.AbstractBitCodec;
+import htsjdk.samtools.cram.encoding.AbstractIntCodec;
 import htsjdk.samtools.cram.io.BitInputStream;
 import htsjdk.samtools.cram.io.BitOutputStream;
 
 import java.io.IOException;
 
 
-class CanonicalHuffmanIntegerCodec extends AbstractBitCodec<Integer> {
+class CanonicalHuffmanIntegerCodec extends AbstractIntCodec {
     private final HuffmanIntHelper helper;
 
     /*
@@ -36,12 +36,12 @@ class CanonicalHuffmanIntegerCodec extends AbstractBitCodec<Integer> {
     }
 
     @Override
-    public Integer read(final BitInputStream bitInputStream) throws IOException {
+    public int readInt(final BitInputStream bitInputStream) throws IOException {
         return helper.read(bitInputStream);
     }
 
     @Override
-    public long write(final BitOutputStream bitOutputStream, final Integer object) throws IOException {
+    public long writeInt(final BitOutputStream bitOutputStream, final int object) throws IOException {
         return helper.write(bitOutputStream, object);
     }
 
@@ -51,9 +51,4 @@ class CanonicalHuffmanIntegerCodec extends AbstractBitCodec<Integer> {
         bitCode = helper.codes.get(object);
         return bitCode.bitLength;
     }
-
-    @Override
-    public Integer read(final BitInputStream bitInputStream, final int length) throws IOException {
-        throw new RuntimeException("Not implemented");
-    }
 }
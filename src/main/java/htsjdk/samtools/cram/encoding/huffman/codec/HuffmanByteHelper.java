@@ -40,6 +40,7 @@ class HuffmanByteHelper {
     private final int[] sortedValuesByBitCode;
     private final int[] sortedBitLensByBitCode;
     private final int[] bitCodeToValue;
+    private final HuffmanDecodingTable decodingTable;
     private final HuffmanBitCode[] valueToCode;
 
     HuffmanByteHelper(final byte[] values, final int[] bitLengths) {
@@ -77,6 +78,7 @@ class HuffmanByteHelper {
         for (int i = 0; i < sortedCodes.length; i++) {
             bitCodeToValue[sortedCodes[i].bitCode] = i;
         }
+        decodingTable = new HuffmanDecodingTable(sortedCodes);
 
         valueToCode = new HuffmanBitCode[255];
         Arrays.fill(valueToCode, null);
@@ -138,6 +140,16 @@ class HuffmanByteHelper {
     }
 
     final byte read(final BitInputStream bitInputStream) throws IOException {
+        final int entry = decodingTable.peek(bitInputStream);
+        final int length = decodingTable.length(entry);
+        if (length >= 0) {
+            bitInputStream.readBits(length);
+            return (byte) decodingTable.value(entry);
+        }
+        return readLongCode(bitInputStream);
+    }
+
+    private byte readLongCode(final BitInputStream bitInputStream) throws IOException {
         int prevLen = 0;
         int bits = 0;
         for (int i = 0; i < sortedCodes.length; i++) {
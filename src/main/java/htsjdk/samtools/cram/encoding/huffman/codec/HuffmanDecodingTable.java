@@ -0,0 +1,84 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.cram.encoding.huffman.codec;
+
+import htsjdk.samtools.cram.io.BitInputStream;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Lookup table of canonical Huffman codes indexed by the next {@link #MAX_LOOKUP_BITS} bits of the stream or fewer.
+ * A single peek resolves all codes that are not longer than the table: the entries for every bit sequence that starts
+ * with such a code hold its value and length.  Longer codes are decoded by the caller.
+ */
+class HuffmanDecodingTable {
+    static final int MAX_LOOKUP_BITS = 10;
+
+    private final int lookupBits;
+    private final int[] values;
+    // -1 for the prefixes of codes longer than the table
+    private final int[] lengths;
+
+    HuffmanDecodingTable(final HuffmanBitCode[] codes) {
+        int maxLength = 0;
+        for (final HuffmanBitCode code : codes) {
+            maxLength = Math.max(maxLength, code.bitLength);
+        }
+        lookupBits = Math.min(maxLength, MAX_LOOKUP_BITS);
+        values = new int[1 << lookupBits];
+        lengths = new int[1 << lookupBits];
+        Arrays.fill(lengths, -1);
+        for (final HuffmanBitCode code : codes) {
+            if (code.bitLength <= lookupBits) {
+                final int unusedBits = lookupBits - code.bitLength;
+                final int first = code.bitCode << unusedBits;
+                final int last = first + (1 << unusedBits);
+                Arrays.fill(values, first, last, code.value);
+                Arrays.fill(lengths, first, last, code.bitLength);
+            }
+        }
+    }
+
+    /**
+     * @param bitInputStream the stream to peek at
+     * @return the entry of the table for the next bits of the stream, which are not consumed
+     * @throws IOException as per java IO contract
+     */
+    final int peek(final BitInputStream bitInputStream) throws IOException {
+        return bitInputStream.peekBits(lookupBits);
+    }
+
+    /**
+     * @return the length of the code of the entry, or -1 if the code is longer than the table
+     */
+    final int length(final int entry) {
+        return lengths[entry];
+    }
+
+    /**
+     * @return the value of the code of the entry
+     */
+    final int value(final int entry) {
+        return values[entry];
+    }
+}
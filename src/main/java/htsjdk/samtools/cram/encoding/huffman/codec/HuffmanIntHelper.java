@@ -42,6 +42,7 @@ class HuffmanIntHelper {
     private final int[] sortedValuesByBitCode;
     private final int[] sortedBitLensByBitCode;
     private final int[] bitCodeToValue;
+    private final HuffmanDecodingTable decodingTable;
 
     public HuffmanIntHelper(final int[] values, final int[] bitLengths) {
         this.values = values;
@@ -83,6 +84,7 @@ class HuffmanIntHelper {
         for (int i = 0; i < sortedBitCodes.length; i++) {
             bitCodeToValue[sortedCodes[i].bitCode] = i;
         }
+        decodingTable = new HuffmanDecodingTable(sortedCodes);
     }
 
     private void buildCodeBook() {
@@ -137,6 +139,16 @@ class HuffmanIntHelper {
     }
 
     public final int read(final BitInputStream bitInputStream) throws IOException {
+        final int entry = decodingTable.peek(bitInputStream);
+        final int length = decodingTable.length(entry);
+        if (length >= 0) {
+            bitInputStream.readBits(length);
+            return decodingTable.value(entry);
+        }
+        return readLongCode(bitInputStream);
+    }
+
+    private int readLongCode(final BitInputStream bitInputStream) throws IOException {
         int prevLen = 0;
         int bits = 0;
         for (int i = 0; i < sortedCodes.length; i++) {
@@ -105,11 +105,11 @@ class Frequencies {
         } while (i != 0);
     }
 
-    static int[] calcFrequencies_o0(final ByteBuffer in) {
+    static int[] calcFrequencies_o0(final ByteBuffer in, final int[] F) {
         final int in_size = in.remaining();
 
         // Compute statistics
-        final int[] F = new int[256];
+        Arrays.fill(F, 0);
         int T = 0;
         for (int i = 0; i < in_size; i++) {
             F[0xFF & in.get()]++;
@@ -145,10 +145,11 @@ class Frequencies {
         return F;
     }
 
-    static int[][] calcFrequencies_o1(final ByteBuffer in) {
+    static int[][] calcFrequencies_o1(final ByteBuffer in, final int[][] F) {
         final int in_size = in.remaining();
 
-        final int[][] F = new int[256][256];
+        for (final int[] F_i_ : F)
+            Arrays.fill(F_i_, 0);
         final int[] T = new int[256];
         int c;
 
@@ -193,18 +194,13 @@ class Frequencies {
         return F;
     }
 
-    static RansEncSymbol[] buildSyms_o0(final int[] F) {
-        final int[] C = new int[256];
-        final RansEncSymbol[] syms = new RansEncSymbol[256];
-        for (int i = 0; i < syms.length; i++)
-            syms[i] = new RansEncSymbol();
-
+    static RansEncSymbol[] buildSyms_o0(final int[] F, final RansEncSymbol[] syms) {
         int T = 0;
         for (int j = 0; j < 256; j++) {
-            C[j] = T;
+            final int C = T;
             T += F[j];
             if (F[j] != 0) {
-                Encoding.RansEncSymbolInit(syms[j], C[j], F[j],
+                Encoding.RansEncSymbolInit(syms[j], C, F[j],
                         Constants.TF_SHIFT);
             }
         }
@@ -244,12 +240,7 @@ class Frequencies {
         return cp.position() - start;
     }
 
-    static RansEncSymbol[][] buildSyms_o1(final int[][] F) {
-        final RansEncSymbol[][] syms = new RansEncSymbol[256][256];
-        for (int i = 0; i < syms.length; i++)
-            for (int j = 0; j < syms[i].length; j++)
-                syms[i][j] = new RansEncSymbol();
-
+    static RansEncSymbol[][] buildSyms_o1(final int[][] F, final RansEncSymbol[][] syms) {
         for (int i = 0; i < 256; i++) {
             final int[] F_i_ = F[i];
             int x = 0;
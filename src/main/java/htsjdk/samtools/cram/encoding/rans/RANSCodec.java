@@ -0,0 +1,251 @@
+package htsjdk.samtools.cram.encoding.rans;
+
+import htsjdk.samtools.cram.encoding.rans.Encoding.RansEncSymbol;
+import htsjdk.samtools.cram.encoding.rans.RANS.ORDER;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A rANS codec keeping its frequency, symbol and decoding tables and its compression buffer from one block to the
+ * next, so that coding many blocks does not allocate them for each one.  The order-1 tables, 256 by 256, are only
+ * allocated on first use.
+ * <p>
+ * The tables stay allocated for the lifetime of the instance, and so does the compression buffer, unless a block
+ * needs one larger than 8 MB: such a buffer is allocated for that block only.
+ * <p>
+ * An instance is not thread safe, it is meant to be confined to a thread.  {@link RANS} codes each block with a new
+ * instance.
+ */
+public class RANSCodec {
+    private static final int ORDER_BYTE_LENGTH = 1;
+    private static final int COMPRESSED_BYTE_LENGTH = 4;
+    private static final int RAW_BYTE_LENGTH = 4;
+    private static final int PREFIX_BYTE_LENGTH = ORDER_BYTE_LENGTH
+            + COMPRESSED_BYTE_LENGTH + RAW_BYTE_LENGTH;
+    private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
+    // largest compression buffer kept from one block to the next
+    static final int MAX_CACHED_BUFFER_SIZE = 8 * 1024 * 1024;
+
+    // order-0 tables
+    private final int[] frequencies0 = new int[256];
+    private final RansEncSymbol[] encodingSyms0 = new RansEncSymbol[256];
+    private final Decoding.AriDecoder decoder0 = new Decoding.AriDecoder();
+    private final Decoding.RansDecSymbol[] decodingSyms0 = new Decoding.RansDecSymbol[256];
+
+    // order-1 tables
+    private int[][] frequencies1;
+    private RansEncSymbol[][] encodingSyms1;
+    private Decoding.AriDecoder[] decoders1;
+    private Decoding.RansDecSymbol[][] decodingSyms1;
+
+    private ByteBuffer compressionBuffer;
+
+    public RANSCodec() {
+        for (int i = 0; i < 256; i++) {
+            encodingSyms0[i] = new RansEncSymbol();
+            decodingSyms0[i] = new Decoding.RansDecSymbol();
+        }
+    }
+
+    /**
+     * Compress a byte array into a new rANS blob.
+     *
+     * @param data  byte array to compress
+     * @param order rANS order
+     * @return compressed blob
+     */
+    public byte[] compress(final byte[] data, final ORDER order) {
+        final ByteBuffer buffer = compress(ByteBuffer.wrap(data), order, null);
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Uncompress a rANS blob into a new byte array.
+     *
+     * @param data compressed data blob
+     * @return uncompressed data
+     */
+    public byte[] uncompress(final byte[] data) {
+        final ByteBuffer buffer = uncompress(ByteBuffer.wrap(data), null);
+        if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.array().length == buffer.limit())
+            return buffer.array();
+
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Uncompress a rANS blob.
+     *
+     * @param in  compressed data
+     * @param out buffer to uncompress into, or null to allocate one
+     * @return the uncompressed data
+     */
+    public ByteBuffer uncompress(final ByteBuffer in, ByteBuffer out) {
+        if (in.remaining() == 0)
+            return ByteBuffer.allocate(0);
+
+        final ORDER order = ORDER.fromInt(in.get());
+
+        in.order(ByteOrder.LITTLE_ENDIAN);
+        final int in_sz = in.getInt();
+        if (in_sz != in.remaining() - RAW_BYTE_LENGTH)
+            throw new RuntimeException("Incorrect input length.");
+        final int out_sz = in.getInt();
+        if (out == null)
+            out = ByteBuffer.allocate(out_sz);
+        else
+            out.limit(out_sz);
+        if (out.remaining() < out_sz)
+            throw new RuntimeException("Output buffer too small to fit "
+                    + out_sz + " bytes.");
+
+        switch (order) {
+            case ZERO:
+                return uncompress_order0_way4(in, out);
+
+            case ONE:
+                return uncompress_order1_way4(in, out);
+
+            default:
+                throw new RuntimeException("Unknown rANS order: " + order);
+        }
+    }
+
+    /**
+     * Compress data into a rANS blob.
+     *
+     * @param in    data to compress
+     * @param order rANS order
+     * @param out   buffer to compress into, or null to use the buffer of this codec, which the next call may
+     *              overwrite
+     * @return the compressed blob
+     */
+    public ByteBuffer compress(final ByteBuffer in, final ORDER order, final ByteBuffer out) {
+        if (in.remaining() == 0)
+            return EMPTY_BUFFER;
+
+        if (in.remaining() < 4)
+            return encode_order0_way4(in, out);
+
+        switch (order) {
+            case ZERO:
+                return encode_order0_way4(in, out);
+            case ONE:
+                return encode_order1_way4(in, out);
+
+            default:
+                throw new RuntimeException("Unknown rANS order: " + order);
+        }
+    }
+
+    private ByteBuffer allocateIfNeeded(final int in_size,
+                                        final ByteBuffer out_buf) {
+        final int compressedSize = (int) (1.05 * in_size + 257 * 257 * 3 + 4);
+        if (out_buf == null) {
+            if (compressedSize > MAX_CACHED_BUFFER_SIZE)
+                return ByteBuffer.allocate(compressedSize);
+            if (compressionBuffer == null || compressionBuffer.capacity() < compressedSize)
+                compressionBuffer = ByteBuffer.allocate(compressedSize);
+            compressionBuffer.clear();
+            return compressionBuffer;
+        }
+        if (out_buf.remaining() < compressedSize)
+            throw new RuntimeException("Insufficient buffer size.");
+        out_buf.order(ByteOrder.LITTLE_ENDIAN);
+        return out_buf;
+    }
+
+    private ByteBuffer encode_order0_way4(final ByteBuffer in,
+                                          ByteBuffer out_buf) {
+        final int in_size = in.remaining();
+        out_buf = allocateIfNeeded(in_size, out_buf);
+        final int freqTableStart = PREFIX_BYTE_LENGTH;
+        out_buf.position(freqTableStart);
+
+        final int[] F = Frequencies.calcFrequencies_o0(in, frequencies0);
+        final RansEncSymbol[] syms = Frequencies.buildSyms_o0(F, encodingSyms0);
+
+        final ByteBuffer cp = out_buf.slice();
+        final int frequencyTable_size = Frequencies.writeFrequencies_o0(cp, F);
+
+        in.rewind();
+        final int compressedBlob_size = E04.compress(in, syms, cp);
+
+        finalizeCompressed(0, out_buf, in_size, frequencyTable_size,
+                compressedBlob_size);
+        return out_buf;
+    }
+
+    private ByteBuffer encode_order1_way4(final ByteBuffer in,
+                                          ByteBuffer out_buf) {
+        final int in_size = in.remaining();
+        out_buf = allocateIfNeeded(in_size, out_buf);
+        final int freqTableStart = PREFIX_BYTE_LENGTH;
+        out_buf.position(freqTableStart);
+
+        if (frequencies1 == null) {
+            frequencies1 = new int[256][256];
+            encodingSyms1 = new RansEncSymbol[256][256];
+            for (int i = 0; i < encodingSyms1.length; i++)
+                for (int j = 0; j < encodingSyms1[i].length; j++)
+                    encodingSyms1[i][j] = new RansEncSymbol();
+        }
+        final int[][] F = Frequencies.calcFrequencies_o1(in, frequencies1);
+        final RansEncSymbol[][] syms = Frequencies.buildSyms_o1(F, encodingSyms1);
+
+        final ByteBuffer cp = out_buf.slice();
+        final int frequencyTable_size = Frequencies.writeFrequencies_o1(cp, F);
+
+        in.rewind();
+        final int compressedBlob_size = E14.compress(in, syms, cp);
+
+        finalizeCompressed(1, out_buf, in_size, frequencyTable_size,
+                compressedBlob_size);
+        return out_buf;
+    }
+
+    private static void finalizeCompressed(final int order, final ByteBuffer out_buf,
+                                           final int in_size, final int frequencyTable_size, final int compressedBlob_size) {
+        out_buf.limit(PREFIX_BYTE_LENGTH + frequencyTable_size
+                + compressedBlob_size);
+        out_buf.put(0, (byte) order);
+        out_buf.order(ByteOrder.LITTLE_ENDIAN);
+        final int compressedSizeOffset = ORDER_BYTE_LENGTH;
+        out_buf.putInt(compressedSizeOffset, frequencyTable_size
+                + compressedBlob_size);
+        final int rawSizeOffset = ORDER_BYTE_LENGTH + COMPRESSED_BYTE_LENGTH;
+        out_buf.putInt(rawSizeOffset, in_size);
+        out_buf.rewind();
+    }
+
+    private ByteBuffer uncompress_order0_way4(final ByteBuffer in,
+                                              final ByteBuffer out) {
+        in.order(ByteOrder.LITTLE_ENDIAN);
+        Frequencies.readStats_o0(in, decoder0, decodingSyms0);
+
+        D04.uncompress(in, decoder0, decodingSyms0, out);
+
+        return out;
+    }
+
+    private ByteBuffer uncompress_order1_way4(final ByteBuffer in,
+                                              final ByteBuffer out_buf) {
+        if (decoders1 == null) {
+            decoders1 = new Decoding.AriDecoder[256];
+            decodingSyms1 = new Decoding.RansDecSymbol[256][256];
+            for (int i = 0; i < decodingSyms1.length; i++)
+                for (int j = 0; j < decodingSyms1[i].length; j++)
+                    decodingSyms1[i][j] = new Decoding.RansDecSymbol();
+        }
+        Frequencies.readStats_o1(in, decoders1, decodingSyms1);
+
+        D14.uncompress(in, out_buf, decoders1, decodingSyms1);
+
+        return out_buf;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.cram.encoding.reader;
+
+import java.io.IOException;
+
+/**
+ * A {@link DataReader} of byte values, which reads them without boxing.
+ */
+public interface ByteDataReader extends DataReader<Byte> {
+
+    /**
+     * Read a single value
+     * @return the value read
+     * @throws IOException as per java IO contract
+     */
+    byte readByte() throws IOException;
+
+    /**
+     * Read the given number of values into a byte array.
+     * @param array the array to read into
+     * @param offset offset in the array
+     * @param length number of values to read
+     * @throws IOException as per java IO contract
+     */
+    default void readInto(final byte[] array, final int offset, final int length) throws IOException {
+        for (int i = 0; i < length; i++) {
+            array[offset + i] = readByte();
+        }
+    }
+
+    @Override
+    default Byte readData() throws IOException {
+        return readByte();
+    }
+
+    @Override
+    default Byte readDataArray(final int length) throws IOException {
+        throw new RuntimeException("Not implemented.");
+    }
+}
@@ -20,11 +20,13 @@ package htsjdk.samtools.cram.encoding.reader;
 import htsjdk.samtools.cram.CRAMException;
 import htsjdk.samtools.cram.common.IntHashMap;
 import htsjdk.samtools.cram.encoding.BitCodec;
+import htsjdk.samtools.cram.encoding.ByteCodec;
 import htsjdk.samtools.cram.encoding.DataSeries;
 import htsjdk.samtools.cram.encoding.DataSeriesMap;
 import htsjdk.samtools.cram.encoding.DataSeriesType;
 import htsjdk.samtools.cram.encoding.Encoding;
 import htsjdk.samtools.cram.encoding.EncodingFactory;
+import htsjdk.samtools.cram.encoding.IntCodec;
 import htsjdk.samtools.cram.io.BitInputStream;
 import htsjdk.samtools.cram.structure.CompressionHeader;
 import htsjdk.samtools.cram.structure.EncodingID;
@@ -96,7 +98,7 @@ public class DataReaderFactory {
                                            final Map<Integer, InputStream> inputMap) {
         if (params.id == EncodingID.NULL)
             //noinspection ConstantConditions
-            return collectStats ? new DataReaderWithStats(
+            return collectStats ? buildReaderWithStats(valueType,
                     buildNullReader(valueType)) : buildNullReader(valueType);
 
         final EncodingFactory encodingFactory = new EncodingFactory();
@@ -106,20 +108,45 @@ public class DataReaderFactory {
                     + valueType.name() + ", id=" + params.id);
         encoding.fromByteArray(params.params);
 
+        final DataReader<T> reader = buildDefaultReader(valueType, encoding.buildCodec(inputMap, null), bitInputStream);
         //noinspection ConstantConditions
-        return collectStats ? new DataReaderWithStats(new DefaultDataReader<T>(
-                encoding.buildCodec(inputMap, null), bitInputStream))
-                : new DefaultDataReader<T>(encoding.buildCodec(inputMap, null),
-                bitInputStream);
+        return collectStats ? buildReaderWithStats(valueType, reader) : reader;
+    }
+
+    /**
+     * Int and byte series are read through the primitive codecs, so that the record reader does not box them.
+     */
+    private static <T> DataReader<T> buildDefaultReader(final DataSeriesType valueType, final BitCodec<T> codec,
+                                                        final BitInputStream bitInputStream) {
+        switch (valueType) {
+            case BYTE:
+                return (DataReader<T>) new DefaultByteDataReader((ByteCodec) codec, bitInputStream);
+            case INT:
+                return (DataReader<T>) new DefaultIntDataReader((IntCodec) codec, bitInputStream);
+
+            default:
+                return new DefaultDataReader<T>(codec, bitInputStream);
+        }
+    }
+
+    private static <T> DataReader<T> buildReaderWithStats(final DataSeriesType valueType, final DataReader<T> reader) {
+        switch (valueType) {
+            case BYTE:
+                return (DataReader<T>) new ByteDataReaderWithStats((ByteDataReader) reader);
+            case INT:
+                return (DataReader<T>) new IntDataReaderWithStats((IntDataReader) reader);
+
+            default:
+                return new DataReaderWithStats<T>(reader);
+        }
     }
 
     private static <T> DataReader<T> buildNullReader(final DataSeriesType valueType) {
         switch (valueType) {
             case BYTE:
-                return (DataReader<T>) new SingleValueReader<Byte>((byte) 0);
+                return (DataReader<T>) new SingleByteReader((byte) 0);
             case INT:
-                return (DataReader<T>) new SingleValueReader<Integer>(
-                        0);
+                return (DataReader<T>) new SingleIntReader(0);
             case LONG:
                 return (DataReader<T>) new SingleValueReader<Long>((long) 0);
             case BYTE_ARRAY:
@@ -151,6 +178,46 @@ public class DataReaderFactory {
 
     }
 
+    private static class DefaultIntDataReader implements IntDataReader {
+        private final IntCodec codec;
+        private final BitInputStream bitInputStream;
+
+        public DefaultIntDataReader(final IntCodec codec, final BitInputStream bitInputStream) {
+            this.codec = codec;
+            this.bitInputStream = bitInputStream;
+        }
+
+        @Override
+        public int readInt() throws IOException {
+            return codec.readInt(bitInputStream);
+        }
+
+        @Override
+        public void readInto(final int[] array, final int offset, final int length) throws IOException {
+            codec.readInto(bitInputStream, array, offset, length);
+        }
+    }
+
+    private static class DefaultByteDataReader implements ByteDataReader {
+        private final ByteCodec codec;
+        private final BitInputStream bitInputStream;
+
+        public DefaultByteDataReader(final ByteCodec codec, final BitInputStream bitInputStream) {
+            this.codec = codec;
+            this.bitInputStream = bitInputStream;
+        }
+
+        @Override
+        public byte readByte() throws IOException {
+            return codec.readByte(bitInputStream);
+        }
+
+        @Override
+        public void readInto(final byte[] array, final int offset, final int length) throws IOException {
+            codec.readInto(bitInputStream, array, offset, length);
+        }
+    }
+
     private static class SingleValueReader<T> implements DataReader<T> {
         private final T value;
 
@@ -169,6 +236,32 @@ public class DataReaderFactory {
         }
     }
 
+    private static class SingleIntReader implements IntDataReader {
+        private final int value;
+
+        public SingleIntReader(final int value) {
+            this.value = value;
+        }
+
+        @Override
+        public int readInt() {
+            return value;
+        }
+    }
+
+    private static class SingleByteReader implements ByteDataReader {
+        private final byte value;
+
+        public SingleByteReader(final byte value) {
+            this.value = value;
+        }
+
+        @Override
+        public byte readByte() {
+            return value;
+        }
+    }
+
     public static class DataReaderWithStats<T> implements DataReader<T> {
         public long nanos = 0;
         final DataReader<T> delegate;
@@ -194,6 +287,54 @@ public class DataReaderFactory {
         }
     }
 
+    public static class IntDataReaderWithStats extends DataReaderWithStats<Integer> implements IntDataReader {
+        final IntDataReader intDelegate;
+
+        public IntDataReaderWithStats(final IntDataReader delegate) {
+            super(delegate);
+            this.intDelegate = delegate;
+        }
+
+        @Override
+        public int readInt() throws IOException {
+            final long time = System.nanoTime();
+            final int value = intDelegate.readInt();
+            nanos += System.nanoTime() - time;
+            return value;
+        }
+
+        @Override
+        public void readInto(final int[] array, final int offset, final int length) throws IOException {
+            final long time = System.nanoTime();
+            intDelegate.readInto(array, offset, length);
+            nanos += System.nanoTime() - time;
+        }
+    }
+
+    public static class ByteDataReaderWithStats extends DataReaderWithStats<Byte> implements ByteDataReader {
+        final ByteDataReader byteDelegate;
+
+        public ByteDataReaderWithStats(final ByteDataReader delegate) {
+            super(delegate);
+            this.byteDelegate = delegate;
+        }
+
+        @Override
+        public byte readByte() throws IOException {
+            final long time = System.nanoTime();
+            final byte value = byteDelegate.readByte();
+            nanos += System.nanoTime() - time;
+            return value;
+        }
+
+        @Override
+        public void readInto(final byte[] array, final int offset, final int length) throws IOException {
+            final long time = System.nanoTime();
+            byteDelegate.readInto(array, offset, length);
+            nanos += System.nanoTime() - time;
+        }
+    }
+
     public Map<String, DataReaderWithStats> getStats(final CramRecordReader reader)
             throws IllegalArgumentException, IllegalAccessException {
         final Map<String, DataReaderWithStats> map = new TreeMap<String, DataReaderFactory.DataReaderWithStats>();
@@ -89,42 +89,42 @@ public class RefSeqIdReader extends AbstractReader {
 	public void read() {
 		cramRecord.sequenceId = globalReferenceSequenceId;
 		try {
-			cramRecord.flags = bitFlagsCodec.readData();
-			cramRecord.compressionFlags = compressionBitFlagsCodec.readData();
+			cramRecord.flags = bitFlagsCodec.readInt();
+			cramRecord.compressionFlags = compressionBitFlagsCodec.readByte();
 			if (refId == Slice.MULTI_REFERENCE)
-				cramRecord.sequenceId = refIdCodec.readData();
+				cramRecord.sequenceId = refIdCodec.readInt();
 			else
 				cramRecord.sequenceId = refId;
 
-			cramRecord.readLength = readLengthCodec.readData();
+			cramRecord.readLength = readLengthCodec.readInt();
 			if (APDelta) {
-				cramRecord.alignmentDelta = alignmentStartCodec.readData();
+				cramRecord.alignmentDelta = alignmentStartCodec.readInt();
 				alignmentStart += cramRecord.alignmentDelta;
 			}
 			else {
-				cramRecord.alignmentStart = alignmentStartCodec.readData();
+				cramRecord.alignmentStart = alignmentStartCodec.readInt();
 				alignmentStart = cramRecord.alignmentStart;
 			}
 
-			cramRecord.readGroupID = readGroupCodec.readData();
+			cramRecord.readGroupID = readGroupCodec.readInt();
 
 			if (captureReadNames)
 				cramRecord.readName = new String(readNameCodec.readData(), charset);
 
 			// mate record:
 			if (cramRecord.isDetached()) {
-				cramRecord.mateFlags = mateBitFlagCodec.readData();
+				cramRecord.mateFlags = mateBitFlagCodec.readByte();
 				if (!captureReadNames)
 					cramRecord.readName = new String(readNameCodec.readData(), charset);
 
-				cramRecord.mateSequenceID = mateReferenceIdCodec.readData();
-				cramRecord.mateAlignmentStart = mateAlignmentStartCodec.readData();
-				cramRecord.templateSize = insertSizeCodec.readData();
+				cramRecord.mateSequenceID = mateReferenceIdCodec.readInt();
+				cramRecord.mateAlignmentStart = mateAlignmentStartCodec.readInt();
+				cramRecord.templateSize = insertSizeCodec.readInt();
 				detachedCount++;
 			} else if (cramRecord.isHasMateDownStream())
-				cramRecord.recordsToNextFragment = distanceToNextFragmentCodec.readData();
+				cramRecord.recordsToNextFragment = distanceToNextFragmentCodec.readInt();
 
-			final Integer tagIdList = tagIdListCodec.readData();
+			final int tagIdList = tagIdListCodec.readInt();
 			final byte[][] ids = tagIdDictionary[tagIdList];
 			if (ids.length > 0) {
 				final int tagCount = ids.length;
@@ -139,25 +139,25 @@ public class RefSeqIdReader extends AbstractReader {
 
 			if (!cramRecord.isSegmentUnmapped()) {
 				// reading read features:
-				final int size = numberOfReadFeaturesCodec.readData();
+				final int size = numberOfReadFeaturesCodec.readInt();
 				int prevPos = 0;
 				final java.util.List<ReadFeature> readFeatures = new LinkedList<>();
 				cramRecord.readFeatures = readFeatures;
 				for (int i = 0; i < size; i++) {
-					final Byte operator = readFeatureCodeCodec.readData();
+					final byte operator = readFeatureCodeCodec.readByte();
 
-					final int pos = prevPos + readFeaturePositionCodec.readData();
+					final int pos = prevPos + readFeaturePositionCodec.readInt();
 					prevPos = pos;
 
 					switch (operator) {
 					case ReadBase.operator:
-						final ReadBase readBase = new ReadBase(pos, baseCodec.readData(), qualityScoreCodec.readData());
+						final ReadBase readBase = new ReadBase(pos, baseCodec.readByte(), qualityScoreCodec.readByte());
 						readFeatures.add(readBase);
 						break;
 					case Substitution.operator:
 						final Substitution substitution = new Substitution();
 						substitution.setPosition(pos);
-						final byte code = baseSubstitutionCodec.readData();
+						final byte code = baseSubstitutionCodec.readByte();
 						substitution.setCode(code);
 						readFeatures.add(substitution);
 						break;
@@ -170,28 +170,28 @@ public class RefSeqIdReader extends AbstractReader {
 						readFeatures.add(softClip);
 						break;
 					case HardClip.operator:
-						final HardClip hardCLip = new HardClip(pos, hardClipCodec.readData());
+						final HardClip hardCLip = new HardClip(pos, hardClipCodec.readInt());
 						readFeatures.add(hardCLip);
 						break;
 					case Padding.operator:
-						final Padding padding = new Padding(pos, paddingCodec.readData());
+						final Padding padding = new Padding(pos, paddingCodec.readInt());
 						readFeatures.add(padding);
 						break;
 					case Deletion.operator:
-						final Deletion deletion = new Deletion(pos, deletionLengthCodec.readData());
+						final Deletion deletion = new Deletion(pos, deletionLengthCodec.readInt());
 						readFeatures.add(deletion);
 						break;
 					case RefSkip.operator:
-						final RefSkip refSkip = new RefSkip(pos, refSkipCodec.readData());
+						final RefSkip refSkip = new RefSkip(pos, refSkipCodec.readInt());
 						readFeatures.add(refSkip);
 						break;
 					case InsertBase.operator:
-						final InsertBase insertBase = new InsertBase(pos, baseCodec.readData());
+						final InsertBase insertBase = new InsertBase(pos, baseCodec.readByte());
 						readFeatures.add(insertBase);
 						break;
 					case BaseQualityScore.operator:
 						final BaseQualityScore baseQualityScore = new BaseQualityScore(pos,
-								qualityScoreCodec.readData());
+								qualityScoreCodec.readByte());
 						readFeatures.add(baseQualityScore);
 						break;
 					case Bases.operator:
@@ -208,7 +208,7 @@ public class RefSeqIdReader extends AbstractReader {
 				}
 
 				// mapping quality:
-				cramRecord.mappingQuality = mappingScoreCodec.readData();
+				cramRecord.mappingQuality = mappingScoreCodec.readInt();
 				if (cramRecord.isForcePreserveQualityScores()) {
 					cramRecord.qualityScores = qualityScoresCodec.readDataArray(cramRecord.readLength);
 				}
@@ -218,8 +218,7 @@ public class RefSeqIdReader extends AbstractReader {
 					cramRecord.qualityScores = SAMRecord.NULL_QUALS;
 				} else {
 					final byte[] bases = new byte[cramRecord.readLength];
-					for (int i = 0; i < bases.length; i++)
-						bases[i] = baseCodec.readData();
+					baseCodec.readInto(bases, 0, bases.length);
 					cramRecord.readBases = bases;
 
 					if (cramRecord.isForcePreserveQualityScores()) {
@@ -0,0 +1,45 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.cram.encoding.writer;
+
+import java.io.IOException;
+
+/**
+ * A {@link DataWriter} of byte values, which writes them without boxing.
+ */
+public interface ByteDataWriter extends DataWriter<Byte> {
+
+    /**
+     * Write a single value out.
+     *
+     * @param value the value to be written
+     * @return number of bits written
+     * @throws IOException as per java IO contract
+     */
+    @SuppressWarnings("UnusedReturnValue")
+    long writeByte(byte value) throws IOException;
+
+    @Override
+    default long writeData(final Byte value) throws IOException {
+        return writeByte(value);
+    }
+}
@@ -18,14 +18,17 @@
 package htsjdk.samtools.cram.encoding.writer;
 
 import htsjdk.samtools.cram.encoding.BitCodec;
+import htsjdk.samtools.cram.encoding.ByteCodec;
 import htsjdk.samtools.cram.encoding.DataSeries;
 import htsjdk.samtools.cram.encoding.DataSeriesMap;
 import htsjdk.samtools.cram.encoding.DataSeriesType;
 import htsjdk.samtools.cram.encoding.Encoding;
 import htsjdk.samtools.cram.encoding.EncodingFactory;
+import htsjdk.samtools.cram.encoding.IntCodec;
 import htsjdk.samtools.cram.io.BitOutputStream;
 import htsjdk.samtools.cram.io.ExposedByteArrayOutputStream;
 import htsjdk.samtools.cram.structure.CompressionHeader;
+import htsjdk.samtools.cram.structure.EncodingID;
 import htsjdk.samtools.cram.structure.EncodingKey;
 import htsjdk.samtools.cram.structure.EncodingParams;
 
@@ -87,8 +90,34 @@ public class DataWriterFactory {
 
         encoding.fromByteArray(params.params);
 
-        return new DefaultDataWriter<T>(encoding.buildCodec(null, outputMap),
-                bitOutputStream);
+        final BitCodec<T> codec = encoding.buildCodec(null, outputMap);
+        if (params.id == EncodingID.NULL)
+            return buildNullWriter(valueType, codec);
+
+        switch (valueType) {
+            case BYTE:
+                return (DataWriter<T>) new DefaultByteDataWriter((ByteCodec) codec, bitOutputStream);
+            case INT:
+                return (DataWriter<T>) new DefaultIntDataWriter((IntCodec) codec, bitOutputStream);
+
+            default:
+                return new DefaultDataWriter<T>(codec, bitOutputStream);
+        }
+    }
+
+    /**
+     * Nothing is written for a series without encoding, so the int and byte writers do not need a codec.
+     */
+    private static <T> DataWriter<T> buildNullWriter(final DataSeriesType valueType, final BitCodec<T> codec) {
+        switch (valueType) {
+            case BYTE:
+                return (DataWriter<T>) new NullByteDataWriter();
+            case INT:
+                return (DataWriter<T>) new NullIntDataWriter();
+
+            default:
+                return new DefaultDataWriter<T>(codec, null);
+        }
     }
 
     private static class DefaultDataWriter<T> implements DataWriter<T> {
@@ -106,4 +135,48 @@ public class DataWriterFactory {
         }
 
     }
+
+    private static class DefaultIntDataWriter implements IntDataWriter {
+        private final IntCodec codec;
+        private final BitOutputStream bitOutputStream;
+
+        public DefaultIntDataWriter(final IntCodec codec, final BitOutputStream bitOutputStream) {
+            this.codec = codec;
+            this.bitOutputStream = bitOutputStream;
+        }
+
+        @Override
+        public long writeInt(final int value) throws IOException {
+            return codec.writeInt(bitOutputStream, value);
+        }
+    }
+
+    private static class DefaultByteDataWriter implements ByteDataWriter {
+        private final ByteCodec codec;
+        private final BitOutputStream bitOutputStream;
+
+        public DefaultByteDataWriter(final ByteCodec codec, final BitOutputStream bitOutputStream) {
+            this.codec = codec;
+            this.bitOutputStream = bitOutputStream;
+        }
+
+        @Override
+        public long writeByte(final byte value) throws IOException {
+            return codec.writeByte(bitOutputStream, value);
+        }
+    }
+
+    private static class NullIntDataWriter implements IntDataWriter {
+        @Override
+        public long writeInt(final int value) {
+            return 0;
+        }
+    }
+
+    private static class NullByteDataWriter implements ByteDataWriter {
+        @Override
+        public long writeByte(final byte value) {
+            return 0;
+        }
+    }
 }
@@ -46,49 +46,49 @@ public class Writer {
     private boolean captureReadNames = false;
 
     @DataSeries(key = EncodingKey.BF_BitFlags, type = DataSeriesType.INT)
-    public DataWriter<Integer> bitFlagsC;
+    public IntDataWriter bitFlagsC;
 
     @DataSeries(key = EncodingKey.CF_CompressionBitFlags, type = DataSeriesType.BYTE)
-    public DataWriter<Byte> compBitFlagsC;
+    public ByteDataWriter compBitFlagsC;
 
     @DataSeries(key = EncodingKey.RL_ReadLength, type = DataSeriesType.INT)
-    public DataWriter<Integer> readLengthC;
+    public IntDataWriter readLengthC;
 
     @DataSeries(key = EncodingKey.AP_AlignmentPositionOffset, type = DataSeriesType.INT)
-    public DataWriter<Integer> alStartC;
+    public IntDataWriter alStartC;
 
     @DataSeries(key = EncodingKey.RG_ReadGroup, type = DataSeriesType.INT)
-    public DataWriter<Integer> readGroupC;
+    public IntDataWriter readGroupC;
 
     @DataSeries(key = EncodingKey.RN_ReadName, type = DataSeriesType.BYTE_ARRAY)
     public DataWriter<byte[]> readNameC;
 
     @DataSeries(key = EncodingKey.NF_RecordsToNextFragment, type = DataSeriesType.INT)
-    public DataWriter<Integer> distanceC;
+    public IntDataWriter distanceC;
 
     @DataSeriesMap(name = "TAG")
     public Map<Integer, DataWriter<byte[]>> tagValueCodecs;
 
     @DataSeries(key = EncodingKey.FN_NumberOfReadFeatures, type = DataSeriesType.INT)
-    public DataWriter<Integer> numberOfReadFeaturesCodec;
+    public IntDataWriter numberOfReadFeaturesCodec;
 
     @DataSeries(key = EncodingKey.FP_FeaturePosition, type = DataSeriesType.INT)
-    public DataWriter<Integer> featurePositionCodec;
+    public IntDataWriter featurePositionCodec;
 
     @DataSeries(key = EncodingKey.FC_FeatureCode, type = DataSeriesType.BYTE)
-    public DataWriter<Byte> featuresCodeCodec;
+    public ByteDataWriter featuresCodeCodec;
 
     @DataSeries(key = EncodingKey.BA_Base, type = DataSeriesType.BYTE)
-    public DataWriter<Byte> baseCodec;
+    public ByteDataWriter baseCodec;
 
     @DataSeries(key = EncodingKey.QS_QualityScore, type = DataSeriesType.BYTE)
-    public DataWriter<Byte> qualityScoreCodec;
+    public ByteDataWriter qualityScoreCodec;
 
     @DataSeries(key = EncodingKey.QS_QualityScore, type = DataSeriesType.BYTE_ARRAY)
     public DataWriter<byte[]> qualityScoreArrayCodec;
 
     @DataSeries(key = EncodingKey.BS_BaseSubstitutionCode, type = DataSeriesType.BYTE)
-    public DataWriter<Byte> baseSubstitutionCodeCodec;
+    public ByteDataWriter baseSubstitutionCodeCodec;
 
     @DataSeries(key = EncodingKey.IN_Insertion, type = DataSeriesType.BYTE_ARRAY)
     public DataWriter<byte[]> insertionCodec;
@@ -97,37 +97,37 @@ public class Writer {
     public DataWriter<byte[]> softClipCodec;
 
     @DataSeries(key = EncodingKey.HC_HardClip, type = DataSeriesType.INT)
-    public DataWriter<Integer> hardClipCodec;
+    public IntDataWriter hardClipCodec;
 
     @DataSeries(key = EncodingKey.PD_padding, type = DataSeriesType.INT)
-    public DataWriter<Integer> paddingCodec;
+    public IntDataWriter paddingCodec;
 
     @DataSeries(key = EncodingKey.DL_DeletionLength, type = DataSeriesType.INT)
-    public DataWriter<Integer> deletionLengthCodec;
+    public IntDataWriter deletionLengthCodec;
 
     @DataSeries(key = EncodingKey.MQ_MappingQualityScore, type = DataSeriesType.INT)
-    public DataWriter<Integer> mappingQualityScoreCodec;
+    public IntDataWriter mappingQualityScoreCodec;
 
     @DataSeries(key = EncodingKey.MF_MateBitFlags, type = DataSeriesType.BYTE)
-    public DataWriter<Byte> mateBitFlagsCodec;
+    public ByteDataWriter mateBitFlagsCodec;
 
     @DataSeries(key = EncodingKey.NS_NextFragmentReferenceSequenceID, type = DataSeriesType.INT)
-    public DataWriter<Integer> nextFragmentReferenceSequenceIDCodec;
+    public IntDataWriter nextFragmentReferenceSequenceIDCodec;
 
     @DataSeries(key = EncodingKey.NP_NextFragmentAlignmentStart, type = DataSeriesType.INT)
-    public DataWriter<Integer> nextFragmentAlignmentStart;
+    public IntDataWriter nextFragmentAlignmentStart;
 
     @DataSeries(key = EncodingKey.TS_InsetSize, type = DataSeriesType.INT)
-    public DataWriter<Integer> templateSize;
+    public IntDataWriter templateSize;
 
     @DataSeries(key = EncodingKey.TL_TagIdList, type = DataSeriesType.INT)
-    public DataWriter<Integer> tagIdListCodec;
+    public IntDataWriter tagIdListCodec;
 
     @DataSeries(key = EncodingKey.RI_RefId, type = DataSeriesType.INT)
-    public DataWriter<Integer> refIdCodec;
+    public IntDataWriter refIdCodec;
 
     @DataSeries(key = EncodingKey.RS_RefSkip, type = DataSeriesType.INT)
-    public DataWriter<Integer> refSkipCodec;
+    public IntDataWriter refSkipCodec;
 
     public int refId;
     public SubstitutionMatrix substitutionMatrix;
@@ -136,19 +136,19 @@ public class Writer {
     public static int detachedCount = 0;
 
     public void write(final CramCompressionRecord r) throws IOException {
-        bitFlagsC.writeData(r.flags);
-        compBitFlagsC.writeData(r.getCompressionFlags());
+        bitFlagsC.writeInt(r.flags);
+        compBitFlagsC.writeByte(r.getCompressionFlags());
         if (refId == -2)
-            refIdCodec.writeData(r.sequenceId);
+            refIdCodec.writeInt(r.sequenceId);
 
-        readLengthC.writeData(r.readLength);
+        readLengthC.writeInt(r.readLength);
 
         if (AP_delta)
-            alStartC.writeData(r.alignmentDelta);
+            alStartC.writeInt(r.alignmentDelta);
         else
-            alStartC.writeData(r.alignmentStart);
+            alStartC.writeInt(r.alignmentStart);
 
-        readGroupC.writeData(r.readGroupID);
+        readGroupC.writeInt(r.readGroupID);
 
         if (isCaptureReadNames()) {
             readNameC.writeData(r.readName.getBytes(charset));
@@ -156,20 +156,20 @@ public class Writer {
 
         // mate record:
         if (r.isDetached()) {
-            mateBitFlagsCodec.writeData(r.getMateFlags());
+            mateBitFlagsCodec.writeByte(r.getMateFlags());
             if (!isCaptureReadNames())
                 readNameC.writeData(r.readName.getBytes(charset));
 
-            nextFragmentReferenceSequenceIDCodec.writeData(r.mateSequenceID);
-            nextFragmentAlignmentStart.writeData(r.mateAlignmentStart);
-            templateSize.writeData(r.templateSize);
+            nextFragmentReferenceSequenceIDCodec.writeInt(r.mateSequenceID);
+            nextFragmentAlignmentStart.writeInt(r.mateAlignmentStart);
+            templateSize.writeInt(r.templateSize);
 
             detachedCount++;
         } else if (r.isHasMateDownStream())
-            distanceC.writeData(r.recordsToNextFragment);
+            distanceC.writeInt(r.recordsToNextFragment);
 
         // tag records:
-        tagIdListCodec.writeData(r.tagIdsIndex.value);
+        tagIdListCodec.writeInt(r.tagIdsIndex.value);
         if (r.tags != null) {
             for (int i = 0; i < r.tags.length; i++) {
                 final DataWriter<byte[]> writer = tagValueCodecs.get(r.tags[i].keyType3BytesAsInt);
@@ -179,10 +179,10 @@ public class Writer {
 
         if (!r.isSegmentUnmapped()) {
             // writing read features:
-            numberOfReadFeaturesCodec.writeData(r.readFeatures.size());
+            numberOfReadFeaturesCodec.writeInt(r.readFeatures.size());
             int prevPos = 0;
             for (final ReadFeature f : r.readFeatures) {
-                featuresCodeCodec.writeData(f.getOperator());
+                featuresCodeCodec.writeByte(f.getOperator());
                 switch (f.getOperator()) {
                     case Substitution.operator:
                         break;
@@ -191,21 +191,21 @@ public class Writer {
                         break;
                 }
 
-                featurePositionCodec.writeData(f.getPosition() - prevPos);
+                featurePositionCodec.writeInt(f.getPosition() - prevPos);
                 prevPos = f.getPosition();
 
                 switch (f.getOperator()) {
                     case ReadBase.operator:
                         final ReadBase rb = (ReadBase) f;
-                        baseCodec.writeData(rb.getBase());
-                        qualityScoreCodec.writeData(rb.getQualityScore());
+                        baseCodec.writeByte(rb.getBase());
+                        qualityScoreCodec.writeByte(rb.getQualityScore());
                         break;
                     case Substitution.operator:
                         final Substitution sv = (Substitution) f;
                         if (sv.getCode() < 0)
-                            baseSubstitutionCodeCodec.writeData(substitutionMatrix.code(sv.getReferenceBase(), sv.getBase()));
+                            baseSubstitutionCodeCodec.writeByte(substitutionMatrix.code(sv.getReferenceBase(), sv.getBase()));
                         else
-                            baseSubstitutionCodeCodec.writeData(sv.getCode());
+                            baseSubstitutionCodeCodec.writeByte(sv.getCode());
                         // baseSubstitutionCodec.writeData((byte) sv.getBaseChange().getChange());
                         break;
                     case Insertion.operator:
@@ -218,27 +218,27 @@ public class Writer {
                         break;
                     case HardClip.operator:
                         final HardClip hv = (HardClip) f;
-                        hardClipCodec.writeData(hv.getLength());
+                        hardClipCodec.writeInt(hv.getLength());
                         break;
                     case Padding.operator:
                         final Padding pv = (Padding) f;
-                        paddingCodec.writeData(pv.getLength());
+                        paddingCodec.writeInt(pv.getLength());
                         break;
                     case Deletion.operator:
                         final Deletion dv = (Deletion) f;
-                        deletionLengthCodec.writeData(dv.getLength());
+                        deletionLengthCodec.writeInt(dv.getLength());
                         break;
                     case RefSkip.operator:
                         final RefSkip rsv = (RefSkip) f;
-                        refSkipCodec.writeData(rsv.getLength());
+                        refSkipCodec.writeInt(rsv.getLength());
                         break;
                     case InsertBase.operator:
                         final InsertBase ib = (InsertBase) f;
-                        baseCodec.writeData(ib.getBase());
+                        baseCodec.writeByte(ib.getBase());
                         break;
                     case BaseQualityScore.operator:
                         final BaseQualityScore bqs = (BaseQualityScore) f;
-                        qualityScoreCodec.writeData(bqs.getQualityScore());
+                        qualityScoreCodec.writeByte(bqs.getQualityScore());
                         break;
                     default:
                         throw new RuntimeException("Unknown read feature operator: " + (char) f.getOperator());
@@ -246,14 +246,14 @@ public class Writer {
             }
 
             // mapping quality:
-            mappingQualityScoreCodec.writeData(r.mappingQuality);
+            mappingQualityScoreCodec.writeInt(r.mappingQuality);
             if (r.isForcePreserveQualityScores()) {
                 qualityScoreArrayCodec.writeData(r.qualityScores);
             }
         } else {
             if (!r.isUnknownBases())
                 for (final byte b : r.readBases)
-                    baseCodec.writeData(b);
+                    baseCodec.writeByte(b);
             if (r.isForcePreserveQualityScores()) {
                 qualityScoreArrayCodec.writeData(r.qualityScores);
             }
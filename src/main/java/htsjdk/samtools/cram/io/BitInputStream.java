@@ -48,4 +48,13 @@ public interface BitInputStream {
      * @throws IOException as per streaming contract in java.
      */
     long readLongBits(int length) throws IOException;
+
+    /**
+     * Return the specified number of bits from the stream without consuming them. Bits past the end of the stream are
+     * returned as zeros, so that a decoder may look ahead at the last code of the stream.
+     *
+     * @param length number of bits to peek, at most 24
+     * @throws IOException as per streaming contract in java.
+     */
+    int peekBits(int length) throws IOException;
 }
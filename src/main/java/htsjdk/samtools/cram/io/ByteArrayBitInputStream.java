@@ -0,0 +1,107 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.cram.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * A {@link BitInputStream} over a byte array, such as a CRAM core block.  Bits are loaded from the array into a 64-bit
+ * buffer, so that most reads and peeks are a couple of shifts.
+ */
+public class ByteArrayBitInputStream implements BitInputStream {
+    private final byte[] data;
+    private final int end;
+    private int position;
+
+    // the lowest bufferedBits bits of the buffer are the next bits of the stream
+    private long buffer = 0;
+    private int bufferedBits = 0;
+
+    public ByteArrayBitInputStream(final byte[] data) {
+        this(data, 0, data.length);
+    }
+
+    /**
+     * @param data the array to read bits from
+     * @param offset offset of the first byte to read
+     * @param length number of bytes to read
+     */
+    public ByteArrayBitInputStream(final byte[] data, final int offset, final int length) {
+        if (offset < 0 || length < 0 || offset + length > data.length)
+            throw new IllegalArgumentException("Invalid range of " + length + " bytes at " + offset
+                    + " in an array of " + data.length + " bytes");
+        this.data = data;
+        this.position = offset;
+        this.end = offset + length;
+    }
+
+    private void fillBuffer() {
+        while (bufferedBits <= 56 && position < end) {
+            buffer = (buffer << 8) | (data[position++] & 0xFF);
+            bufferedBits += 8;
+        }
+    }
+
+    @Override
+    public final boolean readBit() throws IOException {
+        return readBits(1) == 1;
+    }
+
+    /**
+     * @param n number of bits to read, at most 32
+     */
+    @Override
+    public final int readBits(final int n) throws IOException {
+        if (n > bufferedBits) {
+            fillBuffer();
+            if (n > bufferedBits)
+                throw new EOFException("End of stream.");
+        }
+        bufferedBits -= n;
+        return (int) ((buffer >>> bufferedBits) & ((1L << n) - 1));
+    }
+
+    @Override
+    public final long readLongBits(final int n) throws IOException {
+        if (n > 64)
+            throw new RuntimeException("More then 64 bits are requested in one read from bit stream.");
+
+        if (n <= 32)
+            return readBits(n) & 0xFFFFFFFFL;
+        final long high = readBits(n - 32);
+        return (high << 32) | (readBits(32) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @param n number of bits to peek, at most 32
+     */
+    @Override
+    public final int peekBits(final int n) throws IOException {
+        if (n > bufferedBits) {
+            fillBuffer();
+            if (n > bufferedBits)
+                return (int) ((buffer & ((1L << bufferedBits) - 1)) << (n - bufferedBits));
+        }
+        return (int) ((buffer >>> (bufferedBits - n)) & ((1L << n) - 1));
+    }
+}
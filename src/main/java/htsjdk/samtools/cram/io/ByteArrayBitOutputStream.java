@@ -0,0 +1,147 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.cram.io;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A {@link BitOutputStream} into a growing byte array, such as a CRAM core block.  Bits are collected in a 64-bit
+ * buffer and moved to the array 4 bytes at a time.  As with {@link DefaultBitOutputStream}, flushing pads the bits
+ * written so far to a whole byte.
+ */
+public class ByteArrayBitOutputStream implements BitOutputStream {
+    private byte[] data;
+    private int size = 0;
+
+    // the lowest bufferedBits bits of the buffer are the bits not yet moved to the array
+    private long buffer = 0;
+    private int bufferedBits = 0;
+
+    public ByteArrayBitOutputStream() {
+        this(1024);
+    }
+
+    /**
+     * @param initialCapacity initial size of the array in bytes
+     */
+    public ByteArrayBitOutputStream(final int initialCapacity) {
+        data = new byte[initialCapacity];
+    }
+
+    // nofBits between 1 and 32, bufferedBits less than 32
+    private void writeBits(final long bitContainer, final int nofBits) {
+        buffer = (buffer << nofBits) | (bitContainer & ((1L << nofBits) - 1));
+        bufferedBits += nofBits;
+        if (bufferedBits >= 32) {
+            if (size + 8 > data.length)
+                data = Arrays.copyOf(data, Math.max(size + 8, 2 * data.length));
+            while (bufferedBits >= 8) {
+                bufferedBits -= 8;
+                data[size++] = (byte) (buffer >>> bufferedBits);
+            }
+        }
+    }
+
+    @Override
+    public void write(final int bitContainer, final int nofBits) throws IOException {
+        if (nofBits == 0)
+            return;
+
+        if (nofBits < 1 || nofBits > 32)
+            throw new IOException("Expecting 1 to 32 bits.");
+
+        writeBits(bitContainer, nofBits);
+    }
+
+    @Override
+    public void write(final long bitContainer, final int nofBits) throws IOException {
+        if (nofBits == 0)
+            return;
+
+        if (nofBits < 1 || nofBits > 64)
+            throw new IOException("Expecting 1 to 64 bits, got: value=" + bitContainer + ", nofBits=" + nofBits);
+
+        if (nofBits > 32) {
+            writeBits(bitContainer >>> 32, nofBits - 32);
+            writeBits(bitContainer, 32);
+        } else
+            writeBits(bitContainer, nofBits);
+    }
+
+    @Override
+    public void write(final byte bitContainer, final int nofBits) throws IOException {
+        if (nofBits < 0 || nofBits > 8)
+            throw new IOException("Expecting 0 to 8 bits.");
+
+        if (nofBits > 0)
+            writeBits(bitContainer, nofBits);
+    }
+
+    @Override
+    public void write(final boolean bit) throws IOException {
+        writeBits(bit ? 1 : 0, 1);
+    }
+
+    @Override
+    public void write(final boolean bit, long repeat) throws IOException {
+        final long bits = bit ? 0xFFFFFFFFL : 0;
+        for (; repeat > 32; repeat -= 32)
+            writeBits(bits, 32);
+        if (repeat > 0)
+            writeBits(bits, (int) repeat);
+    }
+
+    @Override
+    public void flush() {
+        if (bufferedBits > 0) {
+            final int padding = (8 - bufferedBits % 8) % 8;
+            buffer <<= padding;
+            bufferedBits += padding;
+            if (size + 8 > data.length)
+                data = Arrays.copyOf(data, Math.max(size + 8, 2 * data.length));
+            while (bufferedBits > 0) {
+                bufferedBits -= 8;
+                data[size++] = (byte) (buffer >>> bufferedBits);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+
+    /**
+     * @return the number of bytes written, not counting the bits since the last flush
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return a copy of the bytes written, not counting the bits since the last flush
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(data, size);
+    }
+}
@@ -24,6 +24,10 @@ import java.io.InputStream;
 
 /**
  * Must not read from delegate unless no bits left in the buffer!!!
+ * <p>
+ * {@link #peekBits(int)} reads whole bytes ahead into the bit buffer, so once bits have been peeked the inherited
+ * {@link DataInputStream} methods (readByte(), readInt(), readFully()...) must not be used on this stream: they read
+ * from the delegate and would silently skip the bytes held in the buffer.
  *
  * @author vadim
  */
@@ -32,8 +36,6 @@ public class DefaultBitInputStream extends DataInputStream implements BitInputSt
     private int nofBufferedBits = 0;
     private int byteBuffer = 0;
     private boolean throwEOF = false;
-    private static final long[] masks = new long[]{0, (1L << 1) - 1, (1L << 2) - 1, (1L << 3) - 1, (1L << 4) - 1,
-            (1L << 5) - 1, (1L << 6) - 1, (1L << 7) - 1, (1L << 8) - 1};
 
     public DefaultBitInputStream(final InputStream in) {
 
@@ -93,7 +95,7 @@ public class DefaultBitInputStream extends DataInputStream implements BitInputSt
             }
             nofBufferedBits = 8;
         }
-        byteBuffer &= masks[nofBufferedBits];
+        byteBuffer &= (1L << nofBufferedBits) - 1;
         while (n > nofBufferedBits) {
             n -= nofBufferedBits;
             x |= byteBuffer << n;
@@ -104,10 +106,28 @@ public class DefaultBitInputStream extends DataInputStream implements BitInputSt
             nofBufferedBits = 8;
         }
         nofBufferedBits -= n;
-        this.byteBuffer = (int) (byteBuffer & masks[nofBufferedBits]);
+        this.byteBuffer = (int) (byteBuffer & ((1L << nofBufferedBits) - 1));
         return x | (byteBuffer >>> nofBufferedBits);
     }
 
+    /**
+     * Reads ahead up to 3 bytes from the delegate, which stay in the bit buffer until consumed.
+     */
+    public final int peekBits(final int n) throws IOException {
+        if (n > 24)
+            throw new RuntimeException("More then 24 bits are requested in one peek from bit stream.");
+
+        while (n > nofBufferedBits) {
+            final int nextByte = in.read();
+            if (nextByte == -1) {
+                return rightBits(nofBufferedBits, byteBuffer) << (n - nofBufferedBits);
+            }
+            byteBuffer = (byteBuffer << 8) | nextByte;
+            nofBufferedBits += 8;
+        }
+        return rightBits(n, byteBuffer >>> (nofBufferedBits - n));
+    }
+
     public void reset() {
         nofBufferedBits = 0;
         byteBuffer = 0;
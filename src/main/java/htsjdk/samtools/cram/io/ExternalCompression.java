@@ -1,6 +1,7 @@
 package htsjdk.samtools.cram.io;
 
 import htsjdk.samtools.cram.encoding.rans.RANS;
+import htsjdk.samtools.cram.encoding.rans.RANSCodec;
 import htsjdk.samtools.util.IOUtil;
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
@@ -10,7 +11,6 @@ import org.apache.commons.compress.compressors.xz.XZCompressorOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -19,6 +19,9 @@ import java.util.zip.GZIPOutputStream;
  */
 public class ExternalCompression {
     private static final int GZIP_COMPRESSION_LEVEL = Integer.valueOf(System.getProperty("gzip.compression.level", "5"));
+    // rANS tables and buffers are reused by the blocks compressed or uncompressed on the same thread.  They are held
+    // until the thread dies: the order-1 tables once used, and a compression buffer of up to 8 MB.
+    private static final ThreadLocal<RANSCodec> ransCodec = ThreadLocal.withInitial(RANSCodec::new);
 
     /**
      * Compress a byte array into GZIP blob. The method obeys {@link ExternalCompression#GZIP_COMPRESSION_LEVEL} compression level.
@@ -86,8 +89,7 @@ public class ExternalCompression {
      * @return compressed blob
      */
     public static byte[] rans(final byte[] data, final RANS.ORDER order) {
-        final ByteBuffer buffer = RANS.compress(ByteBuffer.wrap(data), order, null);
-        return toByteArray(buffer);
+        return ransCodec.get().compress(data, order);
     }
 
     /**
@@ -98,8 +100,7 @@ public class ExternalCompression {
      * @return compressed blob
      */
     public static byte[] rans(final byte[] data, final int order) {
-        final ByteBuffer buffer = RANS.compress(ByteBuffer.wrap(data), RANS.ORDER.fromInt(order), null);
-        return toByteArray(buffer);
+        return ransCodec.get().compress(data, RANS.ORDER.fromInt(order));
     }
 
     /**
@@ -109,8 +110,7 @@ public class ExternalCompression {
      * @return uncompressed data
      */
     public static byte[] unrans(final byte[] data) {
-        final ByteBuffer buf = RANS.uncompress(ByteBuffer.wrap(data), null);
-        return toByteArray(buf);
+        return ransCodec.get().uncompress(data);
     }
 
 
@@ -140,13 +140,4 @@ public class ExternalCompression {
         final XZCompressorInputStream xzCompressorInputStream = new XZCompressorInputStream(new ByteArrayInputStream(data));
         return InputStreamUtils.readFully(xzCompressorInputStream);
     }
-
-
-    private static byte[] toByteArray(final ByteBuffer buffer) {
-        if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.array().length == buffer.limit()) return buffer.array();
-
-        final byte[] bytes = new byte[buffer.remaining()];
-        buffer.get(bytes);
-        return bytes;
-    }
 }
@@ -0,0 +1,165 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.seekablestream;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * {@link SeekableStream} for a local file that is memory mapped, so that reads are copies out of the page cache
+ * rather than system calls.  This pays off for random access workloads, e.g. many small queries against a BAM file
+ * that is read repeatedly; since the data is already in memory there is no point wrapping this stream in a
+ * {@link SeekableBufferedStream}.
+ *
+ * A single mapping is limited to 2GB, so the file is mapped as a sequence of windows.  The file is mapped when the
+ * stream is created, and its length is fixed at that time.  Note that the JVM releases mappings only when they are
+ * garbage collected, not when the stream is closed.
+ */
+public class SeekableMemoryMappedFileStream extends SeekableStream {
+    static final int DEFAULT_WINDOW_SIZE = 1 << 30;
+
+    private final File file;
+    private final long length;
+    private final int windowSize;
+    private MappedByteBuffer[] windows;
+    private long position = 0;
+
+    public SeekableMemoryMappedFileStream(final File file) throws IOException {
+        this(file, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @param windowSize size of each mapped window but the last one
+     */
+    SeekableMemoryMappedFileStream(final File file, final int windowSize) throws IOException {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Invalid window size: " + windowSize);
+        }
+        this.file = file;
+        this.windowSize = windowSize;
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = randomAccessFile.getChannel();
+            this.length = channel.size();
+            this.windows = new MappedByteBuffer[(int) ((length + windowSize - 1) / windowSize)];
+            for (int i = 0; i < windows.length; ++i) {
+                final long windowStart = (long) i * windowSize;
+                windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(windowSize, length - windowStart));
+            }
+        } finally {
+            // the mappings stay valid after the channel is closed
+            randomAccessFile.close();
+        }
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public long position() throws IOException {
+        return position;
+    }
+
+    @Override
+    public void seek(final long position) throws IOException {
+        if (position < 0) {
+            throw new IOException("Invalid position: " + position);
+        }
+        this.position = position;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        final long skipped = Math.max(0, Math.min(n, length - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public boolean eof() throws IOException {
+        return position >= length;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, length - position));
+    }
+
+    @Override
+    public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+        if (length < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        checkOpen();
+        if (length == 0) {
+            return 0;
+        }
+        if (position >= this.length) {
+            return -1;
+        }
+        int n = 0;
+        while (n < length && position < this.length) {
+            final MappedByteBuffer window = windows[(int) (position / windowSize)];
+            window.position((int) (position % windowSize));
+            final int count = Math.min(length - n, window.remaining());
+            window.get(buffer, offset + n, count);
+            n += count;
+            position += count;
+        }
+        return n;
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkOpen();
+        if (position >= length) {
+            return -1;
+        }
+        final int b = windows[(int) (position / windowSize)].get((int) (position % windowSize)) & 0xFF;
+        ++position;
+        return b;
+    }
+
+    @Override
+    public String getSource() {
+        return file.getAbsolutePath();
+    }
+
+    @Override
+    public void close() throws IOException {
+        // let the mappings be garbage collected
+        windows = null;
+    }
+
+    private void checkOpen() throws IOException {
+        if (windows == null) {
+            throw new IOException("Stream closed: " + file);
+        }
+    }
+}
@@ -37,6 +37,7 @@ public class SeekableStreamFactory{
 
     private static final ISeekableStreamFactory DEFAULT_FACTORY;
     private static ISeekableStreamFactory currentFactory;
+    private static boolean memoryMapFiles = false;
 
     static{
         DEFAULT_FACTORY = new DefaultSeekableStreamFactory();
@@ -53,6 +54,19 @@ public class SeekableStreamFactory{
         return currentFactory;
     }
 
+    /**
+     * Determines whether the default factory opens local files as {@link SeekableMemoryMappedFileStream}s rather than
+     * {@link SeekableFileStream}s.  Memory mapping is faster for random access to files that are read repeatedly.
+     * Default is false.
+     */
+    public static void setMemoryMapFiles(final boolean memoryMap){
+        memoryMapFiles = memoryMap;
+    }
+
+    public static boolean isMemoryMapFiles(){
+        return memoryMapFiles;
+    }
+
     /**
      * Does this path point to a regular file on disk and not something like a URL?
      * @param path the path to test
@@ -77,18 +91,22 @@ public class SeekableStreamFactory{
             } else if (path.startsWith("ftp:")) {
                 return new SeekableFTPStream(new URL(path));
             } else if (path.startsWith("file:")) {
-                return new SeekableFileStream(new File(new URL(path).getPath()));
+                return getStreamFor(new File(new URL(path).getPath()));
             } else {
-                return new SeekableFileStream(new File(path));
+                return getStreamFor(new File(path));
             }
         }
 
+        private SeekableStream getStreamFor(final File file) throws IOException {
+            return memoryMapFiles ? new SeekableMemoryMappedFileStream(file) : new SeekableFileStream(file);
+        }
+
         public SeekableStream getBufferedStream(SeekableStream stream){
             return getBufferedStream(stream, SeekableBufferedStream.DEFAULT_BUFFER_SIZE);
         }
 
         public SeekableStream getBufferedStream(SeekableStream stream, int bufferSize){
-            if (bufferSize == 0) return stream;
+            if (bufferSize == 0 || stream instanceof SeekableMemoryMappedFileStream) return stream;
             else return new SeekableBufferedStream(stream, bufferSize);
         }
 
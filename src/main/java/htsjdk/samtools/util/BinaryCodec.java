@@ -310,12 +310,7 @@ public class BinaryCodec implements Closeable {
      * NOTE: This method will break if we change to big-endian.
      */
     public void writeUByte(final short val) {
-        if (val < 0) {
-            throw new IllegalArgumentException("Negative value (" + val + ") passed to unsigned writing method.");
-        }
-        if (val > MAX_UBYTE) {
-            throw new IllegalArgumentException("Value (" + val + ") to large to be written as ubyte.");
-        }
+        checkUByte(val);
         byteBuffer.clear();
         byteBuffer.putShort(val);
         writeByteBuffer(1);
@@ -326,12 +321,7 @@ public class BinaryCodec implements Closeable {
      * NOTE: This method will break if we change to big-endian.
      */
     public void writeUShort(final int val) {
-        if (val < 0) {
-            throw new IllegalArgumentException("Negative value (" + val + ") passed to unsigned writing method.");
-        }
-        if (val > MAX_USHORT) {
-            throw new IllegalArgumentException("Value (" + val + ") too large to be written as ushort.");
-        }
+        checkUShort(val);
         byteBuffer.clear();
         byteBuffer.putInt(val);
         writeByteBuffer(2);
@@ -353,6 +343,36 @@ public class BinaryCodec implements Closeable {
         writeByteBuffer(4);
     }
 
+    /**
+     * Checks that a value can be written as an 8-bit unsigned byte.
+     * @return the value
+     * @throws IllegalArgumentException if it cannot
+     */
+    public static int checkUByte(final int val) {
+        if (val < 0) {
+            throw new IllegalArgumentException("Negative value (" + val + ") passed to unsigned writing method.");
+        }
+        if (val > MAX_UBYTE) {
+            throw new IllegalArgumentException("Value (" + val + ") too large to be written as ubyte.");
+        }
+        return val;
+    }
+
+    /**
+     * Checks that a value can be written as a 16-bit unsigned short.
+     * @return the value
+     * @throws IllegalArgumentException if it cannot
+     */
+    public static int checkUShort(final int val) {
+        if (val < 0) {
+            throw new IllegalArgumentException("Negative value (" + val + ") passed to unsigned writing method.");
+        }
+        if (val > MAX_USHORT) {
+            throw new IllegalArgumentException("Value (" + val + ") too large to be written as ushort.");
+        }
+        return val;
+    }
+
     //////////////////////////////////////////////////
     // Reading methods                              //
     //////////////////////////////////////////////////
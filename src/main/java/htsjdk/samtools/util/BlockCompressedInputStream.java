@@ -30,6 +30,7 @@ import htsjdk.samtools.seekablestream.SeekableBufferedStream;
 import htsjdk.samtools.seekablestream.SeekableFileStream;
 import htsjdk.samtools.seekablestream.SeekableHTTPStream;
 import htsjdk.samtools.seekablestream.SeekableStream;
+import htsjdk.samtools.util.zip.InflaterFactory;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -39,7 +40,14 @@ import java.io.RandomAccessFile;
 import java.net.URL;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /*
  * Utility class for reading BGZF block compressed files.  The caller can treat this file like any other InputStream.
@@ -47,9 +55,32 @@ import java.util.Arrays;
  * The advantage of BGZF over conventional GZip format is that BGZF allows for seeking without having to read the
  * entire file up to the location being sought.  Note that seeking is only possible if the ctor(File) is used.
  *
+ * Optionally (see {@link #setReadAhead(int, int)}), compressed blocks can be read ahead of the caller and inflated on a
+ * pool of worker threads.  The caller still sees an ordinary ordered stream, with the same file pointers.
+ *
+ * Inflaters and block buffers are obtained from an {@link InflaterFactory}, and are handed back to it on close().
+ *
  * c.f. http://samtools.sourceforge.net/SAM1.pdf for details of BGZF format
  */
 public class BlockCompressedInputStream extends InputStream implements LocationAware {
+    private static InflaterFactory defaultInflaterFactory = new InflaterFactory();
+
+    /**
+     * Sets the default {@link InflaterFactory} that will be used for all instances unless specified otherwise in the constructor.
+     * If this method is not called the default is a factory that will create the JDK {@link java.util.zip.Inflater}.
+     * @param inflaterFactory non-null default factory.
+     */
+    public static void setDefaultInflaterFactory(final InflaterFactory inflaterFactory) {
+        if (inflaterFactory == null) {
+            throw new IllegalArgumentException("null inflaterFactory");
+        }
+        defaultInflaterFactory = inflaterFactory;
+    }
+
+    public static InflaterFactory getDefaultInflaterFactory() {
+        return defaultInflaterFactory;
+    }
+
     private InputStream mStream = null;
     private SeekableStream mFile = null;
     private byte[] mFileBuffer = null;
@@ -57,7 +88,23 @@ public class BlockCompressedInputStream extends InputStream implements LocationA
     private int mCurrentOffset = 0;
     private long mBlockAddress = 0;
     private int mLastBlockLength = 0;
-    private final BlockGunzipper blockGunzipper = new BlockGunzipper();
+    private final InflaterFactory inflaterFactory;
+    private final BlockGunzipper blockGunzipper;
+    private boolean checkCrcs = false;
+
+    // Only used when reading ahead: blocks that have been read from the file and handed to the workers, in file order,
+    // the block backing mCurrentBlock, and blocks that can be reused.
+    private ExecutorService inflaterExecutor = null;
+    private int blocksAhead = 0;
+    private final Deque<BlockInflater> pendingBlocks = new ArrayDeque<BlockInflater>();
+    private final Deque<BlockInflater> idleBlockInflaters = new ArrayDeque<BlockInflater>();
+    // Owns mCurrentBlock when not null; otherwise mCurrentBlock belongs to this stream.
+    private BlockInflater currentBlockInflater = null;
+    // Address of the next block to be read from the file, and whether the end of the file (or an error) has been
+    // reached by the read-ahead.
+    private long mNextBlockAddress = 0;
+    private boolean mReadAheadDone = false;
+    private IOException mReadAheadException = null;
 
 
     /**
@@ -71,6 +118,15 @@ public class BlockCompressedInputStream extends InputStream implements LocationA
      * Note that seek() is not supported if this ctor is used.
      */
     public BlockCompressedInputStream(final InputStream stream, final boolean allowBuffering) {
+        this(stream, allowBuffering, defaultInflaterFactory);
+    }
+
+    /**
+     * Note that seek() is not supported if this ctor is used.
+     * @param inflaterFactory custom factory to create inflaters and buffers (overrides the default)
+     */
+    public BlockCompressedInputStream(final InputStream stream, final boolean allowBuffering, final InflaterFactory inflaterFactory) {
+        this(inflaterFactory);
         if (allowBuffering) {
             mStream = IOUtil.toBufferedStream(stream);
         }
@@ -86,12 +142,30 @@ public class BlockCompressedInputStream extends InputStream implements LocationA
      */
     public BlockCompressedInputStream(final File file)
         throws IOException {
+        this(file, defaultInflaterFactory);
+    }
+
+    /**
+     * Use this ctor if you wish to call seek()
+     * @param inflaterFactory custom factory to create inflaters and buffers (overrides the default)
+     */
+    public BlockCompressedInputStream(final File file, final InflaterFactory inflaterFactory)
+        throws IOException {
+        this(inflaterFactory);
         mFile = new SeekableFileStream(file);
         mStream = null;
 
     }
 
     public BlockCompressedInputStream(final URL url) {
+        this(url, defaultInflaterFactory);
+    }
+
+    /**
+     * @param inflaterFactory custom factory to create inflaters and buffers (overrides the default)
+     */
+    public BlockCompressedInputStream(final URL url, final InflaterFactory inflaterFactory) {
+        this(inflaterFactory);
         mFile = new SeekableBufferedStream(new SeekableHTTPStream(url));
         mStream = null;
     }
@@ -102,19 +176,86 @@ public class BlockCompressedInputStream extends InputStream implements LocationA
      * SeekableBufferedStream before passing to this ctor.
      */
     public BlockCompressedInputStream(final SeekableStream strm) {
+        this(strm, defaultInflaterFactory);
+    }
+
+    /**
+     * For providing some arbitrary data source, see {@link #BlockCompressedInputStream(SeekableStream)}.
+     * @param inflaterFactory custom factory to create inflaters and buffers (overrides the default)
+     */
+    public BlockCompressedInputStream(final SeekableStream strm, final InflaterFactory inflaterFactory) {
+        this(inflaterFactory);
         mFile = strm;
         mStream = null;
     }
 
+    private BlockCompressedInputStream(final InflaterFactory inflaterFactory) {
+        if (inflaterFactory == null) {
+            throw new IllegalArgumentException("null inflaterFactory");
+        }
+        this.inflaterFactory = inflaterFactory;
+        this.blockGunzipper = new BlockGunzipper(inflaterFactory);
+    }
+
     /**
      * Determines whether or not the inflater will re-calculated the CRC on the decompressed data
      * and check it against the value stored in the GZIP header.  CRC checking is an expensive
      * operation and should be used accordingly.
      */
     public void setCheckCrcs(final boolean check) {
+        this.checkCrcs = check;
         this.blockGunzipper.setCheckCrcs(check);
     }
 
+    /**
+     * Enables or disables reading ahead.  When enabled, up to blocksAhead compressed blocks are read beyond the block
+     * currently being consumed, and are inflated on a pool of inflaterThreads worker threads, which is shut down when
+     * this stream is closed or read-ahead is disabled.  This is worthwhile when large parts of the file are read
+     * sequentially, and wasteful when the stream is mostly used for short reads after seeks.
+     *
+     * @param inflaterThreads number of worker threads, or 0 to inflate blocks on the reading thread
+     * @param blocksAhead maximum number of blocks read ahead; must be positive if inflaterThreads is
+     */
+    public void setReadAhead(final int inflaterThreads, final int blocksAhead) {
+        if (inflaterThreads < 0) {
+            throw new IllegalArgumentException("Invalid number of inflater threads: " + inflaterThreads);
+        }
+        if (inflaterThreads > 0 && blocksAhead < 1) {
+            throw new IllegalArgumentException("Invalid number of blocks to read ahead: " + blocksAhead);
+        }
+        if (inflaterThreads == 0 ? inflaterExecutor == null : (inflaterExecutor != null && this.blocksAhead == blocksAhead)) {
+            return;
+        }
+        // The file position is after the last block read ahead, so this can only be done between blocks
+        if (!pendingBlocks.isEmpty()) {
+            throw new IllegalStateException("Cannot change read-ahead while blocks are being read ahead");
+        }
+        shutdownReadAhead();
+        if (inflaterThreads > 0) {
+            this.blocksAhead = blocksAhead;
+            this.mNextBlockAddress = mBlockAddress + mLastBlockLength;
+            this.inflaterExecutor = Executors.newFixedThreadPool(inflaterThreads,
+                    new DaemonThreadFactory("BlockCompressedInputStream-inflater-"));
+        }
+    }
+
+    private void shutdownReadAhead() {
+        if (inflaterExecutor != null) {
+            inflaterExecutor.shutdownNow();
+            inflaterExecutor = null;
+        }
+        while (!idleBlockInflaters.isEmpty()) {
+            idleBlockInflaters.remove().release(true);
+        }
+        if (currentBlockInflater != null) {
+            // mCurrentBlock is still being read, so it now belongs to this stream
+            currentBlockInflater.release(false);
+            currentBlockInflater = null;
+        }
+        mReadAheadDone = false;
+        mReadAheadException = null;
+    }
+
     /**
      * @return the number of bytes that can be read (or skipped over) from this input stream without blocking by the
      * next caller of a method for this input stream. The next caller might be the same thread or another thread.
@@ -145,6 +286,8 @@ public class BlockCompressedInputStream extends InputStream implements LocationA
      */
     public void close()
         throws IOException {
+        discardPendingBlocks();
+        shutdownReadAhead();
         if (mFile != null) {
             mFile.close();
             mFile = null;
@@ -152,9 +295,23 @@ public class BlockCompressedInputStream extends InputStream implements LocationA
             mStream.close();
             mStream = null;
         }
-        // Encourage garbage collection
-        mFileBuffer = null;
-        mCurrentBlock = null;
+        // Hand the buffers back for reuse, or encourage garbage collection
+        blockGunzipper.close();
+        if (mFileBuffer != null) {
+            inflaterFactory.releaseBuffer(mFileBuffer);
+            mFileBuffer = null;
+        }
+        releaseCurrentBlock();
+    }
+
+    /**
+     * Hands mCurrentBlock back to the factory.  Must only be called when it belongs to this stream.
+     */
+    private void releaseCurrentBlock() {
+        if (mCurrentBlock != null) {
+            inflaterFactory.releaseBuffer(mCurrentBlock);
+            mCurrentBlock = null;
+        }
     }
 
     /**
@@ -294,7 +451,20 @@ public class BlockCompressedInputStream extends InputStream implements LocationA
         if (mBlockAddress == compressedOffset && mCurrentBlock != null) {
             available = mCurrentBlock.length;
         } else {
-            mFile.seek(compressedOffset);
+            if (inflaterExecutor == null) {
+                mFile.seek(compressedOffset);
+            } else {
+                // Keep the blocks already read ahead if the target block is one of them
+                while (!pendingBlocks.isEmpty() && pendingBlocks.peek().blockAddress != compressedOffset) {
+                    discardBlock(pendingBlocks.remove());
+                }
+                if (pendingBlocks.isEmpty()) {
+                    mFile.seek(compressedOffset);
+                    mNextBlockAddress = compressedOffset;
+                    mReadAheadDone = false;
+                    mReadAheadException = null;
+                }
+            }
             mBlockAddress = compressedOffset;
             mLastBlockLength = 0;
             readBlock();
@@ -308,11 +478,13 @@ public class BlockCompressedInputStream extends InputStream implements LocationA
     }
 
     private boolean eof() throws IOException {
-        if (mFile.eof()) {
+        final long remaining = mFile.length() - (mBlockAddress + mLastBlockLength);
+        // When reading ahead, the file position is beyond the current block
+        if (inflaterExecutor == null ? mFile.eof() : remaining == 0) {
             return true;
         }
         // If the last remaining block is the size of the EMPTY_GZIP_BLOCK, this is the same as being at EOF.
-        return (mFile.length() - (mBlockAddress + mLastBlockLength) == BlockCompressedStreamConstants.EMPTY_GZIP_BLOCK.length);
+        return (remaining == BlockCompressedStreamConstants.EMPTY_GZIP_BLOCK.length);
     }
 
     /**
@@ -365,34 +537,199 @@ public class BlockCompressedInputStream extends InputStream implements LocationA
 
     private void readBlock()
         throws IOException {
-
+        if (inflaterExecutor != null) {
+            readBlockAhead();
+            return;
+        }
         if (mFileBuffer == null) {
-            mFileBuffer = new byte[BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE];
+            mFileBuffer = inflaterFactory.makeBuffer(BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE);
         }
-        int count = readBytes(mFileBuffer, 0, BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH);
-        if (count == 0) {
+        final int blockLength = readCompressedBlock(mFileBuffer);
+        if (blockLength == 0) {
             // Handle case where there is no empty gzip block at end.
             mCurrentOffset = 0;
             mBlockAddress += mLastBlockLength;
+            releaseCurrentBlock();
             mCurrentBlock = new byte[0];
             return;
         }
+        inflateBlock(mFileBuffer, blockLength);
+        mCurrentOffset = 0;
+        mBlockAddress += mLastBlockLength;
+        mLastBlockLength = blockLength;
+    }
+
+    /**
+     * Reads the next compressed block from the file into the given buffer.
+     * @return the length of the compressed block, or 0 at end of file.
+     */
+    private int readCompressedBlock(final byte[] buffer)
+        throws IOException {
+        int count = readBytes(buffer, 0, BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH);
+        if (count == 0) {
+            return 0;
+        }
         if (count != BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH) {
             throw new IOException("Premature end of file");
         }
-        final int blockLength = unpackInt16(mFileBuffer, BlockCompressedStreamConstants.BLOCK_LENGTH_OFFSET) + 1;
-        if (blockLength < BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH || blockLength > mFileBuffer.length) {
+        final int blockLength = unpackInt16(buffer, BlockCompressedStreamConstants.BLOCK_LENGTH_OFFSET) + 1;
+        if (blockLength < BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH || blockLength > buffer.length) {
             throw new IOException("Unexpected compressed block length: " + blockLength);
         }
         final int remaining = blockLength - BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH;
-        count = readBytes(mFileBuffer, BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH, remaining);
+        count = readBytes(buffer, BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH, remaining);
         if (count != remaining) {
             throw new FileTruncatedException("Premature end of file");
         }
-        inflateBlock(mFileBuffer, blockLength);
+        return blockLength;
+    }
+
+    /**
+     * Makes the next block read ahead the current block, waiting for it to be inflated if necessary, and tops up the
+     * blocks being read ahead.  An exception encountered while reading ahead is only thrown once all the blocks before
+     * the failure have been consumed.
+     */
+    private void readBlockAhead()
+        throws IOException {
+        if (currentBlockInflater != null) {
+            idleBlockInflaters.add(currentBlockInflater);
+            currentBlockInflater = null;
+            mCurrentBlock = null;
+        } else {
+            releaseCurrentBlock();
+        }
+        fillReadAhead();
         mCurrentOffset = 0;
-        mBlockAddress += mLastBlockLength;
-        mLastBlockLength = blockLength;
+        if (pendingBlocks.isEmpty()) {
+            if (mReadAheadException != null) {
+                throw mReadAheadException;
+            }
+            mCurrentBlock = new byte[0];
+            return;
+        }
+        final BlockInflater block = pendingBlocks.remove();
+        waitForInflation(block);
+        currentBlockInflater = block;
+        mCurrentBlock = block.uncompressedBlock;
+        mBlockAddress = block.blockAddress;
+        if (block.compressedLength > 0) {
+            mLastBlockLength = block.compressedLength;
+        }
+        fillReadAhead();
+    }
+
+    /**
+     * Reads compressed blocks from the file and hands them to the workers until blocksAhead blocks are pending.
+     */
+    private void fillReadAhead() {
+        while (!mReadAheadDone && pendingBlocks.size() < blocksAhead) {
+            final BlockInflater block = idleBlockInflaters.isEmpty() ? new BlockInflater(inflaterFactory) : idleBlockInflaters.remove();
+            try {
+                block.compressedLength = readCompressedBlock(block.compressedBlock);
+            } catch (final IOException e) {
+                mReadAheadException = e;
+                mReadAheadDone = true;
+                break;
+            }
+            block.blockAddress = mNextBlockAddress;
+            mNextBlockAddress += block.compressedLength;
+            if (block.compressedLength == 0) {
+                mReadAheadDone = true;
+            }
+            block.gunzipper.setCheckCrcs(checkCrcs);
+            block.inflated = inflaterExecutor.submit(block);
+            pendingBlocks.add(block);
+        }
+    }
+
+    private void waitForInflation(final BlockInflater block)
+        throws IOException {
+        try {
+            block.inflated.get();
+        } catch (final InterruptedException ie) {
+            throw new RuntimeException("Interrupted waiting for block to be inflated.", ie);
+        } catch (final ExecutionException ee) {
+            if (ee.getCause() instanceof IOException) {
+                throw (IOException) ee.getCause();
+            }
+            if (ee.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ee.getCause();
+            }
+            throw new RuntimeException("Exception inflating block.", ee.getCause());
+        }
+    }
+
+    private void discardPendingBlocks() {
+        while (!pendingBlocks.isEmpty()) {
+            discardBlock(pendingBlocks.remove());
+        }
+    }
+
+    /**
+     * Makes a block that has been read ahead but will not be consumed available for reuse, once no worker uses it.
+     */
+    private void discardBlock(final BlockInflater block) {
+        if (!block.inflated.cancel(false)) {
+            try {
+                block.inflated.get();
+            } catch (final Exception e) {
+                // The block is being thrown away, so failing to inflate it does not matter
+            }
+        }
+        idleBlockInflaters.add(block);
+    }
+
+    /**
+     * A compressed block read ahead of the caller, and its inflated contents once a worker has inflated it.
+     */
+    private static final class BlockInflater implements Callable<BlockInflater> {
+        private final InflaterFactory inflaterFactory;
+        private final BlockGunzipper gunzipper;
+        private final byte[] compressedBlock;
+        private int compressedLength = 0;
+        private long blockAddress = 0;
+        private byte[] uncompressedBlock = new byte[0];
+        private Future<BlockInflater> inflated = null;
+
+        private BlockInflater(final InflaterFactory inflaterFactory) {
+            this.inflaterFactory = inflaterFactory;
+            this.gunzipper = new BlockGunzipper(inflaterFactory);
+            this.compressedBlock = inflaterFactory.makeBuffer(BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE);
+        }
+
+        /**
+         * Hands the inflater and buffers back to the factory.  Must only be called when no worker uses this block.
+         * @param releaseUncompressedBlock false if the uncompressed block is still used by the caller
+         */
+        private void release(final boolean releaseUncompressedBlock) {
+            gunzipper.close();
+            inflaterFactory.releaseBuffer(compressedBlock);
+            if (releaseUncompressedBlock) {
+                inflaterFactory.releaseBuffer(uncompressedBlock);
+            }
+            uncompressedBlock = null;
+        }
+
+        @Override
+        public BlockInflater call() throws IOException {
+            if (compressedLength == 0) {
+                inflaterFactory.releaseBuffer(uncompressedBlock);
+                uncompressedBlock = new byte[0];
+                return this;
+            }
+            final int uncompressedLength = unpackInt32(compressedBlock, compressedLength - 4);
+            if (uncompressedBlock.length != uncompressedLength) {
+                inflaterFactory.releaseBuffer(uncompressedBlock);
+                uncompressedBlock = new byte[0];
+                try {
+                    uncompressedBlock = inflaterFactory.makeBuffer(uncompressedLength);
+                } catch (final NegativeArraySizeException e) {
+                    throw new RuntimeIOException("BGZF file has invalid uncompressedLength: " + uncompressedLength, e);
+                }
+            }
+            gunzipper.unzipBlock(uncompressedBlock, compressedBlock, compressedLength);
+            return this;
+        }
     }
 
     private void inflateBlock(final byte[] compressedBlock, final int compressedLength)
@@ -401,8 +738,11 @@ public class BlockCompressedInputStream extends InputStream implements LocationA
         byte[] buffer = mCurrentBlock;
         mCurrentBlock = null;
         if (buffer == null || buffer.length != uncompressedLength) {
+            if (buffer != null) {
+                inflaterFactory.releaseBuffer(buffer);
+            }
             try {
-                buffer = new byte[uncompressedLength];
+                buffer = inflaterFactory.makeBuffer(uncompressedLength);
             } catch (final NegativeArraySizeException e) {
                 throw new RuntimeIOException("BGZF file has invalid uncompressedLength: " + uncompressedLength, e);
             }
@@ -448,12 +788,12 @@ public class BlockCompressedInputStream extends InputStream implements LocationA
         return bytesRead;
     }
 
-    private int unpackInt16(final byte[] buffer, final int offset) {
+    private static int unpackInt16(final byte[] buffer, final int offset) {
         return ((buffer[offset] & 0xFF) |
                 ((buffer[offset+1] & 0xFF) << 8));
     }
 
-    private int unpackInt32(final byte[] buffer, final int offset) {
+    private static int unpackInt32(final byte[] buffer, final int offset) {
         return ((buffer[offset] & 0xFF) |
                 ((buffer[offset+1] & 0xFF) << 8) |
                 ((buffer[offset+2] & 0xFF) << 16) |
@@ -28,6 +28,14 @@ import htsjdk.samtools.util.zip.DeflaterFactory;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongConsumer;
 import java.util.zip.CRC32;
 import java.util.zip.Deflater;
 
@@ -44,6 +52,16 @@ import java.util.zip.Deflater;
  * number of buffered bytes has not reached threshold.  close(), on the other hand, must be called
  * when done writing in order to force the last gzip block to be written.
  *
+ * Optionally, blocks can be compressed on a pool of worker threads (see {@link #setDefaultCompressionThreads(int)}
+ * and {@link #BlockCompressedOutputStream(OutputStream, File, int, DeflaterFactory, int)}).  Filled blocks are then
+ * handed to the workers, each of which owns a {@link Deflater} obtained from the {@link DeflaterFactory}, and the
+ * compressed blocks are written in the order in which they were filled, so the output is identical to the
+ * single-threaded output.  Because the virtual file pointer depends on the compressed size of every preceding block,
+ * {@link #getFilePointer()} waits for all outstanding blocks to be compressed and written.  Callers that need a file
+ * pointer for every record, e.g. to build an index, should use {@link #getFilePointer(LongConsumer)} instead, which
+ * records the position and reports it once the preceding blocks have been written, so that the workers are not drained
+ * for every record.
+ *
  * c.f. http://samtools.sourceforge.net/SAM1.pdf for details of BGZF file format.
  */
 public class BlockCompressedOutputStream
@@ -55,6 +73,7 @@ public class BlockCompressedOutputStream
 
     private static int defaultCompressionLevel = BlockCompressedStreamConstants.DEFAULT_COMPRESSION_LEVEL;
     private static DeflaterFactory defaultDeflaterFactory = new DeflaterFactory();
+    private static int defaultCompressionThreads = 0;
 
     /**
      * Sets the GZip compression level for subsequent BlockCompressedOutputStream object creation
@@ -88,28 +107,39 @@ public class BlockCompressedOutputStream
         return defaultDeflaterFactory;
     }
 
+    /**
+     * Sets the number of threads used to compress blocks for subsequent BlockCompressedOutputStream object creation
+     * that do not specify the number of compression threads.
+     * @param compressionThreads 0 to compress on the writing thread, otherwise the number of worker threads
+     */
+    public static void setDefaultCompressionThreads(final int compressionThreads) {
+        if (compressionThreads < 0) {
+            throw new IllegalArgumentException("Invalid number of compression threads: " + compressionThreads);
+        }
+        defaultCompressionThreads = compressionThreads;
+    }
+
+    public static int getDefaultCompressionThreads() {
+        return defaultCompressionThreads;
+    }
+
     private final BinaryCodec codec;
     private final byte[] uncompressedBuffer = new byte[BlockCompressedStreamConstants.DEFAULT_UNCOMPRESSED_BLOCK_SIZE];
     private int numUncompressedBytes = 0;
-    private final byte[] compressedBuffer =
-            new byte[BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE -
-                    BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH];
-    private final Deflater deflater;
-
-    // A second deflater is created for the very unlikely case where the regular deflation actually makes
-    // things bigger, and the compressed block is too big.  It should be possible to downshift the
-    // primary deflater to NO_COMPRESSION level, recompress, and then restore it to its original setting,
-    // but in practice that doesn't work.
-    // The motivation for deflating at NO_COMPRESSION level is that it will predictably produce compressed
-    // output that is 10 bytes larger than the input, and the threshold at which a block is generated is such that
-    // the size of tbe final gzip block will always be <= 64K.  This is preferred over the previous method,
-    // which would attempt to compress up to 64K bytes, and if the resulting compressed block was too large,
-    // try compressing fewer input bytes (aka "downshifting').  The problem with downshifting is that
-    // getFilePointer might return an inaccurate value.
-    // I assume (AW 29-Oct-2013) that there is no value in using hardware-assisted deflater for no-compression mode,
-    // so just use JDK standard.
-    private final Deflater noCompressionDeflater = new Deflater(Deflater.NO_COMPRESSION, true);
-    private final CRC32 crc32 = new CRC32();
+    private final BlockDeflater blockDeflater;
+
+    // Only used when compressing on worker threads: deflaters that are not currently in use, and the blocks that
+    // have been handed to the workers but not yet written, in the order in which they must be written.
+    private final ExecutorService deflaterExecutor;
+    private final Deque<BlockDeflater> idleBlockDeflaters = new ArrayDeque<BlockDeflater>();
+    private final Deque<Future<BlockDeflater>> pendingBlocks = new ArrayDeque<Future<BlockDeflater>>();
+
+    // File pointers requested via getFilePointer(LongConsumer) that cannot be resolved until the blocks before the one
+    // they point into have been written.  Blocks are numbered in the order in which they are filled.
+    private final Deque<PendingFilePointer> pendingFilePointers = new ArrayDeque<PendingFilePointer>();
+    private long numBlocksDeflated = 0;
+    private long numBlocksWritten = 0;
+
     private File file = null;
     private long mBlockAddress = 0;
 
@@ -160,10 +190,21 @@ public class BlockCompressedOutputStream
      * @param deflaterFactory custom factory to create deflaters (overrides the default)
      */
     public BlockCompressedOutputStream(final File file, final int compressionLevel, final DeflaterFactory deflaterFactory) {
+        this(file, compressionLevel, deflaterFactory, defaultCompressionThreads);
+    }
+
+    /**
+     * Prepare to compress at the given compression level
+     * @param compressionLevel 1 <= compressionLevel <= 9
+     * @param deflaterFactory custom factory to create deflaters (overrides the default)
+     * @param compressionThreads 0 to compress on the writing thread, otherwise the number of worker threads
+     */
+    public BlockCompressedOutputStream(final File file, final int compressionLevel, final DeflaterFactory deflaterFactory,
+                                       final int compressionThreads) {
         this.file = file;
         codec = new BinaryCodec(file, true);
-        deflater = deflaterFactory.makeDeflater(compressionLevel, true);
-        log.debug("Using deflater: " + deflater.getClass().getSimpleName());
+        blockDeflater = new BlockDeflater(deflaterFactory.makeDeflater(compressionLevel, true), uncompressedBuffer);
+        deflaterExecutor = createDeflaterExecutor(compressionLevel, deflaterFactory, compressionThreads);
     }
 
     /**
@@ -193,13 +234,46 @@ public class BlockCompressedOutputStream
      * @param deflaterFactory custom factory to create deflaters (overrides the default)
      */
     public BlockCompressedOutputStream(final OutputStream os, final File file, final int compressionLevel, final DeflaterFactory deflaterFactory) {
+        this(os, file, compressionLevel, deflaterFactory, defaultCompressionThreads);
+    }
+
+    /**
+     * Creates the output stream.
+     * @param os output stream to create a BlockCompressedOutputStream from
+     * @param file file to which to write the output or null if not available
+     * @param compressionLevel the compression level (0-9)
+     * @param deflaterFactory custom factory to create deflaters (overrides the default)
+     * @param compressionThreads 0 to compress on the writing thread, otherwise the number of worker threads
+     */
+    public BlockCompressedOutputStream(final OutputStream os, final File file, final int compressionLevel,
+                                       final DeflaterFactory deflaterFactory, final int compressionThreads) {
         this.file = file;
         codec = new BinaryCodec(os);
         if (file != null) {
             codec.setOutputFileName(file.getAbsolutePath());
         }
-        deflater = deflaterFactory.makeDeflater(compressionLevel, true);
-        log.debug("Using deflater: " + deflater.getClass().getSimpleName());
+        blockDeflater = new BlockDeflater(deflaterFactory.makeDeflater(compressionLevel, true), uncompressedBuffer);
+        deflaterExecutor = createDeflaterExecutor(compressionLevel, deflaterFactory, compressionThreads);
+    }
+
+    /**
+     * Creates the worker pool, and two deflaters per worker so that one block can be filled while another is being
+     * compressed, or returns null if blocks are to be compressed on the writing thread.
+     */
+    private ExecutorService createDeflaterExecutor(final int compressionLevel, final DeflaterFactory deflaterFactory,
+                                                   final int compressionThreads) {
+        log.debug("Using deflater: " + blockDeflater.deflater.getClass().getSimpleName());
+        if (compressionThreads < 0) {
+            throw new IllegalArgumentException("Invalid number of compression threads: " + compressionThreads);
+        }
+        if (compressionThreads == 0) {
+            return null;
+        }
+        for (int i = 0; i < 2 * compressionThreads; ++i) {
+            idleBlockDeflaters.add(new BlockDeflater(deflaterFactory.makeDeflater(compressionLevel, true),
+                    new byte[BlockCompressedStreamConstants.DEFAULT_UNCOMPRESSED_BLOCK_SIZE]));
+        }
+        return Executors.newFixedThreadPool(compressionThreads, new DaemonThreadFactory("BlockCompressedOutputStream-deflater-"));
     }
 
     /**
@@ -263,6 +337,7 @@ public class BlockCompressedOutputStream
         while (numUncompressedBytes > 0) {
             deflateBlock();
         }
+        writePendingBlocks();
         codec.getOutputStream().flush();
     }
 
@@ -273,7 +348,13 @@ public class BlockCompressedOutputStream
      */
     @Override
     public void close() throws IOException {
-        flush();
+        try {
+            flush();
+        } finally {
+            if (deflaterExecutor != null) {
+                deflaterExecutor.shutdownNow();
+            }
+        }
         // For debugging...
         // if (numberOfThrottleBacks > 0) {
         //     System.err.println("In BlockCompressedOutputStream, had to throttle back " + numberOfThrottleBacks +
@@ -306,67 +387,103 @@ public class BlockCompressedOutputStream
      * Lower 16 bits is the byte offset into the uncompressed stream inside the block.
      */
     public long getFilePointer(){
+        writePendingBlocks();
         return BlockCompressedFilePointerUtil.makeFilePointer(mBlockAddress, numUncompressedBytes);
     }
 
+    /**
+     * Requests the virtual file pointer of the current position without waiting for the blocks that are being
+     * compressed on worker threads.  The pointer is passed to the consumer, on the thread writing to this stream, as
+     * soon as all the preceding blocks have been written: immediately if there are none, otherwise from a later call to
+     * write(), flush() or close().  Consumers are called in the order in which they were requested, and all of them
+     * have been called when flush() or close() returns.
+     *
+     * @param consumer receives the value {@link #getFilePointer()} would have returned at the time of this call.
+     */
+    public void getFilePointer(final LongConsumer consumer) {
+        if (numBlocksWritten == numBlocksDeflated) {
+            consumer.accept(BlockCompressedFilePointerUtil.makeFilePointer(mBlockAddress, numUncompressedBytes));
+        } else {
+            pendingFilePointers.add(new PendingFilePointer(numBlocksDeflated, numUncompressedBytes, consumer));
+        }
+    }
+
     @Override
     public long getPosition() {
         return getFilePointer();
     }
 
     /**
-     * Attempt to write the data in uncompressedBuffer to the underlying file in a gzip block.
-     * If the entire uncompressedBuffer does not fit in the maximum allowed size, reduce the amount
-     * of data to be compressed, and slide the excess down in uncompressedBuffer so it can be picked
-     * up in the next deflate event.
-     * @return size of gzip block that was written.
+     * Compress the data in uncompressedBuffer and write it to the underlying file in a gzip block, or, if compressing
+     * on worker threads, hand a copy of it to a worker and write whichever blocks have already been compressed.
      */
-    private int deflateBlock() {
+    private void deflateBlock() {
         if (numUncompressedBytes == 0) {
-            return 0;
+            return;
         }
-        final int bytesToCompress = numUncompressedBytes;
-        // Compress the input
-        deflater.reset();
-        deflater.setInput(uncompressedBuffer, 0, bytesToCompress);
-        deflater.finish();
-        int compressedSize = deflater.deflate(compressedBuffer, 0, compressedBuffer.length);
-
-        // If it didn't all fit in compressedBuffer.length, set compression level to NO_COMPRESSION
-        // and try again.  This should always fit.
-        if (!deflater.finished()) {
-            noCompressionDeflater.reset();
-            noCompressionDeflater.setInput(uncompressedBuffer, 0, bytesToCompress);
-            noCompressionDeflater.finish();
-            compressedSize = noCompressionDeflater.deflate(compressedBuffer, 0, compressedBuffer.length);
-            if (!noCompressionDeflater.finished()) {
-                throw new IllegalStateException("unpossible");
+        if (deflaterExecutor == null) {
+            blockDeflater.numUncompressedBytes = numUncompressedBytes;
+            blockDeflater.deflate();
+            ++numBlocksDeflated;
+            mBlockAddress += writeGzipBlock(blockDeflater);
+            ++numBlocksWritten;
+        } else {
+            while (idleBlockDeflaters.isEmpty()) {
+                writeNextPendingBlock();
+            }
+            final BlockDeflater worker = idleBlockDeflaters.remove();
+            System.arraycopy(uncompressedBuffer, 0, worker.uncompressedBuffer, 0, numUncompressedBytes);
+            worker.numUncompressedBytes = numUncompressedBytes;
+            pendingBlocks.add(deflaterExecutor.submit(worker));
+            ++numBlocksDeflated;
+            while (!pendingBlocks.isEmpty() && pendingBlocks.peek().isDone()) {
+                writeNextPendingBlock();
             }
         }
-        // Data compressed small enough, so write it out.
-        crc32.reset();
-        crc32.update(uncompressedBuffer, 0, bytesToCompress);
+        numUncompressedBytes = 0;
+    }
 
-        final int totalBlockSize = writeGzipBlock(compressedSize, bytesToCompress, crc32.getValue());
-        assert(bytesToCompress <= numUncompressedBytes);
+    /**
+     * Waits for all the blocks handed to the workers to be compressed, and writes them.
+     */
+    private void writePendingBlocks() {
+        while (!pendingBlocks.isEmpty()) {
+            writeNextPendingBlock();
+        }
+    }
 
-        // Clear out from uncompressedBuffer the data that was written
-        if (bytesToCompress == numUncompressedBytes) {
-            numUncompressedBytes = 0;
-        } else {
-            System.arraycopy(uncompressedBuffer, bytesToCompress, uncompressedBuffer, 0,
-                    numUncompressedBytes - bytesToCompress);
-            numUncompressedBytes -= bytesToCompress;
+    /**
+     * Waits for the oldest block handed to the workers to be compressed, writes it, and makes its deflater available
+     * for the next block.
+     */
+    private void writeNextPendingBlock() {
+        final BlockDeflater worker;
+        try {
+            worker = pendingBlocks.remove().get();
+        } catch (final InterruptedException ie) {
+            throw new RuntimeException("Interrupted waiting for block to be compressed.", ie);
+        } catch (final ExecutionException ee) {
+            if (ee.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ee.getCause();
+            }
+            throw new RuntimeException("Exception compressing block.", ee.getCause());
+        }
+        mBlockAddress += writeGzipBlock(worker);
+        idleBlockDeflaters.add(worker);
+        ++numBlocksWritten;
+        // the file pointers that point into the next block can now be resolved
+        while (!pendingFilePointers.isEmpty() && pendingFilePointers.peek().blockNumber == numBlocksWritten) {
+            final PendingFilePointer pending = pendingFilePointers.remove();
+            pending.consumer.accept(BlockCompressedFilePointerUtil.makeFilePointer(mBlockAddress, pending.blockOffset));
         }
-        mBlockAddress += totalBlockSize;
-        return totalBlockSize;
     }
 
     /**
-     * Writes the entire gzip block, assuming the compressed data is stored in compressedBuffer
+     * Writes the entire gzip block, assuming the compressed data is stored in the compressedBuffer of the given deflater
      * @return  size of gzip block that was written.
      */
-    private int writeGzipBlock(final int compressedSize, final int uncompressedSize, final long crc) {
+    private int writeGzipBlock(final BlockDeflater compressedBlock) {
+        final int compressedSize = compressedBlock.compressedSize;
         // Init gzip header
         codec.writeByte(BlockCompressedStreamConstants.GZIP_ID1);
         codec.writeByte(BlockCompressedStreamConstants.GZIP_ID2);
@@ -384,9 +501,95 @@ public class BlockCompressedOutputStream
 
         // I don't know why we store block size - 1, but that is what the spec says
         codec.writeShort((short)(totalBlockSize - 1));
-        codec.writeBytes(compressedBuffer, 0, compressedSize);
-        codec.writeInt((int)crc);
-        codec.writeInt(uncompressedSize);
+        codec.writeBytes(compressedBlock.compressedBuffer, 0, compressedSize);
+        codec.writeInt((int)compressedBlock.crc);
+        codec.writeInt(compressedBlock.numUncompressedBytes);
         return totalBlockSize;
     }
+
+    /**
+     * A file pointer requested by {@link #getFilePointer(LongConsumer)}, recorded as the number of the block it points
+     * into and the offset within that block, until the address of that block is known.
+     */
+    private static final class PendingFilePointer {
+        private final long blockNumber;
+        private final int blockOffset;
+        private final LongConsumer consumer;
+
+        private PendingFilePointer(final long blockNumber, final int blockOffset, final LongConsumer consumer) {
+            this.blockNumber = blockNumber;
+            this.blockOffset = blockOffset;
+            this.consumer = consumer;
+        }
+    }
+
+    /**
+     * Compresses the contents of an uncompressed buffer into a gzip block payload.  When compressing on worker
+     * threads, each instance is used by at most one thread at a time.
+     */
+    private static final class BlockDeflater implements Callable<BlockDeflater> {
+        private final Deflater deflater;
+
+        // A second deflater is created for the very unlikely case where the regular deflation actually makes
+        // things bigger, and the compressed block is too big.  It should be possible to downshift the
+        // primary deflater to NO_COMPRESSION level, recompress, and then restore it to its original setting,
+        // but in practice that doesn't work.
+        // The motivation for deflating at NO_COMPRESSION level is that it will predictably produce compressed
+        // output that is 10 bytes larger than the input, and the threshold at which a block is generated is such that
+        // the size of tbe final gzip block will always be <= 64K.  This is preferred over the previous method,
+        // which would attempt to compress up to 64K bytes, and if the resulting compressed block was too large,
+        // try compressing fewer input bytes (aka "downshifting').  The problem with downshifting is that
+        // getFilePointer might return an inaccurate value.
+        // I assume (AW 29-Oct-2013) that there is no value in using hardware-assisted deflater for no-compression mode,
+        // so just use JDK standard.
+        private final Deflater noCompressionDeflater = new Deflater(Deflater.NO_COMPRESSION, true);
+        private final CRC32 crc32 = new CRC32();
+
+        private final byte[] uncompressedBuffer;
+        private int numUncompressedBytes = 0;
+        private final byte[] compressedBuffer =
+                new byte[BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE -
+                        BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH];
+        private int compressedSize = 0;
+        private long crc = 0;
+
+        private BlockDeflater(final Deflater deflater, final byte[] uncompressedBuffer) {
+            this.deflater = deflater;
+            this.uncompressedBuffer = uncompressedBuffer;
+        }
+
+        @Override
+        public BlockDeflater call() {
+            deflate();
+            return this;
+        }
+
+        /**
+         * Compresses the first numUncompressedBytes of uncompressedBuffer into compressedBuffer, and computes the
+         * CRC of the uncompressed data.
+         */
+        private void deflate() {
+            // Compress the input
+            deflater.reset();
+            deflater.setInput(uncompressedBuffer, 0, numUncompressedBytes);
+            deflater.finish();
+            compressedSize = deflater.deflate(compressedBuffer, 0, compressedBuffer.length);
+
+            // If it didn't all fit in compressedBuffer.length, set compression level to NO_COMPRESSION
+            // and try again.  This should always fit.
+            if (!deflater.finished()) {
+                noCompressionDeflater.reset();
+                noCompressionDeflater.setInput(uncompressedBuffer, 0, numUncompressedBytes);
+                noCompressionDeflater.finish();
+                compressedSize = noCompressionDeflater.deflate(compressedBuffer, 0, compressedBuffer.length);
+                if (!noCompressionDeflater.finished()) {
+                    throw new IllegalStateException("unpossible");
+                }
+            }
+            // Data compressed small enough, so it can be written out.
+            crc32.reset();
+            crc32.update(uncompressedBuffer, 0, numUncompressedBytes);
+            crc = crc32.getValue();
+        }
+    }
 }
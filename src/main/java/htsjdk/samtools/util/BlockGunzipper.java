@@ -24,6 +24,7 @@
 package htsjdk.samtools.util;
 
 import htsjdk.samtools.SAMFormatException;
+import htsjdk.samtools.util.zip.InflaterFactory;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
@@ -40,13 +41,34 @@ import java.util.zip.Inflater;
  * This code requires that the GZIP header conform to the GZIP blocks written to BAM files, with
  * a specific subfield and no other optional stuff.
  *
+ * The {@link Inflater} is obtained from an {@link InflaterFactory} when the first block is decompressed, and is
+ * handed back to the factory by {@link #close()}.
+ *
  * @author alecw@broadinstitute.org
  */
 public class BlockGunzipper {
-    private final Inflater inflater = new Inflater(true); // GZIP mode
+    private final InflaterFactory inflaterFactory;
+    private Inflater inflater = null; // GZIP mode
     private final CRC32 crc32 = new CRC32();
     private boolean checkCrcs = false;
 
+    /**
+     * Uses the default {@link InflaterFactory}, see {@link BlockCompressedInputStream#getDefaultInflaterFactory()}.
+     */
+    public BlockGunzipper() {
+        this(BlockCompressedInputStream.getDefaultInflaterFactory());
+    }
+
+    /**
+     * @param inflaterFactory factory for the inflater used to decompress blocks
+     */
+    public BlockGunzipper(final InflaterFactory inflaterFactory) {
+        if (inflaterFactory == null) {
+            throw new IllegalArgumentException("null inflaterFactory");
+        }
+        this.inflaterFactory = inflaterFactory;
+    }
+
     /** Allows the caller to decide whether or not to check CRCs on when uncompressing blocks. */
     public void setCheckCrcs(final boolean check) {
         this.checkCrcs = check;
@@ -105,7 +127,11 @@ public class BlockGunzipper {
             byteBuffer.position(byteBuffer.position() + deflatedSize);
             int expectedCrc = byteBuffer.getInt();
             uncompressedSize = byteBuffer.getInt();
-            inflater.reset();
+            if (inflater == null) {
+                inflater = inflaterFactory.makeInflater(true);
+            } else {
+                inflater.reset();
+            }
 
             // Decompress
             inflater.setInput(compressedBlock, compressedBlockOffset + BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH, deflatedSize);
@@ -129,4 +155,15 @@ public class BlockGunzipper {
         }
         return uncompressedSize;
     }
+
+    /**
+     * Hands the inflater back to the {@link InflaterFactory}.  This object may still be used afterwards, in which case
+     * another inflater is obtained.
+     */
+    public void close() {
+        if (inflater != null) {
+            inflaterFactory.releaseInflater(inflater, true);
+            inflater = null;
+        }
+    }
 }
@@ -56,6 +56,13 @@ import java.util.Queue;
 public class DiskBackedQueue<E> implements Queue<E> {
     private final int maxRecordsInRamQueue;
     private final Queue<E> ramRecords;
+
+    /** If not null, records are also spilled to disk when their estimated size would exceed maxBytesInRam. **/
+    private final SortingCollection.SizeEstimator<E> sizeEstimator;
+    /** If sizeEstimator is not null, the estimated size of each of ramRecords, released when the record is removed. **/
+    private final Queue<Long> ramRecordSizes;
+    private final long maxBytesInRam;
+    private long numBytesInRam = 0;
     private File diskRecords = null;
     private final TempStreamFactory tempStreamFactory = new TempStreamFactory();
     private OutputStream outputStream = null;
@@ -84,9 +91,28 @@ public class DiskBackedQueue<E> implements Queue<E> {
      */
     private DiskBackedQueue(final SortingCollection.Codec<E> codec,
                             final int maxRecordsInRam, final List<File> tmpDirs) {
+        this(codec, maxRecordsInRam, null, Long.MAX_VALUE, tmpDirs);
+    }
+
+    /**
+     * Prepare to accumulate records
+     *
+     * @param codec For writing records to file and reading them back into RAM
+     * @param maxRecordsInRam how many records to accumulate before spilling to disk
+     * @param sizeEstimator If not null, estimates the memory used by each record, to also spill to disk before the
+     *                      records in memory exceed maxBytesInRam
+     * @param maxBytesInRam estimated number of bytes of records to accumulate before spilling to disk
+     * @param tmpDirs Where to write files of records that will not fit in RAM
+     */
+    private DiskBackedQueue(final SortingCollection.Codec<E> codec, final int maxRecordsInRam,
+                            final SortingCollection.SizeEstimator<E> sizeEstimator, final long maxBytesInRam,
+                            final List<File> tmpDirs) {
         if (maxRecordsInRam < 0) {
             throw new IllegalArgumentException("maxRecordsInRamQueue must be >= 0");
         }
+        if (maxBytesInRam < 0) {
+            throw new IllegalArgumentException("maxBytesInRam must be >= 0");
+        }
         if (tmpDirs == null || tmpDirs.isEmpty()) {
             throw new IllegalArgumentException("At least one temp directory must be provided.");
         }
@@ -94,7 +120,10 @@ public class DiskBackedQueue<E> implements Queue<E> {
         this.tmpDirs = tmpDirs;
         this.codec = codec;
         this.maxRecordsInRamQueue = (maxRecordsInRam == 0) ? 0 : maxRecordsInRam - 1; // the first of our ram records is stored as headRecord
-        this.ramRecords = new ArrayDeque<E>(this.maxRecordsInRamQueue);
+        this.ramRecords = sizeEstimator == null ? new ArrayDeque<E>(this.maxRecordsInRamQueue) : new ArrayDeque<E>();
+        this.sizeEstimator = sizeEstimator;
+        this.ramRecordSizes = sizeEstimator == null ? null : new ArrayDeque<Long>();
+        this.maxBytesInRam = maxBytesInRam;
     }
 
     /**
@@ -110,6 +139,25 @@ public class DiskBackedQueue<E> implements Queue<E> {
         return new DiskBackedQueue<T>(codec, maxRecordsInRam, tmpDir);
     }
 
+    /**
+     * Syntactic sugar around the ctor, to save some typing of type parameters.  Records are spilled to disk when the
+     * estimated size of the records in memory would exceed the given budget, rather than after a number of records.
+     *
+     * @param codec For writing records to file and reading them back into RAM
+     * @param sizeEstimator Estimates the memory used by each record, e.g. {@link htsjdk.samtools.SAMRecordSizeEstimator}
+     * @param maxBytesInRam estimated number of bytes of records to accumulate in memory before spilling to disk
+     * @param tmpDir Where to write files of records that will not fit in RAM
+     */
+    public static <T> DiskBackedQueue<T> newInstance(final SortingCollection.Codec<T> codec,
+                                                     final SortingCollection.SizeEstimator<T> sizeEstimator,
+                                                     final long maxBytesInRam,
+                                                     final List<File> tmpDir) {
+        if (sizeEstimator == null) {
+            throw new IllegalArgumentException("A size estimator must be provided.");
+        }
+        return new DiskBackedQueue<T>(codec, Integer.MAX_VALUE, sizeEstimator, maxBytesInRam, tmpDir);
+    }
+
     public boolean canAdd() {
         return this.canAdd;
     }
@@ -139,12 +187,19 @@ public class DiskBackedQueue<E> implements Queue<E> {
             if (0 < this.numRecordsOnDisk) throw new SAMException("Head record was null but we have records on disk. Bug!");
             this.headRecord = record;
         }
-        else if (this.ramRecords.size() == this.maxRecordsInRamQueue) {
-            spillToDisk(record);
-        }
         else {
-            if (0 < this.numRecordsOnDisk) throw new SAMException("Trying to add records to RAM but there were records on disk. Bug!");
-            this.ramRecords.add(record);
+            final long size = this.sizeEstimator == null ? 0 : this.sizeEstimator.getSizeInBytes(record);
+            if (this.ramRecords.size() == this.maxRecordsInRamQueue || exceedsMemoryBudget(size)) {
+                spillToDisk(record);
+            }
+            else {
+                if (0 < this.numRecordsOnDisk) throw new SAMException("Trying to add records to RAM but there were records on disk. Bug!");
+                this.ramRecords.add(record);
+                if (this.sizeEstimator != null) {
+                    this.ramRecordSizes.add(size);
+                    this.numBytesInRam += size;
+                }
+            }
         }
         return true;
     }
@@ -225,6 +280,8 @@ public class DiskBackedQueue<E> implements Queue<E> {
     public void clear() {
         this.headRecord = null;
         this.ramRecords.clear();
+        if (this.ramRecordSizes != null) this.ramRecordSizes.clear();
+        this.numBytesInRam = 0;
         this.closeIOResources();
         this.outputStream = null;
         this.inputStream = null;
@@ -243,6 +300,15 @@ public class DiskBackedQueue<E> implements Queue<E> {
         super.finalize(); // NB: intellij wanted me to do this. Need I?  I'm not extending anything
     }
 
+    /**
+     * @return true if a record of the given estimated size should be spilled to disk to keep the estimated size of the
+     * records in memory within the budget, or because records were already spilled, so that the queue stays in order.
+     */
+    private boolean exceedsMemoryBudget(final long size) {
+        return this.sizeEstimator != null &&
+                (0 < this.numRecordsOnDisk || this.numBytesInRam + size > this.maxBytesInRam);
+    }
+
     /**
      * Write the present record to the end of a file representing the tail of the queue.
      * @throws RuntimeIOException
@@ -277,6 +343,7 @@ public class DiskBackedQueue<E> implements Queue<E> {
     private void updateQueueHead() {
         if (!this.ramRecords.isEmpty()) {
             this.headRecord = this.ramRecords.poll();
+            if (this.sizeEstimator != null) this.numBytesInRam -= this.ramRecordSizes.poll();
             if (0 < numRecordsOnDisk) this.canAdd = false;
         }
         else if (this.diskRecords != null) {
@@ -29,6 +29,7 @@ import htsjdk.samtools.SAMException;
 import htsjdk.samtools.seekablestream.SeekableBufferedStream;
 import htsjdk.samtools.seekablestream.SeekableFileStream;
 import htsjdk.samtools.seekablestream.SeekableHTTPStream;
+import htsjdk.samtools.seekablestream.SeekableMemoryMappedFileStream;
 import htsjdk.samtools.seekablestream.SeekableStream;
 
 import java.io.BufferedInputStream;
@@ -155,7 +156,8 @@ public class IOUtil {
     }
 
     public static SeekableStream maybeBufferedSeekableStream(final SeekableStream stream, final int bufferSize) {
-        return bufferSize > 0 ? new SeekableBufferedStream(stream, bufferSize) : stream; 
+        // a memory mapped stream is already in memory, buffering it would only add a copy
+        return bufferSize > 0 && !(stream instanceof SeekableMemoryMappedFileStream) ? new SeekableBufferedStream(stream, bufferSize) : stream;
     }
     
     public static SeekableStream maybeBufferedSeekableStream(final SeekableStream stream) {
@@ -0,0 +1,82 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.util;
+
+import java.util.Comparator;
+
+/**
+ * A comparator whose ordering starts with primitive keys that can be computed once per record, so that sorting and
+ * merging can compare most records with a single comparison of longs rather than through the comparator.
+ * Records are ordered by their sort keys, then by their tie-break keys, both compared as signed longs, then by
+ * {@link #compare(Object, Object)}, which must be consistent with that order.
+ *
+ * @see SortingCollection
+ */
+public interface SortKeyComparator<T> extends Comparator<T> {
+
+    /**
+     * @return the comparator if it is a {@link SortKeyComparator} whose keys may be used, else null.
+     * @see #hasSortKeys()
+     */
+    static <T> SortKeyComparator<T> getSortKeyComparator(final Comparator<T> comparator) {
+        if (comparator instanceof SortKeyComparator && ((SortKeyComparator<T>) comparator).hasSortKeys()) {
+            return (SortKeyComparator<T>) comparator;
+        }
+        return null;
+    }
+
+    /**
+     * @return whether records may be compared by their keys.  A comparator that inherits keys it does not keep
+     * consistent with its order, e.g. a subclass overriding {@link #compare(Object, Object)}, returns false.
+     */
+    default boolean hasSortKeys() {
+        return true;
+    }
+
+    /**
+     * @return the primary key of the record; records with a smaller key compare less than records with a larger key.
+     */
+    long getSortKey(T record);
+
+    /**
+     * @return the key ordering records with equal sort keys, or a constant if there is none.
+     */
+    default long getTieBreakKey(final T record) {
+        return 0;
+    }
+
+    /**
+     * Compares records whose keys have already been computed with this comparator.
+     *
+     * @return negative if record1 < record2, 0 if equal, else positive
+     */
+    default int compare(final long sortKey1, final long tieBreakKey1, final T record1,
+                        final long sortKey2, final long tieBreakKey2, final T record2) {
+        if (sortKey1 != sortKey2) {
+            return sortKey1 < sortKey2 ? -1 : 1;
+        }
+        if (tieBreakKey1 != tieBreakKey2) {
+            return tieBreakKey1 < tieBreakKey2 ? -1 : 1;
+        }
+        return compare(record1, record2);
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.util;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Stable merge sort of records by the keys of a {@link SortKeyComparator}.  The keys of each record are computed
+ * once and held in arrays of longs alongside the records, so that most comparisons are comparisons of longs and
+ * no object is allocated per record.
+ */
+final class SortKeySorter<T> {
+    // ranges up to this size are sorted by insertion
+    private static final int INSERTION_SORT_THRESHOLD = 32;
+    // ranges up to this size are not split across threads
+    private static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    private final SortKeyComparator<T> comparator;
+    private final T[] records;
+    private final long[] sortKeys;
+    private final long[] tieBreakKeys;
+
+    // merge buffers
+    private final Object[] mergedRecords;
+    private final long[] mergedSortKeys;
+    private final long[] mergedTieBreakKeys;
+
+    private SortKeySorter(final T[] records, final int numRecords, final SortKeyComparator<T> comparator) {
+        this.comparator = comparator;
+        this.records = records;
+        this.sortKeys = new long[numRecords];
+        this.tieBreakKeys = new long[numRecords];
+        for (int i = 0; i < numRecords; ++i) {
+            sortKeys[i] = comparator.getSortKey(records[i]);
+            tieBreakKeys[i] = comparator.getTieBreakKey(records[i]);
+        }
+        this.mergedRecords = new Object[numRecords];
+        this.mergedSortKeys = new long[numRecords];
+        this.mergedTieBreakKeys = new long[numRecords];
+    }
+
+    /**
+     * Sorts the first numRecords records of the array in the order of the comparator.  Records that compare equal
+     * keep their order.
+     *
+     * @param parallel whether to sort large arrays on the threads of the common fork-join pool
+     */
+    static <T> void sort(final T[] records, final int numRecords, final SortKeyComparator<T> comparator,
+                         final boolean parallel) {
+        final SortKeySorter<T> sorter = new SortKeySorter<>(records, numRecords, comparator);
+        if (parallel && numRecords > PARALLEL_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(sorter.new SortTask(0, numRecords));
+        } else {
+            sorter.sort(0, numRecords);
+        }
+    }
+
+    private void sort(final int from, final int to) {
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            insertionSort(from, to);
+            return;
+        }
+        final int middle = (from + to) >>> 1;
+        sort(from, middle);
+        sort(middle, to);
+        merge(from, middle, to);
+    }
+
+    /**
+     * Sorts the halves of a range on separate threads, then merges them.
+     */
+    private class SortTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+
+        SortTask(final int from, final int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                sort(from, to);
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            invokeAll(new SortTask(from, middle), new SortTask(middle, to));
+            merge(from, middle, to);
+        }
+    }
+
+    private int compare(final int i, final int j) {
+        return comparator.compare(sortKeys[i], tieBreakKeys[i], records[i], sortKeys[j], tieBreakKeys[j], records[j]);
+    }
+
+    private void insertionSort(final int from, final int to) {
+        for (int i = from + 1; i < to; ++i) {
+            final T record = records[i];
+            final long sortKey = sortKeys[i];
+            final long tieBreakKey = tieBreakKeys[i];
+            int j = i - 1;
+            while (j >= from && comparator.compare(sortKeys[j], tieBreakKeys[j], records[j], sortKey, tieBreakKey, record) > 0) {
+                records[j + 1] = records[j];
+                sortKeys[j + 1] = sortKeys[j];
+                tieBreakKeys[j + 1] = tieBreakKeys[j];
+                --j;
+            }
+            records[j + 1] = record;
+            sortKeys[j + 1] = sortKey;
+            tieBreakKeys[j + 1] = tieBreakKey;
+        }
+    }
+
+    /**
+     * Merges the sorted ranges [from, middle) and [middle, to), taking from the first one on ties.
+     */
+    private void merge(final int from, final int middle, final int to) {
+        if (compare(middle - 1, middle) <= 0) {
+            // already in order, as when the records were added sorted
+            return;
+        }
+        int i = from;
+        int j = middle;
+        int k = from;
+        while (i < middle && j < to) {
+            final int source = compare(i, j) <= 0 ? i++ : j++;
+            mergedRecords[k] = records[source];
+            mergedSortKeys[k] = sortKeys[source];
+            mergedTieBreakKeys[k] = tieBreakKeys[source];
+            ++k;
+        }
+        // what is left of the second range is already in place
+        final int rest = middle - i;
+        System.arraycopy(records, i, mergedRecords, k, rest);
+        System.arraycopy(sortKeys, i, mergedSortKeys, k, rest);
+        System.arraycopy(tieBreakKeys, i, mergedTieBreakKeys, k, rest);
+        final int length = k + rest - from;
+        System.arraycopy(mergedRecords, from, records, from, length);
+        System.arraycopy(mergedSortKeys, from, sortKeys, from, length);
+        System.arraycopy(mergedTieBreakKeys, from, tieBreakKeys, from, length);
+    }
+}
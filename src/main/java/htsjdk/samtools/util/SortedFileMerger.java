@@ -0,0 +1,302 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.util;
+
+import htsjdk.samtools.Defaults;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Merges temporary files of records, each of them sorted by a comparator and written with a {@link TempStreamFactory}
+ * and a {@link SortingCollection.Codec}, as spilled by {@link SortingCollection}.  Records comparing equal are
+ * returned in the order of the files that contain them.
+ *
+ * Merging k files takes k open files, so {@link #mergeToFanIn(List)} first merges groups of files into intermediate
+ * files until no more than the maximum fan-in remain.
+ */
+public class SortedFileMerger<T> {
+    /** The minimum amount of space free on a temp filesystem to write a file there. */
+    private static final long TMP_SPACE_FREE = IOUtil.FIVE_GBS;
+
+    private final SortingCollection.Codec<T> codec;
+    private final Comparator<T> comparator;
+
+    /**
+     * The comparator if it is a {@link SortKeyComparator} with keys, in which case the keys of each record are
+     * computed once per merge, else null.
+     */
+    private final SortKeyComparator<T> sortKeyComparator;
+    private final TempStreamFactory tempStreamFactory;
+    private final int maxMergeFanIn;
+    private final String tmpFilePrefix;
+    private final File[] tmpDirs;
+
+    /**
+     * @param codec For reading records from files, and writing intermediate files.  Used as a prototype.
+     * @param comparator Order of the records in each file, and of the merged records
+     * @param tempStreamFactory Compression of the files, which must be the one they were written with
+     * @param maxMergeFanIn Maximum number of files merged at once
+     * @param tmpFilePrefix Prefix of the names of intermediate files
+     * @param tmpDirs Where to write intermediate files
+     */
+    public SortedFileMerger(final SortingCollection.Codec<T> codec, final Comparator<T> comparator,
+                            final TempStreamFactory tempStreamFactory, final int maxMergeFanIn,
+                            final String tmpFilePrefix, final File... tmpDirs) {
+        if (maxMergeFanIn < 2) {
+            throw new IllegalArgumentException("maxMergeFanIn must be >= 2");
+        }
+        this.codec = codec;
+        this.comparator = comparator;
+        this.sortKeyComparator = SortKeyComparator.getSortKeyComparator(comparator);
+        this.tempStreamFactory = tempStreamFactory;
+        this.maxMergeFanIn = maxMergeFanIn;
+        this.tmpFilePrefix = tmpFilePrefix;
+        this.tmpDirs = tmpDirs;
+    }
+
+    /**
+     * Merge consecutive files, in order to keep ties in the order of the files, until no more than maxMergeFanIn
+     * are left.  Each pass merges groups of maxMergeFanIn files, but the last pass only merges as many files as
+     * needed.  The merged files are deleted, and replaced in the list by the file they were merged into.
+     */
+    public void mergeToFanIn(final List<File> files) {
+        int i = 0;
+        while (files.size() > this.maxMergeFanIn) {
+            final int groupSize = Math.min(this.maxMergeFanIn, files.size() - this.maxMergeFanIn + 1);
+            if (i + groupSize > files.size()) {
+                // start another pass
+                i = 0;
+            }
+            final List<File> group = files.subList(i, i + groupSize);
+            final File merged = mergeFiles(new ArrayList<File>(group));
+            IOUtil.deleteFiles(group);
+            group.clear();
+            files.add(i++, merged);
+        }
+    }
+
+    /**
+     * @return an iterator over the records of the given files, merged.  All the files are open at once.
+     */
+    public CloseableIterator<T> iterator(final List<File> files) {
+        return new MergingIterator(files);
+    }
+
+    /**
+     * @return a new temporary file with the records of the given files, merged.
+     */
+    private File mergeFiles(final List<File> group) {
+        try {
+            final File f = IOUtil.newTempFile(this.tmpFilePrefix, ".tmp", this.tmpDirs, TMP_SPACE_FREE);
+            final SortingCollection.Codec<T> mergeCodec = this.codec.clone();
+            final MergingIterator it = new MergingIterator(group);
+            OutputStream os = null;
+            try {
+                os = tempStreamFactory.wrapTempOutputStream(new FileOutputStream(f), Defaults.BUFFER_SIZE);
+                mergeCodec.setOutputStream(os);
+                while (it.hasNext()) {
+                    mergeCodec.encode(it.next());
+                }
+                os.flush();
+            } catch (RuntimeIOException ex) {
+                throw new RuntimeIOException("Problem writing temporary file " + f.getAbsolutePath() +
+                        ".  Try setting TMP_DIR to a file system with lots of space.", ex);
+            } finally {
+                it.close();
+                if (os != null) {
+                    os.close();
+                }
+            }
+            return f;
+        }
+        catch (IOException e) {
+            throw new RuntimeIOException(e);
+        }
+    }
+
+    /**
+     * Merges files of records.
+     * Each file is has records in sort order within the file.
+     * This iterator automatically closes when it iterates to the end, but if not iterating
+     * to the end it is a good idea to call close().
+     *
+     * Algorithm: MergingIterator maintains a loser tree over FileRecordIterators, one per file.  Each internal node
+     * of the tree holds the file that lost the comparison of the next records of the files below it, and the root
+     * holds the overall winner, i.e. the file that has the next record to be emitted.  In order to get the next
+     * record, it is read from the winning file, then the new next record of that file is compared with the losers
+     * on the path from its leaf to the root, which takes log2(number of files) comparisons.  Ties are broken by
+     * the order of the files, and exhausted files lose to all others.
+     */
+    class MergingIterator implements CloseableIterator<T> {
+        private final List<FileRecordIterator> sources = new ArrayList<FileRecordIterator>();
+        private final int[] tree;
+
+        MergingIterator(final List<File> files) {
+            for (final File f : files) {
+                final FileRecordIterator it = new FileRecordIterator(f);
+                if (!it.hasNext()) {
+                    it.close();
+                }
+                this.sources.add(it);
+            }
+            this.tree = new int[Math.max(this.sources.size(), 1)];
+            Arrays.fill(this.tree, -1);
+            for (int i = 0; i < this.sources.size(); ++i) {
+                replay(i);
+            }
+        }
+
+        /**
+         * Plays the next record of the given source against the losers on the path from its leaf to the root.
+         * While the tree is being built, the first source to reach a node waits there for the second one.
+         */
+        private void replay(final int source) {
+            int winner = source;
+            for (int node = (source + this.sources.size()) / 2; node > 0; node /= 2) {
+                if (this.tree[node] == -1) {
+                    this.tree[node] = winner;
+                    return;
+                }
+                if (beats(this.tree[node], winner)) {
+                    final int loser = winner;
+                    winner = this.tree[node];
+                    this.tree[node] = loser;
+                }
+            }
+            this.tree[0] = winner;
+        }
+
+        /** @return true if the next record of source a is to be emitted before the next record of source b. */
+        private boolean beats(final int a, final int b) {
+            final FileRecordIterator lhs = this.sources.get(a);
+            final FileRecordIterator rhs = this.sources.get(b);
+            if (!lhs.hasNext()) return false;
+            if (!rhs.hasNext()) return true;
+            final int result = sortKeyComparator == null ? comparator.compare(lhs.peek(), rhs.peek()) :
+                    sortKeyComparator.compare(lhs.sortKey, lhs.tieBreakKey, lhs.peek(),
+                            rhs.sortKey, rhs.tieBreakKey, rhs.peek());
+            return result < 0 || (result == 0 && a < b);
+        }
+
+        public boolean hasNext() {
+            return this.tree[0] != -1 && this.sources.get(this.tree[0]).hasNext();
+        }
+
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            final int winner = this.tree[0];
+            final FileRecordIterator fileIterator = this.sources.get(winner);
+            final T ret = fileIterator.next();
+            if (!fileIterator.hasNext()) {
+                fileIterator.close();
+            }
+            replay(winner);
+            return ret;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        public void close() {
+            for (final FileRecordIterator it : this.sources) {
+                it.close();
+            }
+        }
+    }
+
+    /**
+     * Read a file of records in format defined by the codec
+     */
+    class FileRecordIterator implements CloseableIterator<T> {
+        private final File file;
+        // the stream wrapped by the tempStreamFactory, which must be closed to release its decompressor
+        private final InputStream is;
+        private final SortingCollection.Codec<T> codec;
+        private T currentRecord = null;
+
+        // keys of the current record, if sorting with a SortKeyComparator
+        private long sortKey;
+        private long tieBreakKey;
+
+        FileRecordIterator(final File file) {
+            this.file = file;
+            try {
+                this.is = tempStreamFactory.wrapTempInputStream(new FileInputStream(file), Defaults.BUFFER_SIZE);
+                this.codec = SortedFileMerger.this.codec.clone();
+                this.codec.setInputStream(this.is);
+                advance();
+            }
+            catch (FileNotFoundException e) {
+                throw new RuntimeIOException(e);
+            }
+        }
+
+        public boolean hasNext() {
+            return this.currentRecord != null;
+        }
+
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final T ret = this.currentRecord;
+            advance();
+            return ret;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        /** @return the next record, without advancing. */
+        T peek() {
+            return this.currentRecord;
+        }
+
+        private void advance() {
+            this.currentRecord = this.codec.decode();
+            if (this.currentRecord != null && sortKeyComparator != null) {
+                this.sortKey = sortKeyComparator.getSortKey(this.currentRecord);
+                this.tieBreakKey = sortKeyComparator.getTieBreakKey(this.currentRecord);
+            }
+        }
+
+        public void close() {
+            CloserUtil.close(this.is);
+        }
+    }
+}
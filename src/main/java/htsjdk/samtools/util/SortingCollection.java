@@ -26,22 +26,23 @@ package htsjdk.samtools.util;
 import htsjdk.samtools.Defaults;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.Serializable;
 import java.lang.reflect.Array;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
-import java.util.Iterator;
+import java.util.Deque;
 import java.util.List;
 import java.util.NoSuchElementException;
-import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Collection to which many records can be added.  After all records are added, the collection can be
@@ -51,10 +52,14 @@ import java.util.TreeSet;
  * equal as determined by the codec used to write them to disk and read them back.
  *
  * When iterating over the collection, the number of file handles required is numRecordsInCollection/maxRecordsInRam.
- * If this becomes a limiting factor, a file handle cache could be added.
+ * If this becomes a limiting factor, see {@link #setMaxMergeFanIn(int)} to merge files in several passes, with a
+ * {@link SortedFileMerger}.
  *
  * If Snappy DLL is available and snappy.disable system property is not set to true, then Snappy is used
  * to compress temporary files.
+ *
+ * By default, records are spilled to disk on the thread calling add().  See {@link #setBackgroundSpilling(int)}
+ * to sort and write them in the background instead.
  */
 public class SortingCollection<T> implements Iterable<T> {
 
@@ -95,6 +100,24 @@ public class SortingCollection<T> implements Iterable<T> {
         Codec<T> clone();
     }
 
+    /**
+     * Estimates the memory used by records, to spill them to disk based on a memory budget rather than a number
+     * of records.  See {@link htsjdk.samtools.SAMRecordSizeEstimator} for SAMRecords.
+     */
+    public interface SizeEstimator<T> {
+        /**
+         * @return approximate number of bytes of heap used by the record, which must not change while the record
+         * is held in memory by the collection.
+         */
+        long getSizeInBytes(T record);
+    }
+
+    /** Initial capacity of the buffer of records when spilling is based on a memory budget. */
+    private static final int INITIAL_BUFFER_CAPACITY = 1024;
+
+    /** Largest array that can safely be allocated. */
+    private static final int MAX_BUFFER_CAPACITY = Integer.MAX_VALUE - 8;
+
     /** Directories where files of sorted records go. */
     private final File[] tmpDirs;
 
@@ -110,8 +133,24 @@ public class SortingCollection<T> implements Iterable<T> {
      * For sorting, both when spilling records to file, and merge sorting.
      */
     private final Comparator<T> comparator;
+
+    /**
+     * The comparator if it is a {@link SortKeyComparator} with keys, in which case the keys of each record are
+     * computed once per sort, else null.
+     */
+    private final SortKeyComparator<T> sortKeyComparator;
+    private final Class<T> componentType;
     private final int maxRecordsInRam;
     private int numRecordsInRam = 0;
+
+    /**
+     * If not null, records are spilled to disk when their estimated size would exceed maxBytesInRam,
+     * and the buffer of records grows as needed.
+     */
+    private final SizeEstimator<T> sizeEstimator;
+    private final long maxBytesInRam;
+    private long numBytesInRam = 0;
+
     private T[] ramRecords;
     private boolean iterationStarted = false;
     private boolean doneAdding = false;
@@ -130,6 +169,22 @@ public class SortingCollection<T> implements Iterable<T> {
 
     private TempStreamFactory tempStreamFactory = new TempStreamFactory();
 
+    /**
+     * Maximum number of files merged at once.
+     */
+    private int maxMergeFanIn = Integer.MAX_VALUE;
+
+    /**
+     * If greater than 0, records are spilled in the background, up to that many buffers at a time.
+     */
+    private int maxSpillsInFlight = 0;
+    private ExecutorService spillExecutor = null;
+
+    /**
+     * Spills being sorted and written in the background, oldest first.  Each returns its emptied buffer of records.
+     */
+    private final Deque<Future<T[]>> spillsInFlight = new ArrayDeque<Future<T[]>>();
+
     /**
      * Prepare to accumulate records to be sorted
      * @param componentType Class of the record to be sorted.  Necessary because of Java generic lameness.
@@ -140,9 +195,29 @@ public class SortingCollection<T> implements Iterable<T> {
      */
     private SortingCollection(final Class<T> componentType, final SortingCollection.Codec<T> codec,
                              final Comparator<T> comparator, final int maxRecordsInRam, final File... tmpDir) {
+        this(componentType, codec, comparator, maxRecordsInRam, null, Long.MAX_VALUE, tmpDir);
+    }
+
+    /**
+     * Prepare to accumulate records to be sorted
+     * @param componentType Class of the record to be sorted.  Necessary because of Java generic lameness.
+     * @param codec For writing records to file and reading them back into RAM
+     * @param comparator Defines output sort order
+     * @param maxRecordsInRam how many records to accumulate before spilling to disk
+     * @param sizeEstimator If not null, estimates the memory used by each record, to also spill to disk before the
+     *                      records in memory exceed maxBytesInRam
+     * @param maxBytesInRam estimated number of bytes of records to accumulate before spilling to disk
+     * @param tmpDir Where to write files of records that will not fit in RAM
+     */
+    private SortingCollection(final Class<T> componentType, final SortingCollection.Codec<T> codec,
+                              final Comparator<T> comparator, final int maxRecordsInRam,
+                              final SizeEstimator<T> sizeEstimator, final long maxBytesInRam, final File... tmpDir) {
         if (maxRecordsInRam <= 0) {
             throw new IllegalArgumentException("maxRecordsInRam must be > 0");
         }
+        if (maxBytesInRam <= 0) {
+            throw new IllegalArgumentException("maxBytesInRam must be > 0");
+        }
 
         if (tmpDir == null || tmpDir.length == 0) {
             throw new IllegalArgumentException("At least one temp directory must be provided.");
@@ -151,8 +226,16 @@ public class SortingCollection<T> implements Iterable<T> {
         this.tmpDirs = tmpDir;
         this.codec = codec;
         this.comparator = comparator;
+        this.sortKeyComparator = SortKeyComparator.getSortKeyComparator(comparator);
+        this.componentType = componentType;
         this.maxRecordsInRam = maxRecordsInRam;
-        this.ramRecords = (T[])Array.newInstance(componentType, maxRecordsInRam);
+        this.sizeEstimator = sizeEstimator;
+        this.maxBytesInRam = maxBytesInRam;
+        this.ramRecords = newRecordBuffer(sizeEstimator == null ? maxRecordsInRam : INITIAL_BUFFER_CAPACITY);
+    }
+
+    private T[] newRecordBuffer(final int capacity) {
+        return (T[])Array.newInstance(componentType, capacity);
     }
 
     public void add(final T rec) {
@@ -162,8 +245,19 @@ public class SortingCollection<T> implements Iterable<T> {
         if (iterationStarted) {
             throw new IllegalStateException("Cannot add after calling iterator()");
         }
-        if (numRecordsInRam == maxRecordsInRam) {
-            spillToDisk();
+        if (sizeEstimator == null) {
+            if (numRecordsInRam == maxRecordsInRam) {
+                spillToDisk();
+            }
+        } else {
+            final long size = sizeEstimator.getSizeInBytes(rec);
+            if (numRecordsInRam > 0 && (numBytesInRam + size > maxBytesInRam || numRecordsInRam == maxRecordsInRam)) {
+                spillToDisk();
+            }
+            if (numRecordsInRam == ramRecords.length) {
+                ramRecords = Arrays.copyOf(ramRecords, (int) Math.min(2L * ramRecords.length, maxRecordsInRam));
+            }
+            numBytesInRam += size;
         }
         ramRecords[numRecordsInRam++] = rec;
     }
@@ -184,12 +278,20 @@ public class SortingCollection<T> implements Iterable<T> {
         doneAdding = true;
 
         if (this.files.isEmpty()) {
+            shutdownSpillExecutor();
             return;
         }
 
         if (this.numRecordsInRam > 0) {
             spillToDisk();
         }
+        try {
+            while (!this.spillsInFlight.isEmpty()) {
+                waitForSpill(this.spillsInFlight.removeFirst());
+            }
+        } finally {
+            shutdownSpillExecutor();
+        }
 
         // Facilitate GC
         this.ramRecords = null;
@@ -211,21 +313,101 @@ public class SortingCollection<T> implements Iterable<T> {
         this.destructiveIteration = destructiveIteration;
     }
 
+    /**
+     * Sort records and write them to temporary files in the background, so that add() does not wait while records
+     * are spilled to disk.  When the buffer of records in memory is full, it is swapped for a fresh one, and is
+     * sorted with {@link Arrays#parallelSort} and written to a temporary file on a background thread.  Each spill
+     * in flight holds a full buffer of maxRecordsInRam records, or of maxBytesInRam bytes of records, so up to
+     * maxSpillsInFlight + 1 buffers are kept in memory; once that many spills are in flight, add() waits for the oldest one to complete.
+     * Must be called before any record is spilled to disk.
+     * @param maxSpillsInFlight number of spills in flight at a time, or 0 to spill on the thread calling add().
+     */
+    public void setBackgroundSpilling(final int maxSpillsInFlight) {
+        if (maxSpillsInFlight < 0) {
+            throw new IllegalArgumentException("maxSpillsInFlight must be >= 0");
+        }
+        if (!this.files.isEmpty() || this.doneAdding) {
+            throw new IllegalStateException("Cannot change background spilling after records were spilled to disk");
+        }
+        this.maxSpillsInFlight = maxSpillsInFlight;
+    }
+
+    /**
+     * Set how temporary files are compressed, by default with Snappy if it is available.  Must be called before
+     * any record is spilled to disk.
+     */
+    public void setTempStreamFactory(final TempStreamFactory tempStreamFactory) {
+        if (!this.files.isEmpty()) {
+            throw new IllegalStateException("Cannot change temporary file compression after records were spilled to disk");
+        }
+        this.tempStreamFactory = tempStreamFactory;
+    }
+
+    /**
+     * Set the maximum number of files merged at once, and therefore of file handles open while iterating.  If more
+     * files were spilled, they are first merged into fewer, larger files, in as many passes as needed.  Defaults
+     * to no limit, in which case all the files are merged at once.
+     */
+    public void setMaxMergeFanIn(final int maxMergeFanIn) {
+        if (maxMergeFanIn < 2) {
+            throw new IllegalArgumentException("maxMergeFanIn must be >= 2");
+        }
+        this.maxMergeFanIn = maxMergeFanIn;
+    }
+
     /**
      * Sort the records in memory, write them to a file, and clear the buffer of records in memory.
      */
     private void spillToDisk() {
+        final File f;
+        try {
+            f = newTempFile();
+        } catch (IOException e) {
+            throw new RuntimeIOException(e);
+        }
+
+        this.numBytesInRam = 0;
+        if (this.maxSpillsInFlight == 0) {
+            sortAndWrite(this.ramRecords, this.numRecordsInRam, f, this.codec);
+            this.numRecordsInRam = 0;
+            this.files.add(f);
+            return;
+        }
+
+        // Reuse the buffer of the oldest spill if as many are in flight as allowed, so that memory stays bounded.
+        final T[] nextRecords = this.spillsInFlight.size() < this.maxSpillsInFlight ? newRecordBuffer(this.ramRecords.length) :
+                waitForSpill(this.spillsInFlight.removeFirst());
+        if (this.spillExecutor == null) {
+            this.spillExecutor = Executors.newFixedThreadPool(this.maxSpillsInFlight,
+                    new DaemonThreadFactory("SortingCollection-spill-"));
+        }
+        final T[] records = this.ramRecords;
+        final int numRecords = this.numRecordsInRam;
+        final Codec<T> spillCodec = this.codec.clone();
+        this.spillsInFlight.addLast(this.spillExecutor.submit(() -> {
+            sortAndWrite(records, numRecords, f, spillCodec);
+            return records;
+        }));
+        // Files are listed in the order records were added, so that ties are returned in that order when merging
+        this.files.add(f);
+        this.ramRecords = nextRecords;
+        this.numRecordsInRam = 0;
+    }
+
+    /**
+     * Sort the given records, write them to the given file, and clear them from the array.
+     */
+    private void sortAndWrite(final T[] records, final int numRecords, final File f, final Codec<T> codec) {
         try {
-            Arrays.sort(this.ramRecords, 0, this.numRecordsInRam, this.comparator);
-            final File f = newTempFile();
+            sort(records, numRecords);
             OutputStream os = null;
             try {
                 os = tempStreamFactory.wrapTempOutputStream(new FileOutputStream(f), Defaults.BUFFER_SIZE);
-                this.codec.setOutputStream(os);
-                for (int i = 0; i < this.numRecordsInRam; ++i) {
-                    this.codec.encode(ramRecords[i]);
+                codec.setOutputStream(os);
+                for (int i = 0; i < numRecords; ++i) {
+                    codec.encode(records[i]);
                     // Facilitate GC
-                    this.ramRecords[i] = null;
+                    records[i] = null;
                 }
 
                 os.flush();
@@ -237,16 +419,53 @@ public class SortingCollection<T> implements Iterable<T> {
                     os.close();
                 }
             }
-
-            this.numRecordsInRam = 0;
-            this.files.add(f);
-
         }
         catch (IOException e) {
             throw new RuntimeIOException(e);
         }
     }
 
+    /**
+     * Sort records in memory, in parallel when spilling in the background.  Both sorts are stable.
+     */
+    private void sort(final T[] records, final int numRecords) {
+        if (this.sortKeyComparator != null) {
+            SortKeySorter.sort(records, numRecords, this.sortKeyComparator, this.maxSpillsInFlight > 0);
+        } else if (this.maxSpillsInFlight > 0) {
+            Arrays.parallelSort(records, 0, numRecords, this.comparator);
+        } else {
+            Arrays.sort(records, 0, numRecords, this.comparator);
+        }
+    }
+
+    /**
+     * Wait for a spill in flight to complete, rethrowing its exception if it failed.
+     * @return the emptied buffer of records of the spill
+     */
+    private T[] waitForSpill(final Future<T[]> spill) {
+        try {
+            return spill.get();
+        } catch (final InterruptedException ie) {
+            throw new RuntimeException("Interrupted waiting for records to be spilled to disk", ie);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private void shutdownSpillExecutor() {
+        if (this.spillExecutor != null) {
+            this.spillExecutor.shutdown();
+            this.spillExecutor = null;
+        }
+    }
+
     /**
      * Creates a new tmp file on one of the available temp filesystems, registers it for deletion
      * on JVM exit and then returns it.
@@ -269,7 +488,10 @@ public class SortingCollection<T> implements Iterable<T> {
         if (this.files.isEmpty()) {
             return new InMemoryIterator();
         } else {
-            return new MergingIterator();
+            final SortedFileMerger<T> merger = new SortedFileMerger<T>(this.codec, this.comparator,
+                    this.tempStreamFactory, this.maxMergeFanIn, "sortingcollection.", this.tmpDirs);
+            merger.mergeToFanIn(this.files);
+            return merger.iterator(this.files);
         }
     }
 
@@ -280,6 +502,16 @@ public class SortingCollection<T> implements Iterable<T> {
         this.iterationStarted = true;
         this.cleanedUp = true;
 
+        // Let the spills in flight complete before deleting their files
+        while (!this.spillsInFlight.isEmpty()) {
+            try {
+                waitForSpill(this.spillsInFlight.removeFirst());
+            } catch (final RuntimeException e) {
+                // the file is deleted below anyway
+            }
+        }
+        shutdownSpillExecutor();
+
         IOUtil.deleteFiles(this.files);
     }
 
@@ -324,6 +556,30 @@ public class SortingCollection<T> implements Iterable<T> {
     }
 
 
+    /**
+     * Syntactic sugar around the ctor, to save some typing of type parameters.  Records are spilled to disk when the
+     * estimated size of the records in memory would exceed the given budget, rather than after a number of records,
+     * which suits records of widely varying sizes, e.g. short and long reads.
+     *
+     * @param componentType Class of the record to be sorted.  Necessary because of Java generic lameness.
+     * @param codec For writing records to file and reading them back into RAM
+     * @param comparator Defines output sort order
+     * @param sizeEstimator Estimates the memory used by each record, e.g. {@link htsjdk.samtools.SAMRecordSizeEstimator}
+     * @param maxBytesInRam estimated number of bytes of records to accumulate in memory before spilling to disk
+     * @param tmpDir Where to write files of records that will not fit in RAM
+     */
+    public static <T> SortingCollection<T> newInstance(final Class<T> componentType,
+                                                       final SortingCollection.Codec<T> codec,
+                                                       final Comparator<T> comparator,
+                                                       final SizeEstimator<T> sizeEstimator,
+                                                       final long maxBytesInRam,
+                                                       final File... tmpDir) {
+        if (sizeEstimator == null) {
+            throw new IllegalArgumentException("A size estimator must be provided.");
+        }
+        return new SortingCollection<T>(componentType, codec, comparator, MAX_BUFFER_CAPACITY, sizeEstimator, maxBytesInRam, tmpDir);
+    }
+
     /**
      * Syntactic sugar around the ctor, to save some typing of type parameters.  Writes files to java.io.tmpdir
      *
@@ -348,10 +604,7 @@ public class SortingCollection<T> implements Iterable<T> {
         private int iterationIndex = 0;
 
         InMemoryIterator() {
-            Arrays.sort(SortingCollection.this.ramRecords,
-                        0,
-                        SortingCollection.this.numRecordsInRam,
-                        SortingCollection.this.comparator);
+            sort(SortingCollection.this.ramRecords, SortingCollection.this.numRecordsInRam);
         }
 
         public void close() {
@@ -376,139 +629,4 @@ public class SortingCollection<T> implements Iterable<T> {
             throw new UnsupportedOperationException();
         }
     }
-
-    /**
-     * For iteration when spilling to disk has occurred.
-     * Each file is has records in sort order within the file.
-     * This iterator automatically closes when it iterates to the end, but if not iterating
-     * to the end it is a good idea to call close().
-     *
-     * Algorithm: MergingIterator maintains a PriorityQueue of PeekFileRecordIterators.
-     * Each PeekFileRecordIterator iterates through a file in which the records are sorted.
-     * The comparator for PeekFileRecordIterator used by the PriorityQueue peeks at the next record from
-     * the file, so the first element in the PriorityQueue is the file that has the next record to be emitted.
-     * In order to get the next record, the first PeekFileRecordIterator in the PriorityQueue is popped,
-     * the record is obtained from that iterator, and then if that iterator is not empty, it is pushed back into
-     * the PriorityQueue.  Because it now has a different record as its next element, it may go into another
-     * location in the PriorityQueue
-     */
-    class MergingIterator implements CloseableIterator<T> {
-        private final TreeSet<PeekFileRecordIterator> queue;
-
-        MergingIterator() {
-            this.queue = new TreeSet<PeekFileRecordIterator>(new PeekFileRecordIteratorComparator());
-            int n = 0;
-            for (final File f : SortingCollection.this.files) {
-                final FileRecordIterator it = new FileRecordIterator(f);
-                if (it.hasNext()) {
-                    this.queue.add(new PeekFileRecordIterator(it, n++));
-                }
-                else {
-                    it.close();
-                }
-            }
-        }
-
-        public boolean hasNext() {
-            return !this.queue.isEmpty();
-        }
-
-        public T next() {
-            if (!hasNext()) {
-                throw new NoSuchElementException();
-            }
-
-            final PeekFileRecordIterator fileIterator = queue.pollFirst();
-            final T ret = fileIterator.next();
-            if (fileIterator.hasNext()) {
-                this.queue.add(fileIterator);
-            }
-            else {
-                ((CloseableIterator<T>)fileIterator.getUnderlyingIterator()).close();
-            }
-
-            return ret;
-        }
-
-        public void remove() {
-            throw new UnsupportedOperationException();
-        }
-
-        public void close() {
-            while (!this.queue.isEmpty()) {
-                final PeekFileRecordIterator it = this.queue.pollFirst();
-                ((CloseableIterator<T>)it.getUnderlyingIterator()).close();
-            }
-        }
-    }
-
-    /**
-     * Read a file of records in format defined by the codec
-     */
-    class FileRecordIterator implements CloseableIterator<T> {
-        private final File file;
-        private final FileInputStream is;
-        private final Codec<T> codec;
-        private T currentRecord = null;
-
-        FileRecordIterator(final File file) {
-            this.file = file;
-            try {
-                this.is = new FileInputStream(file);
-                this.codec = SortingCollection.this.codec.clone();
-                this.codec.setInputStream(tempStreamFactory.wrapTempInputStream(this.is, Defaults.BUFFER_SIZE));
-                advance();
-            }
-            catch (FileNotFoundException e) {
-                throw new RuntimeIOException(e);
-            }
-        }
-
-        public boolean hasNext() {
-            return this.currentRecord != null;
-        }
-
-        public T next() {
-            if (!hasNext()) {
-                throw new NoSuchElementException();
-            }
-            final T ret = this.currentRecord;
-            advance();
-            return ret;
-        }
-
-        public void remove() {
-            throw new UnsupportedOperationException();
-        }
-
-        private void advance() {
-            this.currentRecord = this.codec.decode();
-        }
-
-        public void close() {
-            CloserUtil.close(this.is);
-        }
-    }
-
-
-    /**
-     * Just a typedef
-     */
-    class PeekFileRecordIterator extends PeekIterator<T> {
-        final int n; // A serial number used for tie-breaking in the sort
-        PeekFileRecordIterator(final Iterator<T> underlyingIterator, final int n) {
-            super(underlyingIterator);
-            this.n = n;
-        }
-    }
-
-    class PeekFileRecordIteratorComparator implements Comparator<PeekFileRecordIterator>, Serializable {
-        private static final long serialVersionUID = 1L;
-
-        public int compare(final PeekFileRecordIterator lhs, final PeekFileRecordIterator rhs) {
-            final int result = comparator.compare(lhs.peek(), rhs.peek());
-            if (result == 0) return lhs.n - rhs.n;
-            else return result;
-        }
-    }
 }
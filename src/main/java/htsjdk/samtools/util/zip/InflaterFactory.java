@@ -0,0 +1,79 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.util.zip;
+
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.samtools.util.BlockGunzipper;
+import java.util.zip.Inflater;
+
+/**
+ * Factory for {@link Inflater} objects and block buffers used by {@link BlockGunzipper} and
+ * {@link BlockCompressedInputStream}.
+ * This class may be extended to provide alternative inflaters (e.g., for improved performance), or to reuse
+ * inflaters and buffers (see {@link PooledInflaterFactory}).
+ *
+ * Everything obtained from a factory is handed back to it with the matching release method once the caller is done
+ * with it, and is not touched by the caller afterwards.  A factory may be shared by streams on different threads,
+ * so implementations must be thread-safe.
+ */
+public class InflaterFactory {
+
+    public InflaterFactory() {
+        //Note: made explicit constructor to make searching for references easier
+    }
+
+    /**
+     * Returns an inflater object that will be used when reading BAM files.
+     * Subclasses may override to provide their own inflater implementation.
+     * @param gzipCompatible if true then use GZIP compatible decompression
+     */
+    public Inflater makeInflater(final boolean gzipCompatible) {
+        return new Inflater(gzipCompatible);
+    }
+
+    /**
+     * Called when an inflater obtained from {@link #makeInflater(boolean)} is no longer needed.  The default
+     * implementation frees its native resources immediately instead of waiting for it to be garbage collected.
+     * @param gzipCompatible the value that was passed to {@link #makeInflater(boolean)} for this inflater
+     */
+    public void releaseInflater(final Inflater inflater, final boolean gzipCompatible) {
+        inflater.end();
+    }
+
+    /**
+     * Returns a buffer of exactly the given size, used to hold a compressed or uncompressed block.  The contents of
+     * the buffer are undefined.
+     * @throws NegativeArraySizeException if size is negative
+     */
+    public byte[] makeBuffer(final int size) {
+        return new byte[size];
+    }
+
+    /**
+     * Called when a buffer obtained from {@link #makeBuffer(int)} is no longer needed.  The default implementation
+     * leaves it to the garbage collector.
+     */
+    public void releaseBuffer(final byte[] buffer) {
+    }
+}
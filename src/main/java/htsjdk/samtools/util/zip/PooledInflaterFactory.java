@@ -0,0 +1,121 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.util.zip;
+
+import htsjdk.samtools.util.BlockCompressedStreamConstants;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Inflater;
+
+/**
+ * {@link InflaterFactory} that keeps released inflaters and block buffers for reuse, rather than allocating new ones
+ * for every stream.  This pays off when many short-lived streams are opened, e.g. for small indexed queries, where
+ * creating inflaters (which hold native memory) and garbage collecting 64KB buffers otherwise dominates.
+ *
+ * Only buffers of the sizes used for full BGZF blocks ({@link BlockCompressedStreamConstants#MAX_COMPRESSED_BLOCK_SIZE}
+ * and {@link BlockCompressedStreamConstants#DEFAULT_UNCOMPRESSED_BLOCK_SIZE}) are pooled; other sizes are simply
+ * allocated.  Objects released when the pool is full are dropped.  Instances are thread-safe.
+ */
+public class PooledInflaterFactory extends InflaterFactory {
+    public static final int DEFAULT_MAX_POOLED_INFLATERS = 64;
+    public static final int DEFAULT_MAX_POOLED_BUFFERS = 128;
+
+    private final InflaterFactory delegate;
+    private final BlockingQueue<Inflater> gzipInflaters;
+    private final BlockingQueue<Inflater> zlibInflaters;
+    private final BlockingQueue<byte[]> compressedBuffers;
+    private final BlockingQueue<byte[]> uncompressedBuffers;
+
+    /**
+     * Pools up to {@link #DEFAULT_MAX_POOLED_INFLATERS} inflaters of each kind and {@link #DEFAULT_MAX_POOLED_BUFFERS}
+     * buffers of each size, creating new ones with a default {@link InflaterFactory}.
+     */
+    public PooledInflaterFactory() {
+        this(new InflaterFactory(), DEFAULT_MAX_POOLED_INFLATERS, DEFAULT_MAX_POOLED_BUFFERS);
+    }
+
+    /**
+     * @param delegate factory used to create inflaters and buffers when the pool is empty, and to release those
+     *                 that do not fit in the pool
+     * @param maxPooledInflaters maximum number of idle inflaters kept for each value of gzipCompatible
+     * @param maxPooledBuffers maximum number of idle buffers kept for each pooled size
+     */
+    public PooledInflaterFactory(final InflaterFactory delegate, final int maxPooledInflaters, final int maxPooledBuffers) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("null inflaterFactory");
+        }
+        if (maxPooledInflaters < 1 || maxPooledBuffers < 1) {
+            throw new IllegalArgumentException("Pool sizes must be positive: " + maxPooledInflaters + ", " + maxPooledBuffers);
+        }
+        this.delegate = delegate;
+        this.gzipInflaters = new ArrayBlockingQueue<Inflater>(maxPooledInflaters);
+        this.zlibInflaters = new ArrayBlockingQueue<Inflater>(maxPooledInflaters);
+        this.compressedBuffers = new ArrayBlockingQueue<byte[]>(maxPooledBuffers);
+        this.uncompressedBuffers = new ArrayBlockingQueue<byte[]>(maxPooledBuffers);
+    }
+
+    @Override
+    public Inflater makeInflater(final boolean gzipCompatible) {
+        final Inflater inflater = (gzipCompatible ? gzipInflaters : zlibInflaters).poll();
+        return inflater != null ? inflater : delegate.makeInflater(gzipCompatible);
+    }
+
+    /**
+     * The inflater is reset and kept for reuse, unless the pool is full.
+     */
+    @Override
+    public void releaseInflater(final Inflater inflater, final boolean gzipCompatible) {
+        inflater.reset();
+        if (!(gzipCompatible ? gzipInflaters : zlibInflaters).offer(inflater)) {
+            delegate.releaseInflater(inflater, gzipCompatible);
+        }
+    }
+
+    @Override
+    public byte[] makeBuffer(final int size) {
+        final BlockingQueue<byte[]> pool = bufferPool(size);
+        final byte[] buffer = pool != null ? pool.poll() : null;
+        return buffer != null ? buffer : delegate.makeBuffer(size);
+    }
+
+    @Override
+    public void releaseBuffer(final byte[] buffer) {
+        final BlockingQueue<byte[]> pool = bufferPool(buffer.length);
+        if (pool == null || !pool.offer(buffer)) {
+            delegate.releaseBuffer(buffer);
+        }
+    }
+
+    private BlockingQueue<byte[]> bufferPool(final int size) {
+        switch (size) {
+            case BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE:
+                return compressedBuffers;
+            case BlockCompressedStreamConstants.DEFAULT_UNCOMPRESSED_BLOCK_SIZE:
+                return uncompressedBuffers;
+            default:
+                return null;
+        }
+    }
+}
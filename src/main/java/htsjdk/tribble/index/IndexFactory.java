@@ -23,6 +23,7 @@
  */
 package htsjdk.tribble.index;
 
+import htsjdk.samtools.CSIIndex;
 import htsjdk.samtools.Defaults;
 import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.seekablestream.ISeekableStreamFactory;
@@ -75,7 +76,9 @@ public class IndexFactory {
         LINEAR(LinearIndex.MAGIC_NUMBER, LinearIndex.INDEX_TYPE, LinearIndexCreator.class, LinearIndex.class, LinearIndexCreator.DEFAULT_BIN_WIDTH),
         INTERVAL_TREE(IntervalTreeIndex.MAGIC_NUMBER, IntervalTreeIndex.INDEX_TYPE, IntervalIndexCreator.class, IntervalTreeIndex.class, IntervalIndexCreator.DEFAULT_FEATURE_COUNT),
         // Tabix index initialization requires additional information, so generic construction won't work, thus indexCreatorClass is null.
-        TABIX(TabixIndex.MAGIC_NUMBER, null, null, TabixIndex.class, -1);
+        TABIX(TabixIndex.MAGIC_NUMBER, null, null, TabixIndex.class, -1),
+        // A tabix index in the CSI format, which has configurable bins.
+        TABIX_CSI(CSIIndex.MAGIC_NUMBER, null, null, TabixIndex.class, -1);
 
         private final int magicNumber;
         private final Integer tribbleIndexType;
@@ -179,7 +182,7 @@ public class IndexFactory {
         if (indexFile.endsWith(".gz")) {
             return new GZIPInputStream(inputStreamInitial);
         }
-        else if (indexFile.endsWith(TabixUtils.STANDARD_INDEX_EXTENSION)) {
+        else if (indexFile.endsWith(TabixUtils.STANDARD_INDEX_EXTENSION) || indexFile.endsWith(CSIIndex.CSI_INDEX_SUFFIX)) {
             return new BlockCompressedInputStream(inputStreamInitial);
         }
         else {
@@ -276,6 +279,8 @@ public class IndexFactory {
             case INTERVAL_TREE: return createIntervalIndex(inputFile, codec);
             case LINEAR:        return createLinearIndex(inputFile, codec);
             case TABIX:         return createTabixIndex(inputFile, codec, sequenceDictionary);
+            case TABIX_CSI:     return createTabixCSIIndex(inputFile, codec, codec.getTabixFormat(),
+                                                           CSIIndex.DEFAULT_MIN_SHIFT, CSIIndex.DEFAULT_DEPTH);
         }
         throw new IllegalArgumentException("Unrecognized IndexType " + type);
     }
@@ -335,6 +340,23 @@ public class IndexFactory {
         return createTabixIndex(inputFile, codec, codec.getTabixFormat(), sequenceDictionary);
     }
 
+    /**
+     * @param inputFile The file to be indexed.
+     * @param codec Mechanism for reading inputFile.
+     * @param tabixFormat Header fields for TabixIndex to be produced.
+     * @param minShift Number of bits of the smallest bins of the CSI index, 14 in tabix indices.
+     * @param depth Number of levels below the bin covering a whole sequence, 5 in tabix indices.
+     * @return a TabixIndex in the CSI format.
+     */
+    public static <FEATURE_TYPE extends Feature, SOURCE_TYPE> TabixIndex createTabixCSIIndex(final File inputFile,
+                                                                                        final FeatureCodec<FEATURE_TYPE, SOURCE_TYPE> codec,
+                                                                                        final TabixFormat tabixFormat,
+                                                                                        final int minShift,
+                                                                                        final int depth) {
+        final TabixIndexCreator indexCreator = new TabixIndexCreator(tabixFormat, minShift, depth);
+        return (TabixIndex)createIndex(inputFile, new FeatureIterator<FEATURE_TYPE, SOURCE_TYPE>(inputFile, codec), indexCreator);
+    }
+
     private static Index createIndex(final File inputFile, final FeatureIterator iterator, final IndexCreator creator) {
         Feature lastFeature = null;
         Feature currentFeature;
@@ -23,8 +23,10 @@
  */
 package htsjdk.tribble.index.tabix;
 
+import htsjdk.samtools.BAMFileSpan;
 import htsjdk.samtools.Bin;
 import htsjdk.samtools.BinningIndexContent;
+import htsjdk.samtools.CSIIndex;
 import htsjdk.samtools.Chunk;
 import htsjdk.samtools.LinearIndex;
 import htsjdk.samtools.util.BlockCompressedInputStream;
@@ -38,17 +40,21 @@ import htsjdk.tribble.util.LittleEndianInputStream;
 import htsjdk.tribble.util.LittleEndianOutputStream;
 import htsjdk.tribble.util.TabixUtils;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.*;
 
 /**
  * This class represent a Tabix index that has been built in memory or read from a file.  It can be queried or
- * written to a file.
+ * written to a file.  The index is either in the tabix format (.tbi), or in the CSI format (.csi) which holds the
+ * tabix header in its auxiliary data, see {@link CSIIndex}.
  */
 public class TabixIndex implements Index {
     private static final byte[] MAGIC = {'T', 'B', 'I', 1};
@@ -63,7 +69,9 @@ public class TabixIndex implements Index {
 
     private final TabixFormat formatSpec;
     private final List<String> sequenceNames;
+    // exactly one of these is set, depending on the format of the index
     private final BinningIndexContent[] indices;
+    private final CSIIndex csiIndex;
 
     /**
      * @param formatSpec    Information about how to interpret the file being indexed.  Unused by this class other than
@@ -78,11 +86,28 @@ public class TabixIndex implements Index {
         this.formatSpec = formatSpec.clone();
         this.sequenceNames = Collections.unmodifiableList(new ArrayList<String>(sequenceNames));
         this.indices = indices;
+        this.csiIndex = null;
+    }
+
+    /**
+     * @param formatSpec    Information about how to interpret the file being indexed.
+     * @param sequenceNames Sequences in the file being indexed, in the order they appear in the file.
+     * @param csiIndex      The bins of the sequences, with the tabix header as auxiliary data,
+     *                      see {@link #getCSIAuxData(TabixFormat, List)}.
+     */
+    TabixIndex(final TabixFormat formatSpec, final List<String> sequenceNames, final CSIIndex csiIndex) {
+        if (sequenceNames.size() != csiIndex.getNumberOfReferences()) {
+            throw new IllegalArgumentException("sequenceNames.size() != csiIndex.getNumberOfReferences()");
+        }
+        this.formatSpec = formatSpec.clone();
+        this.sequenceNames = Collections.unmodifiableList(new ArrayList<String>(sequenceNames));
+        this.indices = null;
+        this.csiIndex = csiIndex;
     }
 
     /**
      * @param inputStream This is expected to be buffered and be gzip-decompressing as appropriate.  Caller
-     *                    should close input stream after ctor returns.
+     *                    should close input stream after ctor returns.  Either a tabix or a CSI index.
      */
     public TabixIndex(final InputStream inputStream) throws IOException {
         this(inputStream, false);
@@ -97,18 +122,42 @@ public class TabixIndex implements Index {
 
     private TabixIndex(final InputStream inputStream, final boolean closeInputStream) throws IOException {
         final LittleEndianInputStream dis = new LittleEndianInputStream(inputStream);
-        if (dis.readInt() != MAGIC_NUMBER) {
-            throw new TribbleException(String.format("Unexpected magic number 0x%x", MAGIC_NUMBER));
+        final int magicNumber = dis.readInt();
+        if (magicNumber == CSIIndex.MAGIC_NUMBER) {
+            // put the magic number back for CSIIndex to read it
+            final byte[] magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(magicNumber).array();
+            csiIndex = new CSIIndex(new SequenceInputStream(new ByteArrayInputStream(magic), dis));
+            indices = null;
+            final LittleEndianInputStream auxStream = new LittleEndianInputStream(new ByteArrayInputStream(csiIndex.getAuxData()));
+            formatSpec = readFormat(auxStream);
+            sequenceNames = readSequenceNames(auxStream, csiIndex.getNumberOfReferences());
+        } else if (magicNumber == MAGIC_NUMBER) {
+            csiIndex = null;
+            final int numSequences = dis.readInt();
+            indices = new BinningIndexContent[numSequences];
+            formatSpec = readFormat(dis);
+            sequenceNames = readSequenceNames(dis, numSequences);
+            for (int i = 0; i < numSequences; ++i) {
+                indices[i] = loadSequence(i, dis);
+            }
+        } else {
+            throw new TribbleException(String.format("Unexpected magic number 0x%x", magicNumber));
         }
-        final int numSequences = dis.readInt();
-        indices = new BinningIndexContent[numSequences];
-        formatSpec = new TabixFormat();
+        if (closeInputStream) CloserUtil.close(dis);
+    }
+
+    private static TabixFormat readFormat(final LittleEndianInputStream dis) throws IOException {
+        final TabixFormat formatSpec = new TabixFormat();
         formatSpec.flags = dis.readInt();
         formatSpec.sequenceColumn = dis.readInt();
         formatSpec.startPositionColumn = dis.readInt();
         formatSpec.endPositionColumn = dis.readInt();
         formatSpec.metaCharacter = (char) dis.readInt();
         formatSpec.numHeaderLinesToSkip = dis.readInt();
+        return formatSpec;
+    }
+
+    private static List<String> readSequenceNames(final LittleEndianInputStream dis, final int numSequences) throws IOException {
         final int nameBlockSize = dis.readInt();
         final byte[] nameBlock = new byte[nameBlockSize];
         if (dis.read(nameBlock) != nameBlockSize) throw new EOFException("Premature end of file reading Tabix header");
@@ -123,11 +172,7 @@ public class TabixIndex implements Index {
         if (startPos != nameBlockSize) {
             throw new TribbleException("Tabix header format exception.  Sequence name block is longer than expected");
         }
-        for (int i = 0; i < numSequences; ++i) {
-            indices[i] = loadSequence(i, dis);
-        }
-        if (closeInputStream) CloserUtil.close(dis);
-        this.sequenceNames = Collections.unmodifiableList(sequenceNames);
+        return Collections.unmodifiableList(sequenceNames);
     }
 
     /**
@@ -141,10 +186,18 @@ public class TabixIndex implements Index {
     @Override
     public List<Block> getBlocks(final String chr, final int start, final int end) {
         final int sequenceIndex = sequenceNames.indexOf(chr);
-        if (sequenceIndex == -1 || indices[sequenceIndex] == null) {
+        if (sequenceIndex == -1) {
             return Collections.emptyList();
         }
-        final List<Chunk> chunks = indices[sequenceIndex].getChunksOverlapping(start, end);
+        final List<Chunk> chunks;
+        if (csiIndex != null) {
+            final BAMFileSpan span = csiIndex.getSpanOverlapping(sequenceIndex, start, end);
+            chunks = span == null ? null : span.getChunks();
+        } else if (indices[sequenceIndex] != null) {
+            chunks = indices[sequenceIndex].getChunksOverlapping(start, end);
+        } else {
+            chunks = null;
+        }
         if (chunks == null) {
             return Collections.emptyList();
         } else {
@@ -188,6 +241,7 @@ public class TabixIndex implements Index {
 
         if (!formatSpec.equals(that.formatSpec)) return false;
         if (!Arrays.equals(indices, that.indices)) return false;
+        if (!Objects.equals(csiIndex, that.csiIndex)) return false;
         return sequenceNames.equals(that.sequenceNames);
 
     }
@@ -196,6 +250,13 @@ public class TabixIndex implements Index {
         return formatSpec;
     }
 
+    /**
+     * @return the CSI index if this index is in the CSI format, otherwise null.
+     */
+    public CSIIndex getCSIIndex() {
+        return csiIndex;
+    }
+
     /**
      * Writes the index with BGZF.
      *
@@ -216,7 +277,8 @@ public class TabixIndex implements Index {
     @Override
     public void writeBasedOnFeatureFile(final File featureFile) throws IOException {
         if (!featureFile.isFile()) return;
-        write(new File(featureFile.getAbsolutePath() + TabixUtils.STANDARD_INDEX_EXTENSION));
+        write(new File(featureFile.getAbsolutePath() +
+                (csiIndex != null ? CSIIndex.CSI_INDEX_SUFFIX : TabixUtils.STANDARD_INDEX_EXTENSION)));
     }
 
     /**
@@ -226,8 +288,33 @@ public class TabixIndex implements Index {
      */
     @Override
     public void write(final LittleEndianOutputStream los) throws IOException {
+        if (csiIndex != null) {
+            csiIndex.write(los);
+            return;
+        }
         los.writeInt(MAGIC_NUMBER);
         los.writeInt(sequenceNames.size());
+        writeHeader(formatSpec, sequenceNames, los);
+        for (final BinningIndexContent index : indices) {
+            writeSequence(index, los);
+        }
+    }
+
+    /**
+     * @return the tabix header, as held in the auxiliary data of a CSI index.
+     */
+    static byte[] getCSIAuxData(final TabixFormat formatSpec, final List<String> sequenceNames) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final LittleEndianOutputStream los = new LittleEndianOutputStream(bytes)) {
+            writeHeader(formatSpec, sequenceNames, los);
+        } catch (final IOException e) {
+            throw new TribbleException("Unexpected error writing tabix header", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeHeader(final TabixFormat formatSpec, final List<String> sequenceNames,
+                                    final LittleEndianOutputStream los) throws IOException {
         los.writeInt(formatSpec.flags);
         los.writeInt(formatSpec.sequenceColumn);
         los.writeInt(formatSpec.startPositionColumn);
@@ -241,9 +328,6 @@ public class TabixIndex implements Index {
             los.write(StringUtil.stringToBytes(sequenceName));
             los.write(0);
         }
-        for (final BinningIndexContent index : indices) {
-            writeSequence(index, los);
-        }
     }
 
     private void writeSequence(final BinningIndexContent indexContent, final LittleEndianOutputStream los) throws IOException {
@@ -351,6 +435,7 @@ public class TabixIndex implements Index {
 
         if (!formatSpec.equals(index.formatSpec)) return false;
         if (!Arrays.equals(indices, index.indices)) return false;
+        if (!Objects.equals(csiIndex, index.csiIndex)) return false;
         if (!sequenceNames.equals(index.sequenceNames)) return false;
 
         return true;
@@ -361,6 +446,7 @@ public class TabixIndex implements Index {
         int result = formatSpec.hashCode();
         result = 31 * result + sequenceNames.hashCode();
         result = 31 * result + Arrays.hashCode(indices);
+        result = 31 * result + Objects.hashCode(csiIndex);
         return result;
     }
 }
@@ -25,6 +25,7 @@ package htsjdk.tribble.index.tabix;
 
 import htsjdk.samtools.BinningIndexBuilder;
 import htsjdk.samtools.BinningIndexContent;
+import htsjdk.samtools.CSIIndexBuilder;
 import htsjdk.samtools.Chunk;
 import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.tribble.Feature;
@@ -39,6 +40,7 @@ import java.util.Set;
 /**
  * IndexCreator for Tabix.
  * Features are expected to be 1-based, inclusive.
+ * Creates a CSI index rather than a tabix index when given the shape of its bins, see {@link htsjdk.samtools.CSIIndex}.
  */
 public class TabixIndexCreator implements IndexCreator {
     private final TabixFormat formatSpec;
@@ -50,6 +52,9 @@ public class TabixIndexCreator implements IndexCreator {
     // It is used to determine the length of a sequence in order to optimize index memory allocation.
     private final SAMSequenceDictionary sequenceDictionary;
 
+    // Set when creating a CSI index, in which case indexBuilder is not used
+    private final CSIIndexBuilder csiIndexBuilder;
+
     private String currentSequenceName = null;
     private BinningIndexBuilder indexBuilder = null;
     // A feature can't be added to the index until the next feature is added because the next feature
@@ -65,6 +70,19 @@ public class TabixIndexCreator implements IndexCreator {
                              final TabixFormat formatSpec) {
         this.sequenceDictionary = sequenceDictionary;
         this.formatSpec = formatSpec.clone();
+        this.csiIndexBuilder = null;
+    }
+
+    /**
+     * Creates a CSI index, which has smaller bins or supports longer sequences than a tabix index.
+     *
+     * @param minShift number of bits of the smallest bins, 14 in tabix indices.
+     * @param depth    number of levels below the bin covering a whole sequence, 5 in tabix indices.
+     */
+    public TabixIndexCreator(final TabixFormat formatSpec, final int minShift, final int depth) {
+        this.sequenceDictionary = null;
+        this.formatSpec = formatSpec.clone();
+        this.csiIndexBuilder = new CSIIndexBuilder(minShift, depth);
     }
 
     public TabixIndexCreator(final TabixFormat formatSpec) {
@@ -103,21 +121,28 @@ public class TabixIndexCreator implements IndexCreator {
             throw new IllegalArgumentException(String.format("Feature start position %d >= feature end position %d",
                     previousFeature.featureStartFilePosition, previousFeature.featureEndFilePosition));
         }
-        indexBuilder.processFeature(previousFeature);
+        if (csiIndexBuilder != null) {
+            csiIndexBuilder.processFeature(previousFeature.referenceIndex, previousFeature.start, previousFeature.end,
+                    previousFeature.featureStartFilePosition, previousFeature.featureEndFilePosition);
+        } else {
+            indexBuilder.processFeature(previousFeature);
+        }
     }
 
     private void advanceToReference(final String sequenceName) {
-        if (indexBuilder != null) {
-            indexContents.add(indexBuilder.generateIndexContent());
-        }
-        // If sequence dictionary is provided, BinningIndexBuilder can reduce size of array it allocates.
-        final int sequenceLength;
-        if (sequenceDictionary != null) {
-            sequenceLength = sequenceDictionary.getSequence(sequenceName).getSequenceLength();
-        } else {
-            sequenceLength = 0;
+        if (csiIndexBuilder == null) {
+            if (indexBuilder != null) {
+                indexContents.add(indexBuilder.generateIndexContent());
+            }
+            // If sequence dictionary is provided, BinningIndexBuilder can reduce size of array it allocates.
+            final int sequenceLength;
+            if (sequenceDictionary != null) {
+                sequenceLength = sequenceDictionary.getSequence(sequenceName).getSequenceLength();
+            } else {
+                sequenceLength = 0;
+            }
+            indexBuilder = new BinningIndexBuilder(sequenceNames.size(), sequenceLength);
         }
-        indexBuilder = new BinningIndexBuilder(sequenceNames.size(), sequenceLength);
         sequenceNames.add(sequenceName);
         currentSequenceName = sequenceName;
         sequenceNamesSeen.add(sequenceName);
@@ -128,6 +153,10 @@ public class TabixIndexCreator implements IndexCreator {
         if (previousFeature != null) {
             finalizeFeature(finalFilePosition);
         }
+        if (csiIndexBuilder != null) {
+            return new TabixIndex(formatSpec, sequenceNames, csiIndexBuilder.build(sequenceNames.size(),
+                    TabixIndex.getCSIAuxData(formatSpec, sequenceNames)));
+        }
         if (indexBuilder != null) {
             indexContents.add(indexBuilder.generateIndexContent());
         }
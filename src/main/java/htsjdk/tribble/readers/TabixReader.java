@@ -110,6 +110,17 @@ public class TabixReader {
         readIndex(factory);
     }
 
+    /**
+     * Reads blocks of the data file ahead of the lines being parsed, and inflates them on worker threads.
+     * This pays off when iterating over large regions; see {@link BlockCompressedInputStream#setReadAhead(int, int)}.
+     *
+     * @param inflaterThreads number of worker threads, or 0 to inflate blocks on the reading thread
+     * @param blocksAhead maximum number of blocks read ahead
+     */
+    public void setReadAhead(final int inflaterThreads, final int blocksAhead) {
+        mFp.setReadAhead(inflaterThreads, blocksAhead);
+    }
+
     /** return the source (filename/URL) of that reader */
     public String getSource()
         {
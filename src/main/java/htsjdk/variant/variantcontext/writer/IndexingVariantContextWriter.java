@@ -26,6 +26,7 @@
 package htsjdk.variant.variantcontext.writer;
 
 import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.util.BlockCompressedOutputStream;
 import htsjdk.samtools.util.LocationAware;
 import htsjdk.samtools.util.RuntimeIOException;
 import htsjdk.tribble.index.DynamicIndexCreator;
@@ -163,8 +164,14 @@ abstract class IndexingVariantContextWriter implements VariantContextWriter {
      */
     public void add(final VariantContext vc) {
         // if we are doing on the fly indexing, add the record ***before*** we write any bytes
-        if ( indexer != null )
-            indexer.addFeature(vc, locationSource.getPosition());
+        if ( indexer != null ) {
+            if ( locationSource instanceof BlockCompressedOutputStream ) {
+                // don't wait for the blocks being compressed; the record is added once its position is known
+                ((BlockCompressedOutputStream) locationSource).getFilePointer(position -> indexer.addFeature(vc, position));
+            } else {
+                indexer.addFeature(vc, locationSource.getPosition());
+            }
+        }
     }
 
     /**
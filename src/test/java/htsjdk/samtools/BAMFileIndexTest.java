@@ -269,6 +269,38 @@ public class BAMFileIndexTest {
         return new Object[][]{{true}, {false}};
     }
 
+    /**
+     * Merging chunks that are apart in the file must not change the results of a multi-interval query.
+     */
+    @Test(dataProvider = "testMultiIntervalQueryWithGapToleranceDataProvider")
+    public void testMultiIntervalQueryWithGapTolerance(final boolean contained, final long maxGapBytes) {
+        final List<String> referenceNames = getReferenceNames(BAM_FILE);
+        final QueryInterval[] intervals = QueryInterval.optimizeIntervals(
+                generateRandomIntervals(referenceNames.size(), 1000, new Random(42)));
+        final SamReader expectedReader = SamReaderFactory.makeDefault().open(BAM_FILE);
+        final SamReader reader = SamReaderFactory.makeDefault().queryGapTolerance(maxGapBytes).open(BAM_FILE);
+        final SAMRecordIterator expected = expectedReader.query(intervals, contained);
+        final SAMRecordIterator actual = reader.query(intervals, contained);
+        int count = 0;
+        while (expected.hasNext()) {
+            Assert.assertTrue(actual.hasNext());
+            Assert.assertEquals(actual.next(), expected.next());
+            count++;
+        }
+        Assert.assertFalse(actual.hasNext());
+        Assert.assertTrue(count > 0);
+        CloserUtil.close(expected);
+        CloserUtil.close(actual);
+        CloserUtil.close(expectedReader);
+        CloserUtil.close(reader);
+    }
+
+    @DataProvider(name = "testMultiIntervalQueryWithGapToleranceDataProvider")
+    private Object[][] testMultiIntervalQueryWithGapToleranceDataProvider() {
+        final long seekCost = Chunk.getMaxGapForSeekCost(10, 100);
+        return new Object[][]{{true, 1L}, {false, 1L}, {true, seekCost}, {false, seekCost}, {false, Long.MAX_VALUE}};
+    }
+
     @Test
     public void testUnmappedMateWithCoordinate() throws Exception {
         // TODO: Use SAMRecordSetBuilder when it is able to create a pair with one end unmapped
@@ -91,6 +91,45 @@ public class BAMIndexWriterTest {
         CloserUtil.close(bam);
     }
 
+    @DataProvider(name = "rawIndexThreads")
+    public Object[][] getRawIndexThreads() {
+        return new Object[][]{{0}, {1}, {4}};
+    }
+
+    @Test(dataProvider = "rawIndexThreads")
+    public void testWriteBinaryFromRawRecords(final int threads) throws Exception {
+        // Compare the index created without decoding records with the one created from SAMRecords
+        assertRawIndexEqualsIndex(BAM_FILE, threads);
+    }
+
+    @Test(dataProvider = "rawIndexThreads")
+    public void testWriteBinaryFromRawRecordsInManyBatches(final int threads) throws Exception {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder(true, SAMFileHeader.SortOrder.coordinate);
+        for (int i = 0; i < 100000; i++) {
+            builder.addFrag("read" + i, i % 3, 1 + (i * 7) % 1000000, i % 2 == 0);
+        }
+        builder.addUnmappedFragment("unmapped");
+        final File bamFile = File.createTempFile("rawIndex.", ".bam");
+        bamFile.deleteOnExit();
+        try (final SAMFileWriter writer = new SAMFileWriterFactory().makeBAMWriter(builder.getHeader(), true, bamFile)) {
+            builder.forEach(writer::addAlignment);
+        }
+        assertRawIndexEqualsIndex(bamFile, threads);
+    }
+
+    private void assertRawIndexEqualsIndex(final File bamFile, final int threads) throws IOException {
+        final File javaBaiFile = File.createTempFile("javaBai.", ".bai");
+        javaBaiFile.deleteOnExit();
+        try (final SamReader bam = SamReaderFactory.makeDefault().enable(SamReaderFactory.Option.INCLUDE_SOURCE_IN_RECORDS).open(bamFile)) {
+            BAMIndexer.createIndex(bam, javaBaiFile);
+        }
+        final File rawBaiFile = File.createTempFile("rawBai.", ".bai");
+        rawBaiFile.deleteOnExit();
+        BAMIndexer.createIndex(bamFile, rawBaiFile, threads);
+        verbose("Wrote binary BAM Index file from raw records " + rawBaiFile);
+        IOUtil.assertFilesEqual(rawBaiFile, javaBaiFile);
+    }
+
     @Test(enabled = false, dataProvider = "linearIndexTestData")
     /** Test linear index at specific references and windows */
     public void testLinearIndex(String testName, String filepath, int problemReference, int problemWindowStart, int problemWindowEnd, int expectedCount) {
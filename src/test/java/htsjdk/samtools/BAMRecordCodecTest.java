@@ -0,0 +1,124 @@
+package htsjdk.samtools;
+
+import htsjdk.samtools.util.CloseableIterator;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BAMRecordCodecTest {
+    private static final File TEST_DATA_DIR = new File("src/test/resources/htsjdk/samtools");
+
+    private static List<SAMRecord> readRecords(final File input) throws IOException {
+        final List<SAMRecord> records = new ArrayList<>();
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(input);
+             final CloseableIterator<SAMRecord> iterator = reader.iterator()) {
+            iterator.forEachRemaining(records::add);
+        }
+        return records;
+    }
+
+    private static byte[] encode(final SAMFileHeader header, final List<SAMRecord> records) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final BAMRecordCodec codec = new BAMRecordCodec(header);
+        codec.setOutputStream(bytes);
+        for (final SAMRecord record : records) {
+            codec.encode(record);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static List<SAMRecord> decode(final SAMFileHeader header, final byte[] bytes) {
+        final BAMRecordCodec codec = new BAMRecordCodec(header);
+        codec.setInputStream(new ByteArrayInputStream(bytes));
+        final List<SAMRecord> records = new ArrayList<>();
+        SAMRecord record;
+        while ((record = codec.decode()) != null) {
+            records.add(record);
+        }
+        return records;
+    }
+
+    @Test
+    public void testEncodeMatchesBamRepresentation() throws IOException {
+        final List<SAMRecord> records = readRecords(new File(TEST_DATA_DIR, "BAMFileIndexTest/index_test.bam"));
+        final SAMFileHeader header = records.get(0).getHeader();
+        // setting a field makes the codec encode each field of the record
+        for (final SAMRecord record : records) {
+            record.setReadName(record.getReadName());
+            Assert.assertNull(record.getVariableBinaryRepresentation());
+        }
+        final byte[] encoded = encode(header, records);
+        // decoded records are written with the variable length part they were read with, tags are not reordered
+        final List<SAMRecord> decoded = decode(header, encoded);
+        Assert.assertNotNull(decoded.get(0).getVariableBinaryRepresentation());
+        Assert.assertEquals(encode(header, decoded), encoded);
+    }
+
+    @Test
+    public void testRoundTrip() {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder();
+        final SAMRecord first = builder.addFrag("first", 0, 100, false);
+        first.setAttribute("XA", 'c');
+        first.setAttribute("XB", (byte) -3);
+        first.setAttribute("XC", 200);
+        first.setAttribute("XD", (short) -1000);
+        first.setAttribute("XE", 60000);
+        first.setAttribute("XF", -100000);
+        first.setAttribute("XG", 3000000000L);
+        first.setAttribute("XH", 1.5f);
+        first.setAttribute("XI", "string");
+        first.setAttribute("XJ", new byte[]{1, -2});
+        first.setUnsignedArrayAttribute("XK", new short[]{1, 2, 3});
+        first.setAttribute("XL", new int[]{-1});
+        first.setAttribute("XM", new float[]{0.5f, 1.5f});
+        final SAMRecord second = builder.addFrag("second", 1, 200, true);
+        second.setBaseQualities(SAMRecord.NULL_QUALS);
+        builder.addUnmappedFragment("third");
+        final List<SAMRecord> records = new ArrayList<>(builder.getRecords());
+
+        final List<SAMRecord> decoded = decode(builder.getHeader(), encode(builder.getHeader(), records));
+        Assert.assertEquals(decoded.size(), records.size());
+        for (int i = 0; i < records.size(); ++i) {
+            // SAMRecords do not equal the BAMRecords they are written as, e.g. because of the indexing bin
+            Assert.assertEquals(decoded.get(i).getSAMString(), records.get(i).getSAMString());
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testReadNameTooLong() {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder();
+        final SAMRecord record = builder.addFrag("read", 0, 100, false);
+        final StringBuilder readName = new StringBuilder();
+        for (int i = 0; i < 300; ++i) {
+            readName.append('x');
+        }
+        record.setReadName(readName.toString());
+        encode(builder.getHeader(), new ArrayList<>(builder.getRecords()));
+    }
+
+    @Test(groups = "slow")
+    public void encodeTimeTest() throws IOException {
+        final List<SAMRecord> records = readRecords(new File(TEST_DATA_DIR, "BAMFileIndexTest/index_test.bam"));
+        for (final SAMRecord record : records) {
+            record.setReadName(record.getReadName());
+        }
+        final SAMFileHeader header = records.get(0).getHeader();
+        final BAMRecordCodec codec = new BAMRecordCodec(header);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        codec.setOutputStream(bytes);
+        final long startTime = System.currentTimeMillis();
+        for (int i = 0; i < 20; ++i) {
+            bytes.reset();
+            for (final SAMRecord record : records) {
+                codec.encode(record);
+            }
+        }
+        System.out.println((System.currentTimeMillis() - startTime) + "ms to encode " + (20 * records.size()) + " records");
+    }
+}
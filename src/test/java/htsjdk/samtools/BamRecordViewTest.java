@@ -0,0 +1,163 @@
+package htsjdk.samtools;
+
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.StringUtil;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BamRecordViewTest {
+    private static final File TEST_DATA_DIR = new File("src/test/resources/htsjdk/samtools");
+
+    private static void assertViewEquals(final BamRecordView view, final SAMRecord record) {
+        Assert.assertEquals(view.getReadName(), record.getReadName());
+        Assert.assertEquals(view.getReadNameLength(), record.getReadName().length());
+        for (int i = 0; i < view.getReadNameLength(); ++i) {
+            Assert.assertEquals(view.getReadNameByte(i), (byte) record.getReadName().charAt(i));
+        }
+        Assert.assertEquals(view.getFlags(), record.getFlags());
+        Assert.assertEquals(view.getReadUnmappedFlag(), record.getReadUnmappedFlag());
+        Assert.assertEquals(view.getReferenceIndex(), (int) record.getReferenceIndex());
+        Assert.assertEquals(view.getReferenceName(), record.getReferenceName());
+        Assert.assertEquals(view.getAlignmentStart(), record.getAlignmentStart());
+        Assert.assertEquals(view.getAlignmentEnd(), record.getAlignmentEnd());
+        Assert.assertEquals(view.getMappingQuality(), record.getMappingQuality());
+        Assert.assertEquals(view.getMateReferenceIndex(), (int) record.getMateReferenceIndex());
+        Assert.assertEquals(view.getMateReferenceName(), record.getMateReferenceName());
+        Assert.assertEquals(view.getMateAlignmentStart(), record.getMateAlignmentStart());
+        Assert.assertEquals(view.getInferredInsertSize(), record.getInferredInsertSize());
+
+        final Cigar cigar = record.getCigar();
+        Assert.assertEquals(view.getCigarLength(), cigar.numCigarElements());
+        for (int i = 0; i < view.getCigarLength(); ++i) {
+            Assert.assertEquals(view.getCigarOperator(i), cigar.getCigarElement(i).getOperator());
+            Assert.assertEquals(view.getCigarOperatorLength(i), cigar.getCigarElement(i).getLength());
+        }
+
+        Assert.assertEquals(view.getReadLength(), record.getReadLength());
+        for (int i = 0; i < view.getReadLength(); ++i) {
+            Assert.assertEquals(view.getBase(i), record.getReadBases()[i]);
+        }
+        Assert.assertEquals(view.hasBaseQualities(), record.getBaseQualities().length > 0);
+        if (view.hasBaseQualities()) {
+            for (int i = 0; i < view.getReadLength(); ++i) {
+                Assert.assertEquals(view.getBaseQuality(i), record.getBaseQualities()[i]);
+            }
+        }
+
+        for (final SAMRecord.SAMTagAndValue attribute : record.getAttributes()) {
+            final short tag = SAMTagUtil.getSingleton().makeBinaryTag(attribute.tag);
+            Assert.assertTrue(view.hasAttribute(tag));
+            final Object value = attribute.value;
+            if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                Assert.assertEquals(view.getIntegerAttribute(tag), ((Number) value).intValue());
+            } else if (value instanceof Long) {
+                // unsigned 32-bit values that do not fit in an int
+                Assert.assertEquals(view.getAttributeType(tag), 'I');
+                try {
+                    view.getIntegerAttribute(tag);
+                    Assert.fail("Value should not fit in an int: " + value);
+                } catch (final SAMException e) {
+                    // expected
+                }
+            } else if (value instanceof Float) {
+                Assert.assertEquals(view.getFloatAttribute(tag), value);
+            } else if (value instanceof Character) {
+                Assert.assertEquals(view.getCharacterAttribute(tag), value);
+            } else if (value instanceof String) {
+                Assert.assertEquals(view.getStringAttribute(tag), value);
+                Assert.assertTrue(view.stringAttributeEquals(tag, StringUtil.stringToBytes((String) value)));
+                Assert.assertFalse(view.stringAttributeEquals(tag, StringUtil.stringToBytes(value + "x")));
+            } else {
+                Assert.assertEquals(view.getAttributeType(tag), 'B');
+            }
+        }
+        Assert.assertFalse(view.hasAttribute(SAMTagUtil.getSingleton().makeBinaryTag("zz")));
+        Assert.assertEquals(view.getAttributeType(SAMTagUtil.getSingleton().makeBinaryTag("zz")), 0);
+
+        Assert.assertEquals(view.toSAMRecord(), record);
+    }
+
+    @Test
+    public void testViewMatchesRecords() throws IOException {
+        final File input = new File(TEST_DATA_DIR, "BAMFileIndexTest/index_test.bam");
+        final List<SAMRecord> expected = new ArrayList<>();
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(input)) {
+            reader.iterator().forEachRemaining(expected::add);
+        }
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(input);
+             final CloseableIterator<BamRecordView> iterator = BamRecordView.iterator(reader)) {
+            int count = 0;
+            while (iterator.hasNext()) {
+                assertViewEquals(iterator.next(), expected.get(count++));
+            }
+            Assert.assertEquals(count, expected.size());
+        }
+    }
+
+    @Test
+    public void testAttributes() throws IOException {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder();
+        final SAMRecord first = builder.addFrag("first", 0, 100, false);
+        first.setAttribute("XA", 'c');
+        first.setAttribute("XB", (byte) -3);
+        first.setAttribute("XC", (short) 1000);
+        first.setAttribute("XD", -100000);
+        first.setAttribute("XE", 3000000000L);
+        first.setAttribute("XF", 1.5f);
+        first.setAttribute("XG", new int[]{1, 2, 3});
+        first.setAttribute("XH", "after an array");
+        final SAMRecord second = builder.addFrag("second", 1, 200, true);
+        second.setAttribute("XH", "");
+        builder.addUnmappedFragment("third");
+
+        final File bam = File.createTempFile("BamRecordViewTest.", ".bam");
+        bam.deleteOnExit();
+        try (final SAMFileWriter writer = new SAMFileWriterFactory().makeBAMWriter(builder.getHeader(), false, bam)) {
+            builder.forEach(writer::addAlignment);
+        }
+
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(bam)) {
+            final List<SAMRecord> expected = new ArrayList<>();
+            try (final CloseableIterator<SAMRecord> iterator = reader.iterator()) {
+                iterator.forEachRemaining(expected::add);
+            }
+            Assert.assertEquals(expected.size(), 3);
+
+            try (final CloseableIterator<BamRecordView> iterator = BamRecordView.iterator(reader)) {
+                for (final SAMRecord record : expected) {
+                    Assert.assertTrue(iterator.hasNext());
+                    assertViewEquals(iterator.next(), record);
+                }
+                Assert.assertFalse(iterator.hasNext());
+            }
+
+            // the view iterator follows the same rules as the SAMRecord iterators
+            try (final CloseableIterator<BamRecordView> iterator = BamRecordView.iterator(reader)) {
+                final BamRecordView view = iterator.next();
+                Assert.assertSame(iterator.next(), view);
+                Assert.assertEquals(view.getReadName(), "second");
+                try {
+                    reader.iterator();
+                    Assert.fail("Iterating while a view iterator is open should fail");
+                } catch (final IllegalStateException e) {
+                    // expected
+                }
+            }
+            try (final CloseableIterator<SAMRecord> iterator = reader.iterator()) {
+                Assert.assertEquals(iterator.next(), expected.get(0));
+            }
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNotBam() throws IOException {
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(new File(TEST_DATA_DIR, "uncompressed.sam"))) {
+            BamRecordView.iterator(reader);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package htsjdk.samtools;
+
+import htsjdk.samtools.util.CloseableIterator;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BamSplitterTest {
+    private static final File TEST_DATA_DIR = new File("src/test/resources/htsjdk/samtools");
+
+    private static List<String> readAll(final File bam) throws IOException {
+        final List<String> records = new ArrayList<>();
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(bam);
+             final CloseableIterator<SAMRecord> iterator = reader.iterator()) {
+            iterator.forEachRemaining(record -> records.add(record.getSAMString()));
+        }
+        return records;
+    }
+
+    private static List<String> readSplits(final File bam, final List<Chunk> splits) throws IOException {
+        final List<String> records = new ArrayList<>();
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(bam)) {
+            for (final Chunk split : splits) {
+                try (final CloseableIterator<SAMRecord> iterator = reader.indexing().iterator(new BAMFileSpan(split))) {
+                    Assert.assertTrue(iterator.hasNext(), "Empty split " + split);
+                    iterator.forEachRemaining(record -> records.add(record.getSAMString()));
+                }
+            }
+        }
+        return records;
+    }
+
+    @DataProvider(name = "splits")
+    public Object[][] splits() {
+        return new Object[][]{{1}, {2}, {3}, {7}, {20}, {1000}};
+    }
+
+    @Test(dataProvider = "splits")
+    public void testSplitsContainEveryRecordOnce(final int numberOfSplits) throws IOException {
+        final File bam = new File(TEST_DATA_DIR, "BAMFileIndexTest/index_test.bam");
+        final List<Chunk> splits = new BamSplitter(bam).split(numberOfSplits);
+        Assert.assertTrue(splits.size() <= numberOfSplits);
+        if (numberOfSplits <= 20) {
+            Assert.assertEquals(splits.size(), numberOfSplits);
+        }
+        for (int i = 1; i < splits.size(); ++i) {
+            Assert.assertEquals(splits.get(i).getChunkStart(), splits.get(i - 1).getChunkEnd());
+        }
+        Assert.assertEquals(readSplits(bam, splits), readAll(bam));
+    }
+
+    @Test
+    public void testSplittingIndex() throws IOException {
+        final File bam = new File(TEST_DATA_DIR, "BAMFileIndexTest/index_test.bam");
+        final List<Chunk> splits = new BamSplitter(bam).split(5);
+        final File index = File.createTempFile("BamSplitterTest.", BamSplitter.SPLITTING_INDEX_SUFFIX);
+        index.deleteOnExit();
+        BamSplitter.writeSplittingIndex(splits, index);
+        Assert.assertEquals(BamSplitter.readSplittingIndex(index), splits);
+        Assert.assertEquals(BamSplitter.getDefaultSplittingIndexFile(bam).getName(), "index_test.bam" + BamSplitter.SPLITTING_INDEX_SUFFIX);
+    }
+
+    @Test
+    public void testSplitEmptyBam() {
+        final List<Chunk> splits = new BamSplitter(new File(TEST_DATA_DIR, "empty.bam")).split(4);
+        Assert.assertEquals(splits.size(), 1);
+    }
+}
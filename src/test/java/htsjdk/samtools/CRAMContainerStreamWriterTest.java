@@ -181,4 +181,48 @@ public class CRAMContainerStreamWriterTest {
         Assert.assertEquals(count, 2);
     }
 
+    private void writeRecords(final List<SAMRecord> samRecords, final int compressionThreads,
+                              final OutputStream outStream, final OutputStream indexStream) {
+        final SAMFileHeader header = createSAMHeader(SAMFileHeader.SortOrder.coordinate);
+        final CRAMContainerStreamWriter containerStream = new CRAMContainerStreamWriter(outStream, indexStream, createReferenceSource(), header, "test");
+        containerStream.setCompressionThreads(compressionThreads);
+        containerStream.writeHeader(header);
+        for (final SAMRecord record : samRecords) {
+            containerStream.writeAlignment(record);
+        }
+        containerStream.finish(true);
+    }
+
+    @Test(description = "Test CRAMContainerStream building containers on worker threads")
+    public void testCRAMContainerStreamCompressionThreads() throws IOException {
+        // several containers on each reference
+        final List<SAMRecord> samRecords = createRecords(5 * CRAMContainerStreamWriter.DEFAULT_RECORDS_PER_SLICE / 2);
+        final ByteArrayOutputStream expectedStream = new ByteArrayOutputStream();
+        final ByteArrayOutputStream expectedIndexStream = new ByteArrayOutputStream();
+        writeRecords(samRecords, 0, expectedStream, expectedIndexStream);
+
+        for (final int compressionThreads : new int[]{1, 3}) {
+            final ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+            final ByteArrayOutputStream indexStream = new ByteArrayOutputStream();
+            writeRecords(samRecords, compressionThreads, outStream, indexStream);
+            Assert.assertEquals(outStream.toByteArray(), expectedStream.toByteArray());
+            Assert.assertEquals(indexStream.toByteArray(), expectedIndexStream.toByteArray());
+        }
+
+        final CRAMFileReader cReader = new CRAMFileReader(null, new ByteArrayInputStream(expectedStream.toByteArray()), createReferenceSource());
+        final SAMRecordIterator iterator = cReader.getIterator();
+        int count = 0;
+        while (iterator.hasNext()) {
+            Assert.assertEquals(iterator.next().getReadName(), samRecords.get(count).getReadName());
+            count++;
+        }
+        Assert.assertEquals(count, samRecords.size());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidCompressionThreads() {
+        final SAMFileHeader header = createSAMHeader(SAMFileHeader.SortOrder.coordinate);
+        new CRAMContainerStreamWriter(new ByteArrayOutputStream(), null, createReferenceSource(), header, "test").setCompressionThreads(-1);
+    }
+
 }
@@ -23,6 +23,8 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeSet;
 
@@ -251,6 +253,67 @@ public class CRAMFileBAIIndexTest {
         reader.close();
     }
 
+    private static List<String> readAll(final CloseableIterator<SAMRecord> iterator) {
+        final List<String> records = new ArrayList<>();
+        while (iterator.hasNext()) {
+            records.add(iterator.next().getSAMString());
+        }
+        iterator.close();
+        return records;
+    }
+
+    @Test
+    public void testDecoderThreads() throws IOException {
+        final CRAMFileReader expectedReader = new CRAMFileReader(cramFile, indexFile, source, ValidationStringency.SILENT);
+        final CRAMFileReader reader = new CRAMFileReader(cramFile, indexFile, source, ValidationStringency.SILENT);
+        reader.setDecoderThreads(3);
+        try {
+            final List<String> expected = readAll(expectedReader.getIterator());
+            Assert.assertEquals(expected.size(), nofReads);
+            Assert.assertEquals(readAll(reader.getIterator()), expected);
+            // again, with validation
+            reader.setValidationStringency(ValidationStringency.STRICT);
+            Assert.assertEquals(readAll(reader.getIterator()), expected);
+
+            final QueryInterval[] query = new QueryInterval[]{new QueryInterval(0, 1519, 100000), new QueryInterval(1, 470535, 470536)};
+            Assert.assertEquals(readAll(reader.query(query, false)), readAll(expectedReader.query(query, false)));
+            Assert.assertEquals(readAll(reader.queryUnmapped()), readAll(expectedReader.queryUnmapped()));
+            Assert.assertEquals(readAll(reader.getIterator(reader.getFilePointerSpanningReads())), expected);
+
+            // stop in the middle of the file
+            final CloseableIterator<SAMRecord> iterator = reader.getIterator();
+            for (int i = 0; i < 2500; i++) {
+                Assert.assertEquals(iterator.next().getSAMString(), expected.get(i));
+            }
+            iterator.close();
+        } finally {
+            expectedReader.close();
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testDecoderThreadsFromFactory() throws IOException {
+        final SamReaderFactory factory = SamReaderFactory.makeDefault().referenceSource(source)
+                .validationStringency(ValidationStringency.SILENT).enable(SamReaderFactory.Option.INCLUDE_SOURCE_IN_RECORDS);
+        try (final SamReader expectedReader = factory.open(cramFile);
+             final SamReader reader = SamReaderFactory.makeDefault().referenceSource(source).decoderThreads(2)
+                     .validationStringency(ValidationStringency.SILENT).enable(SamReaderFactory.Option.INCLUDE_SOURCE_IN_RECORDS).open(cramFile)) {
+            final SAMRecordIterator expectedIterator = expectedReader.iterator();
+            final SAMRecordIterator iterator = reader.iterator();
+            int count = 0;
+            while (expectedIterator.hasNext()) {
+                final SAMRecord expected = expectedIterator.next();
+                final SAMRecord actual = iterator.next();
+                Assert.assertEquals(actual.getSAMString(), expected.getSAMString());
+                Assert.assertEquals(actual.getFileSource().getFilePointer().toString(), expected.getFileSource().getFilePointer().toString());
+                count++;
+            }
+            Assert.assertFalse(iterator.hasNext());
+            Assert.assertEquals(count, nofReads);
+        }
+    }
+
     @BeforeTest
     public void prepare() throws IOException {
         Log.setGlobalLogLevel(Log.LogLevel.ERROR);
@@ -408,6 +408,23 @@ public class CRAMIndexQueryTest {
         );
     }
 
+    @Test(dataProvider="multipleIntervalOverlapping")
+    public void testQueryOverlappingMultipleIntervalsWithGapTolerance(
+            final File cramFileName,
+            final File referenceFileName,
+            final QueryInterval[] intervals,
+            final String[] expectedNames) throws IOException
+    {
+        // reading every container of the query at once must not change the results
+        doQueryTest(
+                reader -> reader.queryOverlapping(QueryInterval.optimizeIntervals(intervals)),
+                SamReaderFactory.makeDefault().queryGapTolerance(Long.MAX_VALUE),
+                cramFileName,
+                referenceFileName,
+                expectedNames
+        );
+    }
+
     @DataProvider(name = "otherMultipleIntervals")
     public Object[][] otherMultipleIntervals() {
         return new Object[][]{
@@ -617,7 +634,16 @@ public class CRAMIndexQueryTest {
         final File referenceFileName,
         final String[] expectedNames) throws IOException
     {
-        SamReaderFactory factory = SamReaderFactory.makeDefault();
+        doQueryTest(getIterator, SamReaderFactory.makeDefault(), cramFileName, referenceFileName, expectedNames);
+    }
+
+    private void doQueryTest(
+        final Function<SamReader, CloseableIterator <SAMRecord>> getIterator,
+        SamReaderFactory factory,
+        final File cramFileName,
+        final File referenceFileName,
+        final String[] expectedNames) throws IOException
+    {
         if (referenceFileName != null) {
             factory = factory.referenceSequence(referenceFileName);
         }
@@ -0,0 +1,159 @@
+package htsjdk.samtools;
+
+import htsjdk.samtools.seekablestream.SeekableFileStream;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.IOUtil;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class CSIIndexTest {
+    private static final File BAM_FILE = new File("src/test/resources/htsjdk/samtools/BAMFileIndexTest/index_test.bam");
+
+    private static File createIndex(final File bam, final int minShift, final int depth) throws IOException {
+        final File indexFile = File.createTempFile("CSIIndexTest.", CSIIndex.CSI_INDEX_SUFFIX);
+        indexFile.deleteOnExit();
+        try (final SamReader reader = SamReaderFactory.makeDefault().enable(SamReaderFactory.Option.INCLUDE_SOURCE_IN_RECORDS).open(bam)) {
+            CSIIndexer.createIndex(reader, indexFile, minShift, depth);
+        }
+        return indexFile;
+    }
+
+    private static List<SAMRecord> query(final SamReader reader, final int referenceIndex, final int start, final int end) {
+        final List<SAMRecord> records = new ArrayList<>();
+        try (final CloseableIterator<SAMRecord> iterator = reader.query(new QueryInterval[]{new QueryInterval(referenceIndex, start, end)}, false)) {
+            iterator.forEachRemaining(records::add);
+        }
+        return records;
+    }
+
+    @DataProvider(name = "shapes")
+    public Object[][] shapes() {
+        return new Object[][]{
+                {14, 5},
+                {10, 7},
+                {16, 4}
+        };
+    }
+
+    @Test(dataProvider = "shapes")
+    public void testQueriesMatchBAIIndex(final int minShift, final int depth) throws IOException {
+        final File indexFile = createIndex(BAM_FILE, minShift, depth);
+        final Random random = new Random(42);
+        try (final SamReader expectedReader = SamReaderFactory.makeDefault().open(BAM_FILE);
+             final SamReader reader = SamReaderFactory.makeDefault().open(SamInputResource.of(BAM_FILE).index(indexFile))) {
+            final CSIIndex index = (CSIIndex) reader.indexing().getIndex();
+            Assert.assertEquals(index.getMinShift(), minShift);
+            Assert.assertEquals(index.getDepth(), depth);
+            final int numReferences = reader.getFileHeader().getSequenceDictionary().size();
+            for (int i = 0; i < 200; i++) {
+                final int referenceIndex = random.nextInt(numReferences);
+                final int start = random.nextInt(250000) + 1;
+                final int end = random.nextInt(4) == 0 ? 0 : start + random.nextInt(100000);
+                Assert.assertEquals(query(reader, referenceIndex, start, end), query(expectedReader, referenceIndex, start, end),
+                        referenceIndex + ":" + start + "-" + end);
+            }
+
+            final AbstractBAMFileIndex expectedIndex = (AbstractBAMFileIndex) expectedReader.indexing().getIndex();
+            for (int referenceIndex = 0; referenceIndex < numReferences; referenceIndex++) {
+                Assert.assertEquals(index.getMetaData(referenceIndex).getAlignedRecordCount(), expectedIndex.getMetaData(referenceIndex).getAlignedRecordCount());
+                Assert.assertEquals(index.getMetaData(referenceIndex).getUnalignedRecordCount(), expectedIndex.getMetaData(referenceIndex).getUnalignedRecordCount());
+            }
+            Assert.assertEquals(index.getNoCoordinateCount(), expectedIndex.getNoCoordinateCount());
+
+            try (final CloseableIterator<SAMRecord> expected = expectedReader.queryUnmapped();
+                 final CloseableIterator<SAMRecord> actual = reader.queryUnmapped()) {
+                while (expected.hasNext()) {
+                    Assert.assertEquals(actual.next(), expected.next());
+                }
+                Assert.assertFalse(actual.hasNext());
+            }
+        }
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        final File indexFile = createIndex(BAM_FILE, 12, 6);
+        final CSIIndex index = new CSIIndex(indexFile);
+        final File copy = File.createTempFile("CSIIndexTest.", CSIIndex.CSI_INDEX_SUFFIX);
+        copy.deleteOnExit();
+        index.write(copy);
+        Assert.assertEquals(new CSIIndex(copy), index);
+        Assert.assertEquals(new CSIIndex(copy).hashCode(), index.hashCode());
+        Assert.assertEquals(index.getAuxData().length, 0);
+
+        // as an index stream, detected by its content
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(
+                SamInputResource.of(new SeekableFileStream(BAM_FILE)).index(new SeekableFileStream(copy)))) {
+            Assert.assertEquals(reader.indexing().getIndex(), index);
+        }
+    }
+
+    @Test
+    public void testNoCoordinateCountInEquality() {
+        final CSIIndexBuilder builder = new CSIIndexBuilder(14, 5);
+        builder.processFeature(0, 100, 200, 1L << 16, 2L << 16);
+        final CSIIndex index = builder.build(1, new byte[0]);
+        builder.processNoCoordinateFeature();
+        final CSIIndex withNoCoordinate = builder.build(1, new byte[0]);
+        Assert.assertNotEquals(withNoCoordinate, index);
+        Assert.assertNotEquals(withNoCoordinate.hashCode(), index.hashCode());
+    }
+
+    @Test
+    public void testFindIndex() throws IOException {
+        final File directory = Files.createTempDirectory("CSIIndexTest").toFile();
+        final File bam = new File(directory, "index_test.bam");
+        final File indexFile = new File(directory, "index_test.bam" + CSIIndex.CSI_INDEX_SUFFIX);
+        try {
+            IOUtil.copyFile(BAM_FILE, bam);
+            Files.copy(createIndex(BAM_FILE, 14, 5).toPath(), indexFile.toPath());
+            Assert.assertEquals(SamFiles.findIndex(bam), indexFile);
+            try (final SamReader reader = SamReaderFactory.makeDefault().open(bam)) {
+                Assert.assertTrue(reader.indexing().getIndex() instanceof CSIIndex);
+                Assert.assertEquals(BAMIndexMetaData.getIndexStats((BAMFileReader) ((SamReader.PrimitiveSamReaderToSamReaderAdapter) reader).underlyingReader())[0].getAlignedRecordCount(),
+                        reader.indexing().getIndex().getMetaData(0).getAlignedRecordCount());
+            }
+        } finally {
+            IOUtil.deleteDirectoryTree(directory);
+        }
+    }
+
+    @Test
+    public void testLongReference() {
+        // beyond the 512Mbp that BAI and tabix indices can address
+        final int depth = CSIIndexBuilder.getDepthForSequenceLength(14, 2100000000L);
+        Assert.assertEquals(depth, 6);
+        final CSIIndexBuilder builder = new CSIIndexBuilder(14, depth);
+        final long[] offsets = {1L << 16, 100L << 16, 200L << 16, 300L << 16};
+        builder.processFeature(0, 600000000, 600000100, offsets[0], offsets[1]);
+        builder.processFeature(0, 2000000000, 2000000100, offsets[1] + (1L << 16), offsets[2]);
+        builder.processFeature(2, 100, 200, offsets[2] + (1L << 16), offsets[3]);
+        builder.processNoCoordinateFeature();
+        final CSIIndex index = builder.build(3, new byte[0]);
+
+        Assert.assertEquals(index.getSpanOverlapping(0, 600000050, 600000050).getChunks(),
+                Collections.singletonList(new Chunk(offsets[0], offsets[1])));
+        Assert.assertEquals(index.getSpanOverlapping(0, 1999999000, 2000000001).getChunks().get(0).getChunkStart(), offsets[1] + (1L << 16));
+        Assert.assertEquals(index.getSpanOverlapping(0, 1, 0).getChunks().size(), 2);
+        Assert.assertNull(index.getSpanOverlapping(0, 1000000000, 1000001000));
+        Assert.assertNull(index.getSpanOverlapping(1, 1, 0));
+        Assert.assertEquals(index.getSpanOverlapping(2, 150, 150).getChunks().get(0).getChunkStart(), offsets[2] + (1L << 16));
+        Assert.assertEquals(index.getMetaData(0).getAlignedRecordCount(), 2);
+        Assert.assertEquals(index.getNoCoordinateCount(), Long.valueOf(1));
+        Assert.assertEquals(index.getStartOfLastLinearBin(), offsets[2] + (1L << 16));
+
+        final Bin bin = new Bin(0, GenomicIndexUtil.regionToBin(14, depth, 2000000000, 2000000001));
+        Assert.assertEquals(index.getFirstLocusInBin(bin), (2000000000 >> 14 << 14) + 1);
+        Assert.assertEquals(index.getLastLocusInBin(bin), (2000000000 >> 14 << 14) + (1 << 14));
+        Assert.assertEquals(index.getSpanOverlapping(bin).getChunks().get(0).getChunkStart(), offsets[1] + (1L << 16));
+    }
+}
@@ -26,6 +26,10 @@ package htsjdk.samtools;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 public class ChunkTest {
     @Test
     public void testOverlaps() {
@@ -75,4 +79,50 @@ public class ChunkTest {
         Assert.assertFalse(new Chunk(1,5).isAdjacentTo(new Chunk(11,15)),"Disjoint block should not be adjacent");
         Assert.assertFalse(new Chunk(1,5).isAdjacentTo(new Chunk(2,3)),"Contained offset should not be adjacent");
     }
+
+    @Test
+    public void testOptimizeChunkListWithGap() {
+        final List<Chunk> chunks = Arrays.asList(
+                new Chunk(10L<<16|0x100, 10L<<16|0x200),
+                new Chunk(10L<<16|0x300, 12L<<16|0x10),
+                new Chunk(20L<<16, 21L<<16),
+                new Chunk(1000L<<16, 1001L<<16));
+
+        // only adjacent chunks are merged by default
+        Assert.assertEquals(Chunk.optimizeChunkList(copy(chunks), 0).size(), 4);
+        Assert.assertEquals(Chunk.optimizeChunkList(copy(chunks), 0, 0).size(), 4);
+
+        // chunks in the same block are always worth reading at once
+        Assert.assertEquals(Chunk.optimizeChunkList(copy(chunks), 0, 1), Arrays.asList(
+                new Chunk(10L<<16|0x100, 12L<<16|0x10), new Chunk(20L<<16, 21L<<16), new Chunk(1000L<<16, 1001L<<16)));
+        Assert.assertEquals(Chunk.optimizeChunkList(copy(chunks), 0, 8), Arrays.asList(
+                new Chunk(10L<<16|0x100, 21L<<16), new Chunk(1000L<<16, 1001L<<16)));
+        Assert.assertEquals(Chunk.optimizeChunkList(copy(chunks), 0, 978), Arrays.asList(
+                new Chunk(10L<<16|0x100, 21L<<16), new Chunk(1000L<<16, 1001L<<16)));
+        Assert.assertEquals(Chunk.optimizeChunkList(copy(chunks), 0, 979), Arrays.asList(
+                new Chunk(10L<<16|0x100, 1001L<<16)));
+
+        // the minimum offset still applies
+        Assert.assertEquals(Chunk.optimizeChunkList(copy(chunks), 12L<<16|0x10, Long.MAX_VALUE), Arrays.asList(
+                new Chunk(20L<<16, 1001L<<16)));
+    }
+
+    @Test
+    public void testMaxGapForSeekCost() {
+        Assert.assertEquals(Chunk.getMaxGapForSeekCost(0, 100), 64 * 1024);
+        Assert.assertEquals(Chunk.getMaxGapForSeekCost(10, 100), 1000000 + 64 * 1024);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidSeekCost() {
+        Chunk.getMaxGapForSeekCost(10, 0);
+    }
+
+    private static List<Chunk> copy(final List<Chunk> chunks) {
+        final List<Chunk> result = new ArrayList<>();
+        for (final Chunk chunk : chunks) {
+            result.add(chunk.clone());
+        }
+        return result;
+    }
 }
@@ -0,0 +1,97 @@
+package htsjdk.samtools;
+
+import htsjdk.samtools.util.CloseableIterator;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class CompactBAMFileIndexTest {
+    private static final File BAM_FILE = new File("src/test/resources/htsjdk/samtools/BAMFileIndexTest/index_test.bam");
+    private static final File INDEX_FILE = new File("src/test/resources/htsjdk/samtools/BAMFileIndexTest/index_test.bam.bai");
+
+    private static SAMSequenceDictionary getDictionary() throws IOException {
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(BAM_FILE)) {
+            return reader.getFileHeader().getSequenceDictionary();
+        }
+    }
+
+    private static List<Chunk> getChunks(final BAMFileSpan span) {
+        return span == null ? Collections.<Chunk>emptyList() : span.getChunks();
+    }
+
+    @Test
+    public void testSpansMatchCachingIndex() throws IOException {
+        final SAMSequenceDictionary dictionary = getDictionary();
+        final CachingBAMFileIndex expected = new CachingBAMFileIndex(INDEX_FILE, dictionary);
+        final CompactBAMFileIndex index = new CompactBAMFileIndex(INDEX_FILE, dictionary, false, 1L << 20);
+        final Random random = new Random(42);
+        try {
+            for (int i = 0; i < 2000; ++i) {
+                // walk across references, including ones with no reads and ones past the end of the index
+                final int referenceIndex = random.nextInt(dictionary.size() + 2);
+                final int start = random.nextInt(250000) + 1;
+                final int end = random.nextInt(4) == 0 ? 0 : start + random.nextInt(100000);
+                Assert.assertEquals(getChunks(index.getSpanOverlapping(referenceIndex, start, end)),
+                        getChunks(expected.getSpanOverlapping(referenceIndex, start, end)),
+                        referenceIndex + ":" + start + "-" + end);
+            }
+            Assert.assertNull(index.getSpanOverlapping(0, 100, 50));
+            Assert.assertNull(index.getSpanOverlapping(-1, 1, 100));
+            Assert.assertEquals(index.getStartOfLastLinearBin(), expected.getStartOfLastLinearBin());
+            Assert.assertEquals(index.getMetaData(0).getAlignedRecordCount(), expected.getMetaData(0).getAlignedRecordCount());
+        } finally {
+            expected.close();
+            index.close();
+        }
+    }
+
+    @Test
+    public void testCacheIsBounded() throws IOException {
+        final SAMSequenceDictionary dictionary = getDictionary();
+        final CompactBAMFileIndex unbounded = new CompactBAMFileIndex(INDEX_FILE, dictionary, true, Long.MAX_VALUE);
+        final CompactBAMFileIndex bounded = new CompactBAMFileIndex(INDEX_FILE, dictionary, true, 1);
+        try {
+            long largest = 0;
+            for (int referenceIndex = 0; referenceIndex < dictionary.size(); ++referenceIndex) {
+                final long before = unbounded.getCacheSizeInBytes();
+                unbounded.getSpanOverlapping(referenceIndex, 1, 0);
+                largest = Math.max(largest, unbounded.getCacheSizeInBytes() - before);
+
+                // only the reference being queried is kept
+                Assert.assertEquals(getChunks(bounded.getSpanOverlapping(referenceIndex, 1, 0)),
+                        getChunks(unbounded.getSpanOverlapping(referenceIndex, 1, 0)));
+                Assert.assertTrue(bounded.getCacheSizeInBytes() <= largest);
+            }
+            Assert.assertTrue(unbounded.getCacheSizeInBytes() > largest);
+        } finally {
+            unbounded.close();
+            bounded.close();
+        }
+    }
+
+    @Test
+    public void testQueryWithCompactIndex() throws IOException {
+        final QueryInterval[] intervals = QueryInterval.optimizeIntervals(new QueryInterval[]{
+                new QueryInterval(0, 1000, 20000), new QueryInterval(1, 1, 50000), new QueryInterval(2, 100, 0)});
+        try (final SamReader expectedReader = SamReaderFactory.makeDefault().open(BAM_FILE);
+             final SamReader reader = SamReaderFactory.makeDefault().compactIndexCacheSize(1L << 20).open(BAM_FILE)) {
+            Assert.assertTrue(reader.indexing().getIndex() instanceof CompactBAMFileIndex);
+            try (final CloseableIterator<SAMRecord> expected = expectedReader.query(intervals, false);
+                 final CloseableIterator<SAMRecord> actual = reader.query(intervals, false)) {
+                int count = 0;
+                while (expected.hasNext()) {
+                    Assert.assertTrue(actual.hasNext());
+                    Assert.assertEquals(actual.next(), expected.next());
+                    ++count;
+                }
+                Assert.assertFalse(actual.hasNext());
+                Assert.assertTrue(count > 0);
+            }
+        }
+    }
+}
@@ -4,6 +4,8 @@ import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.util.Random;
+
 /**
  * Tests for GenomicIndexUtil.
  */
@@ -14,6 +16,37 @@ public class GenomicIndexUtilTest {
         Assert.assertEquals(GenomicIndexUtil.regionToBin(beg, end), bin);
     }
 
+    @Test(dataProvider = "testRegionToBinDataProvider")
+    public void testCSIRegionToBinWithBAIShape(final int beg, final int end, final int bin) {
+        Assert.assertEquals(GenomicIndexUtil.regionToBin(14, 5, beg, end), bin);
+    }
+
+    @Test
+    public void testCSIRegionToBinsWithBAIShape() {
+        final Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            final int start = random.nextInt(1 << 28) + 1;
+            final int end = random.nextInt(4) == 0 ? 0 : start + random.nextInt(1 << random.nextInt(28));
+            Assert.assertEquals(GenomicIndexUtil.regionToBins(14, 5, start, end), GenomicIndexUtil.regionToBins(start, end),
+                    start + "-" + end);
+        }
+    }
+
+    @Test
+    public void testCSIBinsBeyondBAISpan() {
+        // 2Gbp into a reference, which needs a sixth level
+        final int beg = 2000000000;
+        final int bin = GenomicIndexUtil.regionToBin(14, 6, beg, beg + 1);
+        Assert.assertEquals(GenomicIndexUtil.getLevelForBin(bin), 6);
+        Assert.assertEquals(bin, GenomicIndexUtil.getFirstBinInLevel(6) + (beg >> 14));
+        Assert.assertEquals(GenomicIndexUtil.getParentBin(bin), GenomicIndexUtil.getFirstBinInLevel(5) + (beg >> 17));
+        Assert.assertEquals(GenomicIndexUtil.regionToBin(14, 6, beg, beg + (1 << 20)), GenomicIndexUtil.getFirstBinInLevel(3) + (beg >> 23));
+        Assert.assertTrue(GenomicIndexUtil.regionToBins(14, 6, beg + 1, beg + 1).get(bin));
+        Assert.assertEquals(GenomicIndexUtil.regionToBins(14, 6, beg + 1, beg + 1).cardinality(), 7);
+        Assert.assertEquals(GenomicIndexUtil.getMetaDataBin(5), GenomicIndexUtil.MAX_BINS);
+        Assert.assertEquals(GenomicIndexUtil.getGenomicSpan(14, 5), GenomicIndexUtil.BIN_GENOMIC_SPAN);
+    }
+
     @DataProvider(name = "testRegionToBinDataProvider")
     public Object[][] testRegionToBinDataProvider() {
         return new Object[][] {
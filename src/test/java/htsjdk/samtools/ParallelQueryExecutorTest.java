@@ -0,0 +1,104 @@
+package htsjdk.samtools;
+
+import htsjdk.samtools.util.CloseableIterator;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+public class ParallelQueryExecutorTest {
+    private static final File BAM_FILE = new File("src/test/resources/htsjdk/samtools/BAMFileIndexTest/index_test.bam");
+
+    private static QueryInterval[] makeIntervals() {
+        final List<QueryInterval> intervals = new ArrayList<>();
+        for (int reference = 0; reference < 4; ++reference) {
+            for (int start = 1; start < 200000; start += 9000) {
+                intervals.add(new QueryInterval(reference, start, start + 500));
+                // overlapping and adjacent intervals
+                intervals.add(new QueryInterval(reference, start + 200, start + 1200));
+            }
+        }
+        // an interval with no records and one with no end
+        intervals.add(new QueryInterval(5, 1, 1000));
+        intervals.add(new QueryInterval(1, 150000, 0));
+        return intervals.toArray(new QueryInterval[intervals.size()]);
+    }
+
+    private static List<String> toStrings(final CloseableIterator<SAMRecord> iterator) {
+        final List<String> records = new ArrayList<>();
+        try {
+            iterator.forEachRemaining(record -> records.add(record.getSAMString()));
+        } finally {
+            iterator.close();
+        }
+        return records;
+    }
+
+    @DataProvider(name = "queries")
+    public Object[][] queries() {
+        return new Object[][]{{1, false}, {1, true}, {3, false}, {3, true}, {8, false}};
+    }
+
+    @Test(dataProvider = "queries")
+    public void testQueryMatchesSamReader(final int threads, final boolean contained) throws IOException {
+        final QueryInterval[] intervals = makeIntervals();
+        final List<String> expected;
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(BAM_FILE)) {
+            expected = toStrings(reader.query(QueryInterval.optimizeIntervals(intervals), contained));
+        }
+        Assert.assertFalse(expected.isEmpty());
+        try (final ParallelQueryExecutor executor =
+                     new ParallelQueryExecutor(SamReaderFactory.makeDefault(), SamInputResource.of(BAM_FILE), threads)) {
+            Assert.assertEquals(toStrings(executor.query(intervals, contained)), expected);
+            // the executor can be queried again, and iterators closed early
+            executor.query(intervals, contained).close();
+            Assert.assertEquals(toStrings(executor.query(intervals, contained)), expected);
+        }
+    }
+
+    @Test
+    public void testCallback() throws IOException {
+        final QueryInterval[] intervals = makeIntervals();
+        final ConcurrentMap<Integer, List<String>> results = new ConcurrentHashMap<>();
+        try (final ParallelQueryExecutor executor =
+                     new ParallelQueryExecutor(SamReaderFactory.makeDefault(), SamInputResource.of(BAM_FILE), 4)) {
+            executor.query(intervals, false, (intervalIndex, interval, records) -> {
+                Assert.assertSame(interval, intervals[intervalIndex]);
+                final List<String> strings = new ArrayList<>();
+                records.forEach(record -> strings.add(record.getSAMString()));
+                Assert.assertNull(results.put(intervalIndex, strings));
+            });
+        }
+        Assert.assertEquals(results.size(), intervals.length);
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(BAM_FILE)) {
+            for (int i = 0; i < intervals.length; ++i) {
+                final QueryInterval interval = intervals[i];
+                Assert.assertEquals(results.get(i), toStrings(reader.queryOverlapping(
+                        reader.getFileHeader().getSequence(interval.referenceIndex).getSequenceName(),
+                        interval.start, interval.end)), "Interval " + interval);
+            }
+        }
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testCallbackFailure() throws IOException {
+        try (final ParallelQueryExecutor executor =
+                     new ParallelQueryExecutor(SamReaderFactory.makeDefault(), SamInputResource.of(BAM_FILE), 2)) {
+            executor.query(makeIntervals(), false, (intervalIndex, interval, records) -> {
+                throw new IllegalStateException("callback failed");
+            });
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNoIndex() {
+        new ParallelQueryExecutor(SamReaderFactory.makeDefault(),
+                SamInputResource.of(new File("src/test/resources/htsjdk/samtools/uncompressed.sam")), 2);
+    }
+}
@@ -31,6 +31,7 @@ import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.io.*;
+import java.nio.file.Files;
 
 public class SAMFileWriterFactoryTest {
 
@@ -57,6 +58,34 @@ public class SAMFileWriterFactoryTest {
         Assert.assertTrue(md5File.length() > 0);
     }
 
+    @Test(description="BAM and index written while compressing on worker threads should match the single-threaded ones")
+    public void compressionThreadsWithIndexTest() throws Exception {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder(true, SAMFileHeader.SortOrder.coordinate);
+        for (int i = 0; i < 20000; ++i) {
+            builder.addFrag("read" + i, i % 3, 1 + i * 7, i % 2 == 0);
+        }
+        builder.addUnmappedFragment("unmapped");
+        final File serialBam = createBamWithCompressionThreads(builder, 0);
+        final File parallelBam = createBamWithCompressionThreads(builder, 4);
+        Assert.assertEquals(Files.readAllBytes(parallelBam.toPath()), Files.readAllBytes(serialBam.toPath()));
+        Assert.assertEquals(Files.readAllBytes(SamFiles.findIndex(parallelBam).toPath()),
+                Files.readAllBytes(SamFiles.findIndex(serialBam).toPath()));
+    }
+
+    private File createBamWithCompressionThreads(final SAMRecordSetBuilder builder, final int compressionThreads) throws IOException {
+        final File outputFile = prepareOutputFile(BamFileIoUtils.BAM_FILE_EXTENSION);
+        final SAMFileWriterFactory factory = new SAMFileWriterFactory();
+        factory.setCreateIndex(true);
+        factory.setCompressionThreads(compressionThreads);
+        final SAMFileWriter writer = factory.makeBAMWriter(builder.getHeader(), true, outputFile);
+        for (final SAMRecord rec : builder) {
+            writer.addAlignment(rec);
+        }
+        writer.close();
+        SamFiles.findIndex(outputFile).deleteOnExit();
+        return outputFile;
+    }
+
     @Test(description="create a BAM in memory,  should start with GZipInputStream.GZIP_MAGIC")
     public void inMemoryBam()  throws Exception  {
     	ByteArrayOutputStream os=new ByteArrayOutputStream();
@@ -0,0 +1,272 @@
+package htsjdk.samtools;
+
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.TempStreamFactory;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.ToLongFunction;
+
+public class SAMRecordArenaSorterTest {
+    private static final File BAM_FILE = new File("src/test/resources/htsjdk/samtools/BAMFileIndexTest/index_test.bam");
+
+    private File tmpDir;
+
+    @BeforeMethod
+    public void setup() throws IOException {
+        tmpDir = Files.createTempDirectory("SAMRecordArenaSorterTest").toFile();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        IOUtil.deleteDirectoryTree(tmpDir);
+    }
+
+    private static SAMFileHeader getHeader() throws IOException {
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(BAM_FILE)) {
+            return reader.getFileHeader();
+        }
+    }
+
+    private static List<SAMRecord> readShuffledRecords() throws IOException {
+        final List<SAMRecord> records = new ArrayList<>();
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(BAM_FILE)) {
+            reader.iterator().forEachRemaining(records::add);
+        }
+        // add some exact duplicates, and records that only differ after the read name
+        for (int i = 0; i < 100; i++) {
+            records.add(records.get(i));
+            final SAMRecord copy = records.get(i).deepCopy();
+            copy.setMappingQuality(copy.getMappingQuality() == 0 ? 1 : 0);
+            records.add(copy);
+        }
+        Collections.shuffle(records, new Random(42));
+        return records;
+    }
+
+    @DataProvider(name = "sortTests")
+    public Object[][] sortTests() {
+        return new Object[][]{
+                {new SAMRecordCoordinateComparator(), 64 * 1024L},
+                {new SAMRecordCoordinateComparator(), 1L << 30},
+                {new SAMRecordQueryNameComparator(), 64 * 1024L},
+                {new SAMRecordQueryNameComparator(), 1L << 30},
+        };
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnsupportedComparator() throws IOException {
+        // a subclass might change the order
+        new SAMRecordArenaSorter(getHeader(), new SAMRecordCoordinateComparator() {}, 1L << 20, tmpDir);
+    }
+
+    @Test(dataProvider = "sortTests")
+    public void testSortMatchesComparator(final SAMRecordComparator comparator, final long maxBytesInRam) throws IOException {
+        final List<SAMRecord> records = readShuffledRecords();
+        final SAMRecordArenaSorter sorter = new SAMRecordArenaSorter(getHeader(), comparator, maxBytesInRam, tmpDir);
+        records.forEach(sorter::add);
+        sorter.doneAdding();
+        Assert.assertEquals(tmpDir.list().length == 0, maxBytesInRam > 1 << 20);
+
+        final List<SAMRecord> expected = new ArrayList<>(records);
+        Collections.sort(expected, comparator);
+        for (int pass = 0; pass < 2; pass++) {
+            try (final CloseableIterator<SAMRecord> iterator = sorter.iterator()) {
+                for (final SAMRecord record : expected) {
+                    Assert.assertTrue(iterator.hasNext());
+                    Assert.assertEquals(iterator.next().getSAMString(), record.getSAMString());
+                }
+                Assert.assertFalse(iterator.hasNext());
+            }
+        }
+        sorter.cleanup();
+        Assert.assertEquals(tmpDir.list().length, 0);
+    }
+
+    @DataProvider(name = "sharedPrefixTests")
+    public Object[][] sharedPrefixTests() {
+        return new Object[][]{
+                {new SAMRecordQueryNameComparator(), 1L << 30},
+                {new SAMRecordQueryNameComparator(), 64 * 1024L},
+                {new SAMRecordCoordinateComparator(), 1L << 30},
+                {new SAMRecordCoordinateComparator(), 64 * 1024L},
+        };
+    }
+
+    /**
+     * Read names sharing more than the characters of the queryname key, and unmapped reads that all have the same
+     * coordinate key, so that most records can only be ordered by the rest of their fields.
+     */
+    @Test(dataProvider = "sharedPrefixTests")
+    public void testSharedReadNamePrefix(final SAMRecordComparator comparator, final long maxBytesInRam) {
+        final Random random = new Random(42);
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder(false, SAMFileHeader.SortOrder.unsorted);
+        for (int i = 0; i < 2000; i++) {
+            final String name = "SRR062634." + random.nextInt(1000);
+            if (random.nextBoolean()) {
+                builder.addPair(name, random.nextInt(3), 1 + random.nextInt(100), 1 + random.nextInt(100));
+            } else {
+                builder.addUnmappedFragment(name);
+            }
+        }
+        final List<SAMRecord> records = new ArrayList<>(builder.getRecords());
+        // pairs of secondary alignments only differing by their hit index, or lack of it
+        for (int i = 0; i < 100; i++) {
+            final SAMRecord secondary = records.get(i / 2).deepCopy();
+            secondary.setNotPrimaryAlignmentFlag(true);
+            if (i % 3 != 0) {
+                secondary.setAttribute(SAMTag.HI.name(), random.nextInt(3));
+            }
+            records.add(secondary);
+        }
+        Collections.shuffle(records, random);
+
+        final SAMRecordArenaSorter sorter = new SAMRecordArenaSorter(builder.getHeader(), comparator, maxBytesInRam, tmpDir);
+        records.forEach(sorter::add);
+        final List<SAMRecord> expected = new ArrayList<>(records);
+        Collections.sort(expected, comparator);
+        try (final CloseableIterator<SAMRecord> iterator = sorter.iterator()) {
+            for (final SAMRecord record : expected) {
+                Assert.assertEquals(iterator.next().getSAMString(), record.getSAMString());
+            }
+            Assert.assertFalse(iterator.hasNext());
+        }
+        sorter.cleanup();
+    }
+
+    @Test
+    public void testQueryNameFlagsAreConsistentWithComparator() {
+        final SAMRecordQueryNameComparator comparator = new SAMRecordQueryNameComparator();
+        final int[] flagValues = {0, 0x1, 0x1 | 0x40, 0x1 | 0x80, 0x10, 0x1 | 0x40 | 0x10, 0x100, 0x1 | 0x80 | 0x100,
+                0x800, 0x1 | 0x40 | 0x800, 0x10 | 0x100 | 0x800};
+        for (final int lhsFlags : flagValues) {
+            for (final int rhsFlags : flagValues) {
+                final SAMRecord lhs = new SAMRecord(null);
+                lhs.setReadName("read");
+                lhs.setFlags(lhsFlags);
+                final SAMRecord rhs = new SAMRecord(null);
+                rhs.setReadName("read");
+                rhs.setFlags(rhsFlags);
+                Assert.assertEquals(Integer.signum(SAMRecordArenaSorter.compareQueryNameFlags(lhsFlags, rhsFlags)),
+                        Integer.signum(comparator.compare(lhs, rhs)), lhsFlags + " " + rhsFlags);
+            }
+        }
+    }
+
+    @Test
+    public void testMaxMergeFanIn() throws IOException {
+        final List<SAMRecord> records = readShuffledRecords();
+        final SAMRecordComparator comparator = new SAMRecordQueryNameComparator();
+        final SAMRecordArenaSorter sorter = new SAMRecordArenaSorter(getHeader(), comparator, 16 * 1024L, tmpDir);
+        sorter.setTempStreamFactory(new TempStreamFactory(TempStreamFactory.Compression.DEFLATE));
+        sorter.setMaxMergeFanIn(3);
+        records.forEach(sorter::add);
+        sorter.doneAdding();
+        Assert.assertTrue(tmpDir.list().length > 9, "too few files to merge in several passes");
+
+        final List<SAMRecord> expected = new ArrayList<>(records);
+        Collections.sort(expected, comparator);
+        try (final CloseableIterator<SAMRecord> iterator = sorter.iterator()) {
+            Assert.assertEquals(tmpDir.list().length, 3);
+            for (final SAMRecord record : expected) {
+                Assert.assertEquals(iterator.next().getSAMString(), record.getSAMString());
+            }
+            Assert.assertFalse(iterator.hasNext());
+        }
+        sorter.cleanup();
+        Assert.assertEquals(tmpDir.list().length, 0);
+    }
+
+    @Test
+    public void testRecordsLargerThanSlabs() throws IOException {
+        final List<SAMRecord> records = readShuffledRecords().subList(0, 50);
+        final SAMRecordComparator comparator = new SAMRecordCoordinateComparator();
+        final SAMRecordArenaSorter sorter = new SAMRecordArenaSorter(getHeader(), comparator, 200, tmpDir);
+        records.forEach(sorter::add);
+
+        final List<SAMRecord> expected = new ArrayList<>(records);
+        Collections.sort(expected, comparator);
+        try (final CloseableIterator<SAMRecord> iterator = sorter.iterator()) {
+            for (final SAMRecord record : expected) {
+                Assert.assertEquals(iterator.next().getSAMString(), record.getSAMString());
+            }
+            Assert.assertFalse(iterator.hasNext());
+        }
+        Assert.assertEquals(tmpDir.list().length, 50);
+        sorter.cleanup();
+    }
+
+    @Test
+    public void testCoordinateKeyIsConsistentWithComparator() throws IOException {
+        checkKeyIsConsistentWithComparator(new SAMRecordCoordinateComparator());
+    }
+
+    @Test
+    public void testQueryNameKeyIsConsistentWithComparator() throws IOException {
+        checkKeyIsConsistentWithComparator(new SAMRecordQueryNameComparator());
+
+        final SAMRecord shorter = new SAMRecord(null);
+        shorter.setReadName("ab");
+        final SAMRecord longer = new SAMRecord(null);
+        longer.setReadName("ab!");
+        final SAMRecord nonAscii = new SAMRecord(null);
+        nonAscii.setReadName("abéz");
+        final SAMRecord nonAscii2 = new SAMRecord(null);
+        nonAscii2.setReadName("abèzzzzzzz");
+        Assert.assertTrue(SAMRecordArenaSorter.getQueryNameKey(shorter) < SAMRecordArenaSorter.getQueryNameKey(longer));
+        Assert.assertTrue(SAMRecordArenaSorter.getQueryNameKey(longer) < SAMRecordArenaSorter.getQueryNameKey(nonAscii));
+        Assert.assertEquals(SAMRecordArenaSorter.getQueryNameKey(nonAscii), SAMRecordArenaSorter.getQueryNameKey(nonAscii2));
+        Assert.assertTrue(SAMRecordArenaSorter.getQueryNameKey(nonAscii) > 0);
+    }
+
+    private static void checkKeyIsConsistentWithComparator(final SAMRecordComparator comparator) throws IOException {
+        final List<SAMRecord> records = readShuffledRecords();
+        final ToLongFunction<SAMRecord> key = SAMRecordArenaSorter.getPrefixKey(comparator);
+        for (int i = 1; i < records.size(); i++) {
+            final SAMRecord lhs = records.get(i - 1);
+            final SAMRecord rhs = records.get(i);
+            final int keyCmp = Long.compare(key.applyAsLong(lhs), key.applyAsLong(rhs));
+            Assert.assertTrue(key.applyAsLong(lhs) >= 0);
+            if (keyCmp != 0) {
+                Assert.assertEquals(Integer.signum(comparator.compare(lhs, rhs)), keyCmp, lhs.getSAMString() + rhs.getSAMString());
+            }
+        }
+    }
+
+    @Test
+    public void testRadixSort() {
+        final Random random = new Random(42);
+        for (final int length : new int[]{0, 1, 2, 1000, 100000}) {
+            final long[] keys = new long[length + 10];
+            final long[] values = new long[length + 10];
+            for (int i = 0; i < length; i++) {
+                // few distinct keys, to check that the sort is stable
+                keys[i] = random.nextInt(4) == 0 ? random.nextLong() >>> 1 : (long) random.nextInt(100) << 40;
+                values[i] = i;
+            }
+            final long[][] expected = new long[length][];
+            for (int i = 0; i < length; i++) {
+                expected[i] = new long[]{keys[i], values[i]};
+            }
+            Arrays.sort(expected, (lhs, rhs) -> Long.compare(lhs[0], rhs[0]));
+
+            final long[][] sorted = SAMRecordArenaSorter.radixSort(keys, values, length);
+            for (int i = 0; i < length; i++) {
+                Assert.assertEquals(sorted[0][i], expected[i][0]);
+                Assert.assertEquals(sorted[1][i], expected[i][1]);
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package htsjdk.samtools;
+
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.SortingCollection;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class SAMRecordCoordinateComparatorTest {
+    private static final File BAM_FILE = new File("src/test/resources/htsjdk/samtools/BAMFileIndexTest/index_test.bam");
+
+    private static List<SAMRecord> readShuffledRecords() throws IOException {
+        final List<SAMRecord> records = new ArrayList<>();
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(BAM_FILE)) {
+            reader.iterator().forEachRemaining(records::add);
+        }
+        // add records that only differ by strand, by the end of the read name, or after the read name
+        final String[] suffixes = {"", "\u0080", "\u00ff", "\u007f", "_long_suffix"};
+        for (int i = 0; i < 200; i++) {
+            final SAMRecord copy = records.get(i).deepCopy();
+            copy.setReadName(copy.getReadName().substring(0, Math.min(copy.getReadName().length(), 6)) + suffixes[i % suffixes.length]);
+            copy.setReadNegativeStrandFlag(i % 2 == 0);
+            records.add(copy);
+            final SAMRecord other = copy.deepCopy();
+            other.setMappingQuality(other.getMappingQuality() == 0 ? 1 : 0);
+            records.add(other);
+        }
+        Collections.shuffle(records, new Random(42));
+        return records;
+    }
+
+    @Test
+    public void testKeysAreConsistentWithCompare() throws IOException {
+        final SAMRecordCoordinateComparator comparator = new SAMRecordCoordinateComparator();
+        final List<SAMRecord> records = readShuffledRecords();
+        final Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            final SAMRecord record1 = records.get(random.nextInt(records.size()));
+            final SAMRecord record2 = records.get(random.nextInt(records.size()));
+            final int expected = Integer.signum(comparator.compare(record1, record2));
+            Assert.assertEquals(Integer.signum(comparator.compare(
+                    comparator.getSortKey(record1), comparator.getTieBreakKey(record1), record1,
+                    comparator.getSortKey(record2), comparator.getTieBreakKey(record2), record2)), expected,
+                    record1.getSAMString() + record2.getSAMString());
+            if (comparator.getSortKey(record1) != comparator.getSortKey(record2)) {
+                Assert.assertEquals(Long.signum(comparator.getSortKey(record1) - comparator.getSortKey(record2)), expected);
+            }
+        }
+    }
+
+    @Test
+    public void testUnmappedKeys() {
+        final long mapped = SAMRecordCoordinateComparator.getCoordinateKey(Integer.MAX_VALUE - 1, Integer.MAX_VALUE, true);
+        final long unmapped = SAMRecordCoordinateComparator.getCoordinateKey(SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX, 1, false);
+        Assert.assertTrue(mapped < unmapped);
+        Assert.assertEquals(unmapped, SAMRecordCoordinateComparator.getCoordinateKey(SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX, 100, false));
+        Assert.assertTrue(unmapped < SAMRecordCoordinateComparator.getCoordinateKey(SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX, 1, true));
+    }
+
+    @Test
+    public void testSortingCollectionWithKeys() throws IOException {
+        assertSortingCollectionOrder(new SAMRecordCoordinateComparator());
+    }
+
+    @Test
+    public void testSubclassWithoutKeys() throws IOException {
+        // a subclass changing the order without overriding the keys must not be sorted by the inherited keys
+        final SAMRecordCoordinateComparator comparator = new SAMRecordCoordinateComparator() {
+            @Override
+            public int compare(final SAMRecord samRecord1, final SAMRecord samRecord2) {
+                return super.compare(samRecord2, samRecord1);
+            }
+        };
+        Assert.assertFalse(comparator.hasSortKeys());
+        Assert.assertTrue(new SAMRecordCoordinateComparator().hasSortKeys());
+        assertSortingCollectionOrder(comparator);
+    }
+
+    private static void assertSortingCollectionOrder(final SAMRecordCoordinateComparator comparator) throws IOException {
+        final List<SAMRecord> records = readShuffledRecords();
+        final SAMFileHeader header = records.get(0).getHeader();
+        final File tmpDir = Files.createTempDirectory("SAMRecordCoordinateComparatorTest").toFile();
+        try {
+            final SortingCollection<SAMRecord> sortingCollection = SortingCollection.newInstance(SAMRecord.class,
+                    new BAMRecordCodec(header), comparator, 1000, tmpDir);
+            records.forEach(sortingCollection::add);
+            final List<SAMRecord> actual = new ArrayList<>();
+            sortingCollection.iterator().forEachRemaining(actual::add);
+            sortingCollection.cleanup();
+
+            records.sort(comparator);
+            Assert.assertEquals(actual.size(), records.size());
+            for (int i = 0; i < records.size(); i++) {
+                Assert.assertEquals(comparator.compare(actual.get(i), records.get(i)), 0);
+            }
+        } finally {
+            IOUtil.deleteDirectoryTree(tmpDir);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package htsjdk.samtools;
+
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.CloserUtil;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+
+public class SAMRecordSizeEstimatorTest {
+    private static final File BAM_FILE = new File("src/test/resources/htsjdk/samtools/BAMFileIndexTest/index_test.bam");
+
+    private static SAMRecord makeRecord(final int readLength) {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder();
+        builder.setReadLength(readLength);
+        return builder.addFrag("read", 0, 1, false);
+    }
+
+    @Test
+    public void testSizeGrowsWithReadLength() {
+        final SAMRecordSizeEstimator estimator = new SAMRecordSizeEstimator();
+        final long shortRead = estimator.getSizeInBytes(makeRecord(36));
+        final long longRead = estimator.getSizeInBytes(makeRecord(100000));
+        Assert.assertTrue(shortRead > 2 * 36);
+        Assert.assertTrue(longRead > 2 * 100000);
+        Assert.assertTrue(longRead < shortRead + 3 * 100000);
+
+        final SAMRecord record = makeRecord(36);
+        final long withoutAttributes = estimator.getSizeInBytes(record);
+        record.setAttribute("XS", "ACGTACGTACGT");
+        Assert.assertTrue(estimator.getSizeInBytes(record) > withoutAttributes + 12);
+    }
+
+    @Test
+    public void testBAMRecordsAreNotDecoded() {
+        final SAMRecordSizeEstimator estimator = new SAMRecordSizeEstimator();
+        final SamReader reader = SamReaderFactory.makeDefault().open(BAM_FILE);
+        final CloseableIterator<SAMRecord> iterator = reader.iterator();
+        try {
+            final BAMRecord record = (BAMRecord) iterator.next();
+            final byte[] binaryData = record.getVariableBinaryRepresentation();
+            Assert.assertNotNull(binaryData);
+            final long size = estimator.getSizeInBytes(record);
+            Assert.assertTrue(size > 2 * binaryData.length);
+            // still undecoded
+            Assert.assertSame(record.getVariableBinaryRepresentation(), binaryData);
+
+            // the same record once decoded, without its binary data
+            final SAMRecord decoded = new SAMRecord(record.getHeader());
+            decoded.setReadName(record.getReadName());
+            decoded.setReadBases(record.getReadBases());
+            decoded.setBaseQualities(record.getBaseQualities());
+            decoded.setCigar(record.getCigar());
+            for (final SAMRecord.SAMTagAndValue attribute : record.getAttributes()) {
+                decoded.setAttribute(attribute.tag, attribute.value);
+            }
+            Assert.assertTrue(estimator.getSizeInBytes(decoded) < size);
+        } finally {
+            CloserUtil.close(iterator);
+            CloserUtil.close(reader);
+        }
+    }
+}
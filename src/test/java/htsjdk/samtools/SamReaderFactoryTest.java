@@ -18,6 +18,7 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -124,6 +125,176 @@ public class SamReaderFactoryTest {
         else if (inputFile.endsWith(".bam")) Assert.assertEquals(recordFactory.bamRecordsCreated, i);
     }
 
+    @Test
+    public void inflaterThreadsTest() throws IOException {
+        final File input = new File(TEST_DATA_DIR, "BAMFileIndexTest/index_test.bam");
+        final List<SAMRecord> expected = new ArrayList<>();
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(input);
+             final SAMRecordIterator iter = reader.iterator()) {
+            iter.forEachRemaining(expected::add);
+        }
+        final List<SAMRecord> actual = new ArrayList<>();
+        try (final SamReader reader = SamReaderFactory.makeDefault().inflaterThreads(3).open(input)) {
+            try (final SAMRecordIterator iter = reader.iterator()) {
+                iter.forEachRemaining(actual::add);
+            }
+            // iterating a second time requires seeking back to the first record
+            Assert.assertEquals(countRecords(reader), expected.size());
+        }
+        Assert.assertTrue(expected.size() > 0);
+        Assert.assertEquals(actual, expected);
+    }
+
+    @DataProvider(name = "decoderThreads")
+    public Object[][] decoderThreads() {
+        return new Object[][]{{1, 0}, {3, 0}, {3, 2}};
+    }
+
+    @Test(dataProvider = "decoderThreads")
+    public void decoderThreadsTest(final int decoderThreads, final int inflaterThreads) throws IOException {
+        final File input = new File(TEST_DATA_DIR, "BAMFileIndexTest/index_test.bam");
+        final QueryInterval[] intervals = {new QueryInterval(0, 1000000, 2000000), new QueryInterval(1, 1, 5000000)};
+        final List<SAMRecord> expected = new ArrayList<>();
+        final List<SAMRecord> expectedQuery = new ArrayList<>();
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(input)) {
+            try (final SAMRecordIterator iter = reader.iterator()) {
+                iter.forEachRemaining(expected::add);
+            }
+            try (final SAMRecordIterator iter = reader.queryOverlapping(intervals)) {
+                iter.forEachRemaining(expectedQuery::add);
+            }
+        }
+        final SamReaderFactory factory = SamReaderFactory.makeDefault()
+                .enable(SamReaderFactory.Option.EAGERLY_DECODE)
+                .validationStringency(ValidationStringency.STRICT)
+                .decoderThreads(decoderThreads)
+                .inflaterThreads(inflaterThreads);
+        try (final SamReader reader = factory.open(input)) {
+            final List<SAMRecord> actual = new ArrayList<>();
+            try (final SAMRecordIterator iter = reader.iterator()) {
+                iter.forEachRemaining(actual::add);
+            }
+            Assert.assertTrue(expected.size() > 0);
+            Assert.assertEquals(actual, expected);
+
+            // stop early, while records are still being read ahead
+            try (final SAMRecordIterator iter = reader.iterator()) {
+                for (int i = 0; i < 10; ++i) {
+                    Assert.assertEquals(iter.next(), expected.get(i));
+                }
+            }
+
+            final List<SAMRecord> actualQuery = new ArrayList<>();
+            try (final SAMRecordIterator iter = reader.queryOverlapping(intervals)) {
+                iter.forEachRemaining(actualQuery::add);
+            }
+            Assert.assertTrue(expectedQuery.size() > 0);
+            Assert.assertEquals(actualQuery, expectedQuery);
+
+            Assert.assertEquals(countRecordsInQueryInterval(reader, intervals[0]), countRecordsInQueryInterval(reader, intervals[0]));
+            Assert.assertEquals(countRecords(reader), expected.size());
+        }
+    }
+
+    @Test(dataProvider = "decoderThreads")
+    public void closeWhileDecodingTest(final int decoderThreads, final int inflaterThreads) throws IOException {
+        final File input = new File(TEST_DATA_DIR, "BAMFileIndexTest/index_test.bam");
+        final SamReader reader = SamReaderFactory.makeDefault()
+                .decoderThreads(decoderThreads)
+                .inflaterThreads(inflaterThreads)
+                .open(input);
+        final SAMRecordIterator iter = reader.iterator();
+        for (int i = 0; i < 10; ++i) {
+            iter.next();
+        }
+        // the iterator is left open: closing the reader must first stop the thread reading records ahead
+        reader.close();
+        for (final Thread thread : Thread.getAllStackTraces().keySet()) {
+            Assert.assertFalse(thread.isAlive() && thread.getName().startsWith("BAMFileReader-framer-"), thread.getName());
+        }
+    }
+
+    @Test
+    public void memoryMappedQueryTest() throws IOException {
+        final File input = new File(TEST_DATA_DIR, "BAMFileIndexTest/index_test.bam");
+        final File index = new File(TEST_DATA_DIR, "BAMFileIndexTest/index_test.bam.bai");
+        final List<SAMRecord> expected = new ArrayList<>();
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(SamInputResource.of(input).index(index));
+             final SAMRecordIterator iter = reader.query("chr1", 1000000, 2000000, false)) {
+            iter.forEachRemaining(expected::add);
+        }
+        final List<SAMRecord> actual = new ArrayList<>();
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(SamInputResource.ofMemoryMapped(input).index(index));
+             final SAMRecordIterator iter = reader.query("chr1", 1000000, 2000000, false)) {
+            iter.forEachRemaining(actual::add);
+        }
+        Assert.assertTrue(expected.size() > 0);
+        Assert.assertEquals(actual, expected);
+    }
+
+    @DataProvider(name = "fields")
+    public Object[][] fields() {
+        return new Object[][]{{0, false}, {0, true}, {3, true}};
+    }
+
+    @Test(dataProvider = "fields")
+    public void fieldsTest(final int decoderThreads, final boolean eagerDecode) throws IOException {
+        final File input = new File(TEST_DATA_DIR, "BAMFileIndexTest/index_test.bam");
+        final QueryInterval[] intervals = {new QueryInterval(0, 1000000, 2000000), new QueryInterval(1, 1, 5000000)};
+        final List<SAMRecord> expected = new ArrayList<>();
+        final List<SAMRecord> expectedQuery = new ArrayList<>();
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(input)) {
+            try (final SAMRecordIterator iter = reader.iterator()) {
+                iter.forEachRemaining(expected::add);
+            }
+            try (final SAMRecordIterator iter = reader.queryOverlapping(intervals)) {
+                iter.forEachRemaining(expectedQuery::add);
+            }
+        }
+        SamReaderFactory factory = SamReaderFactory.makeDefault()
+                .validationStringency(ValidationStringency.STRICT)
+                .decoderThreads(decoderThreads)
+                .fields(EnumSet.of(SAMRecordField.FLAG, SAMRecordField.RNAME, SAMRecordField.POS, SAMRecordField.MAPQ));
+        if (eagerDecode) {
+            factory = factory.enable(SamReaderFactory.Option.EAGERLY_DECODE);
+        }
+        try (final SamReader reader = factory.open(input)) {
+            final List<SAMRecord> actual = new ArrayList<>();
+            try (final SAMRecordIterator iter = reader.iterator()) {
+                iter.forEachRemaining(actual::add);
+            }
+            Assert.assertEquals(actual.size(), expected.size());
+            for (int i = 0; i < actual.size(); ++i) {
+                Assert.assertEquals(actual.get(i).getFlags(), expected.get(i).getFlags());
+                Assert.assertEquals(actual.get(i).getReferenceIndex(), expected.get(i).getReferenceIndex());
+                Assert.assertEquals(actual.get(i).getAlignmentStart(), expected.get(i).getAlignmentStart());
+                Assert.assertEquals(actual.get(i).getMappingQuality(), expected.get(i).getMappingQuality());
+            }
+            final SAMRecord record = actual.get(0);
+            for (final Runnable getter : new Runnable[]{record::getReadName, record::getCigar, record::getReadBases,
+                    record::getBaseQualities, () -> record.getAttribute("RG")}) {
+                try {
+                    getter.run();
+                    Assert.fail("Reading a field that was not read should fail");
+                } catch (final IllegalStateException e) {
+                    // expected
+                }
+            }
+
+            // queries read the CIGAR to filter on alignment end
+            final List<SAMRecord> actualQuery = new ArrayList<>();
+            try (final SAMRecordIterator iter = reader.queryOverlapping(intervals)) {
+                iter.forEachRemaining(actualQuery::add);
+            }
+            Assert.assertTrue(expectedQuery.size() > 0);
+            Assert.assertEquals(actualQuery.size(), expectedQuery.size());
+            for (int i = 0; i < actualQuery.size(); ++i) {
+                Assert.assertEquals(actualQuery.get(i).getAlignmentStart(), expectedQuery.get(i).getAlignmentStart());
+                Assert.assertEquals(actualQuery.get(i).getAlignmentEnd(), expectedQuery.get(i).getAlignmentEnd());
+            }
+        }
+    }
+
     @Test(expectedExceptions=IllegalStateException.class)
     public void samRecordFactoryNullHeaderBAMTest() {
         final SAMRecordFactory recordFactory = new DefaultSAMRecordFactory();
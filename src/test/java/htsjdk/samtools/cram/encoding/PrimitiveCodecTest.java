@@ -0,0 +1,145 @@
+package htsjdk.samtools.cram.encoding;
+
+import htsjdk.samtools.cram.io.DefaultBitInputStream;
+import htsjdk.samtools.cram.io.DefaultBitOutputStream;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.function.BiFunction;
+
+public class PrimitiveCodecTest {
+
+    private static int[] randomInts(final int count, final int bound) {
+        final Random random = new Random(42);
+        final int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = random.nextInt(bound);
+        }
+        return values;
+    }
+
+    private static byte[] randomBytes(final int count) {
+        final byte[] values = new byte[count];
+        new Random(42).nextBytes(values);
+        return values;
+    }
+
+    @DataProvider(name = "intCodecs")
+    public Object[][] intCodecs() {
+        return new Object[][]{
+                {"beta", (BiFunction<OutputStream, InputStream, IntCodec>) (out, in) -> new BetaIntegerCodec(0, 12)},
+                {"gamma", (BiFunction<OutputStream, InputStream, IntCodec>) (out, in) -> new GammaIntegerCodec(1)},
+                {"golomb", (BiFunction<OutputStream, InputStream, IntCodec>) (out, in) -> new GolombIntegerCodec(10, 0)},
+                {"golombRice", (BiFunction<OutputStream, InputStream, IntCodec>) (out, in) -> new GolombRiceIntegerCodec(0, 3)},
+                {"subexponential", (BiFunction<OutputStream, InputStream, IntCodec>) (out, in) -> new SubexponentialIntegerCodec(0, 2)},
+                {"external", (BiFunction<OutputStream, InputStream, IntCodec>) ExternalIntegerCodec::new}
+        };
+    }
+
+    @Test(dataProvider = "intCodecs")
+    public void testIntCodecRoundTrip(final String name, final BiFunction<OutputStream, InputStream, IntCodec> codecFactory) throws IOException {
+        final int[] values = randomInts(1000, 4000);
+        final ByteArrayOutputStream external = new ByteArrayOutputStream();
+        final ByteArrayOutputStream core = new ByteArrayOutputStream();
+        final IntCodec writeCodec = codecFactory.apply(external, null);
+        try (final DefaultBitOutputStream bitOutputStream = new DefaultBitOutputStream(core)) {
+            for (int i = 0; i < values.length; i++) {
+                if (i % 2 == 0) {
+                    Assert.assertEquals(writeCodec.writeInt(bitOutputStream, values[i]), writeCodec.numberOfBits(values[i]));
+                } else {
+                    writeCodec.write(bitOutputStream, values[i]);
+                }
+            }
+        }
+
+        final IntCodec readCodec = codecFactory.apply(null, new ByteArrayInputStream(external.toByteArray()));
+        final DefaultBitInputStream bitInputStream = new DefaultBitInputStream(new ByteArrayInputStream(core.toByteArray()));
+        final int[] actual = new int[values.length];
+        actual[0] = readCodec.readInt(bitInputStream);
+        actual[1] = readCodec.read(bitInputStream);
+        readCodec.skip(bitInputStream);
+        actual[2] = values[2];
+        readCodec.readInto(bitInputStream, actual, 3, values.length - 3);
+        Assert.assertEquals(actual, values, name);
+    }
+
+    @Test
+    public void testLongCodecRoundTrip() throws IOException {
+        final long[] values = {0, 1, 7, 15, 16, 1000};
+        final ByteArrayOutputStream core = new ByteArrayOutputStream();
+        final LongCodec codec = new GolombLongCodec(0, 16);
+        try (final DefaultBitOutputStream bitOutputStream = new DefaultBitOutputStream(core)) {
+            for (final long value : values) {
+                Assert.assertEquals(codec.writeLong(bitOutputStream, value), codec.numberOfBits(value));
+            }
+        }
+
+        final DefaultBitInputStream bitInputStream = new DefaultBitInputStream(new ByteArrayInputStream(core.toByteArray()));
+        for (final long value : values) {
+            Assert.assertEquals(codec.readLong(bitInputStream), value);
+        }
+    }
+
+    @Test
+    public void testByteCodecRoundTrip() throws IOException {
+        final byte[] values = randomBytes(1000);
+        final ByteArrayOutputStream external = new ByteArrayOutputStream();
+        final ByteCodec writeCodec = new ExternalByteCodec(external, null);
+        for (final byte value : values) {
+            writeCodec.writeByte(null, value);
+        }
+
+        final ByteCodec readCodec = new ExternalByteCodec(null, new ByteArrayInputStream(external.toByteArray()));
+        final byte[] actual = new byte[values.length];
+        actual[0] = readCodec.readByte(null);
+        actual[1] = readCodec.read(null);
+        readCodec.readInto(null, actual, 2, values.length - 2);
+        Assert.assertEquals(actual, values);
+    }
+
+    @Test(groups = "slow")
+    public void timeTest() throws IOException {
+        final int[] values = randomInts(2000000, 1 << 20);
+        final ByteArrayOutputStream core = new ByteArrayOutputStream();
+        final IntCodec codec = new SubexponentialIntegerCodec(0, 4);
+        try (final DefaultBitOutputStream bitOutputStream = new DefaultBitOutputStream(core)) {
+            for (final int value : values) {
+                codec.writeInt(bitOutputStream, value);
+            }
+        }
+        final byte[] data = core.toByteArray();
+
+        long startTime = System.currentTimeMillis();
+        DefaultBitInputStream bitInputStream = new DefaultBitInputStream(new ByteArrayInputStream(data));
+        long sum = 0;
+        for (int i = 0; i < values.length; i++) {
+            final Integer value = codec.read(bitInputStream);
+            sum += value;
+        }
+        System.out.println((System.currentTimeMillis() - startTime) + "ms to read " + values.length + " boxed values");
+
+        startTime = System.currentTimeMillis();
+        bitInputStream = new DefaultBitInputStream(new ByteArrayInputStream(data));
+        long primitiveSum = 0;
+        for (int i = 0; i < values.length; i++) {
+            primitiveSum += codec.readInt(bitInputStream);
+        }
+        System.out.println((System.currentTimeMillis() - startTime) + "ms to read " + values.length + " int values");
+
+        startTime = System.currentTimeMillis();
+        bitInputStream = new DefaultBitInputStream(new ByteArrayInputStream(data));
+        final int[] actual = new int[values.length];
+        codec.readInto(bitInputStream, actual, 0, actual.length);
+        System.out.println((System.currentTimeMillis() - startTime) + "ms to read " + values.length + " int values into an array");
+
+        Assert.assertEquals(primitiveSum, sum);
+        Assert.assertEquals(actual, values);
+    }
+}
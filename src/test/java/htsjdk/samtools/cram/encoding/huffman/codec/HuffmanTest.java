@@ -9,6 +9,8 @@ import org.testng.annotations.Test;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
 
 /**
  * Created by vadim on 22/04/2015.
@@ -103,4 +105,79 @@ public class HuffmanTest {
             }
         }
     }
+
+    private static int[] skewedValues(final HuffmanParamsCalculator cal, final int count) {
+        // frequencies doubling with each value give codes longer than the decoding table
+        final int[] values = new int[count];
+        final Random random = new Random(42);
+        for (int i = 0; i < count; i++) {
+            values[i] = Math.min(19, Integer.numberOfLeadingZeros(random.nextInt() | 1));
+            cal.add(values[i]);
+        }
+        for (int value = 0; value < 20; value++) {
+            cal.add(value);
+        }
+        cal.calculate();
+        return values;
+    }
+
+    @Test
+    public void testLongCodesInterleavedWithBits() throws IOException {
+        final HuffmanParamsCalculator cal = new HuffmanParamsCalculator();
+        final int[] values = skewedValues(cal, 100000);
+        Assert.assertTrue(Arrays.stream(cal.bitLens()).max().getAsInt() > HuffmanDecodingTable.MAX_LOOKUP_BITS);
+
+        final HuffmanIntHelper intHelper = new HuffmanIntHelper(cal.values(), cal.bitLens());
+        final HuffmanByteHelper byteHelper = new HuffmanByteHelper(cal.valuesAsBytes(), cal.bitLens());
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (final DefaultBitOutputStream bos = new DefaultBitOutputStream(baos)) {
+            for (int i = 0; i < values.length; i++) {
+                intHelper.write(bos, values[i]);
+                bos.write(i & 7, 3);
+                byteHelper.write(bos, (byte) values[i]);
+            }
+        }
+
+        final DefaultBitInputStream bis = new DefaultBitInputStream(new ByteArrayInputStream(baos.toByteArray()));
+        for (int i = 0; i < values.length; i++) {
+            Assert.assertEquals(intHelper.read(bis), values[i], "at " + i);
+            Assert.assertEquals(bis.readBits(3), i & 7, "at " + i);
+            Assert.assertEquals(byteHelper.read(bis), (byte) values[i], "at " + i);
+        }
+    }
+
+    @Test
+    public void testSingleValue() throws IOException {
+        final HuffmanIntHelper helper = new HuffmanIntHelper(new int[]{7}, new int[]{0});
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (final DefaultBitOutputStream bos = new DefaultBitOutputStream(baos)) {
+            Assert.assertEquals(helper.write(bos, 7), 0);
+        }
+        Assert.assertEquals(baos.size(), 0);
+        final DefaultBitInputStream bis = new DefaultBitInputStream(new ByteArrayInputStream(baos.toByteArray()));
+        Assert.assertEquals(helper.read(bis), 7);
+        Assert.assertEquals(helper.read(bis), 7);
+    }
+
+    @Test(groups = "slow")
+    public void timeTest() throws IOException {
+        final HuffmanParamsCalculator cal = new HuffmanParamsCalculator();
+        final int[] values = skewedValues(cal, 2000000);
+        final HuffmanIntHelper helper = new HuffmanIntHelper(cal.values(), cal.bitLens());
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (final DefaultBitOutputStream bos = new DefaultBitOutputStream(baos)) {
+            for (final int value : values) {
+                helper.write(bos, value);
+            }
+        }
+
+        final long startTime = System.currentTimeMillis();
+        final DefaultBitInputStream bis = new DefaultBitInputStream(new ByteArrayInputStream(baos.toByteArray()));
+        for (final int value : values) {
+            if (helper.read(bis) != value) {
+                Assert.fail("Mismatch");
+            }
+        }
+        System.out.println((System.currentTimeMillis() - startTime) + "ms to read " + values.length + " huffman codes");
+    }
 }
@@ -170,6 +170,67 @@ public class RansTest {
         Assert.assertEquals(compressed.getInt(), data.length);
     }
 
+    @Test
+    public void testReusedCodec() {
+        final RANSCodec codec = new RANSCodec();
+        final double[] probabilities = {0.5, 0.01, 0.9, 0.1};
+        for (int i = 0; i < 20; i++) {
+            final byte[] data = randomBytes_GD(1 + random.nextInt(20000), probabilities[i % probabilities.length]);
+            for (RANS.ORDER order : RANS.ORDER.values()) {
+                final ByteBuffer expected = RANS.compress(ByteBuffer.wrap(data), order, null);
+                final byte[] compressed = codec.compress(data, order);
+                Assert.assertEquals(ByteBuffer.wrap(compressed), expected);
+                Assert.assertEquals(codec.uncompress(compressed), data);
+            }
+        }
+    }
+
+    @Test
+    public void testLargeBlockBufferNotKept() {
+        final RANSCodec codec = new RANSCodec();
+        final byte[] data = randomBytes_GD(RANSCodec.MAX_CACHED_BUFFER_SIZE, 0.01);
+        final ByteBuffer large = codec.compress(ByteBuffer.wrap(data), RANS.ORDER.ZERO, null);
+        final byte[] expected = new byte[large.remaining()];
+        large.duplicate().get(expected);
+
+        // a block needing a larger buffer than the cached one gets its own, which the next block does not overwrite
+        codec.compress(ByteBuffer.wrap(randomBytes_GD(1000, 0.5)), RANS.ORDER.ZERO, null);
+        final byte[] actual = new byte[large.remaining()];
+        large.get(actual);
+        Assert.assertTrue(Arrays.equals(actual, expected));
+        Assert.assertTrue(Arrays.equals(codec.uncompress(actual), data));
+    }
+
+    @Test(groups = "slow")
+    public void timeTest() {
+        final byte[][] blocks = new byte[50][];
+        for (int i = 0; i < blocks.length; i++)
+            blocks[i] = randomBytes_GD(10000, 0.01);
+        final byte[][] compressed = new byte[blocks.length][];
+
+        for (RANS.ORDER order : RANS.ORDER.values()) {
+            long startTime = System.currentTimeMillis();
+            for (int i = 0; i < blocks.length; i++) {
+                final ByteBuffer buffer = RANS.compress(ByteBuffer.wrap(blocks[i]), order, null);
+                compressed[i] = new byte[buffer.remaining()];
+                buffer.get(compressed[i]);
+                RANS.uncompress(ByteBuffer.wrap(compressed[i]), null);
+            }
+            System.out.println((System.currentTimeMillis() - startTime) + "ms to code " + blocks.length + " blocks of order " + order + " with RANS");
+
+            final RANSCodec codec = new RANSCodec();
+            final byte[][] reusedCompressed = new byte[blocks.length][];
+            startTime = System.currentTimeMillis();
+            for (int i = 0; i < blocks.length; i++) {
+                reusedCompressed[i] = codec.compress(blocks[i], order);
+                codec.uncompress(reusedCompressed[i]);
+            }
+            System.out.println((System.currentTimeMillis() - startTime) + "ms to code " + blocks.length + " blocks of order " + order + " with a RANSCodec");
+            for (int i = 0; i < blocks.length; i++)
+                Assert.assertTrue(Arrays.equals(reusedCompressed[i], compressed[i]));
+        }
+    }
+
     private static void roundTrip(ByteBuffer data) {
         for (RANS.ORDER order : RANS.ORDER.values()) {
             roundTrip(data, order);
@@ -0,0 +1,156 @@
+package htsjdk.samtools.cram.io;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Random;
+
+public class ByteArrayBitStreamTest {
+
+    private static void writeRandomBits(final Random random, final BitOutputStream bitOutputStream, final int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            switch (random.nextInt(5)) {
+                case 0:
+                    bitOutputStream.write(random.nextInt(), random.nextInt(33));
+                    break;
+                case 1:
+                    bitOutputStream.write(random.nextLong(), random.nextInt(65));
+                    break;
+                case 2:
+                    bitOutputStream.write((byte) random.nextInt(), 1 + random.nextInt(8));
+                    break;
+                case 3:
+                    bitOutputStream.write(random.nextBoolean());
+                    break;
+                default:
+                    bitOutputStream.write(random.nextBoolean(), random.nextInt(100));
+                    break;
+            }
+        }
+    }
+
+    @Test
+    public void testWriteMatchesDefaultBitOutputStream() throws IOException {
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        final ByteArrayBitOutputStream actual = new ByteArrayBitOutputStream(16);
+        try (final DefaultBitOutputStream defaultBitOutputStream = new DefaultBitOutputStream(expected)) {
+            writeRandomBits(new Random(42), defaultBitOutputStream, 10000);
+            defaultBitOutputStream.flush();
+            writeRandomBits(new Random(43), defaultBitOutputStream, 10000);
+        }
+        writeRandomBits(new Random(42), actual, 10000);
+        actual.flush();
+        writeRandomBits(new Random(43), actual, 10000);
+        actual.close();
+
+        Assert.assertEquals(actual.size(), expected.size());
+        Assert.assertEquals(actual.toByteArray(), expected.toByteArray());
+    }
+
+    @Test
+    public void testReadMatchesDefaultBitInputStream() throws IOException {
+        final byte[] data = new byte[100000];
+        final Random random = new Random(42);
+        random.nextBytes(data);
+        final DefaultBitInputStream expected = new DefaultBitInputStream(new ByteArrayInputStream(data));
+        final ByteArrayBitInputStream actual = new ByteArrayBitInputStream(data);
+
+        long remainingBits = data.length * 8L;
+        while (remainingBits > 64) {
+            final int length;
+            switch (random.nextInt(4)) {
+                case 0:
+                    Assert.assertEquals(actual.readBit(), expected.readBit());
+                    length = 1;
+                    break;
+                case 1:
+                    length = random.nextInt(32);
+                    Assert.assertEquals(actual.readBits(length), expected.readBits(length));
+                    break;
+                case 2:
+                    length = random.nextInt(65);
+                    Assert.assertEquals(actual.readLongBits(length), expected.readLongBits(length));
+                    break;
+                default:
+                    final int peekLength = random.nextInt(25);
+                    Assert.assertEquals(actual.peekBits(peekLength), expected.peekBits(peekLength));
+                    length = 0;
+                    break;
+            }
+            remainingBits -= length;
+        }
+
+        // bits past the end of the stream are peeked as zeros, but not read
+        final int lastBits = (int) remainingBits - 20;
+        Assert.assertEquals(actual.readLongBits(lastBits), expected.readLongBits(lastBits));
+        Assert.assertEquals(actual.peekBits(24), expected.peekBits(24));
+        Assert.assertEquals(actual.peekBits(24) & 0xF, 0);
+        try {
+            actual.readBits(24);
+            Assert.fail("Expected EOF");
+        } catch (final EOFException e) {
+            // expected
+        }
+        Assert.assertEquals(actual.readBits(20), expected.readBits(20));
+    }
+
+    @Test
+    public void testRange() throws IOException {
+        final byte[] data = {(byte) 0xFF, (byte) 0xA5, (byte) 0x0F, (byte) 0xFF};
+        final ByteArrayBitInputStream bitInputStream = new ByteArrayBitInputStream(data, 1, 2);
+        Assert.assertEquals(bitInputStream.readBits(12), 0xA50);
+        Assert.assertEquals(bitInputStream.peekBits(8), 0xF0);
+        Assert.assertEquals(bitInputStream.readBits(4), 0xF);
+        Assert.assertEquals(bitInputStream.peekBits(8), 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidRange() {
+        new ByteArrayBitInputStream(new byte[4], 2, 3);
+    }
+
+    @Test(groups = "slow")
+    public void timeTest() throws IOException {
+        final int count = 4000000;
+        final ByteArrayBitOutputStream bitOutputStream = new ByteArrayBitOutputStream();
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            bitOutputStream.write(i, 7);
+        }
+        bitOutputStream.close();
+        System.out.println((System.currentTimeMillis() - startTime) + "ms to write " + count + " values with ByteArrayBitOutputStream");
+
+        final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        startTime = System.currentTimeMillis();
+        try (final DefaultBitOutputStream defaultBitOutputStream = new DefaultBitOutputStream(byteArrayOutputStream)) {
+            for (int i = 0; i < count; i++) {
+                defaultBitOutputStream.write(i, 7);
+            }
+        }
+        System.out.println((System.currentTimeMillis() - startTime) + "ms to write " + count + " values with DefaultBitOutputStream");
+        final byte[] data = bitOutputStream.toByteArray();
+        Assert.assertEquals(data, byteArrayOutputStream.toByteArray());
+
+        startTime = System.currentTimeMillis();
+        final ByteArrayBitInputStream bitInputStream = new ByteArrayBitInputStream(data);
+        for (int i = 0; i < count; i++) {
+            if (bitInputStream.readBits(7) != (i & 0x7F)) {
+                Assert.fail("Mismatch at " + i);
+            }
+        }
+        System.out.println((System.currentTimeMillis() - startTime) + "ms to read " + count + " values with ByteArrayBitInputStream");
+
+        startTime = System.currentTimeMillis();
+        final DefaultBitInputStream defaultBitInputStream = new DefaultBitInputStream(new ByteArrayInputStream(data));
+        for (int i = 0; i < count; i++) {
+            if (defaultBitInputStream.readBits(7) != (i & 0x7F)) {
+                Assert.fail("Mismatch at " + i);
+            }
+        }
+        System.out.println((System.currentTimeMillis() - startTime) + "ms to read " + count + " values with DefaultBitInputStream");
+    }
+}
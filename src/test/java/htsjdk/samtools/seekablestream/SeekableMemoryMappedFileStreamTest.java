@@ -0,0 +1,76 @@
+package htsjdk.samtools.seekablestream;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+public class SeekableMemoryMappedFileStreamTest {
+    private static final File TEST_FILE = new File("src/test/resources/htsjdk/samtools/BAMFileIndexTest/index_test.bam");
+
+    @DataProvider(name = "windowSizes")
+    public Object[][] windowSizes() {
+        return new Object[][]{{1000}, {65536}, {SeekableMemoryMappedFileStream.DEFAULT_WINDOW_SIZE}};
+    }
+
+    @Test(dataProvider = "windowSizes")
+    public void testReadWholeFile(final int windowSize) throws IOException {
+        final byte[] expected = Files.readAllBytes(TEST_FILE.toPath());
+        final SeekableMemoryMappedFileStream stream = new SeekableMemoryMappedFileStream(TEST_FILE, windowSize);
+        Assert.assertEquals(stream.length(), expected.length);
+        final byte[] actual = new byte[expected.length];
+        stream.readFully(actual);
+        Assert.assertEquals(actual, expected);
+        Assert.assertTrue(stream.eof());
+        Assert.assertEquals(stream.read(), -1);
+        Assert.assertEquals(stream.read(actual, 0, 10), -1);
+        stream.close();
+    }
+
+    @Test(dataProvider = "windowSizes")
+    public void testSeekAndRead(final int windowSize) throws IOException {
+        final byte[] expected = Files.readAllBytes(TEST_FILE.toPath());
+        final SeekableMemoryMappedFileStream stream = new SeekableMemoryMappedFileStream(TEST_FILE, windowSize);
+        final Random random = new Random(windowSize);
+        final byte[] buffer = new byte[5000];
+        for (int i = 0; i < 100; ++i) {
+            final int position = random.nextInt(expected.length);
+            stream.seek(position);
+            Assert.assertEquals(stream.position(), position);
+            Assert.assertEquals(stream.read(), expected[position] & 0xFF);
+            final int count = stream.read(buffer, 0, buffer.length);
+            Assert.assertEquals(count, Math.min(buffer.length, expected.length - position - 1));
+            Assert.assertEquals(Arrays.copyOf(buffer, count), Arrays.copyOfRange(expected, position + 1, position + 1 + count));
+            Assert.assertEquals(stream.position(), position + 1 + count);
+        }
+        stream.seek(0);
+        Assert.assertEquals(stream.skip(expected.length + 100), expected.length);
+        Assert.assertTrue(stream.eof());
+        stream.close();
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException {
+        final File empty = File.createTempFile("SeekableMemoryMappedFileStreamTest.", ".dat");
+        empty.deleteOnExit();
+        final SeekableMemoryMappedFileStream stream = new SeekableMemoryMappedFileStream(empty);
+        Assert.assertEquals(stream.length(), 0);
+        Assert.assertTrue(stream.eof());
+        Assert.assertEquals(stream.read(), -1);
+        Assert.assertEquals(stream.read(new byte[10], 0, 0), 0);
+        Assert.assertEquals(stream.read(new byte[10], 0, 10), -1);
+        stream.close();
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testReadAfterClose() throws IOException {
+        final SeekableMemoryMappedFileStream stream = new SeekableMemoryMappedFileStream(TEST_FILE);
+        stream.close();
+        stream.read();
+    }
+}
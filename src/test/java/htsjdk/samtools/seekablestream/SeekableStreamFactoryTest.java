@@ -42,4 +42,21 @@ public class SeekableStreamFactoryTest {
         Assert.assertEquals(SeekableStreamFactory.getInstance().getStreamFor(path).getSource(), expectedPath);
     }
 
+    @Test
+    public void testMemoryMapFiles() throws IOException {
+        final String path = new File(TEST_DATA_DIR, "BAMFileIndexTest/index_test.bam").getAbsolutePath();
+        Assert.assertFalse(SeekableStreamFactory.isMemoryMapFiles());
+        SeekableStreamFactory.setMemoryMapFiles(true);
+        try {
+            final SeekableStream stream = SeekableStreamFactory.getInstance().getStreamFor(path);
+            Assert.assertTrue(stream instanceof SeekableMemoryMappedFileStream);
+            Assert.assertSame(SeekableStreamFactory.getInstance().getBufferedStream(stream), stream);
+            Assert.assertEquals(stream.getSource(), path);
+            stream.close();
+        } finally {
+            SeekableStreamFactory.setMemoryMapFiles(false);
+        }
+        Assert.assertTrue(SeekableStreamFactory.getInstance().getStreamFor(path) instanceof SeekableFileStream);
+    }
+
 }
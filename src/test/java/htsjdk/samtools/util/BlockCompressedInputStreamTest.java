@@ -0,0 +1,212 @@
+package htsjdk.samtools.util;
+
+import htsjdk.samtools.FileTruncatedException;
+import htsjdk.samtools.util.zip.InflaterFactory;
+import htsjdk.samtools.util.zip.PooledInflaterFactory;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.Inflater;
+
+public class BlockCompressedInputStreamTest {
+
+    private File bgzfFile;
+    private byte[] uncompressedData;
+
+    @BeforeClass
+    public void writeBgzfFile() throws IOException {
+        bgzfFile = File.createTempFile("BCIST.", ".gz");
+        bgzfFile.deleteOnExit();
+        final Random random = new Random(42);
+        uncompressedData = new byte[20 * BlockCompressedStreamConstants.DEFAULT_UNCOMPRESSED_BLOCK_SIZE + 1234];
+        for (int i = 0; i < uncompressedData.length; ++i) {
+            uncompressedData[i] = (byte) ('A' + random.nextInt(4));
+        }
+        final BlockCompressedOutputStream bcos = new BlockCompressedOutputStream(bgzfFile);
+        bcos.write(uncompressedData);
+        bcos.close();
+    }
+
+    @DataProvider(name = "readAhead")
+    public Object[][] readAhead() {
+        return new Object[][]{{1, 1}, {2, 8}, {4, 3}, {4, 100}};
+    }
+
+    @Test(dataProvider = "readAhead")
+    public void testReadAheadMatchesSequentialRead(final int inflaterThreads, final int blocksAhead) throws IOException {
+        final BlockCompressedInputStream sequential = new BlockCompressedInputStream(bgzfFile);
+        final BlockCompressedInputStream readAhead = new BlockCompressedInputStream(bgzfFile);
+        readAhead.setReadAhead(inflaterThreads, blocksAhead);
+        final byte[] sequentialBuffer = new byte[7919];
+        final byte[] readAheadBuffer = new byte[7919];
+        int total = 0;
+        while (true) {
+            final int count = sequential.read(sequentialBuffer);
+            Assert.assertEquals(readAhead.read(readAheadBuffer), count);
+            if (count == -1) {
+                break;
+            }
+            Assert.assertEquals(readAheadBuffer, sequentialBuffer);
+            Assert.assertEquals(readAhead.getFilePointer(), sequential.getFilePointer());
+            total += count;
+        }
+        Assert.assertEquals(total, uncompressedData.length);
+        sequential.close();
+        readAhead.close();
+    }
+
+    @Test(dataProvider = "readAhead")
+    public void testSeekWhileReadingAhead(final int inflaterThreads, final int blocksAhead) throws IOException {
+        // collect virtual file pointers with their offsets in the uncompressed data
+        final List<Long> filePointers = new ArrayList<>();
+        final List<Integer> offsets = new ArrayList<>();
+        final BlockCompressedInputStream sequential = new BlockCompressedInputStream(bgzfFile);
+        final byte[] buffer = new byte[10007];
+        for (int offset = buffer.length; offset < uncompressedData.length; offset += buffer.length) {
+            sequential.read(buffer);
+            filePointers.add(sequential.getFilePointer());
+            offsets.add(offset);
+        }
+        sequential.close();
+
+        final BlockCompressedInputStream readAhead = new BlockCompressedInputStream(bgzfFile);
+        readAhead.setReadAhead(inflaterThreads, blocksAhead);
+        final Random random = new Random(inflaterThreads * 31 + blocksAhead);
+        for (int i = 0; i < 50; ++i) {
+            final int index = random.nextInt(filePointers.size());
+            readAhead.seek(filePointers.get(index));
+            Assert.assertEquals(readAhead.getFilePointer(), (long) filePointers.get(index));
+            final int expectedLength = Math.min(100, uncompressedData.length - offsets.get(index));
+            final byte[] actual = new byte[expectedLength];
+            Assert.assertEquals(readAhead.read(actual), expectedLength);
+            for (int j = 0; j < expectedLength; ++j) {
+                Assert.assertEquals(actual[j], uncompressedData[offsets.get(index) + j]);
+            }
+        }
+        readAhead.close();
+    }
+
+    @Test(expectedExceptions = FileTruncatedException.class)
+    public void testReadAheadOfTruncatedFile() throws IOException {
+        final File truncated = File.createTempFile("BCIST.truncated.", ".gz");
+        truncated.deleteOnExit();
+        final byte[] bytes = Files.readAllBytes(bgzfFile.toPath());
+        Files.write(truncated.toPath(), Arrays.copyOf(bytes, bytes.length / 2));
+        final BlockCompressedInputStream readAhead = new BlockCompressedInputStream(truncated);
+        readAhead.setReadAhead(2, 4);
+        final byte[] buffer = new byte[uncompressedData.length];
+        // the blocks before the truncation point are returned first
+        Assert.assertTrue(readAhead.read(buffer, 0, BlockCompressedStreamConstants.DEFAULT_UNCOMPRESSED_BLOCK_SIZE) > 0);
+        try {
+            while (readAhead.read(buffer) != -1) {
+            }
+        } finally {
+            readAhead.close();
+        }
+    }
+
+    /**
+     * Keeps track of the inflaters and buffers that have been made and not yet released.
+     */
+    private static class TrackingInflaterFactory extends InflaterFactory {
+        private final Set<Object> outstanding = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>()));
+        private int inflatersMade = 0;
+
+        @Override
+        public synchronized Inflater makeInflater(final boolean gzipCompatible) {
+            ++inflatersMade;
+            final Inflater inflater = super.makeInflater(gzipCompatible);
+            outstanding.add(inflater);
+            return inflater;
+        }
+
+        @Override
+        public void releaseInflater(final Inflater inflater, final boolean gzipCompatible) {
+            Assert.assertTrue(outstanding.remove(inflater), "inflater released twice");
+            super.releaseInflater(inflater, gzipCompatible);
+        }
+
+        @Override
+        public byte[] makeBuffer(final int size) {
+            final byte[] buffer = super.makeBuffer(size);
+            outstanding.add(buffer);
+            return buffer;
+        }
+
+        @Override
+        public void releaseBuffer(final byte[] buffer) {
+            // empty blocks are not made by the factory
+            Assert.assertTrue(outstanding.remove(buffer) || buffer.length == 0, "buffer released twice");
+            super.releaseBuffer(buffer);
+        }
+    }
+
+    @Test(dataProvider = "readAhead")
+    public void testInflaterFactoryGetsEverythingBack(final int inflaterThreads, final int blocksAhead) throws IOException {
+        final TrackingInflaterFactory inflaterFactory = new TrackingInflaterFactory();
+        final BlockCompressedInputStream stream = new BlockCompressedInputStream(bgzfFile, inflaterFactory);
+        final byte[] buffer = new byte[10007];
+        stream.read(buffer);
+        // switch between reading ahead and inflating on this thread, with a block in use
+        stream.setReadAhead(inflaterThreads, blocksAhead);
+        stream.read(buffer);
+        stream.read(buffer);
+        stream.setReadAhead(0, 0);
+        stream.read(buffer);
+        stream.setReadAhead(inflaterThreads, blocksAhead);
+        while (stream.read(buffer) != -1) {
+        }
+        stream.seek(0);
+        stream.read(buffer);
+        stream.close();
+        Assert.assertTrue(inflaterFactory.inflatersMade > 0);
+        Assert.assertEquals(inflaterFactory.outstanding.size(), 0);
+    }
+
+    @Test
+    public void testPooledInflaterFactoryReusesInflatersAndBuffers() {
+        final PooledInflaterFactory inflaterFactory = new PooledInflaterFactory();
+        final Inflater inflater = inflaterFactory.makeInflater(true);
+        inflaterFactory.releaseInflater(inflater, true);
+        Assert.assertNotSame(inflaterFactory.makeInflater(false), inflater);
+        Assert.assertSame(inflaterFactory.makeInflater(true), inflater);
+
+        final byte[] buffer = inflaterFactory.makeBuffer(BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE);
+        inflaterFactory.releaseBuffer(buffer);
+        Assert.assertNotSame(inflaterFactory.makeBuffer(BlockCompressedStreamConstants.DEFAULT_UNCOMPRESSED_BLOCK_SIZE), buffer);
+        Assert.assertSame(inflaterFactory.makeBuffer(BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE), buffer);
+
+        final byte[] oddBuffer = inflaterFactory.makeBuffer(100);
+        Assert.assertEquals(oddBuffer.length, 100);
+        inflaterFactory.releaseBuffer(oddBuffer);
+        Assert.assertNotSame(inflaterFactory.makeBuffer(100), oddBuffer);
+    }
+
+    @Test
+    public void testReadWithPooledInflaterFactory() throws IOException {
+        final PooledInflaterFactory inflaterFactory = new PooledInflaterFactory();
+        final byte[] buffer = new byte[uncompressedData.length];
+        for (int i = 0; i < 3; ++i) {
+            final BlockCompressedInputStream stream = new BlockCompressedInputStream(bgzfFile, inflaterFactory);
+            if (i == 2) {
+                stream.setReadAhead(2, 4);
+            }
+            Arrays.fill(buffer, (byte) 0);
+            Assert.assertEquals(stream.read(buffer), uncompressedData.length);
+            Assert.assertEquals(buffer, uncompressedData);
+            stream.close();
+        }
+    }
+}
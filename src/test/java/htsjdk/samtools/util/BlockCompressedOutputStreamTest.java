@@ -25,14 +25,17 @@ package htsjdk.samtools.util;
 
 import htsjdk.samtools.util.zip.DeflaterFactory;
 import org.testng.Assert;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.Deflater;
 
 public class BlockCompressedOutputStreamTest {
@@ -162,4 +165,80 @@ public class BlockCompressedOutputStreamTest {
         bcis.close();
         Assert.assertEquals(deflateCalls[0], 3, "deflate calls");
     }
+
+    @DataProvider(name = "compressionThreads")
+    public Object[][] compressionThreads() {
+        return new Object[][]{{1}, {2}, {4}};
+    }
+
+    @Test(dataProvider = "compressionThreads")
+    public void testMultiThreadedCompressionMatchesSingleThreaded(final int compressionThreads) throws Exception {
+        final Random random = new Random(compressionThreads);
+        final ByteArrayOutputStream serialBytes = new ByteArrayOutputStream();
+        final ByteArrayOutputStream parallelBytes = new ByteArrayOutputStream();
+        final BlockCompressedOutputStream serial = new BlockCompressedOutputStream(serialBytes, null, 5, new DeflaterFactory(), 0);
+        final BlockCompressedOutputStream parallel = new BlockCompressedOutputStream(parallelBytes, null, 5, new DeflaterFactory(), compressionThreads);
+        final List<Long> filePointers = new ArrayList<>();
+        for (int i = 0; i < 2000; ++i) {
+            // mix of compressible and incompressible records, so that both deflaters are exercised
+            final byte[] record = new byte[random.nextInt(1000)];
+            if (i % 3 == 0) {
+                random.nextBytes(record);
+            }
+            serial.write(record);
+            parallel.write(record);
+            if (i % 7 == 0) {
+                Assert.assertEquals(parallel.getFilePointer(), serial.getFilePointer());
+                filePointers.add(serial.getFilePointer());
+            }
+        }
+        serial.close();
+        parallel.close();
+        Assert.assertEquals(parallelBytes.toByteArray(), serialBytes.toByteArray());
+        Assert.assertTrue(filePointers.size() > 1);
+    }
+
+    @Test
+    public void testDeferredFilePointersDoNotSerializeCompression() throws Exception {
+        final AtomicInteger activeDeflaters = new AtomicInteger(0);
+        final AtomicInteger maxActiveDeflaters = new AtomicInteger(0);
+        final DeflaterFactory slowDeflaterFactory = new DeflaterFactory() {
+            public Deflater makeDeflater(final int compressionLevel, final boolean nowrap) {
+                return new Deflater(compressionLevel, nowrap) {
+                    @Override
+                    public int deflate(final byte[] b, final int off, final int len) {
+                        final int active = activeDeflaters.incrementAndGet();
+                        maxActiveDeflaters.accumulateAndGet(active, Math::max);
+                        try {
+                            // slow enough that the blocks overlap unless the writer waits for each one
+                            Thread.sleep(20);
+                        } catch (final InterruptedException e) {
+                            throw new RuntimeException(e);
+                        } finally {
+                            activeDeflaters.decrementAndGet();
+                        }
+                        return super.deflate(b, off, len);
+                    }
+                };
+            }
+        };
+        final Random random = new Random(42);
+        final BlockCompressedOutputStream serial = new BlockCompressedOutputStream(new ByteArrayOutputStream(), null, 5, new DeflaterFactory(), 0);
+        final BlockCompressedOutputStream parallel = new BlockCompressedOutputStream(new ByteArrayOutputStream(), null, 5, slowDeflaterFactory, 4);
+        final List<Long> expectedFilePointers = new ArrayList<>();
+        final List<Long> filePointers = new ArrayList<>();
+        for (int i = 0; i < 2000; ++i) {
+            final byte[] record = new byte[random.nextInt(1000)];
+            random.nextBytes(record);
+            // request a file pointer for every record, as an indexing writer does
+            expectedFilePointers.add(serial.getFilePointer());
+            parallel.getFilePointer(filePointers::add);
+            serial.write(record);
+            parallel.write(record);
+        }
+        serial.close();
+        parallel.close();
+        Assert.assertEquals(filePointers, expectedFilePointers);
+        Assert.assertTrue(maxActiveDeflaters.get() > 1, "blocks were not compressed concurrently");
+    }
 }
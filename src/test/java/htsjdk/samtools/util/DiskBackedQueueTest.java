@@ -33,6 +33,8 @@ import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 public class DiskBackedQueueTest extends SortingCollectionTest {
     @DataProvider(name = "diskBackedQueueProvider")
@@ -92,6 +94,48 @@ public class DiskBackedQueueTest extends SortingCollectionTest {
         return DiskBackedQueue.newInstance(new StringCodec(), maxRecordsInRam, Collections.singletonList(tmpDir()));
     }
 
+    @Test(dataProvider = "diskBackedQueueProvider")
+    public void testMemoryBudget(final String testName, final int numStringsToGenerate, final int maxRecordsInRam) {
+        final String[] strings = new String[numStringsToGenerate];
+        int numStringsGenerated = 0;
+        // the head record is not counted in the budget, as for a number of records
+        final DiskBackedQueue<String> diskBackedQueue = DiskBackedQueue.newInstance(new StringCodec(), s -> 10L,
+                10L * Math.max(maxRecordsInRam - 1, 0), Collections.singletonList(tmpDir()));
+        for (final String s : new RandomStringGenerator(numStringsToGenerate)) {
+            diskBackedQueue.add(s);
+            strings[numStringsGenerated++] = s;
+        }
+        Assert.assertEquals(tmpDirIsEmpty(), numStringsToGenerate <= Math.max(maxRecordsInRam, 1));
+        assertQueueEqualsList(strings, diskBackedQueue);
+        Assert.assertEquals(diskBackedQueue.size(), 0);
+        diskBackedQueue.clear();
+        Assert.assertTrue(diskBackedQueue.canAdd());
+    }
+
+    @Test
+    public void testMemoryBudgetReleasesAddedSizes() {
+        // estimates that change while the records are queued must not make the budget drift
+        final Map<String, Long> sizes = new HashMap<>();
+        final DiskBackedQueue<String> queue = DiskBackedQueue.newInstance(new StringCodec(), s -> sizes.getOrDefault(s, 10L),
+                20L, Collections.singletonList(tmpDir()));
+        queue.add("a");
+        queue.add("b");
+        queue.add("c");
+        sizes.put("b", 0L);
+        sizes.put("c", 0L);
+        Assert.assertEquals(queue.poll(), "a");
+        Assert.assertEquals(queue.poll(), "b");
+        Assert.assertEquals(queue.poll(), "c");
+        Assert.assertTrue(queue.isEmpty());
+
+        queue.add("d");
+        queue.add("e");
+        queue.add("f");
+        Assert.assertTrue(tmpDirIsEmpty());
+        Assert.assertEquals(queue.poll(), "d");
+        Assert.assertTrue(queue.canAdd());
+    }
+
     @Test
     public void testReadOnlyQueueJustBeforeReadingFromDisk() {
         final DiskBackedQueue<String> queue = makeDiskBackedQueue(2);
@@ -0,0 +1,94 @@
+package htsjdk.samtools.util;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+public class SortKeySorterTest {
+
+    // a value with few distinct keys and a position telling records with equal keys apart
+    private static class Value {
+        final int key;
+        final int tieBreak;
+        final int position;
+
+        Value(final int key, final int tieBreak, final int position) {
+            this.key = key;
+            this.tieBreak = tieBreak;
+            this.position = position;
+        }
+    }
+
+    // orders by key, then by tie-break, leaving ties to the stability of the sort
+    private static final SortKeyComparator<Value> COMPARATOR = new SortKeyComparator<Value>() {
+        @Override
+        public long getSortKey(final Value value) {
+            return value.key;
+        }
+
+        @Override
+        public long getTieBreakKey(final Value value) {
+            return value.tieBreak >> 1;
+        }
+
+        @Override
+        public int compare(final Value value1, final Value value2) {
+            final int cmp = Integer.compare(value1.key, value2.key);
+            return cmp != 0 ? cmp : Integer.compare(value1.tieBreak, value2.tieBreak);
+        }
+    };
+
+    @DataProvider(name = "sizes")
+    public Object[][] sizes() {
+        return new Object[][]{
+                {0, false}, {1, false}, {31, false}, {1000, false}, {1000, true}, {100000, false}, {100000, true}
+        };
+    }
+
+    @Test(dataProvider = "sizes")
+    public void testSortIsStable(final int size, final boolean parallel) {
+        final Random random = new Random(size);
+        final Value[] values = new Value[size + 10];
+        for (int i = 0; i < size; i++) {
+            values[i] = new Value(random.nextInt(100), random.nextInt(10), i);
+        }
+        final Value[] expected = Arrays.copyOf(values, size);
+        Arrays.sort(expected, COMPARATOR);
+
+        SortKeySorter.sort(values, size, COMPARATOR, parallel);
+        for (int i = 0; i < size; i++) {
+            Assert.assertSame(values[i], expected[i]);
+        }
+        for (int i = size; i < values.length; i++) {
+            Assert.assertNull(values[i]);
+        }
+    }
+
+    @Test
+    public void testSortedInput() {
+        final Value[] values = new Value[5000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = new Value(i / 7, i % 7, i);
+        }
+        final Value[] expected = values.clone();
+        SortKeySorter.sort(values, values.length, COMPARATOR, false);
+        Assert.assertEquals(values, expected);
+
+        final Value[] reversed = new Value[values.length];
+        for (int i = 0; i < values.length; i++) {
+            reversed[i] = values[values.length - 1 - i];
+        }
+        SortKeySorter.sort(reversed, reversed.length, COMPARATOR, true);
+        Assert.assertEquals(reversed, expected);
+    }
+
+    @Test
+    public void testComparatorWithoutKeys() {
+        Assert.assertSame(SortKeyComparator.getSortKeyComparator(COMPARATOR), COMPARATOR);
+        Assert.assertNull(SortKeyComparator.getSortKeyComparator(Comparator.<Integer>naturalOrder()));
+    }
+}
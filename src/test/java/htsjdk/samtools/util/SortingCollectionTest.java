@@ -32,14 +32,18 @@ import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.Random;
+import java.util.Set;
 
 public class SortingCollectionTest {
     // Create a separate directory for files so it is possible to confirm that the directory is emptied
@@ -102,6 +106,178 @@ public class SortingCollectionTest {
         Assert.assertEquals(tmpDir().list().length, 0);
     }
 
+    @Test(dataProvider = "test1")
+    public void testBackgroundSpilling(final String testName, final int numStringsToGenerate, final int maxRecordsInRam) {
+        for (final int maxSpillsInFlight : new int[]{1, 3}) {
+            final String[] strings = new String[numStringsToGenerate];
+            int numStringsGenerated = 0;
+            final SortingCollection<String> sortingCollection = makeSortingCollection(maxRecordsInRam);
+            sortingCollection.setBackgroundSpilling(maxSpillsInFlight);
+            for (final String s : new RandomStringGenerator(numStringsToGenerate)) {
+                sortingCollection.add(s);
+                strings[numStringsGenerated++] = s;
+            }
+            Arrays.sort(strings, new StringComparator());
+
+            sortingCollection.doneAdding();
+            Assert.assertEquals(tmpDir().list().length, numStringsToGenerate <= maxRecordsInRam ? 0 : (numStringsToGenerate + maxRecordsInRam - 1) / maxRecordsInRam);
+            sortingCollection.setDestructiveIteration(false);
+            assertIteratorEqualsList(strings, sortingCollection.iterator());
+            assertIteratorEqualsList(strings, sortingCollection.iterator());
+
+            sortingCollection.cleanup();
+            Assert.assertEquals(tmpDir().list().length, 0);
+        }
+    }
+
+    @Test
+    public void testBackgroundSpillingCleanupBeforeDoneAdding() {
+        final SortingCollection<String> sortingCollection = makeSortingCollection(10);
+        sortingCollection.setBackgroundSpilling(2);
+        for (final String s : new RandomStringGenerator(1000)) {
+            sortingCollection.add(s);
+        }
+        sortingCollection.cleanup();
+        Assert.assertEquals(tmpDir().list().length, 0);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testBackgroundSpillingAfterSpill() {
+        final SortingCollection<String> sortingCollection = makeSortingCollection(10);
+        for (final String s : new RandomStringGenerator(11)) {
+            sortingCollection.add(s);
+        }
+        try {
+            sortingCollection.setBackgroundSpilling(1);
+        } finally {
+            sortingCollection.cleanup();
+        }
+    }
+
+    @Test(dataProvider = "test1")
+    public void testMemoryBudget(final String testName, final int numStringsToGenerate, final int maxRecordsInRam) {
+        final String[] strings = new String[numStringsToGenerate];
+        int numStringsGenerated = 0;
+        // the budget holds maxRecordsInRam records of 10 bytes
+        final SortingCollection<String> sortingCollection = SortingCollection.newInstance(String.class,
+                new StringCodec(), new StringComparator(), s -> 10L, 10L * maxRecordsInRam, tmpDir());
+        for (final String s : new RandomStringGenerator(numStringsToGenerate)) {
+            sortingCollection.add(s);
+            strings[numStringsGenerated++] = s;
+        }
+        Arrays.sort(strings, new StringComparator());
+
+        sortingCollection.doneAdding();
+        Assert.assertEquals(tmpDir().list().length, numStringsToGenerate <= maxRecordsInRam ? 0 : (numStringsToGenerate + maxRecordsInRam - 1) / maxRecordsInRam);
+        assertIteratorEqualsList(strings, sortingCollection.iterator());
+        sortingCollection.cleanup();
+        Assert.assertEquals(tmpDir().list().length, 0);
+    }
+
+    @Test
+    public void testMemoryBudgetWithVariableSizes() {
+        final int numStringsToGenerate = 1000;
+        final String[] strings = new String[numStringsToGenerate];
+        int numStringsGenerated = 0;
+        final SortingCollection<String> sortingCollection = SortingCollection.newInstance(String.class,
+                new StringCodec(), new StringComparator(), s -> 100L * s.length(), 10000L, tmpDir());
+        sortingCollection.setBackgroundSpilling(2);
+        for (final String s : new RandomStringGenerator(numStringsToGenerate)) {
+            sortingCollection.add(s);
+            strings[numStringsGenerated++] = s;
+        }
+        Arrays.sort(strings, new StringComparator());
+
+        sortingCollection.doneAdding();
+        // strings of up to 11 characters, so that 9 to 100 of them fit in the budget
+        Assert.assertTrue(tmpDir().list().length >= 10);
+        Assert.assertTrue(tmpDir().list().length <= 112);
+        assertIteratorEqualsList(strings, sortingCollection.iterator());
+        sortingCollection.cleanup();
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidMemoryBudget() {
+        SortingCollection.newInstance(String.class, new StringCodec(), new StringComparator(), s -> 10L, 0L, tmpDir());
+    }
+
+    @DataProvider(name = "mergeFanIn")
+    public Object[][] mergeFanIn() {
+        return new Object[][] {
+                {2, TempStreamFactory.Compression.SNAPPY},
+                {3, TempStreamFactory.Compression.NONE},
+                {7, TempStreamFactory.Compression.DEFLATE},
+                {50, TempStreamFactory.Compression.DEFLATE},
+                {1000, TempStreamFactory.Compression.DEFLATE},
+        };
+    }
+
+    @Test(dataProvider = "mergeFanIn")
+    public void testMaxMergeFanIn(final int maxMergeFanIn, final TempStreamFactory.Compression compression) {
+        final int numStringsToGenerate = 2000;
+        final int maxRecordsInRam = 20;
+        final String[] strings = new String[numStringsToGenerate];
+        int numStringsGenerated = 0;
+        final SortingCollection<String> sortingCollection = makeSortingCollection(maxRecordsInRam);
+        sortingCollection.setMaxMergeFanIn(maxMergeFanIn);
+        sortingCollection.setTempStreamFactory(new TempStreamFactory(compression));
+        for (final String s : new RandomStringGenerator(numStringsToGenerate)) {
+            // few distinct values, so that there are many ties
+            final String value = s.substring(0, 2);
+            sortingCollection.add(value);
+            strings[numStringsGenerated++] = value;
+        }
+        Arrays.sort(strings, new StringComparator());
+
+        sortingCollection.setDestructiveIteration(false);
+        assertIteratorEqualsList(strings, sortingCollection.iterator());
+        Assert.assertEquals(tmpDir().list().length, Math.min(maxMergeFanIn, numStringsToGenerate / maxRecordsInRam));
+        assertIteratorEqualsList(strings, sortingCollection.iterator());
+
+        sortingCollection.cleanup();
+        Assert.assertEquals(tmpDir().list().length, 0);
+    }
+
+    @Test
+    public void testMergeClosesTempInputStreams() {
+        // the streams returned by the factory, not yet closed
+        final Set<InputStream> openStreams = Collections.newSetFromMap(new IdentityHashMap<>());
+        final TempStreamFactory tempStreamFactory = new TempStreamFactory(TempStreamFactory.Compression.DEFLATE) {
+            @Override
+            public InputStream wrapTempInputStream(final InputStream inputStream, final int bufferSize) {
+                final InputStream is = new FilterInputStream(super.wrapTempInputStream(inputStream, bufferSize)) {
+                    @Override
+                    public void close() throws IOException {
+                        openStreams.remove(this);
+                        super.close();
+                    }
+                };
+                openStreams.add(is);
+                return is;
+            }
+        };
+        final String[] strings = new String[1000];
+        int numStringsGenerated = 0;
+        final SortingCollection<String> sortingCollection = makeSortingCollection(10);
+        // 100 files merged in several passes
+        sortingCollection.setMaxMergeFanIn(4);
+        sortingCollection.setTempStreamFactory(tempStreamFactory);
+        for (final String s : new RandomStringGenerator(strings.length)) {
+            sortingCollection.add(s);
+            strings[numStringsGenerated++] = s;
+        }
+        Arrays.sort(strings, new StringComparator());
+
+        assertIteratorEqualsList(strings, sortingCollection.iterator());
+        Assert.assertTrue(openStreams.isEmpty(), openStreams.size() + " temp input streams were not closed");
+        sortingCollection.cleanup();
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidMaxMergeFanIn() {
+        makeSortingCollection(10).setMaxMergeFanIn(1);
+    }
+
     private void assertIteratorEqualsList(final String[] strings, final Iterator<String> sortingCollection) {
         int i = 0;
         while (sortingCollection.hasNext()) {
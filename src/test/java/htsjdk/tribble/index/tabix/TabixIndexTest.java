@@ -23,6 +23,7 @@
  */
 package htsjdk.tribble.index.tabix;
 
+import htsjdk.samtools.CSIIndex;
 import htsjdk.samtools.util.BlockCompressedOutputStream;
 import htsjdk.tribble.index.IndexFactory;
 import htsjdk.tribble.util.LittleEndianOutputStream;
@@ -39,6 +40,7 @@ import org.testng.annotations.Test;
 import java.io.File;
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.Random;
 
 public class TabixIndexTest {
     private static final File SMALL_TABIX_FILE = new File("src/test/resources/htsjdk/tribble/tabix/trioDup.vcf.gz.tbi");
@@ -71,6 +73,33 @@ public class TabixIndexTest {
         };
     }
 
+    @Test
+    public void testCSIIndex() throws IOException {
+        final File vcf = new File("src/test/resources/htsjdk/tribble/tabix/YRI.trio.2010_07.indel.sites.vcf.gz");
+        final TabixIndex tabixIndex = IndexFactory.createTabixIndex(vcf, new VCFCodec(), TabixFormat.VCF, null);
+        final TabixIndex csiIndex = IndexFactory.createTabixCSIIndex(vcf, new VCFCodec(), TabixFormat.VCF, 14, 5);
+        Assert.assertNotNull(csiIndex.getCSIIndex());
+        Assert.assertEquals(csiIndex.getSequenceNames(), tabixIndex.getSequenceNames());
+        Assert.assertEquals(csiIndex.getFormatSpec(), tabixIndex.getFormatSpec());
+
+        // With the same shape of bins, the same blocks are read
+        final Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            final int start = random.nextInt(80000000) + 1;
+            final int end = start + random.nextInt(1000000);
+            Assert.assertEquals(csiIndex.getBlocks("1", start, end), tabixIndex.getBlocks("1", start, end), start + "-" + end);
+        }
+        Assert.assertTrue(csiIndex.getBlocks("2", 1, 1000).isEmpty());
+
+        // Round trip through a file, loaded as any other index
+        for (final TabixIndex index : new TabixIndex[]{csiIndex, IndexFactory.createTabixCSIIndex(vcf, new VCFCodec(), TabixFormat.VCF, 12, 6)}) {
+            final File indexFile = File.createTempFile("TabixIndexTest.", CSIIndex.CSI_INDEX_SUFFIX);
+            indexFile.deleteOnExit();
+            index.write(indexFile);
+            Assert.assertEquals(IndexFactory.loadIndex(indexFile.getAbsolutePath()), index);
+        }
+    }
+
     @Test
     public void testQueryProvidedItemsAmount() throws IOException {
         final String VCF = "src/test/resources/htsjdk/tribble/tabix/YRI.trio.2010_07.indel.sites.vcf";